@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.basic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.BitVectorRepository;
+import com.ibm.wala.util.intset.IntSetUtil;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
+import com.ibm.wala.util.intset.MutableSharedBitVectorIntSet;
+import com.ibm.wala.util.intset.MutableSharedBitVectorIntSetFactory;
+
+/**
+ * Tests for {@link BitVectorRepository}
+ */
+public class BitVectorRepositoryTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(BitVectorRepositoryTest.class);
+  }
+
+  /**
+   * @return the integers from start to start + n - 1
+   */
+  private static int[] range(int start, int n) {
+    int[] result = new int[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = start + i;
+    }
+    return result;
+  }
+
+  @Test
+  public void testSharing() {
+    BitVectorRepository r = new BitVectorRepository();
+    MutableSharedBitVectorIntSetFactory f = new MutableSharedBitVectorIntSetFactory(r);
+    MutableSharedBitVectorIntSet a = f.make(range(0, 50));
+    MutableSharedBitVectorIntSet b = f.make(range(0, 50));
+    Assert.assertTrue(a.sameValue(b));
+    Assert.assertEquals(2, r.getNumberOfQueries());
+    Assert.assertEquals(1, r.getNumberOfHits());
+    Assert.assertEquals(1, r.getNumberOfMisses());
+    Assert.assertEquals(1, r.getNumberOfEntries());
+    Assert.assertTrue(r.getFootprintInBytes() > 0);
+    // a separate repository shares nothing with r
+    BitVectorRepository r2 = new BitVectorRepository();
+    new MutableSharedBitVectorIntSetFactory(r2).make(range(0, 50));
+    Assert.assertEquals(0, r2.getNumberOfHits());
+    Assert.assertEquals(1, r.getNumberOfEntries());
+  }
+
+  @Test
+  public void testConcurrentLookups() throws InterruptedException {
+    final BitVectorRepository r = new BitVectorRepository();
+    final MutableSharedBitVectorIntSetFactory f = new MutableSharedBitVectorIntSetFactory(r);
+    final int nThreads = 8;
+    final int nSets = 500;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final List<MutableSharedBitVectorIntSet> keep = new ArrayList<MutableSharedBitVectorIntSet>();
+    Thread[] threads = new Thread[nThreads];
+    for (int t = 0; t < nThreads; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            List<MutableSharedBitVectorIntSet> mine = new ArrayList<MutableSharedBitVectorIntSet>();
+            for (int i = 0; i < nSets; i++) {
+              int n = 30 + (i % 20);
+              MutableSharedBitVectorIntSet s = f.make(range(i % 10, n));
+              Assert.assertEquals(n, s.size());
+              Assert.assertTrue(s.contains(i % 10));
+              Assert.assertTrue(s.contains(i % 10 + n - 1));
+              Assert.assertFalse(s.contains(i % 10 + n));
+              mine.add(s);
+            }
+            synchronized (keep) {
+              keep.addAll(mine);
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    Assert.assertEquals(nThreads * nSets, keep.size());
+    Assert.assertEquals(nThreads * nSets, r.getNumberOfQueries());
+    Assert.assertEquals(r.getNumberOfMisses(), r.getNumberOfEntries());
+    // there are only 200 distinct sets, so most lookups must be hits
+    Assert.assertTrue(r.getNumberOfHits() > r.getNumberOfMisses());
+  }
+
+  @Test
+  public void testEntriesAreReleased() throws InterruptedException {
+    BitVectorRepository r = new BitVectorRepository();
+    MutableSharedBitVectorIntSetFactory f = new MutableSharedBitVectorIntSetFactory(r);
+    for (int i = 0; i < 100; i++) {
+      f.make(range(i, 30 + i));
+    }
+    Assert.assertTrue(r.getNumberOfEntries() > 0);
+    for (int i = 0; i < 50 && r.getNumberOfEntries() > 0; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    Assert.assertEquals(0, r.getNumberOfEntries());
+    Assert.assertEquals(0, r.getFootprintInBytes());
+  }
+
+  @Test
+  public void testRepositoryPerAnalysis() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    MutableIntSetFactory<?> save = IntSetUtil.getDefaultIntSetFactory();
+    IntSetUtil.setDefaultIntSetFactory(new MutableSharedBitVectorIntSetFactory());
+    try {
+      AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA,
+          CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+      ClassHierarchy cha = ClassHierarchy.make(scope);
+      Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.PI_TEST_MAIN);
+      BitVectorRepository[] repositories = new BitVectorRepository[2];
+      for (int i = 0; i < 2; i++) {
+        AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+        PropagationCallGraphBuilder builder = Util.makeZeroCFABuilder(options, new AnalysisCache(), cha, scope);
+        long before = BitVectorRepository.getDefault().getNumberOfQueries();
+        builder.makeCallGraph(options, null);
+        repositories[i] = builder.getPropagationSystem().getBitVectorRepository();
+        Assert.assertNotNull(repositories[i]);
+        Assert.assertEquals(before, BitVectorRepository.getDefault().getNumberOfQueries());
+      }
+      Assert.assertNotSame(repositories[0], repositories[1]);
+    } finally {
+      IntSetUtil.setDefaultIntSetFactory(save);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.basic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.graph.AbstractMeetOperator;
+import com.ibm.wala.dataflow.graph.BitVectorFramework;
+import com.ibm.wala.dataflow.graph.BitVectorSolver;
+import com.ibm.wala.dataflow.graph.BitVectorUnion;
+import com.ibm.wala.dataflow.graph.BitVectorUnionConstant;
+import com.ibm.wala.dataflow.graph.ITransferFunctionProvider;
+import com.ibm.wala.fixedpoint.impl.DefaultFixedPointSolver;
+import com.ibm.wala.fixpoint.BitVectorVariable;
+import com.ibm.wala.fixpoint.UnaryOperator;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.debug.Assertions;
+import com.ibm.wala.util.graph.Graph;
+import com.ibm.wala.util.graph.impl.SlowSparseNumberedGraph;
+import com.ibm.wala.util.intset.MutableMapping;
+import com.ibm.wala.util.intset.OrdinalSetMapping;
+
+/**
+ * Check that solving with several threads computes the same solutions as solving with one.
+ */
+public class ParallelSolverTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ParallelSolverTest.class);
+  }
+
+  private static final int N = 2000;
+
+  /**
+   * @return a graph of N nodes, with a long chain, many back edges, and some cross edges
+   */
+  private static Graph<Integer> buildGraph() {
+    Graph<Integer> G = SlowSparseNumberedGraph.make();
+    for (int i = 0; i < N; i++) {
+      G.addNode(i);
+    }
+    for (int i = 0; i < N - 1; i++) {
+      G.addEdge(i, i + 1);
+      if (i % 7 == 0) {
+        G.addEdge(i, (i * 13) % N);
+      }
+      if (i % 3 == 0 && i > 50) {
+        G.addEdge(i, i - 50);
+      }
+    }
+    return G;
+  }
+
+  private static BitVectorSolver<Integer> makeSolver(Graph<Integer> G) {
+    Integer[] nodes = new Integer[N];
+    for (int i = 0; i < N; i++) {
+      nodes[i] = i;
+    }
+    final OrdinalSetMapping<Integer> values = new MutableMapping<Integer>(nodes);
+    ITransferFunctionProvider<Integer, BitVectorVariable> functions = new ITransferFunctionProvider<Integer, BitVectorVariable>() {
+
+      @Override
+      public UnaryOperator<BitVectorVariable> getNodeTransferFunction(Integer node) {
+        return new BitVectorUnionConstant(values.getMappedIndex(node));
+      }
+
+      @Override
+      public boolean hasNodeTransferFunctions() {
+        return true;
+      }
+
+      @Override
+      public UnaryOperator<BitVectorVariable> getEdgeTransferFunction(Integer from, Integer to) {
+        Assertions.UNREACHABLE();
+        return null;
+      }
+
+      @Override
+      public boolean hasEdgeTransferFunctions() {
+        return false;
+      }
+
+      @Override
+      public AbstractMeetOperator<BitVectorVariable> getMeetOperator() {
+        return BitVectorUnion.instance();
+      }
+    };
+    BitVectorFramework<Integer, Integer> F = new BitVectorFramework<Integer, Integer>(G, functions, values);
+    return new BitVectorSolver<Integer>(F);
+  }
+
+  private static String solve(Graph<Integer> G, int nThreads) throws CancelException {
+    BitVectorSolver<Integer> s = makeSolver(G);
+    s.setNumberOfThreads(nThreads);
+    Assert.assertEquals(nThreads, s.getNumberOfThreads());
+    s.solve(null);
+    s.shutdown();
+    Assert.assertTrue(s.getTotalEvaluations() > 0);
+    StringBuffer result = new StringBuffer();
+    for (int i = 0; i < N; i++) {
+      result.append(i).append(" = ").append(s.getIn(i)).append(" ").append(s.getOut(i)).append("\n");
+    }
+    return result.toString();
+  }
+
+  @Test
+  public void testBitVectorSolver() throws CancelException {
+    Graph<Integer> G = buildGraph();
+    String expected = solve(G, 1);
+    for (int t = 2; t <= 8; t *= 2) {
+      Assert.assertEquals(expected, solve(G, t));
+    }
+  }
+
+  @Test
+  public void testSecondSolve() throws CancelException {
+    // a second solve, with nothing left to do, changes nothing
+    Graph<Integer> G = buildGraph();
+    BitVectorSolver<Integer> s = makeSolver(G);
+    s.setNumberOfThreads(4);
+    s.solve(null);
+    Assert.assertFalse(s.solve(null));
+    s.shutdown();
+  }
+
+  @Test
+  public void testSolveAfterShutdown() throws CancelException {
+    // the threads are started again for a solve after shutdown
+    Graph<Integer> G = buildGraph();
+    BitVectorSolver<Integer> s = makeSolver(G);
+    s.setNumberOfThreads(4);
+    s.shutdown();
+    s.solve(null);
+    s.shutdown();
+    StringBuffer result = new StringBuffer();
+    for (int i = 0; i < N; i++) {
+      result.append(i).append(" = ").append(s.getIn(i)).append(" ").append(s.getOut(i)).append("\n");
+    }
+    Assert.assertEquals(solve(G, 1), result.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadNumberOfThreads() {
+    makeSolver(buildGraph()).setNumberOfThreads(0);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnsupported() {
+    DefaultFixedPointSolver<BitVectorVariable> s = new DefaultFixedPointSolver<BitVectorVariable>() {
+      @Override
+      protected void initializeVariables() {
+      }
+
+      @Override
+      protected void initializeWorkList() {
+      }
+
+      @Override
+      protected BitVectorVariable[] makeStmtRHS(int size) {
+        return new BitVectorVariable[size];
+      }
+    };
+    s.setNumberOfThreads(2);
+  }
+}
@@ -15,6 +15,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -34,8 +35,10 @@ import com.ibm.wala.util.intset.BasicNaturalRelation;
 import com.ibm.wala.util.intset.BimodalMutableIntSetFactory;
 import com.ibm.wala.util.intset.BitVector;
 import com.ibm.wala.util.intset.BitVectorBase;
+import com.ibm.wala.util.intset.BitVectorIntSet;
 import com.ibm.wala.util.intset.BitVectorIntSetFactory;
 import com.ibm.wala.util.intset.IBinaryNaturalRelation;
+import com.ibm.wala.util.intset.IntIterator;
 import com.ibm.wala.util.intset.IntPair;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetUtil;
@@ -50,6 +53,8 @@ import com.ibm.wala.util.intset.MutableSharedBitVectorIntSetFactory;
 import com.ibm.wala.util.intset.MutableSparseIntSetFactory;
 import com.ibm.wala.util.intset.MutableSparseLongSetFactory;
 import com.ibm.wala.util.intset.OffsetBitVector;
+import com.ibm.wala.util.intset.RoaringMutableIntSet;
+import com.ibm.wala.util.intset.RoaringMutableIntSetFactory;
 import com.ibm.wala.util.intset.SemiSparseMutableIntSet;
 import com.ibm.wala.util.intset.SemiSparseMutableIntSetFactory;
 import com.ibm.wala.util.intset.SparseIntSet;
@@ -348,6 +353,89 @@ public class PrimitivesTest extends WalaTestCase {
     doMutableIntSet(new SemiSparseMutableIntSetFactory());
   }
 
+  /**
+   * Test the RoaringMutableIntSet implementation
+   */
+  @Test public void testRoaringMutableIntSet() {
+    doMutableIntSet(new RoaringMutableIntSetFactory());
+  }
+
+  /**
+   * Add the same elements to s and t: clusters of consecutive elements, dense stretches and scattered elements, across several 2^16
+   * chunks
+   */
+  private static void addClusteredElements(Random r, MutableIntSet s, MutableIntSet t) {
+    for (int i = 0; i < 40; i++) {
+      int base = r.nextInt(300000);
+      int length = r.nextInt(3) == 0 ? r.nextInt(10000) : r.nextInt(20);
+      int stride = r.nextInt(4) == 0 ? 1 + r.nextInt(3) : 1;
+      for (int j = 0; j < length; j += stride) {
+        s.add(base + j);
+        t.add(base + j);
+      }
+    }
+    for (int i = 0; i < 500; i++) {
+      int x = r.nextInt(300000);
+      s.add(x);
+      t.add(x);
+    }
+  }
+
+  /**
+   * Check RoaringMutableIntSet against BitVectorIntSet on random sets which exercise all its containers
+   */
+  @Test public void testRoaringMutableIntSetRandom() {
+    Random r = new Random(1234);
+    for (int round = 0; round < 30; round++) {
+      RoaringMutableIntSet a = new RoaringMutableIntSet();
+      BitVectorIntSet a2 = new BitVectorIntSet();
+      RoaringMutableIntSet b = new RoaringMutableIntSet();
+      BitVectorIntSet b2 = new BitVectorIntSet();
+      addClusteredElements(r, a, a2);
+      addClusteredElements(r, b, b2);
+      if (round % 2 == 0) {
+        a.runOptimize();
+      }
+      for (int i = 0; i < 200; i++) {
+        int x = r.nextInt(300000);
+        Assert.assertEquals(a2.remove(x), a.remove(x));
+      }
+      Assert.assertTrue(a.sameValue(a2));
+      Assert.assertTrue(a2.sameValue(a));
+      Assert.assertEquals(a2.size(), a.size());
+      Assert.assertEquals(a2.max(), a.max());
+      Assert.assertEquals(a2.containsAny(b2), a.containsAny(b));
+
+      RoaringMutableIntSet i = (RoaringMutableIntSet) a.intersection(b);
+      Assert.assertTrue(i.sameValue(a2.intersection(b2)));
+      Assert.assertTrue(i.isSubset(a));
+      Assert.assertTrue(i.isSubset(b));
+      Assert.assertEquals(!i.isEmpty(), a.containsAny(b));
+
+      RoaringMutableIntSet filter = new RoaringMutableIntSet();
+      BitVectorIntSet filter2 = new BitVectorIntSet();
+      addClusteredElements(r, filter, filter2);
+      RoaringMutableIntSet c = new RoaringMutableIntSet(a);
+      BitVectorIntSet c2 = new BitVectorIntSet(a2);
+      Assert.assertEquals(c2.addAllInIntersection(b2, filter2), c.addAllInIntersection(b, filter));
+      Assert.assertTrue(c.sameValue(c2));
+
+      Assert.assertEquals(a2.addAll(b2), a.addAll(b));
+      Assert.assertTrue(a.sameValue(a2));
+      Assert.assertTrue(b.isSubset(a));
+      Assert.assertFalse(a.addAll(b));
+
+      a.intersectWith(filter);
+      a2.intersectWith(filter2);
+      Assert.assertTrue(a.sameValue(a2));
+      int n = 0;
+      for (IntIterator it = a.intIterator(); it.hasNext(); n++) {
+        Assert.assertTrue(a2.contains(it.next()));
+      }
+      Assert.assertEquals(a2.size(), n);
+    }
+  }
+
   /**
    * Test the MutableSparseIntSet implementation
    */
@@ -732,6 +820,14 @@ public class PrimitivesTest extends WalaTestCase {
   }
 
   @Test public void testDominatorsA() {
+    doDominatorsA(Dominators.Algorithm.LENGAUER_TARJAN);
+  }
+
+  @Test public void testSemiNCADominatorsA() {
+    doDominatorsA(Dominators.Algorithm.SEMI_NCA);
+  }
+
+  private void doDominatorsA(Dominators.Algorithm algorithm) {
     // test graph
     Graph<Object> G = SlowSparseNumberedGraph.make();
 
@@ -756,7 +852,7 @@ public class PrimitivesTest extends WalaTestCase {
     G.addEdge(nodes[9], nodes[6]);
 
     // compute dominators
-    Dominators<Object> D = Dominators.make(G, nodes[10]);
+    Dominators<Object> D = Dominators.make(G, nodes[10], algorithm);
 
     // Assert.assertions
     int i = 0;
@@ -781,6 +877,35 @@ public class PrimitivesTest extends WalaTestCase {
     Assert.assertTrue(D.dominatorTree().getSuccNodeCount(nodes[10]) == 5);
   }
 
+  /**
+   * Check the semi-NCA dominators against Lengauer and Tarjan's on random graphs, some of whose nodes are unreachable
+   */
+  @Test public void testSemiNCADominatorsRandom() {
+    Random r = new Random(4321);
+    for (int round = 0; round < 50; round++) {
+      NumberedGraph<Integer> G = SlowSparseNumberedGraph.make();
+      int n = 1 + r.nextInt(round < 40 ? 50 : 2000);
+      for (int i = 0; i < n; i++) {
+        G.addNode(i);
+      }
+      for (int i = 0; i < n; i++) {
+        // mostly forward edges, as in a CFG, with some back edges and branches
+        if (i + 1 < n && r.nextInt(10) != 0) {
+          G.addEdge(i, i + 1);
+        }
+        for (int j = r.nextInt(3); j > 0; j--) {
+          G.addEdge(i, r.nextInt(n));
+        }
+      }
+      Integer root = r.nextInt(n);
+      Dominators<Integer> expected = Dominators.make(G, root, Dominators.Algorithm.LENGAUER_TARJAN);
+      Dominators<Integer> actual = Dominators.make(G, root, Dominators.Algorithm.SEMI_NCA);
+      for (Integer node : G) {
+        Assert.assertEquals("idom of " + node, expected.getIdom(node), actual.getIdom(node));
+      }
+    }
+  }
+
   @Test public void testBinaryIntegerRelation() {
     byte[] impl = new byte[] { BasicNaturalRelation.SIMPLE, BasicNaturalRelation.TWO_LEVEL, BasicNaturalRelation.SIMPLE };
     IBinaryNaturalRelation R = new BasicNaturalRelation(impl, BasicNaturalRelation.TWO_LEVEL);
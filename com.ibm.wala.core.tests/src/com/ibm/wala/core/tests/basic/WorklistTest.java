@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.basic;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.graph.AbstractMeetOperator;
+import com.ibm.wala.dataflow.graph.BitVectorFramework;
+import com.ibm.wala.dataflow.graph.BitVectorSolver;
+import com.ibm.wala.dataflow.graph.BitVectorUnion;
+import com.ibm.wala.dataflow.graph.BitVectorUnionConstant;
+import com.ibm.wala.dataflow.graph.ITransferFunctionProvider;
+import com.ibm.wala.fixedpoint.impl.AbstractFixedPointSolver;
+import com.ibm.wala.fixedpoint.impl.BucketWorklist;
+import com.ibm.wala.fixedpoint.impl.IWorklist;
+import com.ibm.wala.fixedpoint.impl.LRFWorklist;
+import com.ibm.wala.fixedpoint.impl.WaveWorklist;
+import com.ibm.wala.fixpoint.BitVectorVariable;
+import com.ibm.wala.fixpoint.UnaryOperator;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.Factory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.debug.Assertions;
+import com.ibm.wala.util.graph.Graph;
+import com.ibm.wala.util.graph.impl.SlowSparseNumberedGraph;
+import com.ibm.wala.util.intset.MutableMapping;
+import com.ibm.wala.util.intset.OrdinalSetMapping;
+
+/**
+ * Check that the solver work list strategies all compute the same solutions.
+ */
+public class WorklistTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(WorklistTest.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static final Factory<IWorklist>[] FACTORIES = new Factory[] { AbstractFixedPointSolver.DEFAULT_WORKLIST_FACTORY,
+      BucketWorklist.FACTORY, LRFWorklist.FACTORY, WaveWorklist.FACTORY };
+
+  private static final int N = 200;
+
+  /**
+   * @return a graph of N nodes, with a long chain, some back edges, and some cross edges
+   */
+  private static Graph<Integer> buildGraph() {
+    Graph<Integer> G = SlowSparseNumberedGraph.make();
+    for (int i = 0; i < N; i++) {
+      G.addNode(i);
+    }
+    for (int i = 0; i < N - 1; i++) {
+      G.addEdge(i, i + 1);
+      if (i % 7 == 0) {
+        G.addEdge(i, (i * 13) % N);
+      }
+      if (i % 11 == 0 && i > 20) {
+        G.addEdge(i, i - 20);
+      }
+    }
+    return G;
+  }
+
+  private static String solve(Graph<Integer> G, Factory<IWorklist> worklistFactory) throws CancelException {
+    Integer[] nodes = new Integer[N];
+    for (int i = 0; i < N; i++) {
+      nodes[i] = i;
+    }
+    final OrdinalSetMapping<Integer> values = new MutableMapping<Integer>(nodes);
+    ITransferFunctionProvider<Integer, BitVectorVariable> functions = new ITransferFunctionProvider<Integer, BitVectorVariable>() {
+
+      @Override
+      public UnaryOperator<BitVectorVariable> getNodeTransferFunction(Integer node) {
+        return new BitVectorUnionConstant(values.getMappedIndex(node));
+      }
+
+      @Override
+      public boolean hasNodeTransferFunctions() {
+        return true;
+      }
+
+      @Override
+      public UnaryOperator<BitVectorVariable> getEdgeTransferFunction(Integer from, Integer to) {
+        Assertions.UNREACHABLE();
+        return null;
+      }
+
+      @Override
+      public boolean hasEdgeTransferFunctions() {
+        return false;
+      }
+
+      @Override
+      public AbstractMeetOperator<BitVectorVariable> getMeetOperator() {
+        return BitVectorUnion.instance();
+      }
+    };
+    BitVectorFramework<Integer, Integer> F = new BitVectorFramework<Integer, Integer>(G, functions, values);
+    BitVectorSolver<Integer> s = new BitVectorSolver<Integer>(F);
+    s.setWorklistFactory(worklistFactory);
+    s.solve(null);
+    Assert.assertTrue(s.getTotalEvaluations() > 0);
+    StringBuffer result = new StringBuffer();
+    for (int i = 0; i < N; i++) {
+      result.append(i).append(" = ").append(s.getOut(i)).append("\n");
+    }
+    return result.toString();
+  }
+
+  @Test
+  public void testBitVectorSolver() throws CancelException {
+    Graph<Integer> G = buildGraph();
+    String expected = solve(G, FACTORIES[0]);
+    for (int i = 1; i < FACTORIES.length; i++) {
+      Assert.assertEquals(expected, solve(G, FACTORIES[i]));
+    }
+  }
+
+  private static Set<String> callGraphEdges(Factory<IWorklist> worklistFactory) throws ClassHierarchyException,
+      IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = com.ibm.wala.ipa.callgraph.impl.Util.makeMainEntrypoints(scope, cha,
+        TestConstants.PI_TEST_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    options.setWorklistFactory(worklistFactory);
+    CallGraph cg = CallGraphTestUtil.buildZeroCFA(options, new AnalysisCache(), cha, scope, false);
+    Set<String> result = HashSetFactory.make();
+    for (CGNode n : cg) {
+      for (Iterator<CGNode> succ = cg.getSuccNodes(n); succ.hasNext();) {
+        result.add(n + " -> " + succ.next());
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testPointerAnalysis() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    Set<String> expected = callGraphEdges(FACTORIES[0]);
+    for (int i = 1; i < FACTORIES.length; i++) {
+      Assert.assertEquals(expected, callGraphEdges(FACTORIES[i]));
+    }
+  }
+}
@@ -11,17 +11,30 @@
 package com.ibm.wala.core.tests.callGraph;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
 
+import com.ibm.wala.core.tests.util.TestConstants;
 import com.ibm.wala.ipa.callgraph.AnalysisCache;
 import com.ibm.wala.ipa.callgraph.AnalysisOptions;
 import com.ibm.wala.ipa.callgraph.AnalysisScope;
 import com.ibm.wala.ipa.callgraph.CallGraph;
 import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
 import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.functions.VoidFunction;
 import com.ibm.wala.util.io.FileProvider;
 import com.ibm.wala.util.perf.StopwatchGC;
 
@@ -163,4 +176,40 @@ public class CallGraphTestUtil {
     return cg;
   }
 
+  /**
+   * Build a 0-1-CFA call graph for all the application entrypoints in the WALA test data, e.g. to compare the points-to sets
+   * computed with different solver options.
+   * 
+   * @param setOptions if not null, called on the analysis options before the call graph is built
+   * @return the builder, after it has built the call graph
+   */
+  public static PropagationCallGraphBuilder buildApplicationZeroOneCFA(VoidFunction<AnalysisOptions> setOptions)
+      throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = new AllApplicationEntrypoints(scope, cha);
+    AnalysisOptions options = makeAnalysisOptions(scope, entrypoints);
+    if (setOptions != null) {
+      setOptions.apply(options);
+    }
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    builder.makeCallGraph(options, null);
+    return builder;
+  }
+
+  /**
+   * @return a map from the name of each pointer key to the names of the instance keys it may point to
+   */
+  public static Map<String, Set<String>> pointsTo(PointerAnalysis pa) {
+    Map<String, Set<String>> result = HashMapFactory.make();
+    for (PointerKey k : pa.getPointerKeys()) {
+      Set<String> s = HashSetFactory.make();
+      for (InstanceKey ik : pa.getPointsToSet(k)) {
+        s.add(ik.toString());
+      }
+      result.put(k.toString(), s);
+    }
+    return result;
+  }
+
 }
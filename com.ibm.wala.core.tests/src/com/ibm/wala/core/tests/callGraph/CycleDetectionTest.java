@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationSystem.CycleDetection;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.functions.VoidFunction;
+
+/**
+ * Check that collapsing cycles of assignments does not change the computed points-to sets.
+ */
+public class CycleDetectionTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(CycleDetectionTest.class);
+  }
+
+  private static PropagationCallGraphBuilder build(final CycleDetection cycleDetection) throws ClassHierarchyException,
+      IllegalArgumentException, CancelException, IOException {
+    return CallGraphTestUtil.buildApplicationZeroOneCFA(new VoidFunction<AnalysisOptions>() {
+      @Override
+      public void apply(AnalysisOptions options) {
+        options.setCycleDetection(cycleDetection);
+      }
+    });
+  }
+
+  private static void check(PropagationCallGraphBuilder expected, CycleDetection cycleDetection) throws ClassHierarchyException,
+      IllegalArgumentException, CancelException, IOException {
+    PropagationCallGraphBuilder actual = build(cycleDetection);
+    Assert.assertEquals(expected.getCallGraph().getNumberOfNodes(), actual.getCallGraph().getNumberOfNodes());
+    Assert.assertEquals(CallGraphTestUtil.pointsTo(expected.getPointerAnalysis()),
+        CallGraphTestUtil.pointsTo(actual.getPointerAnalysis()));
+  }
+
+  @Test
+  public void testSamePointsToSets() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    PropagationCallGraphBuilder expected = build(CycleDetection.NONE);
+    Assert.assertEquals(0, expected.getPropagationSystem().getNumberOfCollapsedKeys());
+    check(expected, CycleDetection.LAZY);
+    check(expected, CycleDetection.HYBRID);
+    check(expected, CycleDetection.LAZY_AND_HYBRID);
+  }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.functions.VoidFunction;
+
+/**
+ * Check that difference propagation computes the same points-to sets as full propagation.
+ */
+public class DifferencePropagationTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(DifferencePropagationTest.class);
+  }
+
+  private static PropagationCallGraphBuilder build(final boolean differencePropagation) throws ClassHierarchyException,
+      IllegalArgumentException, CancelException, IOException {
+    return CallGraphTestUtil.buildApplicationZeroOneCFA(new VoidFunction<AnalysisOptions>() {
+      @Override
+      public void apply(AnalysisOptions options) {
+        options.setDifferencePropagation(differencePropagation);
+      }
+    });
+  }
+
+  @Test
+  public void testSamePointsToSets() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    PropagationCallGraphBuilder full = build(false);
+    PropagationCallGraphBuilder delta = build(true);
+
+    CallGraph fullCG = full.getCallGraph();
+    CallGraph deltaCG = delta.getCallGraph();
+    Assert.assertEquals(fullCG.getNumberOfNodes(), deltaCG.getNumberOfNodes());
+    Assert.assertEquals(CallGraphTestUtil.pointsTo(full.getPointerAnalysis()),
+        CallGraphTestUtil.pointsTo(delta.getPointerAnalysis()));
+
+    long evaluations = delta.getPropagationSystem().getSkippedDeltaEvaluations() + delta.getPropagationSystem().getDeltaEvaluations()
+        + delta.getPropagationSystem().getFullDeltaEvaluations();
+    Assert.assertTrue(evaluations > 0);
+  }
+}
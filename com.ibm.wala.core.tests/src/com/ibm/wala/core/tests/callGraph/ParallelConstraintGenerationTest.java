@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
+
+/**
+ * Check that preparing nodes for constraint generation in several threads does not change the resulting call graph.
+ */
+public class ParallelConstraintGenerationTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ParallelConstraintGenerationTest.class);
+  }
+
+  private static CallGraph doGraph(int nThreads) throws ClassHierarchyException, IllegalArgumentException, CancelException,
+      IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = com.ibm.wala.ipa.callgraph.impl.Util.makeMainEntrypoints(scope, cha,
+        TestConstants.PI_TEST_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    options.setConstraintGenerationThreads(nThreads);
+    return CallGraphTestUtil.buildZeroCFA(options, new AnalysisCache(), cha, scope, false);
+  }
+
+  private static Set<String> edges(CallGraph cg) {
+    Set<String> result = HashSetFactory.make();
+    for (CGNode n : cg) {
+      result.add(n.toString());
+      for (Iterator<CGNode> succ = cg.getSuccNodes(n); succ.hasNext();) {
+        result.add(n + " -> " + succ.next());
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testSameCallGraph() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    CallGraph serial = doGraph(1);
+    CallGraph parallel = doGraph(4);
+    Assert.assertEquals(serial.getNumberOfNodes(), parallel.getNumberOfNodes());
+    Assert.assertEquals(edges(serial), edges(parallel));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadThreadCount() {
+    new AnalysisOptions().setConstraintGenerationThreads(0);
+  }
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.cha;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.classLoader.ModuleEntry;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.cha.ClassHierarchySnapshot;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeName;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.io.FileUtil;
+
+/**
+ * Tests for {@link ClassHierarchySnapshot}, analyzing a jar holding {@link Snapshotted} and {@link SnapshottedChild}.
+ */
+public class ClassHierarchySnapshotTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ClassHierarchySnapshotTest.class);
+  }
+
+  private static final TypeName PARENT = TypeName.string2TypeName("L" + Snapshotted.class.getName().replace('.', '/'));
+
+  private static final TypeName CHILD = TypeName.string2TypeName("L" + SnapshottedChild.class.getName().replace('.', '/'));
+
+  public static class Snapshotted {
+  }
+
+  public static class SnapshottedChild extends Snapshotted implements Runnable {
+    @Override
+    public void run() {
+      System.out.println(this);
+    }
+  }
+
+  @Test
+  public void testReuse() throws IOException, ClassHierarchyException {
+    File jar = makeJar(Snapshotted.class, SnapshottedChild.class);
+    File file = makeSnapshotFile();
+    AnalysisScope scope = makeScope(jar);
+
+    ClassHierarchy written = ClassHierarchySnapshot.make(scope, file);
+    Assert.assertTrue(file.exists());
+    ClassHierarchy read = ClassHierarchySnapshot.make(scope, file);
+
+    Assert.assertEquals(written.getNumberOfClasses(), read.getNumberOfClasses());
+    Map<TypeReference, IClass> classes = HashMapFactory.make();
+    for (IClass klass : written) {
+      classes.put(klass.getReference(), klass);
+    }
+    for (IClass klass : read) {
+      IClass expected = classes.get(klass.getReference());
+      Assert.assertNotNull(klass.toString(), expected);
+      if (klass instanceof ShrikeClass) {
+        Assert.assertTrue(klass.toString(),
+            ((ShrikeClass) klass).getModuleEntry().getContainer() instanceof ClassHierarchySnapshot.Section);
+      }
+      Assert.assertEquals(klass.getModifiers(), expected.getModifiers());
+      Assert.assertEquals(klass.getDeclaredMethods().size(), expected.getDeclaredMethods().size());
+      if (expected.getSuperclass() == null) {
+        Assert.assertNull(klass.getSuperclass());
+      } else {
+        Assert.assertEquals(expected.getSuperclass().getReference(), klass.getSuperclass().getReference());
+      }
+    }
+
+    // method bodies are read back from the snapshot
+    IClass child = read.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Application, CHILD));
+    IMethod run = child.getMethod(Selector.make("run()V"));
+    IR ir = new AnalysisCache().getSSACache().findOrCreateIR(run, Everywhere.EVERYWHERE, SSAOptions.defaultOptions());
+    Assert.assertTrue(ir.getInstructions().length > 0);
+  }
+
+  @Test
+  public void testTypeTable() throws IOException, ClassHierarchyException {
+    File file = makeSnapshotFile();
+    ClassHierarchySnapshot.write(ClassHierarchy.make(makeScope(makeJar(Snapshotted.class, SnapshottedChild.class))), file);
+    ClassHierarchySnapshot.Section section = ClassHierarchySnapshot.read(file).getSection(ClassLoaderReference.Application);
+
+    Assert.assertEquals(2, section.getNumberOfClasses());
+    Assert.assertEquals(PARENT, section.getSuperclassName(CHILD));
+    Assert.assertEquals(TypeReference.JavaLangObject.getName(), section.getSuperclassName(PARENT));
+    Assert.assertEquals(1, section.getInterfaceNames(CHILD).size());
+    Assert.assertTrue(section.getInterfaceNames(CHILD).contains(TypeName.string2TypeName("Ljava/lang/Runnable")));
+  }
+
+  @Test
+  public void testStaleSnapshot() throws IOException, ClassHierarchyException {
+    File jar = makeJar(Snapshotted.class, SnapshottedChild.class);
+    File file = makeSnapshotFile();
+    ClassHierarchySnapshot.make(makeScope(jar), file);
+
+    // change the application jar; the primordial section stays valid
+    writeJar(jar, Snapshotted.class);
+    AnalysisScope scope = makeScope(jar);
+    ClassHierarchySnapshot snapshot = ClassHierarchySnapshot.read(file);
+    Assert.assertFalse(snapshot.isValidFor(ClassLoaderReference.Application, scope));
+    Assert.assertTrue(snapshot.isValidFor(ClassLoaderReference.Primordial, scope));
+
+    ClassHierarchy cha = ClassHierarchySnapshot.make(scope, file);
+    Assert.assertNotNull(cha.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Application, PARENT)));
+    Assert.assertNull(cha.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Application, CHILD)));
+    Assert.assertTrue(ClassHierarchySnapshot.read(file).isValidFor(ClassLoaderReference.Application, scope));
+  }
+
+  /**
+   * a snapshot written with some exclusions is not used with others, since it lacks the classes they exclude
+   */
+  @Test
+  public void testOtherExclusions() throws IOException, ClassHierarchyException {
+    File jar = makeJar(Snapshotted.class, SnapshottedChild.class);
+    File file = makeSnapshotFile();
+    ClassHierarchy excluding = ClassHierarchySnapshot.make(makeScope(jar), file);
+
+    AnalysisScope scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(jar.getAbsolutePath(), null);
+    ClassHierarchySnapshot snapshot = ClassHierarchySnapshot.read(file);
+    Assert.assertFalse(snapshot.isValidFor(ClassLoaderReference.Primordial, scope));
+    Assert.assertFalse(snapshot.isValidFor(ClassLoaderReference.Application, scope));
+    Assert.assertTrue(snapshot.isValidFor(ClassLoaderReference.Primordial, makeScope(jar)));
+
+    ClassHierarchy all = ClassHierarchySnapshot.make(scope, file);
+    Assert.assertEquals(ClassHierarchy.make(scope).getNumberOfClasses(), all.getNumberOfClasses());
+    Assert.assertTrue(all.getNumberOfClasses() > excluding.getNumberOfClasses());
+  }
+
+  /**
+   * an entry of a section is a module holding just itself
+   */
+  @Test
+  public void testEntryAsModule() throws IOException, ClassHierarchyException {
+    File file = makeSnapshotFile();
+    ClassHierarchySnapshot.write(ClassHierarchy.make(makeScope(makeJar(Snapshotted.class, SnapshottedChild.class))), file);
+    ClassHierarchySnapshot.Section section = ClassHierarchySnapshot.read(file).getSection(ClassLoaderReference.Application);
+    ModuleEntry entry = section.getEntries().next();
+    Iterator<ModuleEntry> entries = entry.asModule().getEntries();
+    Assert.assertSame(entry, entries.next());
+    Assert.assertFalse(entries.hasNext());
+  }
+
+  private static AnalysisScope makeScope(File jar) throws IOException {
+    return AnalysisScopeReader.makeJavaBinaryAnalysisScope(jar.getAbsolutePath(),
+        (new FileProvider()).getFile(CallGraphTestUtil.REGRESSION_EXCLUSIONS));
+  }
+
+  private static File makeSnapshotFile() throws IOException {
+    File file = File.createTempFile("cha", ".snapshot");
+    file.delete();
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static File makeJar(Class<?>... classes) throws IOException {
+    File jar = File.createTempFile("snapshotted", ".jar");
+    jar.deleteOnExit();
+    writeJar(jar, classes);
+    return jar;
+  }
+
+  private static void writeJar(File jar, Class<?>... classes) throws IOException {
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      for (Class<?> c : classes) {
+        String name = c.getName().replace('.', '/') + ".class";
+        InputStream s = c.getClassLoader().getResourceAsStream(name);
+        try {
+          out.putNextEntry(new JarEntry(name));
+          out.write(FileUtil.readBytes(s));
+          out.closeEntry();
+        } finally {
+          s.close();
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+}
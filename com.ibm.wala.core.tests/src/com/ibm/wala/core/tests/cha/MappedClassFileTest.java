@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.cha;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.BinaryDirectoryTreeModule;
+import com.ibm.wala.classLoader.ByteBufferModuleEntry;
+import com.ibm.wala.classLoader.JarFileModule;
+import com.ibm.wala.classLoader.ModuleEntry;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.shrikeCT.ClassReader;
+import com.ibm.wala.shrikeCT.CodeReader;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+import com.ibm.wala.util.io.FileUtil;
+import com.ibm.wala.util.shrike.ShrikeClassReaderHandle;
+
+/**
+ * Tests for reading class files in place from {@link ByteBuffer}s: memory-mapped class files in a directory and stored entries of
+ * a jar file.
+ */
+public class MappedClassFileTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(MappedClassFileTest.class);
+  }
+
+  /**
+   * a small class file, which is read into the heap, and a large one, which is mapped
+   */
+  private static final Class<?>[] CLASSES = { MappedClassFileTest.class, ClassHierarchy.class };
+
+  @Test
+  public void testBufferReader() throws IOException, InvalidClassFileException {
+    for (Class<?> c : CLASSES) {
+      byte[] bytes = classBytes(c);
+      // a direct buffer holding the class file after some padding
+      ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 7);
+      buffer.position(7);
+      buffer.put(bytes);
+      buffer.position(7);
+      assertSameClass(new ClassReader(bytes), new ClassReader(buffer));
+    }
+  }
+
+  @Test
+  public void testStoredJar() throws IOException, InvalidClassFileException {
+    File jar = makeJar(true);
+    JarFileModule module = new JarFileModule(new JarFile(jar));
+    int n = 0;
+    for (Iterator<ModuleEntry> it = module.getEntries(); it.hasNext();) {
+      ModuleEntry e = it.next();
+      ByteBuffer b = ((ByteBufferModuleEntry) e).getByteBuffer();
+      Assert.assertNotNull(e.getName(), b);
+      assertSameClass(new ClassReader(readBytes(e)), new ClassReader(b));
+      Assert.assertEquals(e.getClassName(), new ShrikeClassReaderHandle(e).get().getName());
+      n++;
+    }
+    Assert.assertEquals(CLASSES.length, n);
+  }
+
+  @Test
+  public void testDeflatedJar() throws IOException {
+    File jar = makeJar(false);
+    JarFileModule module = new JarFileModule(new JarFile(jar));
+    for (Iterator<ModuleEntry> it = module.getEntries(); it.hasNext();) {
+      Assert.assertNull(((ByteBufferModuleEntry) it.next()).getByteBuffer());
+    }
+  }
+
+  @Test
+  public void testDirectory() throws IOException, InvalidClassFileException {
+    File root = File.createTempFile("mapped", "");
+    root.delete();
+    try {
+      for (Class<?> c : CLASSES) {
+        File f = new File(root, c.getName().replace('.', File.separatorChar) + ".class");
+        f.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+          out.write(classBytes(c));
+        } finally {
+          out.close();
+        }
+      }
+      int n = 0;
+      for (Iterator<ModuleEntry> it = new BinaryDirectoryTreeModule(root).getEntries(); it.hasNext();) {
+        ModuleEntry e = it.next();
+        ByteBuffer b = ((ByteBufferModuleEntry) e).getByteBuffer();
+        Assert.assertNotNull(e.getName(), b);
+        assertSameClass(new ClassReader(readBytes(e)), new ClassReader(b));
+        Assert.assertEquals(e.getClassName(), new ShrikeClassReaderHandle(e).get().getName());
+        n++;
+      }
+      Assert.assertEquals(CLASSES.length, n);
+    } finally {
+      FileUtil.deleteContents(root.getAbsolutePath());
+      root.delete();
+    }
+  }
+
+  private static void assertSameClass(ClassReader expected, ClassReader actual) throws InvalidClassFileException {
+    Assert.assertArrayEquals(expected.getBytes(), actual.getBytes());
+    Assert.assertEquals(expected.getName(), actual.getName());
+    Assert.assertEquals(expected.getSuperName(), actual.getSuperName());
+    Assert.assertArrayEquals(expected.getInterfaceNames(), actual.getInterfaceNames());
+    Assert.assertEquals(expected.getFieldCount(), actual.getFieldCount());
+    for (int i = 0; i < expected.getFieldCount(); i++) {
+      Assert.assertEquals(expected.getFieldName(i), actual.getFieldName(i));
+      Assert.assertEquals(expected.getFieldType(i), actual.getFieldType(i));
+    }
+    Assert.assertEquals(expected.getMethodCount(), actual.getMethodCount());
+    ClassReader.AttrIterator e = new ClassReader.AttrIterator();
+    ClassReader.AttrIterator a = new ClassReader.AttrIterator();
+    for (int i = 0; i < expected.getMethodCount(); i++) {
+      Assert.assertEquals(expected.getMethodName(i), actual.getMethodName(i));
+      Assert.assertEquals(expected.getMethodType(i), actual.getMethodType(i));
+      expected.initMethodAttributeIterator(i, e);
+      actual.initMethodAttributeIterator(i, a);
+      for (; e.isValid(); e.advance(), a.advance()) {
+        Assert.assertEquals(e.getName(), a.getName());
+        if (e.getName().equals("Code")) {
+          Assert.assertArrayEquals(new CodeReader(e).getBytecode(), new CodeReader(a).getBytecode());
+        }
+      }
+      Assert.assertFalse(a.isValid());
+    }
+  }
+
+  private static byte[] classBytes(Class<?> c) throws IOException {
+    InputStream s = c.getClassLoader().getResourceAsStream(c.getName().replace('.', '/') + ".class");
+    try {
+      return FileUtil.readBytes(s);
+    } finally {
+      s.close();
+    }
+  }
+
+  private static byte[] readBytes(ModuleEntry e) throws IOException {
+    InputStream s = e.getInputStream();
+    try {
+      return FileUtil.readBytes(s);
+    } finally {
+      s.close();
+    }
+  }
+
+  /**
+   * @param stored store the class files uncompressed?
+   */
+  private static File makeJar(boolean stored) throws IOException {
+    File jar = File.createTempFile("mapped", ".jar");
+    jar.deleteOnExit();
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      for (Class<?> c : CLASSES) {
+        byte[] bytes = classBytes(c);
+        JarEntry entry = new JarEntry(c.getName().replace('.', '/') + ".class");
+        if (stored) {
+          CRC32 crc = new CRC32();
+          crc.update(bytes);
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(bytes.length);
+          entry.setCompressedSize(bytes.length);
+          entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return jar;
+  }
+}
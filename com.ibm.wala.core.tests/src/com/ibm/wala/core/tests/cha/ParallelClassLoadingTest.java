@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.cha;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.ClassLoaderFactoryImpl;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.warnings.Warning;
+import com.ibm.wala.util.warnings.Warnings;
+
+/**
+ * Check that parsing class files on several threads loads the same classes, from the same modules, with the same warnings as
+ * parsing them on one.
+ */
+public class ParallelClassLoadingTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ParallelClassLoadingTest.class);
+  }
+
+  @Test
+  public void testSameClassesAsSequential() throws IOException, ClassHierarchyException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA,
+        CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+
+    Warnings.clear();
+    ClassHierarchy sequential = makeClassHierarchy(scope, 1);
+    Set<String> sequentialWarnings = warnings();
+
+    Warnings.clear();
+    ClassHierarchy parallel = makeClassHierarchy(scope, 4);
+    Set<String> parallelWarnings = warnings();
+
+    Map<TypeReference, String> expected = classes(sequential);
+    Assert.assertFalse(expected.isEmpty());
+    Assert.assertEquals(expected, classes(parallel));
+    Assert.assertEquals(sequentialWarnings, parallelWarnings);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidNumberOfThreads() {
+    new ClassLoaderFactoryImpl(null).setNumberOfThreads(0);
+  }
+
+  private static ClassHierarchy makeClassHierarchy(AnalysisScope scope, int numberOfThreads) throws ClassHierarchyException {
+    ClassLoaderFactoryImpl factory = new ClassLoaderFactoryImpl(scope.getExclusions());
+    factory.setNumberOfThreads(numberOfThreads);
+    return ClassHierarchy.make(scope, factory);
+  }
+
+  /**
+   * @return each class in cha, mapped to a description of the module entry it was read from
+   */
+  private static Map<TypeReference, String> classes(ClassHierarchy cha) {
+    Map<TypeReference, String> result = HashMapFactory.make();
+    for (IClass klass : cha) {
+      result.put(klass.getReference(), klass instanceof ShrikeClass ? ((ShrikeClass) klass).getModuleEntry().toString() : null);
+    }
+    return result;
+  }
+
+  private static Set<String> warnings() {
+    Set<String> result = HashSetFactory.make();
+    for (Iterator<Warning> it = Warnings.iterator(); it.hasNext();) {
+      result.add(it.next().getMsg());
+    }
+    return result;
+  }
+}
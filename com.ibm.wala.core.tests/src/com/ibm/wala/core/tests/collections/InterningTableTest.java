@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.collections;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.collections.InterningTable;
+import com.ibm.wala.util.functions.Function;
+import com.ibm.wala.util.strings.Atom;
+
+/**
+ * Tests {@link InterningTable}, and the interning of names and references built on it.
+ */
+public class InterningTableTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(InterningTableTest.class);
+  }
+
+  private static InterningTable<String, StringBuilder> makeTable() {
+    return new InterningTable<String, StringBuilder>(new Function<String, StringBuilder>() {
+      @Override
+      public StringBuilder apply(String key) {
+        return new StringBuilder(key);
+      }
+    });
+  }
+
+  @Test
+  public void testCanonical() {
+    InterningTable<String, StringBuilder> t = makeTable();
+    Assert.assertNull(t.find("a"));
+    StringBuilder a = t.findOrCreate("a");
+    Assert.assertSame(a, t.findOrCreate(new String("a")));
+    Assert.assertSame(a, t.find("a"));
+    Assert.assertNotSame(a, t.findOrCreate("b"));
+    Assert.assertEquals(2, t.size());
+  }
+
+  /**
+   * threads racing to intern the same keys must all get the same values
+   */
+  @Test
+  public void testConcurrentInterning() throws InterruptedException {
+    final int nThreads = 8;
+    // prime, so that each thread's order below visits every key
+    final int nKeys = 2003;
+    final MethodReference[][] results = new MethodReference[nThreads][nKeys];
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[nThreads];
+    for (int t = 0; t < nThreads; t++) {
+      final int me = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < nKeys; i++) {
+              // each thread walks the keys in a different order
+              int k = (i * (2 * me + 1)) % nKeys;
+              TypeReference type = TypeReference.findOrCreate(ClassLoaderReference.Application, "Linterning/C" + (k % 50));
+              results[me][k] = MethodReference.findOrCreate(type, "m" + k, "(I)Linterning/C" + (k % 7) + ";");
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    for (int k = 0; k < nKeys; k++) {
+      for (int t = 1; t < nThreads; t++) {
+        Assert.assertSame(results[0][k], results[t][k]);
+      }
+      Assert.assertSame(results[0][k].getReturnType(),
+          TypeReference.findOrCreate(ClassLoaderReference.Application, "Linterning/C" + (k % 7)));
+    }
+  }
+
+  @Test
+  public void testWeakValuesAreReclaimed() throws InterruptedException {
+    boolean wasWeak = InterningTable.isWeakReferences();
+    InterningTable.setWeakReferences(true);
+    try {
+      InterningTable<String, StringBuilder> t = makeTable();
+      StringBuilder kept = t.findOrCreate("kept");
+      for (int i = 0; i < 100; i++) {
+        t.findOrCreate("dropped" + i);
+      }
+      for (int i = 0; i < 50 && t.find("dropped0") != null; i++) {
+        System.gc();
+        Thread.sleep(20);
+      }
+      Assert.assertNull(t.find("dropped0"));
+      // interning again drops the collected entries and makes a new value
+      Assert.assertNotNull(t.findOrCreate("dropped0"));
+      Assert.assertTrue(t.size() < 100);
+      Assert.assertSame(kept, t.findOrCreate("kept"));
+
+      Atom a = Atom.findOrCreateUnicodeAtom("interningTableTestAtom");
+      Assert.assertSame(a, Atom.findOrCreateUnicodeAtom("interningTableTestAtom"));
+    } finally {
+      InterningTable.setWeakReferences(wasWeak);
+    }
+  }
+
+  @Test
+  public void testStrongValuesAreKept() throws InterruptedException {
+    InterningTable<String, StringBuilder> t = makeTable();
+    int hash = System.identityHashCode(t.findOrCreate("a"));
+    System.gc();
+    Thread.sleep(20);
+    Assert.assertNotNull(t.find("a"));
+    Assert.assertEquals(hash, System.identityHashCode(t.find("a")));
+  }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.ContextItem;
+import com.ibm.wala.ipa.callgraph.ContextKey;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.BoundedSSACache;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSACacheStatistics;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Tests for {@link BoundedSSACache}, over the methods of the application classes of the test data.
+ */
+public class BoundedSSACacheTest extends WalaTestCase {
+
+  private static final ClassLoader MY_CLASSLOADER = BoundedSSACacheTest.class.getClassLoader();
+
+  private static List<IMethod> methods;
+
+  private static final SSAOptions OPTIONS = new AnalysisOptions().getSSAOptions();
+
+  public static void main(String[] args) {
+    justThisTest(BoundedSSACacheTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), MY_CLASSLOADER);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    methods = new ArrayList<IMethod>();
+    IRFactory<IMethod> factory = new DefaultIRFactory();
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        for (IMethod m : klass.getDeclaredMethods()) {
+          if (!m.isAbstract() && !m.isNative()) {
+            try {
+              factory.makeIR(m, Everywhere.EVERYWHERE, OPTIONS);
+              methods.add(m);
+            } catch (WalaRuntimeException e) {
+              // some of the test data is deliberately malformed
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    methods = null;
+  }
+
+  @Test
+  public void testUnbounded() {
+    AnalysisCache cache = new AnalysisCache(new BoundedSSACache(new DefaultIRFactory(), Long.MAX_VALUE));
+    for (IMethod m : methods) {
+      IR ir = cache.getSSACache().findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS);
+      Assert.assertSame(ir, cache.getSSACache().findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS));
+      DefUse du = cache.getSSACache().findOrCreateDU(m, Everywhere.EVERYWHERE, OPTIONS);
+      Assert.assertSame(du, cache.getDefUse(ir));
+    }
+    SSACacheStatistics stats = cache.getStatistics();
+    Assert.assertEquals(2 * methods.size(), stats.getMisses());
+    Assert.assertEquals(3 * methods.size(), stats.getHits());
+    Assert.assertEquals(0, stats.getEvictions());
+    Assert.assertEquals(methods.size(), stats.getSize());
+    Assert.assertTrue(stats.getWeight() > 0);
+  }
+
+  @Test
+  public void testBound() {
+    long bound = 64 * 1024;
+    BoundedSSACache cache = new BoundedSSACache(new DefaultIRFactory(), bound);
+    IMethod pinned = methods.get(0);
+    cache.pin(pinned);
+    IR pinnedIR = cache.findOrCreateIR(pinned, Everywhere.EVERYWHERE, OPTIONS);
+    for (IMethod m : methods) {
+      cache.findOrCreateDU(m, Everywhere.EVERYWHERE, OPTIONS);
+    }
+    SSACacheStatistics stats = cache.getStatistics();
+    Assert.assertTrue(stats.toString(), stats.getEvictions() > 0);
+    Assert.assertTrue(stats.toString(), stats.getWeight() <= bound);
+    Assert.assertSame(pinnedIR, cache.findOrCreateIR(pinned, Everywhere.EVERYWHERE, OPTIONS));
+
+    // the first methods have been evicted, so looking them up again rebuilds them
+    for (IMethod m : methods) {
+      cache.findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS);
+    }
+    Assert.assertTrue(cache.getStatistics().getRebuilds() > 0);
+    Assert.assertTrue(cache.getStatistics().getRebuildNanos() > 0);
+  }
+
+  /**
+   * a {@link DefUse} is cached with the entry that holds its IR, and never for an IR the cache did not build
+   */
+  @Test
+  public void testDefUseOfIR() {
+    BoundedSSACache cache = new BoundedSSACache(new DefaultIRFactory(), Long.MAX_VALUE);
+    IMethod m = methods.get(0);
+    IR ir = cache.findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS);
+    Context other = new Context() {
+      @Override
+      public ContextItem get(ContextKey name) {
+        return null;
+      }
+    };
+    // the context of m's IR is irrelevant, so this is the same entry
+    DefUse du = cache.findOrCreateDU(ir, other);
+    Assert.assertSame(du, cache.findOrCreateDU(m, Everywhere.EVERYWHERE, OPTIONS));
+    Assert.assertEquals(1, cache.getStatistics().getSize());
+
+    IR foreign = new DefaultIRFactory().makeIR(methods.get(1), Everywhere.EVERYWHERE, OPTIONS);
+    Assert.assertNotSame(cache.findOrCreateDU(foreign, Everywhere.EVERYWHERE),
+        cache.findOrCreateDU(foreign, Everywhere.EVERYWHERE));
+    Assert.assertEquals(1, cache.getStatistics().getSize());
+    Assert.assertNotSame(foreign, cache.findOrCreateIR(methods.get(1), Everywhere.EVERYWHERE, OPTIONS));
+  }
+
+  @Test
+  public void testInvalidate() {
+    BoundedSSACache cache = new BoundedSSACache(new DefaultIRFactory(), Long.MAX_VALUE);
+    IMethod m = methods.get(0);
+    IR ir = cache.findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS);
+    DefUse du = cache.findOrCreateDU(m, Everywhere.EVERYWHERE, OPTIONS);
+    cache.invalidateDU(m, Everywhere.EVERYWHERE);
+    Assert.assertSame(ir, cache.findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS));
+    Assert.assertNotSame(du, cache.findOrCreateDU(m, Everywhere.EVERYWHERE, OPTIONS));
+    cache.invalidate(m, Everywhere.EVERYWHERE);
+    Assert.assertNotSame(ir, cache.findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS));
+    cache.wipe();
+    Assert.assertEquals(0, cache.getStatistics().getSize());
+    Assert.assertEquals(0, cache.getStatistics().getWeight());
+  }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.CompactDefUse;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Tests that a {@link CompactDefUse} answers the same queries as a {@link DefUse}.
+ */
+public class CompactDefUseTest extends WalaTestCase {
+
+  private static final ClassLoader MY_CLASSLOADER = CompactDefUseTest.class.getClassLoader();
+
+  private static final IRFactory<IMethod> factory = new DefaultIRFactory();
+
+  private static List<IMethod> methods;
+
+  public static void main(String[] args) {
+    justThisTest(CompactDefUseTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), MY_CLASSLOADER);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    methods = new ArrayList<IMethod>();
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        for (IMethod m : klass.getDeclaredMethods()) {
+          if (!m.isAbstract() && !m.isNative()) {
+            try {
+              factory.makeIR(m, Everywhere.EVERYWHERE, options);
+              methods.add(m);
+            } catch (WalaRuntimeException e) {
+              // some of the test data is deliberately malformed
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    methods = null;
+  }
+
+  private static void checkDefUse(SSAOptions options) {
+    for (IMethod m : methods) {
+      IR ir = factory.makeIR(m, Everywhere.EVERYWHERE, options);
+      DefUse expected = new DefUse(ir);
+      CompactDefUse actual = new CompactDefUse(ir);
+      Assert.assertFalse(actual.isBuilt());
+      int max = ir.getSymbolTable().getMaxValueNumber();
+      for (int v = 0; v <= max; v++) {
+        Assert.assertSame(m + " v" + v, expected.getDef(v), actual.getDef(v));
+        Assert.assertEquals(m + " v" + v, expected.getNumberOfUses(v), actual.getNumberOfUses(v));
+        Iterator<SSAInstruction> e = expected.getUses(v);
+        Iterator<SSAInstruction> a = actual.getUses(v);
+        while (e.hasNext()) {
+          Assert.assertTrue(a.hasNext());
+          Assert.assertSame(m + " v" + v, e.next(), a.next());
+        }
+        Assert.assertFalse(a.hasNext());
+      }
+      Assert.assertTrue(actual.isBuilt());
+      Assert.assertNull(actual.getDef(max + 1));
+      Assert.assertEquals(0, actual.getNumberOfUses(max + 1));
+    }
+  }
+
+  @Test
+  public void testDefUse() {
+    checkDefUse(new AnalysisOptions().getSSAOptions());
+  }
+
+  @Test
+  public void testDefUseWithPis() {
+    SSAOptions options = new SSAOptions();
+    options.setPiNodePolicy(SSAOptions.getAllBuiltInPiNodes());
+    checkDefUse(options);
+  }
+
+  /**
+   * the cache hands out compact def-use information by default
+   */
+  @Test
+  public void testCacheDefault() {
+    SSACache cache = new SSACache(factory);
+    IMethod m = methods.get(0);
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    DefUse du = cache.findOrCreateDU(m, Everywhere.EVERYWHERE, options);
+    Assert.assertTrue(du instanceof CompactDefUse);
+    Assert.assertSame(du, cache.findOrCreateDU(cache.findOrCreateIR(m, Everywhere.EVERYWHERE, options), Everywhere.EVERYWHERE));
+  }
+}
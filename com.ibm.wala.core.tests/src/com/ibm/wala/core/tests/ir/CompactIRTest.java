@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.CompactIR;
+import com.ibm.wala.ssa.CompactSSACache;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Tests that a {@link CompactIR} answers the same queries as the IR it was made from.
+ */
+public class CompactIRTest extends WalaTestCase {
+
+  private static final ClassLoader MY_CLASSLOADER = CompactIRTest.class.getClassLoader();
+
+  private static final String[] LIBRARY_CLASSES = { "Ljava/lang/String", "Ljava/util/HashMap", "Ljava/util/ArrayList" };
+
+  private static final IRFactory<IMethod> factory = new DefaultIRFactory();
+
+  private static List<IMethod> methods;
+
+  public static void main(String[] args) {
+    justThisTest(CompactIRTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), MY_CLASSLOADER);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    List<IClass> classes = new ArrayList<IClass>();
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        classes.add(klass);
+      }
+    }
+    for (String name : LIBRARY_CLASSES) {
+      classes.add(cha.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Primordial, name)));
+    }
+    methods = new ArrayList<IMethod>();
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    for (IClass klass : classes) {
+      for (IMethod m : klass.getDeclaredMethods()) {
+        if (!m.isAbstract() && !m.isNative()) {
+          try {
+            factory.makeIR(m, Everywhere.EVERYWHERE, options);
+            methods.add(m);
+          } catch (WalaRuntimeException e) {
+            // some of the test data is deliberately malformed
+          }
+        }
+      }
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    methods = null;
+  }
+
+  private static void checkCompact(SSAOptions options) {
+    for (IMethod m : methods) {
+      IR ir = factory.makeIR(m, Everywhere.EVERYWHERE, options);
+      CompactIR compact = CompactIR.make(ir);
+      Assert.assertNotNull(m.toString(), compact);
+      Assert.assertFalse(compact.isInflated());
+
+      SSAInstruction[] instructions = ir.getInstructions();
+      Assert.assertEquals(instructions.length, compact.getNumberOfInstructions());
+      for (int i = 0; i < instructions.length; i++) {
+        SSAInstruction s = instructions[i];
+        Assert.assertEquals(s != null, compact.hasInstruction(i));
+        if (s == null) {
+          Assert.assertNull(compact.getInstruction(i));
+          continue;
+        }
+        Assert.assertEquals(s.getNumberOfDefs(), compact.getNumberOfDefs(i));
+        for (int j = 0; j < s.getNumberOfDefs(); j++) {
+          Assert.assertEquals(s.getDef(j), compact.getDef(i, j));
+        }
+        Assert.assertEquals(s.getNumberOfUses(), compact.getNumberOfUses(i));
+        for (int j = 0; j < s.getNumberOfUses(); j++) {
+          Assert.assertEquals(s.getUse(j), compact.getUse(i, j));
+        }
+        // an instruction made on demand is equivalent to the original, but not the same object
+        SSAInstruction flyweight = compact.getInstruction(i);
+        Assert.assertEquals(s.getClass(), flyweight.getClass());
+        Assert.assertEquals(s.toString(ir.getSymbolTable()), flyweight.toString(ir.getSymbolTable()));
+        Assert.assertNotSame(flyweight, compact.getInstruction(i));
+      }
+      Assert.assertFalse(compact.isInflated());
+
+      IR inflated = compact.getIR();
+      Assert.assertEquals(ir.toString(), inflated.toString());
+      Assert.assertSame(inflated, compact.getIR());
+      for (int i = 0; i < instructions.length; i++) {
+        Assert.assertSame(inflated.getInstructions()[i], compact.getInstruction(i));
+      }
+      new DefUse(inflated);
+    }
+  }
+
+  @Test
+  public void testCompact() {
+    checkCompact(new AnalysisOptions().getSSAOptions());
+  }
+
+  @Test
+  public void testCompactWithPis() {
+    SSAOptions options = new SSAOptions();
+    options.setPiNodePolicy(SSAOptions.getAllBuiltInPiNodes());
+    checkCompact(options);
+  }
+
+  /**
+   * the cache keeps a compact form of each IR it builds, and hands out the same IR and DefUse while they are in memory
+   */
+  @Test
+  public void testCache() {
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    CompactSSACache cache = new CompactSSACache(new DefaultIRFactory());
+    for (IMethod m : methods) {
+      IR ir = cache.findOrCreateIR(m, Everywhere.EVERYWHERE, options);
+      DefUse du = cache.findOrCreateDU(m, Everywhere.EVERYWHERE, options);
+      Assert.assertSame(ir, cache.findOrCreateIR(m, Everywhere.EVERYWHERE, options));
+      Assert.assertSame(du, cache.findOrCreateDU(ir, Everywhere.EVERYWHERE));
+      CompactIR compact = cache.getCompactIR(m, Everywhere.EVERYWHERE, options);
+      Assert.assertNotNull(compact);
+      Assert.assertEquals(ir.toString(), compact.getIR().toString());
+    }
+    Assert.assertEquals(methods.size(), cache.getStatistics().getSize());
+    Assert.assertTrue(cache.getStatistics().getWeight() > 0);
+    cache.wipe();
+    Assert.assertEquals(0, cache.getStatistics().getSize());
+    Assert.assertEquals(0, cache.getStatistics().getWeight());
+  }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.IRPrewarmer;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.BoundedSSACache;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSACacheStatistics;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.Predicate;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Tests for {@link IRPrewarmer}, over the methods of the application classes of the test data.
+ */
+public class IRPrewarmerTest extends WalaTestCase {
+
+  private static final ClassLoader MY_CLASSLOADER = IRPrewarmerTest.class.getClassLoader();
+
+  private static final SSAOptions OPTIONS = new AnalysisOptions().getSSAOptions();
+
+  private static final Predicate<IMethod> APPLICATION = new Predicate<IMethod>() {
+    @Override
+    public boolean test(IMethod m) {
+      return m.getDeclaringClass().getClassLoader().getReference().equals(ClassLoaderReference.Application);
+    }
+  };
+
+  private static ClassHierarchy cha;
+
+  public static void main(String[] args) {
+    justThisTest(IRPrewarmerTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), MY_CLASSLOADER);
+    cha = ClassHierarchy.make(scope);
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    cha = null;
+  }
+
+  /**
+   * IRs built on several threads are the same as those built one at a time, and are then found in the cache
+   */
+  @Test
+  public void testPrewarm() throws CancelException {
+    AnalysisCache cache = new AnalysisCache();
+    int warmed = cache.prewarm(cha, APPLICATION, OPTIONS, 4, null);
+    List<IMethod> methods = IRPrewarmer.collectMethods(cha, APPLICATION);
+    Assert.assertTrue(warmed > 0);
+    Assert.assertTrue(warmed <= methods.size());
+
+    SSACacheStatistics before = cache.getStatistics();
+    SSACache sequential = new SSACache(new DefaultIRFactory());
+    int found = 0;
+    for (IMethod m : methods) {
+      String expected;
+      try {
+        expected = sequential.findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS).toString();
+      } catch (WalaRuntimeException e) {
+        // some of the test data is deliberately malformed, and was skipped
+        continue;
+      }
+      IR ir = cache.getSSACache().findOrCreateIR(m, Everywhere.EVERYWHERE, OPTIONS);
+      Assert.assertEquals(expected, ir.toString());
+      Assert.assertSame(cache.getSSACache().findOrCreateDU(m, Everywhere.EVERYWHERE, OPTIONS), cache.getDefUse(ir));
+      found++;
+    }
+    Assert.assertEquals(warmed, found);
+    // every lookup was a hit
+    Assert.assertEquals(before.getMisses(), cache.getStatistics().getMisses());
+  }
+
+  /**
+   * warming stops before it would evict what it has built
+   */
+  @Test
+  public void testBound() throws CancelException {
+    long bound = 64 * 1024;
+    BoundedSSACache ssaCache = new BoundedSSACache(new DefaultIRFactory(), bound);
+    IRPrewarmer prewarmer = new IRPrewarmer(ssaCache, OPTIONS, 4);
+    int warmed = prewarmer.prewarm(cha, APPLICATION, null);
+    Assert.assertTrue(prewarmer.isCacheFull());
+    Assert.assertTrue(warmed < IRPrewarmer.collectMethods(cha, APPLICATION).size());
+    Assert.assertTrue(ssaCache.getStatistics().getWeight() <= bound);
+  }
+}
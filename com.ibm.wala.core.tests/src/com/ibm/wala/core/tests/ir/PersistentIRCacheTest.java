@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.PersistentIRCache;
+import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.io.FileUtil;
+
+/**
+ * Tests that IRs read back from a {@link PersistentIRCache} are the same as the IRs built from bytecode.
+ */
+public class PersistentIRCacheTest extends WalaTestCase {
+
+  private static final ClassLoader MY_CLASSLOADER = PersistentIRCacheTest.class.getClassLoader();
+
+  private static final String[] LIBRARY_CLASSES = { "Ljava/lang/String", "Ljava/util/HashMap", "Ljava/util/ArrayList" };
+
+  private static List<IMethod> methods;
+
+  private File directory;
+
+  public static void main(String[] args) {
+    justThisTest(PersistentIRCacheTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), MY_CLASSLOADER);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    List<IClass> classes = new ArrayList<IClass>();
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        classes.add(klass);
+      }
+    }
+    for (String name : LIBRARY_CLASSES) {
+      classes.add(cha.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Primordial, name)));
+    }
+    methods = new ArrayList<IMethod>();
+    IRFactory<IMethod> factory = new DefaultIRFactory();
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    for (IClass klass : classes) {
+      for (IMethod m : klass.getDeclaredMethods()) {
+        if (!m.isAbstract() && !m.isNative()) {
+          try {
+            factory.makeIR(m, Everywhere.EVERYWHERE, options);
+            methods.add(m);
+          } catch (WalaRuntimeException e) {
+            // some of the test data is deliberately malformed
+          }
+        }
+      }
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    methods = null;
+  }
+
+  @Before
+  public void makeDirectory() throws IOException {
+    directory = File.createTempFile("irs", "");
+    directory.delete();
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    FileUtil.deleteContents(directory.getAbsolutePath());
+    directory.delete();
+  }
+
+  /**
+   * a cache that also keeps the IRs of the test data, which is in the application loader
+   */
+  private PersistentIRCache makeCache() throws IOException {
+    return new PersistentIRCache(directory) {
+      @Override
+      protected boolean isCached(IMethod m) {
+        return true;
+      }
+    };
+  }
+
+  private void checkRoundTrip(SSAOptions options) throws IOException {
+    PersistentIRCache first = makeCache();
+    SSACache built = new SSACache(new DefaultIRFactory(), first);
+    List<String> expected = new ArrayList<String>();
+    for (IMethod m : methods) {
+      expected.add(built.findOrCreateIR(m, Everywhere.EVERYWHERE, options).toString());
+    }
+    first.flush();
+    Assert.assertEquals(0, first.getLoads());
+    Assert.assertEquals(methods.size(), first.getStores());
+
+    PersistentIRCache second = makeCache();
+    SSACache loaded = new SSACache(new DefaultIRFactory(), second);
+    for (int i = 0; i < methods.size(); i++) {
+      IR ir = loaded.findOrCreateIR(methods.get(i), Everywhere.EVERYWHERE, options);
+      Assert.assertEquals(expected.get(i), ir.toString());
+      // the restored IR supports the usual queries
+      new DefUse(ir);
+    }
+    Assert.assertEquals(methods.size(), second.getLoads());
+    Assert.assertEquals(0, second.getStores());
+    Assert.assertEquals(0, second.getFailures());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    checkRoundTrip(new AnalysisOptions().getSSAOptions());
+  }
+
+  @Test
+  public void testRoundTripWithPis() throws IOException {
+    SSAOptions options = new SSAOptions();
+    options.setPiNodePolicy(SSAOptions.getAllBuiltInPiNodes());
+    checkRoundTrip(options);
+  }
+
+  /**
+   * IRs built with other options are not used
+   */
+  @Test
+  public void testOptionsKey() throws IOException {
+    PersistentIRCache cache = makeCache();
+    IMethod m = methods.get(0);
+    new SSACache(new DefaultIRFactory(), cache).findOrCreateIR(m, Everywhere.EVERYWHERE, new SSAOptions());
+    cache.flush();
+    SSAOptions options = new SSAOptions();
+    options.setPiNodePolicy(SSAOptions.getAllBuiltInPiNodes());
+    Assert.assertNull(makeCache().find(new DefaultIRFactory(), m, options));
+    Assert.assertNotNull(makeCache().find(new DefaultIRFactory(), m, new SSAOptions()));
+  }
+
+  /**
+   * IRs built by another factory are not used
+   */
+  @Test
+  public void testFactoryKey() throws IOException {
+    PersistentIRCache cache = makeCache();
+    IMethod m = methods.get(0);
+    new SSACache(new DefaultIRFactory(), cache).findOrCreateIR(m, Everywhere.EVERYWHERE, new SSAOptions());
+    cache.flush();
+    IRFactory<IMethod> other = new DefaultIRFactory() {
+    };
+    Assert.assertNull(makeCache().find(other, m, new SSAOptions()));
+    Assert.assertNotNull(makeCache().find(new DefaultIRFactory(), m, new SSAOptions()));
+  }
+
+  /**
+   * IRs that depend on the context are neither saved nor looked up
+   */
+  @Test
+  public void testContextSensitiveFactory() throws IOException {
+    IRFactory<IMethod> factory = new DefaultIRFactory() {
+      @Override
+      public boolean contextIsIrrelevant(IMethod method) {
+        return false;
+      }
+    };
+    PersistentIRCache first = makeCache();
+    SSACache built = new SSACache(new DefaultIRFactory(), first);
+    for (IMethod m : methods) {
+      built.findOrCreateIR(m, Everywhere.EVERYWHERE, new SSAOptions());
+    }
+    first.flush();
+
+    PersistentIRCache second = makeCache();
+    SSACache sensitive = new SSACache(factory, second);
+    for (IMethod m : methods) {
+      Assert.assertNotNull(sensitive.findOrCreateIR(m, Everywhere.EVERYWHERE, new SSAOptions()));
+    }
+    second.flush();
+    Assert.assertEquals(0, second.getLoads());
+    Assert.assertEquals(0, second.getStores());
+    Assert.assertNull(second.find(factory, methods.get(0), new SSAOptions()));
+  }
+
+  /**
+   * damaged files are ignored, and replaced at the next flush
+   */
+  @Test
+  public void testDamagedFile() throws IOException {
+    PersistentIRCache cache = makeCache();
+    IMethod m = methods.get(0);
+    new SSACache(new DefaultIRFactory(), cache).findOrCreateIR(m, Everywhere.EVERYWHERE, new SSAOptions());
+    cache.flush();
+    for (File dir : directory.listFiles()) {
+      for (File f : dir.listFiles()) {
+        // keep the header, but claim entries that are not there
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+          out.write(new byte[] { 0x57, 0x41, 0x4c, 0x49, 0, 0, 0, 1, 0, 0, 0, 9 });
+        } finally {
+          out.close();
+        }
+      }
+    }
+    PersistentIRCache damaged = makeCache();
+    Assert.assertNull(damaged.find(new DefaultIRFactory(), m, new SSAOptions()));
+    SSACache ssaCache = new SSACache(new DefaultIRFactory(), damaged);
+    Assert.assertNotNull(ssaCache.findOrCreateIR(m, Everywhere.EVERYWHERE, new SSAOptions()));
+    damaged.flush();
+    Assert.assertNotNull(makeCache().find(new DefaultIRFactory(), m, new SSAOptions()));
+  }
+}
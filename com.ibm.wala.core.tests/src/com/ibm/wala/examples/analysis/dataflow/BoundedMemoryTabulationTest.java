@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.IMergeFunction;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Tests that dropping intermediate path edges and spilling path edges to disk do not change the result of the
+ * {@link TabulationSolver}.
+ */
+public class BoundedMemoryTabulationTest extends WalaTestCase {
+
+  private static TabulationFixture fixture;
+
+  private static ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  private static CallGraph cg;
+
+  private static StaticFieldReachingDefsProblem problem;
+
+  private static TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected;
+
+  public static void main(String[] args) {
+    justThisTest(BoundedMemoryTabulationTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    fixture = TabulationFixture.make("Ldataflow/StaticDataflow");
+    cg = fixture.getCallGraph();
+    supergraph = fixture.getSupergraph();
+    problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    expected = TabulationSolver.make(problem).solve();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    fixture = null;
+    supergraph = null;
+    cg = null;
+    problem = null;
+    expected = null;
+  }
+
+  @Test
+  public void testDropIntermediatePathEdges() throws CancelException {
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> all = TabulationSolver.make(problem);
+    all.solve();
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+    solver.setDropIntermediatePathEdges(true);
+    fixture.checkSame(expected, solver.solve());
+    Assert.assertTrue(countRecordedNodes(solver) < countRecordedNodes(all));
+  }
+
+  @Test
+  public void testPathEdgeSpill() throws CancelException {
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+    solver.setPathEdgeSpill(null, 100);
+    try {
+      fixture.checkSame(expected, solver.solve());
+      Assert.assertTrue(solver.getNumberOfPathEdgeSpills() > 0);
+    } finally {
+      solver.closePathEdgeSpill();
+    }
+  }
+
+  /**
+   * with few path edges in memory, tables are written out and read back often; the spill file must not fill up with their old
+   * copies
+   */
+  @Test
+  public void testPathEdgeSpillReusesFile() throws CancelException {
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+    solver.setPathEdgeSpill(null, 10);
+    try {
+      fixture.checkSame(expected, solver.solve());
+      Assert.assertTrue(solver.getNumberOfPathEdgeSpills() > 0);
+      long live = solver.getPathEdgeSpillLiveBytes();
+      long dead = solver.getPathEdgeSpillDeadBytes();
+      Assert.assertTrue(live > 0);
+      Assert.assertTrue("live " + live + " dead " + dead, dead <= Math.max(live, 1024));
+    } finally {
+      solver.closePathEdgeSpill();
+    }
+    Assert.assertEquals(0, solver.getPathEdgeSpillLiveBytes());
+    Assert.assertEquals(0, solver.getPathEdgeSpillDeadBytes());
+  }
+
+  @Test
+  public void testDropAndSpill() throws CancelException {
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+    solver.setDropIntermediatePathEdges(true);
+    solver.setPathEdgeSpill(null, 50);
+    try {
+      fixture.checkSame(expected, solver.solve());
+      Assert.assertTrue(solver.getNumberOfPathEdgeSpills() > 0);
+    } finally {
+      solver.closePathEdgeSpill();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDropRejectsMergeFunction() {
+    TabulationSolver.make(new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), new IMergeFunction() {
+      @Override
+      public int merge(IntSet x, int j) {
+        return j;
+      }
+    })).setDropIntermediatePathEdges(true);
+  }
+
+  /**
+   * @return the number of (entry, node) pairs for which the solver recorded a path edge
+   */
+  private static int countRecordedNodes(TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver) {
+    int count = 0;
+    for (CGNode p : cg) {
+      if (p.getIR() == null) {
+        continue;
+      }
+      for (BasicBlockInContext<IExplodedBasicBlock> entry : supergraph.getEntriesForProcedure(p)) {
+        if (solver.getLocalPathEdges(entry) != null) {
+          count += solver.getLocalPathEdges(entry).getReachedNodeNumbers().size();
+        }
+      }
+    }
+    return count;
+  }
+}
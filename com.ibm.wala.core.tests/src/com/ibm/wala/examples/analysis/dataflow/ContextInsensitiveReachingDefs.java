@@ -22,6 +22,8 @@ import com.ibm.wala.dataflow.graph.BitVectorKillGen;
 import com.ibm.wala.dataflow.graph.BitVectorSolver;
 import com.ibm.wala.dataflow.graph.BitVectorUnion;
 import com.ibm.wala.dataflow.graph.ITransferFunctionProvider;
+import com.ibm.wala.fixedpoint.impl.AbstractFixedPointSolver;
+import com.ibm.wala.fixedpoint.impl.IWorklist;
 import com.ibm.wala.fixpoint.BitVectorVariable;
 import com.ibm.wala.fixpoint.UnaryOperator;
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -34,6 +36,7 @@ import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAPutInstruction;
 import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
 import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.Factory;
 import com.ibm.wala.util.collections.HashMapFactory;
 import com.ibm.wala.util.collections.ObjectArrayMapping;
 import com.ibm.wala.util.collections.Pair;
@@ -180,25 +183,36 @@ public class ContextInsensitiveReachingDefs {
    * @return the solver used for the analysis, which contains the analysis result
    */
   public BitVectorSolver<BasicBlockInContext<IExplodedBasicBlock>> analyze() {
+    BitVectorSolver<BasicBlockInContext<IExplodedBasicBlock>> solver = analyze(AbstractFixedPointSolver.DEFAULT_WORKLIST_FACTORY);
+    if (VERBOSE) {
+      for (BasicBlockInContext<IExplodedBasicBlock> ebb : icfg) {
+        System.out.println(ebb);
+        System.out.println(ebb.getDelegate().getInstruction());
+        System.out.println(solver.getIn(ebb));
+        System.out.println(solver.getOut(ebb));
+      }
+    }
+    return solver;
+  }
+
+  /**
+   * run the analysis quietly, with a particular solver work list
+   * 
+   * @return the solver used for the analysis, which contains the analysis result
+   */
+  public BitVectorSolver<BasicBlockInContext<IExplodedBasicBlock>> analyze(Factory<IWorklist> worklistFactory) {
     // the framework describes the dataflow problem, in particular the underlying graph and the transfer functions
     BitVectorFramework<BasicBlockInContext<IExplodedBasicBlock>, Pair<CGNode, Integer>> framework = new BitVectorFramework<BasicBlockInContext<IExplodedBasicBlock>, Pair<CGNode, Integer>>(
         icfg, new TransferFunctions(), putInstrNumbering);
     BitVectorSolver<BasicBlockInContext<IExplodedBasicBlock>> solver = new BitVectorSolver<BasicBlockInContext<IExplodedBasicBlock>>(
         framework);
+    solver.setWorklistFactory(worklistFactory);
     try {
       solver.solve(null);
     } catch (CancelException e) {
       // this shouldn't happen
       assert false;
     }
-    if (VERBOSE) {
-      for (BasicBlockInContext<IExplodedBasicBlock> ebb : icfg) {
-        System.out.println(ebb);
-        System.out.println(ebb.getDelegate().getInstruction());
-        System.out.println(solver.getIn(ebb));
-        System.out.println(solver.getOut(ebb));
-      }
-    }
     return solver;
   }
 
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.IMergeFunction;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.ParallelTabulationSolver;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Tests that the {@link ParallelTabulationSolver} computes the same result as the {@link TabulationSolver}.
+ */
+public class ParallelTabulationTest extends WalaTestCase {
+
+  private static TabulationFixture fixture;
+
+  private static ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  private static CallGraph cg;
+
+  public static void main(String[] args) {
+    justThisTest(ParallelTabulationTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    fixture = TabulationFixture.make("Ldataflow/StaticDataflow");
+    cg = fixture.getCallGraph();
+    supergraph = fixture.getSupergraph();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    fixture = null;
+    supergraph = null;
+    cg = null;
+  }
+
+  @Test
+  public void testSameResult() throws CancelException {
+    StaticFieldReachingDefsProblem problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected = TabulationSolver.make(problem).solve();
+    for (int nThreads : new int[] { 1, 2, 4, 4, 8 }) {
+      ParallelTabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = ParallelTabulationSolver.make(
+          problem, nThreads, null);
+      try {
+        fixture.checkSame(expected, solver.solve());
+      } finally {
+        solver.shutdown();
+      }
+    }
+  }
+
+  /**
+   * the threads of a solver that was shut down are started again by a later solve
+   */
+  @Test
+  public void testSolveAfterShutdown() throws CancelException {
+    StaticFieldReachingDefsProblem problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected = TabulationSolver.make(problem).solve();
+    ParallelTabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = ParallelTabulationSolver.make(
+        problem, 2, null);
+    solver.shutdown();
+    try {
+      fixture.checkSame(expected, solver.solve());
+    } finally {
+      solver.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeFunctionRejected() {
+    ParallelTabulationSolver.make(new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), new IMergeFunction() {
+      @Override
+      public int merge(IntSet x, int j) {
+        return j;
+      }
+    }));
+  }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.IMergeFunction;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.SSAValueRelevance;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Tests that sparse propagation with an {@link SSAValueRelevance} gives the same summaries and the same facts at relevant nodes as
+ * propagating through every node, with fewer path edges.
+ */
+public class SparseTabulationTest extends WalaTestCase {
+
+  private static TabulationFixture fixture;
+
+  private static ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  private static CallGraph cg;
+
+  private static AnalysisCache cache;
+
+  public static void main(String[] args) {
+    justThisTest(SparseTabulationTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    fixture = TabulationFixture.make("Lslice/TestInetAddr");
+    cg = fixture.getCallGraph();
+    cache = fixture.getCache();
+    supergraph = fixture.getSupergraph();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    fixture = null;
+    supergraph = null;
+    cg = null;
+    cache = null;
+  }
+
+  @Test
+  public void testSameAtRelevantNodes() throws CancelException {
+    final ValueFlowProblem problem = new ValueFlowProblem(supergraph, cg.getFakeRootNode(), cache);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> dense = TabulationSolver.make(problem).solve();
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+    SSAValueRelevance relevance = problem.makeRelevance();
+    solver.setSparse(relevance);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> sparse = solver.solve();
+
+    int denseValues = 0;
+    int sparseValues = 0;
+    for (BasicBlockInContext<IExplodedBasicBlock> n : supergraph) {
+      IntSet d = dense.getResult(n);
+      IntSet s = sparse.getResult(n);
+      Assert.assertTrue(n.toString(), s.isSubset(d));
+      for (IntIterator it = d.intIterator(); it.hasNext();) {
+        int fact = it.next();
+        int c = relevance.getFactClass(fact);
+        if (c == -1 || supergraph.isCall(n) || supergraph.isExit(n) || supergraph.isEntry(n) || supergraph.isReturn(n)
+            || relevance.isRelevant(n, c)) {
+          Assert.assertTrue(n + " " + fact, s.contains(fact));
+        }
+        if (c != -1) {
+          denseValues++;
+          if (s.contains(fact)) {
+            sparseValues++;
+          }
+        }
+      }
+    }
+    // values flow somewhere, and sparse propagation records fewer of them
+    Assert.assertTrue(denseValues > 0);
+    Assert.assertTrue(sparseValues < denseValues);
+
+    fixture.checkSameSummaries(dense, sparse);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeFunctionRejected() {
+    ValueFlowProblem problem = new ValueFlowProblem(supergraph, cg.getFakeRootNode(), cache) {
+      @Override
+      public IMergeFunction getMergeFunction() {
+        return new IMergeFunction() {
+          @Override
+          public int merge(IntSet x, int j) {
+            return j;
+          }
+        };
+      }
+    };
+    TabulationSolver.make(problem).setSparse(problem.makeRelevance());
+  }
+}
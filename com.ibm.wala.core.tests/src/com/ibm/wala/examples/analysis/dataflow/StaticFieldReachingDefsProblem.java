@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import com.ibm.wala.dataflow.IFDS.IFlowFunction;
+import com.ibm.wala.dataflow.IFDS.IFlowFunctionMap;
+import com.ibm.wala.dataflow.IFDS.IMergeFunction;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.IUnaryFlowFunction;
+import com.ibm.wala.dataflow.IFDS.IdentityFlowFunction;
+import com.ibm.wala.dataflow.IFDS.KillEverything;
+import com.ibm.wala.dataflow.IFDS.PathEdge;
+import com.ibm.wala.dataflow.IFDS.TabulationDomain;
+import com.ibm.wala.dataflow.IFDS.TabulationProblem;
+import com.ibm.wala.dataflow.IFDS.UnorderedDomain;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAPutInstruction;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.types.FieldReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.SparseIntSet;
+
+/**
+ * Reaching definitions of static fields, as a balanced problem: fact 0 holds everywhere reachable from the root procedure, and each
+ * putstatic generates its own fact and kills the others for the same field. All the facts are numbered before tabulation
+ * starts, so the flow functions only read shared state.
+ */
+public class StaticFieldReachingDefsProblem implements TabulationProblem<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> {
+
+  private final UnorderedDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> domain = new UnorderedDomain<Object, BasicBlockInContext<IExplodedBasicBlock>>();
+
+  /**
+   * the fact generated by each putstatic block
+   */
+  private final Map<BasicBlockInContext<IExplodedBasicBlock>, Integer> factOf = HashMapFactory.make();
+
+  /**
+   * the field defined by each fact
+   */
+  private final Map<Integer, FieldReference> fieldOf = HashMapFactory.make();
+
+  private final ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  /**
+   * the procedure from whose entry fact 0 flows
+   */
+  private final CGNode root;
+
+  private final IMergeFunction merge;
+
+  /**
+   * @param merge a merge function for the problem, or null for none
+   */
+  public StaticFieldReachingDefsProblem(ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph, CGNode root,
+      IMergeFunction merge) {
+    this.supergraph = supergraph;
+    this.root = root;
+    this.merge = merge;
+    domain.add("0");
+    for (BasicBlockInContext<IExplodedBasicBlock> bb : supergraph) {
+      SSAInstruction instruction = bb.getDelegate().getInstruction();
+      if (instruction instanceof SSAPutInstruction && ((SSAPutInstruction) instruction).isStatic()) {
+        int fact = domain.add(bb);
+        factOf.put(bb, fact);
+        fieldOf.put(fact, ((SSAPutInstruction) instruction).getDeclaredField());
+      }
+    }
+  }
+
+  @Override
+  public ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> getSupergraph() {
+    return supergraph;
+  }
+
+  @Override
+  public TabulationDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> getDomain() {
+    return domain;
+  }
+
+  @Override
+  public IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>> getFunctionMap() {
+    return new IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>>() {
+
+      @Override
+      public IUnaryFlowFunction getNormalFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        final Integer fact = factOf.get(src);
+        if (fact == null) {
+          return IdentityFlowFunction.identity();
+        }
+        final FieldReference field = fieldOf.get(fact);
+        return new IUnaryFlowFunction() {
+          @Override
+          public IntSet getTargets(int d1) {
+            if (d1 == 0) {
+              return SparseIntSet.pair(0, fact);
+            } else if (d1 != fact && field.equals(fieldOf.get(d1))) {
+              return MutableSparseIntSet.makeEmpty();
+            } else {
+              return SparseIntSet.singleton(d1);
+            }
+          }
+        };
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest, BasicBlockInContext<IExplodedBasicBlock> ret) {
+        return IdentityFlowFunction.identity();
+      }
+
+      @Override
+      public IFlowFunction getReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> call,
+          BasicBlockInContext<IExplodedBasicBlock> src, BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return IdentityFlowFunction.identity();
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallToReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return KillEverything.singleton();
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallNoneToReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return IdentityFlowFunction.identity();
+      }
+    };
+  }
+
+  @Override
+  public Collection<PathEdge<BasicBlockInContext<IExplodedBasicBlock>>> initialSeeds() {
+    BasicBlockInContext<IExplodedBasicBlock> entry = supergraph.getEntriesForProcedure(root)[0];
+    return Collections.singleton(PathEdge.createPathEdge(entry, 0, entry, 0));
+  }
+
+  @Override
+  public IMergeFunction getMergeFunction() {
+    return merge;
+  }
+}
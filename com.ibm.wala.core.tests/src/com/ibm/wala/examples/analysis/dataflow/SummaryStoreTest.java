@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.FileSummaryStore;
+import com.ibm.wala.dataflow.IFDS.IFactEncoding;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.TabulationDomain;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashMapFactory;
+
+/**
+ * Tests that summaries kept by a {@link FileSummaryStore} in one run give the same results for application code in a later run.
+ */
+public class SummaryStoreTest extends WalaTestCase {
+
+  private static TabulationFixture fixture;
+
+  private static final String PROBLEM_ID = "static-field-reaching-defs";
+
+  private static ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  private static CallGraph cg;
+
+  private static File directory;
+
+  public static void main(String[] args) {
+    justThisTest(SummaryStoreTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    fixture = TabulationFixture.make("Ldataflow/StaticDataflow");
+    cg = fixture.getCallGraph();
+    supergraph = fixture.getSupergraph();
+    directory = File.createTempFile("summaries", "");
+    directory.delete();
+    directory.mkdir();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    directory.delete();
+    fixture = null;
+    supergraph = null;
+    cg = null;
+    directory = null;
+  }
+
+  @Test
+  public void testReuseSummaries() throws CancelException, IOException {
+    StaticFieldReachingDefsProblem problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected = TabulationSolver.make(problem).solve();
+
+    // the first run tabulates everything, and fills the store
+    FileSummaryStore store = new FileSummaryStore(directory, PROBLEM_ID, new Encoding(problem.getDomain()), cg);
+    Assert.assertEquals(0, store.size());
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+    solver.setSummaryStore(store);
+    fixture.checkSame(expected, solver.solve());
+    Assert.assertEquals(0, solver.getNumberOfStoredSummariesApplied());
+    Assert.assertTrue(store.size() > 0);
+    store.save();
+
+    // the second run, with a new domain, reads the store and skips the library
+    problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    FileSummaryStore reread = new FileSummaryStore(directory, PROBLEM_ID, new Encoding(problem.getDomain()), cg);
+    Assert.assertEquals(store.size(), reread.size());
+    solver = TabulationSolver.make(problem);
+    solver.setSummaryStore(reread);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> actual = solver.solve();
+    Assert.assertTrue(solver.getNumberOfStoredSummariesApplied() > 0);
+    int skipped = 0;
+    for (BasicBlockInContext<IExplodedBasicBlock> n : supergraph) {
+      if (reread.isStored(n.getNode())) {
+        if (actual.getResult(n).isEmpty() && !expected.getResult(n).isEmpty()) {
+          skipped++;
+        }
+      } else {
+        Assert.assertTrue(n.toString(), expected.getResult(n).sameValue(actual.getResult(n)));
+      }
+    }
+    Assert.assertTrue(skipped > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadProblemId() throws IOException {
+    StaticFieldReachingDefsProblem problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    new FileSummaryStore(directory, "../elsewhere", new Encoding(problem.getDomain()), cg);
+  }
+
+  /**
+   * Names fact 0 "0", and the fact generated by a putstatic by its method, context and block number
+   */
+  private static class Encoding implements IFactEncoding {
+
+    private final TabulationDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> domain;
+
+    private final Map<String, Integer> facts = HashMapFactory.make();
+
+    Encoding(TabulationDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> domain) {
+      this.domain = domain;
+      for (int d = 0; d < domain.getSize(); d++) {
+        facts.put(encode(d), d);
+      }
+    }
+
+    @Override
+    public String getId() {
+      return "putstatic-blocks";
+    }
+
+    @Override
+    public String encode(int d) {
+      Object fact = domain.getMappedObject(d);
+      if (fact instanceof BasicBlockInContext) {
+        BasicBlockInContext<?> bb = (BasicBlockInContext<?>) fact;
+        return bb.getNode().getMethod().getReference() + " " + bb.getNode().getContext() + " " + bb.getNumber();
+      }
+      return fact.toString();
+    }
+
+    @Override
+    public int decode(String s) {
+      Integer d = facts.get(s);
+      return d == null ? -1 : d;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.dataflow.IFDS.ICFGSupergraph;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.config.FileOfClasses;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * A 0-1-CFA call graph of a program in the WALA test data and its {@link ICFGSupergraph}, for the tests of the tabulation
+ * solvers.
+ */
+public class TabulationFixture {
+
+  // more aggressive exclusions to avoid library blowup, as in DataflowTest
+  private static final String EXCLUSIONS = "java\\/awt\\/.*\n" + "javax\\/swing\\/.*\n" + "sun\\/awt\\/.*\n"
+      + "sun\\/swing\\/.*\n" + "com\\/sun\\/.*\n" + "sun\\/.*\n" + "org\\/netbeans\\/.*\n" + "org\\/openide\\/.*\n"
+      + "com\\/ibm\\/crypto\\/.*\n" + "com\\/ibm\\/security\\/.*\n" + "org\\/apache\\/xerces\\/.*\n" + "java\\/security\\/.*\n";
+
+  private final CallGraph cg;
+
+  private final AnalysisCache cache;
+
+  private final ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  private TabulationFixture(CallGraph cg, AnalysisCache cache) {
+    this.cg = cg;
+    this.cache = cache;
+    this.supergraph = ICFGSupergraph.make(cg, cache);
+  }
+
+  /**
+   * @param mainClass the class whose main method is the entrypoint, e.g. "Ldataflow/StaticDataflow"
+   */
+  public static TabulationFixture make(String mainClass) throws IOException, ClassHierarchyException, IllegalArgumentException,
+      CancelException {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA, null,
+        TabulationFixture.class.getClassLoader());
+    scope.setExclusions(new FileOfClasses(new ByteArrayInputStream(EXCLUSIONS.getBytes("UTF-8"))));
+    IClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, mainClass);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    AnalysisCache cache = new AnalysisCache();
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, cache, cha, scope);
+    return new TabulationFixture(builder.makeCallGraph(options, null), cache);
+  }
+
+  public CallGraph getCallGraph() {
+    return cg;
+  }
+
+  public AnalysisCache getCache() {
+    return cache;
+  }
+
+  public ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> getSupergraph() {
+    return supergraph;
+  }
+
+  /**
+   * assert that two results give the same facts at every node, reach the same nodes, and have the same summary edges
+   */
+  public void checkSame(TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected,
+      TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> actual) {
+    int facts = 0;
+    for (BasicBlockInContext<IExplodedBasicBlock> n : supergraph) {
+      IntSet e = expected.getResult(n);
+      Assert.assertTrue(n.toString(), e.sameValue(actual.getResult(n)));
+      facts += e.size();
+    }
+    // more than the 0 fact reaches some nodes
+    Assert.assertTrue(facts > supergraph.getNumberOfNodes());
+    Assert.assertEquals(expected.getSupergraphNodesReached(), actual.getSupergraphNodesReached());
+    checkSameSummaries(expected, actual);
+  }
+
+  /**
+   * assert that two results have the same summary edges from the entry to the exit of each procedure
+   */
+  public void checkSameSummaries(TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected,
+      TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> actual) {
+    for (CGNode p : cg) {
+      if (p.getIR() == null) {
+        continue;
+      }
+      BasicBlockInContext<IExplodedBasicBlock> entry = supergraph.getEntriesForProcedure(p)[0];
+      BasicBlockInContext<IExplodedBasicBlock> exit = supergraph.getExitsForProcedure(p)[0];
+      for (IntIterator it = expected.getResult(entry).intIterator(); it.hasNext();) {
+        int d1 = it.next();
+        Assert.assertTrue(p + " " + d1,
+            nonNull(expected.getSummaryTargets(entry, d1, exit)).sameValue(nonNull(actual.getSummaryTargets(entry, d1, exit))));
+      }
+    }
+  }
+
+  private static IntSet nonNull(IntSet s) {
+    return s == null ? MutableSparseIntSet.makeEmpty() : s;
+  }
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.ibm.wala.dataflow.IFDS.IFlowFunction;
+import com.ibm.wala.dataflow.IFDS.IFlowFunctionMap;
+import com.ibm.wala.dataflow.IFDS.IMergeFunction;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.IUnaryFlowFunction;
+import com.ibm.wala.dataflow.IFDS.IdentityFlowFunction;
+import com.ibm.wala.dataflow.IFDS.PathEdge;
+import com.ibm.wala.dataflow.IFDS.SSAValueRelevance;
+import com.ibm.wala.dataflow.IFDS.TabulationDomain;
+import com.ibm.wala.dataflow.IFDS.TabulationProblem;
+import com.ibm.wala.dataflow.IFDS.UnorderedDomain;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
+import com.ibm.wala.ssa.SSAGetInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAReturnInstruction;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.Pair;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Which SSA values may hold a value read from a field, a simple taint problem with getfield and getstatic as sources: the facts
+ * are pairs of a node and a value number in it, and fact 0. Values flow through the instructions that use them, into callees
+ * through parameters and back to callers through return values.
+ */
+public class ValueFlowProblem implements TabulationProblem<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> {
+
+  private final UnorderedDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> domain = new UnorderedDomain<Object, BasicBlockInContext<IExplodedBasicBlock>>();
+
+  /**
+   * the values returned by each node
+   */
+  private final Map<CGNode, IntSet> returned = HashMapFactory.make();
+
+  private final ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  /**
+   * the procedure from whose entry fact 0 flows
+   */
+  private final CGNode root;
+
+  private final AnalysisCache cache;
+
+  /**
+   * @param cache the cache holding the IRs of the call graph nodes
+   */
+  public ValueFlowProblem(ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph, CGNode root,
+      AnalysisCache cache) {
+    this.supergraph = supergraph;
+    this.root = root;
+    this.cache = cache;
+    domain.add("0");
+  }
+
+  /**
+   * @return the relevance of the supergraph nodes to the facts about each value, for sparse propagation
+   */
+  public SSAValueRelevance makeRelevance() {
+    return new SSAValueRelevance(cache) {
+      @Override
+      protected int getValueNumber(int d) {
+        return d == 0 ? -1 : valueOf(d).snd;
+      }
+    };
+  }
+
+  private int fact(CGNode n, int v) {
+    return domain.add(Pair.make(n, v));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Pair<CGNode, Integer> valueOf(int d) {
+    return (Pair<CGNode, Integer>) domain.getMappedObject(d);
+  }
+
+  private IntSet getReturnedValues(CGNode n) {
+    IntSet result = returned.get(n);
+    if (result == null) {
+      MutableSparseIntSet s = MutableSparseIntSet.makeEmpty();
+      for (SSAInstruction instruction : n.getIR().getInstructions()) {
+        if (instruction instanceof SSAReturnInstruction && ((SSAReturnInstruction) instruction).getResult() > 0) {
+          s.add(((SSAReturnInstruction) instruction).getResult());
+        }
+      }
+      result = s;
+      returned.put(n, result);
+    }
+    return result;
+  }
+
+  @Override
+  public ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> getSupergraph() {
+    return supergraph;
+  }
+
+  @Override
+  public TabulationDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> getDomain() {
+    return domain;
+  }
+
+  @Override
+  public IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>> getFunctionMap() {
+    return new IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>>() {
+
+      @Override
+      public IUnaryFlowFunction getNormalFlowFunction(final BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        final CGNode node = src.getNode();
+        return new IUnaryFlowFunction() {
+          @Override
+          public IntSet getTargets(int d1) {
+            MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+            result.add(d1);
+            SSAInstruction instruction = src.getDelegate().getInstruction();
+            if (d1 == 0) {
+              if (instruction instanceof SSAGetInstruction) {
+                result.add(fact(node, instruction.getDef()));
+              }
+              return result;
+            }
+            int v = valueOf(d1).snd;
+            if (instruction != null) {
+              gen(result, instruction, v);
+            }
+            for (Iterator<? extends SSAInstruction> it = src.getDelegate().iteratePhis(); it.hasNext();) {
+              gen(result, it.next(), v);
+            }
+            for (Iterator<? extends SSAInstruction> it = src.getDelegate().iteratePis(); it.hasNext();) {
+              gen(result, it.next(), v);
+            }
+            return result;
+          }
+
+          private void gen(MutableSparseIntSet result, SSAInstruction instruction, int v) {
+            if (instruction.hasDef()) {
+              for (int i = 0; i < instruction.getNumberOfUses(); i++) {
+                if (instruction.getUse(i) == v) {
+                  result.add(fact(node, instruction.getDef()));
+                }
+              }
+            }
+          }
+        };
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallFlowFunction(final BasicBlockInContext<IExplodedBasicBlock> src,
+          final BasicBlockInContext<IExplodedBasicBlock> dest, BasicBlockInContext<IExplodedBasicBlock> ret) {
+        return new IUnaryFlowFunction() {
+          @Override
+          public IntSet getTargets(int d1) {
+            MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+            if (d1 == 0) {
+              result.add(0);
+              return result;
+            }
+            SSAInstruction call = src.getDelegate().getInstruction();
+            IR calleeIR = dest.getNode().getIR();
+            int v = valueOf(d1).snd;
+            for (int i = 0; i < call.getNumberOfUses() && i < calleeIR.getNumberOfParameters(); i++) {
+              if (call.getUse(i) == v) {
+                result.add(fact(dest.getNode(), calleeIR.getParameter(i)));
+              }
+            }
+            return result;
+          }
+        };
+      }
+
+      @Override
+      public IFlowFunction getReturnFlowFunction(final BasicBlockInContext<IExplodedBasicBlock> call,
+          final BasicBlockInContext<IExplodedBasicBlock> src, BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return new IUnaryFlowFunction() {
+          @Override
+          public IntSet getTargets(int d1) {
+            MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+            if (d1 == 0) {
+              result.add(0);
+              return result;
+            }
+            SSAAbstractInvokeInstruction invoke = (SSAAbstractInvokeInstruction) call.getDelegate().getInstruction();
+            if (invoke.hasDef() && getReturnedValues(src.getNode()).contains(valueOf(d1).snd)) {
+              result.add(fact(call.getNode(), invoke.getDef()));
+            }
+            return result;
+          }
+        };
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallToReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return IdentityFlowFunction.identity();
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallNoneToReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return IdentityFlowFunction.identity();
+      }
+    };
+  }
+
+  @Override
+  public Collection<PathEdge<BasicBlockInContext<IExplodedBasicBlock>>> initialSeeds() {
+    BasicBlockInContext<IExplodedBasicBlock> entry = supergraph.getEntriesForProcedure(root)[0];
+    return Collections.singleton(PathEdge.createPathEdge(entry, 0, entry, 0));
+  }
+
+  @Override
+  public IMergeFunction getMergeFunction() {
+    return null;
+  }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.slicer.SlicerTest;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.ParallelTabulationSolver;
+import com.ibm.wala.dataflow.IFDS.PartiallyBalancedTabulationSolver;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver.WorklistOrder;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ipa.slicer.PDG;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
+
+/**
+ * Tests that the tabulation solver gives the same results with every worklist order.
+ */
+public class WorklistOrderTest extends WalaTestCase {
+
+  private static TabulationFixture fixture;
+
+  private static ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+  private static CallGraph cg;
+
+  public static void main(String[] args) {
+    justThisTest(WorklistOrderTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    fixture = TabulationFixture.make("Ldataflow/StaticDataflow");
+    cg = fixture.getCallGraph();
+    supergraph = fixture.getSupergraph();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    fixture = null;
+    supergraph = null;
+    cg = null;
+  }
+
+  @Test
+  public void testSameResult() throws CancelException {
+    StaticFieldReachingDefsProblem problem = new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null);
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected = TabulationSolver.make(problem).solve();
+    for (WorklistOrder order : WorklistOrder.values()) {
+      TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+      solver.setWorklistOrder(order);
+      fixture.checkSame(expected, solver.solve());
+    }
+  }
+
+  @Test
+  public void testSameSlice() throws Exception {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA,
+        CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    IClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.SLICE1_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    CallGraph sliceCG = builder.makeCallGraph(options, null);
+    SDG sdg = new SDG(sliceCG, builder.getPointerAnalysis(), DataDependenceOptions.FULL, ControlDependenceOptions.NONE);
+    Collection<Statement> roots = Collections.singleton(SlicerTest.findCallTo(SlicerTest.findMainMethod(sliceCG), "println"));
+
+    Set<Statement> expected = HashSetFactory.make(Slicer.computeBackwardSlice(sdg, roots));
+    Assert.assertFalse(expected.isEmpty());
+    for (WorklistOrder order : WorklistOrder.values()) {
+      PartiallyBalancedTabulationSolver<Statement, PDG, Object> solver = PartiallyBalancedTabulationSolver
+          .createPartiallyBalancedTabulationSolver(new Slicer.SliceProblem(roots, sdg, true), null);
+      solver.setWorklistOrder(order);
+      Assert.assertEquals(order.toString(), expected, HashSetFactory.make(solver.solve().getSupergraphNodesReached()));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testOrderFixedOnceStarted() throws CancelException {
+    TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver
+        .make(new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null));
+    solver.solve();
+    solver.setWorklistOrder(WorklistOrder.FIFO);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testParallelRejectsOrder() {
+    ParallelTabulationSolver.make(new StaticFieldReachingDefsProblem(supergraph, cg.getFakeRootNode(), null), 2, null)
+        .setWorklistOrder(WorklistOrder.LIFO);
+  }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import com.ibm.wala.classLoader.IBytecodeMethod;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.CommandLine;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.io.FileUtil;
+import com.ibm.wala.util.perf.StopwatchGC;
+
+/**
+ * Common code of the drivers that measure the time and memory of per-method IR structures.
+ *
+ * For each program, a 0-1-CFA call graph is built from its main methods, or from all application methods if it has none, and
+ * {@link #measure(String, List, SSAOptions)} is called with its distinct bytecode methods. A subclass measures a phase by
+ * calling {@link #start(String)}, adding what the phase keeps to {@link #retained}, and calling
+ * {@link #stop(String, StopwatchGC, int, long)}. The footprint of a phase is the live heap it leaves behind.
+ */
+public abstract class AbstractIRBenchmark {
+
+  /**
+   * the name of the program made from the WALA test data
+   */
+  private final static String TESTDATA = "testdata";
+
+  /**
+   * what the current phase keeps alive, so that its footprint can be measured
+   */
+  protected List<Object> retained;
+
+  /**
+   * Run the phases of the benchmark over the methods of one program.
+   *
+   * @param program the name of the program, for the report
+   * @param methods the distinct bytecode methods of the program's call graph
+   * @param options the SSA options the call graph was built with
+   */
+  protected abstract void measure(String program, List<IMethod> methods, SSAOptions options);
+
+  /**
+   * Measure the WALA test data and each jar found under the directory given by -jarDir, if any.
+   */
+  protected void run(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    Properties p = CommandLine.parse(args);
+    List<String> programs = new ArrayList<String>();
+    programs.add(TESTDATA);
+    String jarDir = p.getProperty("jarDir");
+    if (jarDir != null) {
+      for (File f : FileUtil.listFiles(jarDir, ".*\\.jar", true)) {
+        programs.add(f.getAbsolutePath());
+      }
+    }
+    for (String program : programs) {
+      // the call graph is garbage by the time the phases run, so it does not disturb their footprints
+      List<IMethod> methods = new ArrayList<IMethod>();
+      AnalysisOptions options = collectMethods(program, methods);
+      measure(program, methods, options.getSSAOptions());
+      retained = null;
+    }
+  }
+
+  /**
+   * Build a 0-1-CFA call graph of the program and add its distinct bytecode methods to methods.
+   *
+   * @return the options the call graph was built with
+   */
+  private static AnalysisOptions collectMethods(String program, List<IMethod> methods) throws IOException,
+      ClassHierarchyException, IllegalArgumentException, CancelException {
+    AnalysisScope scope;
+    if (program.equals(TESTDATA)) {
+      scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    } else {
+      scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(program,
+          (new FileProvider()).getFile(CallGraphTestUtil.REGRESSION_EXCLUSIONS));
+    }
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha);
+    if (!entrypoints.iterator().hasNext()) {
+      entrypoints = new AllApplicationEntrypoints(scope, cha);
+    }
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraph cg = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope).makeCallGraph(options, null);
+    Set<IMethod> distinct = HashSetFactory.make();
+    for (CGNode n : cg) {
+      IMethod m = n.getMethod();
+      if (m instanceof IBytecodeMethod && !m.isAbstract() && !m.isNative()) {
+        distinct.add(m);
+      }
+    }
+    methods.addAll(distinct);
+    return options;
+  }
+
+  /**
+   * Start measuring a phase: drop what the last phase kept and collect garbage.
+   */
+  protected StopwatchGC start(String phase) {
+    retained = null;
+    settle();
+    StopwatchGC timer = new StopwatchGC(phase);
+    timer.start();
+    retained = new ArrayList<Object>();
+    return timer;
+  }
+
+  /**
+   * collect garbage until the heap stops shrinking, so that a single collection at the start of a phase sees no leftovers of the
+   * last one
+   */
+  private static void settle() {
+    Runtime r = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      long now = r.totalMemory() - r.freeMemory();
+      if (now >= used) {
+        break;
+      }
+      used = now;
+    }
+  }
+
+  /**
+   * Stop measuring a phase and report its time and footprint.
+   *
+   * @param size the number of methods the phase handled
+   * @param estimate the estimated size of what the phase kept, in bytes, or -1
+   */
+  protected void stop(String program, StopwatchGC timer, int size, long estimate) {
+    timer.stop();
+    System.out.println(String.format("%-20s %-8s %8d ms, footprint %8.2f MB, methods %6d%s", new File(program).getName(),
+        timer.getName(), timer.getElapsedMillis(), timer.getFootprint(), size, estimate < 0 ? "" : String.format(
+            ", estimate %8.2f MB", estimate / 1000000.0)));
+  }
+}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.cha.CHACallGraph;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.slicer.NormalStatement;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.CommandLine;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.io.FileUtil;
+import com.ibm.wala.util.perf.StopwatchGC;
+
+/**
+ * Driver that times the standard analysis pipeline, phase by phase, and writes the results as JSON and CSV so that runs can be
+ * compared across commits.
+ *
+ * The phases are: reading the analysis scope, building the class hierarchy, CHA, RTA, 0-CFA, 0-1-CFA and 0-1-container-CFA call
+ * graphs, building the nodes of an SDG over the 0-1-CFA call graph, and a backward slice from the last call in each entrypoint.
+ * Each phase is timed with a {@link StopwatchGC}, which reports wall time, time spent in GC, peak heap and the change in live
+ * heap. Each program is analyzed from its main methods, or from all application methods if it has none.
+ */
+public class AnalysisBenchmark {
+
+  /**
+   * the name of the program made from the WALA test data
+   */
+  private final static String TESTDATA = "testdata";
+
+  /**
+   * The timing of one phase of one run on one program.
+   */
+  private static class Result {
+    final String program;
+
+    final String phase;
+
+    final int run;
+
+    final StopwatchGC timer;
+
+    /**
+     * size of what the phase built, e.g. number of call graph nodes; -1 if not meaningful
+     */
+    final long size;
+
+    Result(String program, String phase, int run, StopwatchGC timer, long size) {
+      this.program = program;
+      this.phase = phase;
+      this.run = run;
+      this.timer = timer;
+      this.size = size;
+    }
+  }
+
+  private final List<Result> results = new ArrayList<Result>();
+
+  private final DataDependenceOptions dataOptions;
+
+  private final ControlDependenceOptions controlOptions;
+
+  private AnalysisBenchmark(DataDependenceOptions dataOptions, ControlDependenceOptions controlOptions) {
+    this.dataOptions = dataOptions;
+    this.controlOptions = controlOptions;
+  }
+
+  /**
+   * Usage: AnalysisBenchmark [-jarDir directory] [-out file_prefix] [-runs n] [-dataDeps option] [-controlDeps option]
+   *
+   * Analyzes the WALA test data and each jar found under jarDir, n times (default 1). Results are written to file_prefix.json and
+   * file_prefix.csv (default "analysis-benchmark"). The SDG uses the given {@link DataDependenceOptions} (default
+   * NO_BASE_NO_HEAP) and {@link ControlDependenceOptions} (default FULL), given by name, e.g. "no_base_no_heap".
+   */
+  public static void main(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    Properties p = CommandLine.parse(args);
+    String out = p.getProperty("out", "analysis-benchmark");
+    int runs = Integer.parseInt(p.getProperty("runs", "1"));
+    DataDependenceOptions dOptions = parseDataOptions(p.getProperty("dataDeps", DataDependenceOptions.NO_BASE_NO_HEAP.getName()));
+    ControlDependenceOptions cOptions = parseControlOptions(p.getProperty("controlDeps",
+        ControlDependenceOptions.FULL.getName()));
+
+    List<String> programs = new ArrayList<String>();
+    programs.add(TESTDATA);
+    String jarDir = p.getProperty("jarDir");
+    if (jarDir != null) {
+      for (File f : FileUtil.listFiles(jarDir, ".*\\.jar", true)) {
+        programs.add(f.getAbsolutePath());
+      }
+    }
+
+    AnalysisBenchmark benchmark = new AnalysisBenchmark(dOptions, cOptions);
+    for (String program : programs) {
+      for (int run = 1; run <= runs; run++) {
+        benchmark.run(program, run);
+      }
+    }
+    benchmark.writeJSON(new File(out + ".json"));
+    benchmark.writeCSV(new File(out + ".csv"));
+  }
+
+  private static DataDependenceOptions parseDataOptions(String name) {
+    for (DataDependenceOptions o : DataDependenceOptions.values()) {
+      if (o.getName().equals(name)) {
+        return o;
+      }
+    }
+    throw new IllegalArgumentException("unknown data dependence option " + name);
+  }
+
+  private static ControlDependenceOptions parseControlOptions(String name) {
+    for (ControlDependenceOptions o : ControlDependenceOptions.values()) {
+      if (o.getName().equals(name)) {
+        return o;
+      }
+    }
+    throw new IllegalArgumentException("unknown control dependence option " + name);
+  }
+
+  private StopwatchGC start(String phase) {
+    StopwatchGC timer = new StopwatchGC(phase);
+    timer.start();
+    return timer;
+  }
+
+  private void stop(String program, int run, StopwatchGC timer, long size) {
+    timer.stop();
+    Result r = new Result(program, timer.getName(), run, timer, size);
+    results.add(r);
+    System.out.println(String.format("%-20s %-10s run %d: %8d ms, gc %6d ms, peak %8.1f MB, size %d", shortName(program),
+        r.phase, run, timer.getElapsedMillis(), timer.getGCMillis(), timer.getPeakMemory(), size));
+  }
+
+  private static String shortName(String program) {
+    return new File(program).getName();
+  }
+
+  private void run(String program, int run) throws IOException, ClassHierarchyException, IllegalArgumentException,
+      CancelException {
+    StopwatchGC timer = start("scope");
+    AnalysisScope scope;
+    if (program.equals(TESTDATA)) {
+      scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    } else {
+      scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(program,
+          (new FileProvider()).getFile(CallGraphTestUtil.REGRESSION_EXCLUSIONS));
+    }
+    stop(program, run, timer, -1);
+
+    timer = start("cha");
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    stop(program, run, timer, cha.getNumberOfClasses());
+
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha);
+    if (!entrypoints.iterator().hasNext()) {
+      entrypoints = new AllApplicationEntrypoints(scope, cha);
+    }
+
+    timer = start("cha-cg");
+    CHACallGraph chaCG = new CHACallGraph(cha);
+    chaCG.init(entrypoints);
+    stop(program, run, timer, chaCG.getNumberOfNodes());
+    chaCG = null;
+
+    timer = start("rta");
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder rta = Util.makeRTABuilder(options, new AnalysisCache(), cha, scope);
+    stop(program, run, timer, rta.makeCallGraph(options, null).getNumberOfNodes());
+    rta = null;
+
+    timer = start("0cfa");
+    options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder zeroCFA = Util.makeZeroCFABuilder(options, new AnalysisCache(), cha, scope);
+    stop(program, run, timer, zeroCFA.makeCallGraph(options, null).getNumberOfNodes());
+    zeroCFA = null;
+
+    timer = start("container");
+    options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder container = Util.makeZeroOneContainerCFABuilder(options, new AnalysisCache(), cha, scope);
+    stop(program, run, timer, container.makeCallGraph(options, null).getNumberOfNodes());
+    container = null;
+
+    timer = start("01cfa");
+    options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder zeroOneCFA = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    CallGraph cg = zeroOneCFA.makeCallGraph(options, null);
+    PointerAnalysis pa = zeroOneCFA.getPointerAnalysis();
+    stop(program, run, timer, cg.getNumberOfNodes());
+
+    timer = start("sdg");
+    SDG sdg = new SDG(cg, pa, dataOptions, controlOptions);
+    stop(program, run, timer, sdg.getNumberOfNodes());
+
+    Collection<Statement> seeds = findSeeds(cg);
+    timer = start("slice");
+    Collection<Statement> slice = seeds.isEmpty() ? seeds : Slicer.computeBackwardSlice(sdg, seeds);
+    stop(program, run, timer, slice.size());
+  }
+
+  /**
+   * @return a statement for the last call in each entrypoint
+   */
+  private static Collection<Statement> findSeeds(CallGraph cg) {
+    Collection<Statement> result = HashSetFactory.make();
+    for (CGNode n : cg.getEntrypointNodes()) {
+      IR ir = n.getIR();
+      if (ir == null) {
+        continue;
+      }
+      SSAInstruction[] instructions = ir.getInstructions();
+      for (int i = instructions.length - 1; i >= 0; i--) {
+        if (instructions[i] instanceof SSAAbstractInvokeInstruction) {
+          result.add(new NormalStatement(n, i));
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private void writeJSON(File f) throws IOException {
+    PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"));
+    try {
+      w.println("{");
+      w.println("  \"date\": " + quote(new Date().toString()) + ",");
+      w.println("  \"javaVersion\": " + quote(System.getProperty("java.version")) + ",");
+      w.println("  \"maxHeapMB\": " + Runtime.getRuntime().maxMemory() / 1000000 + ",");
+      w.println("  \"dataDependenceOptions\": " + quote(dataOptions.getName()) + ",");
+      w.println("  \"controlDependenceOptions\": " + quote(controlOptions.getName()) + ",");
+      w.println("  \"results\": [");
+      for (Iterator<Result> it = results.iterator(); it.hasNext();) {
+        Result r = it.next();
+        w.print("    { \"program\": " + quote(r.program) + ", \"phase\": " + quote(r.phase) + ", \"run\": " + r.run
+            + ", \"wallMillis\": " + r.timer.getElapsedMillis() + ", \"gcMillis\": " + r.timer.getGCMillis() + ", \"peakHeapMB\": "
+            + r.timer.getPeakMemory() + ", \"footprintMB\": " + r.timer.getFootprint() + ", \"size\": " + r.size + " }");
+        w.println(it.hasNext() ? "," : "");
+      }
+      w.println("  ]");
+      w.println("}");
+    } finally {
+      w.close();
+    }
+  }
+
+  private void writeCSV(File f) throws IOException {
+    PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"));
+    try {
+      w.println("program,phase,run,wallMillis,gcMillis,peakHeapMB,footprintMB,size");
+      for (Result r : results) {
+        w.println(csvQuote(r.program) + "," + r.phase + "," + r.run + "," + r.timer.getElapsedMillis() + "," + r.timer.getGCMillis()
+            + "," + r.timer.getPeakMemory() + "," + r.timer.getFootprint() + "," + r.size);
+      }
+    } finally {
+      w.close();
+    }
+  }
+
+  private static String quote(String s) {
+    StringBuffer result = new StringBuffer("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < ' ') {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+
+  private static String csvQuote(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+      return s;
+    }
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+}
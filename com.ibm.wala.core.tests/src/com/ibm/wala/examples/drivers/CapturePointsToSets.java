@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Properties;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.OrdinalSetMapping;
+import com.ibm.wala.util.io.CommandLine;
+
+/**
+ * Driver that runs a pointer analysis and writes out the final points-to sets, as sets of instance key numbers. The output is the
+ * fixture format read by the int set micro-benchmarks in com.ibm.wala.util.jmh: lines starting with '#' are comments, and every
+ * other line is one non-empty set in {@link MutableSparseIntSet#toString()} form. Sets are written in pointer key order, so
+ * equal sets stay duplicated as they are in the analysis.
+ */
+public class CapturePointsToSets {
+
+  /**
+   * Usage: CapturePointsToSets -out file_path [-scopeFile file_path] [-builder 0cfa|01cfa|container]
+   *
+   * Analyzes all application methods in the scope, by default the WALA test data, with 0-CFA unless another builder is named.
+   */
+  public static void main(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    Properties p = CommandLine.parse(args);
+    String out = p.getProperty("out");
+    if (out == null) {
+      throw new IllegalArgumentException("-out must be given");
+    }
+    String scopeFile = p.getProperty("scopeFile", TestConstants.WALA_TESTDATA);
+    String builderName = p.getProperty("builder", "0cfa");
+
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(scopeFile, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, new AllApplicationEntrypoints(scope, cha));
+    PropagationCallGraphBuilder builder = makeBuilder(builderName, options, cha, scope);
+    builder.makeCallGraph(options, null);
+    PointerAnalysis pa = builder.getPointerAnalysis();
+    OrdinalSetMapping<InstanceKey> instanceKeys = pa.getInstanceKeyMapping();
+
+    PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), "UTF-8"));
+    try {
+      w.println("# points-to sets captured by " + CapturePointsToSets.class.getName());
+      w.println("# scope: " + scopeFile + ", all application entrypoints");
+      w.println("# builder: " + builderName);
+      w.println("# instance keys: " + instanceKeys.getSize());
+      int count = 0;
+      for (PointerKey k : pa.getPointerKeys()) {
+        MutableSparseIntSet s = MutableSparseIntSet.makeEmpty();
+        for (InstanceKey ik : pa.getPointsToSet(k)) {
+          s.add(instanceKeys.getMappedIndex(ik));
+        }
+        if (!s.isEmpty()) {
+          w.println(s);
+          count++;
+        }
+      }
+      System.out.println("wrote " + count + " sets to " + out);
+    } finally {
+      w.close();
+    }
+  }
+
+  private static PropagationCallGraphBuilder makeBuilder(String name, AnalysisOptions options, ClassHierarchy cha,
+      AnalysisScope scope) {
+    if (name.equals("0cfa")) {
+      return Util.makeZeroCFABuilder(options, new AnalysisCache(), cha, scope);
+    } else if (name.equals("01cfa")) {
+      return Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    } else if (name.equals("container")) {
+      return Util.makeZeroOneContainerCFABuilder(options, new AnalysisCache(), cha, scope);
+    } else {
+      throw new IllegalArgumentException("unknown builder " + name);
+    }
+  }
+}
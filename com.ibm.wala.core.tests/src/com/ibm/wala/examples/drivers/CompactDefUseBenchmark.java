@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.CompactDefUse;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.perf.StopwatchGC;
+
+/**
+ * Driver that compares the time and memory to build a {@link DefUse} for each IR of the methods in a call graph with those of a
+ * {@link CompactDefUse}.
+ *
+ * The IRs of the methods are built and kept. Then three phases run over the IRs: "defuse" builds a {@link DefUse} for each;
+ * "compact" builds a {@link CompactDefUse} for each and queries it once, so that its tables are built; "lazy" builds a
+ * {@link CompactDefUse} for each and never queries it. The footprints do not count the IRs.
+ */
+public class CompactDefUseBenchmark extends AbstractIRBenchmark {
+
+  /**
+   * Usage: CompactDefUseBenchmark [-jarDir directory]
+   *
+   * Measures the WALA test data and each jar found under jarDir.
+   */
+  public static void main(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    new CompactDefUseBenchmark().run(args);
+  }
+
+  @Override
+  protected void measure(String program, List<IMethod> methods, SSAOptions ssaOptions) {
+    IRFactory<IMethod> factory = new DefaultIRFactory();
+    List<IR> irs = new ArrayList<IR>(methods.size());
+    for (IMethod m : methods) {
+      irs.add(factory.makeIR(m, Everywhere.EVERYWHERE, ssaOptions));
+    }
+
+    StopwatchGC timer = start("defuse");
+    for (IR ir : irs) {
+      retained.add(new DefUse(ir));
+    }
+    stop(program, timer, irs.size(), -1);
+
+    timer = start("compact");
+    long estimate = 0;
+    for (IR ir : irs) {
+      CompactDefUse du = new CompactDefUse(ir);
+      du.getDef(1);
+      estimate += du.getSize();
+      retained.add(du);
+    }
+    stop(program, timer, irs.size(), estimate);
+
+    timer = start("lazy");
+    for (IR ir : irs) {
+      retained.add(new CompactDefUse(ir));
+    }
+    stop(program, timer, irs.size(), -1);
+  }
+}
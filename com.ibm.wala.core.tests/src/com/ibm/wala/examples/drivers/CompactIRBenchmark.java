@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.CompactIR;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.perf.StopwatchGC;
+
+/**
+ * Driver that compares the memory held by the IRs of the methods in a call graph with the memory held by their {@link CompactIR}
+ * forms, and the time to build the IRs from bytecode with the time to rebuild them from the compact forms.
+ *
+ * Three phases run over the methods: "ir" builds each IR and its {@link DefUse} and keeps them; "compact" builds each IR again,
+ * packs it and keeps only the compact form; "inflate" rebuilds each IR from its compact form.
+ */
+public class CompactIRBenchmark extends AbstractIRBenchmark {
+
+  /**
+   * Usage: CompactIRBenchmark [-jarDir directory]
+   *
+   * Measures the WALA test data and each jar found under jarDir.
+   */
+  public static void main(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    new CompactIRBenchmark().run(args);
+  }
+
+  @Override
+  protected void measure(String program, List<IMethod> methods, SSAOptions ssaOptions) {
+    IRFactory<IMethod> factory = new DefaultIRFactory();
+
+    StopwatchGC timer = start("ir");
+    for (IMethod m : methods) {
+      IR ir = factory.makeIR(m, Everywhere.EVERYWHERE, ssaOptions);
+      retained.add(ir);
+      retained.add(new DefUse(ir));
+    }
+    stop(program, timer, methods.size(), -1);
+
+    timer = start("compact");
+    long compactBytes = 0;
+    List<CompactIR> compact = new ArrayList<CompactIR>(methods.size());
+    for (IMethod m : methods) {
+      CompactIR c = CompactIR.make(factory.makeIR(m, Everywhere.EVERYWHERE, ssaOptions));
+      if (c != null) {
+        compact.add(c);
+        compactBytes += c.getSize();
+      }
+    }
+    retained.add(compact);
+    stop(program, timer, compact.size(), compactBytes);
+
+    timer = start("inflate");
+    for (CompactIR c : compact) {
+      retained.add(c.getIR());
+    }
+    stop(program, timer, compact.size(), -1);
+  }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.ISSABasicBlock;
+import com.ibm.wala.ssa.SSACFG;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.graph.NumberedGraph;
+import com.ibm.wala.util.graph.dominators.Dominators;
+import com.ibm.wala.util.graph.impl.SlowSparseNumberedGraph;
+
+/**
+ * Driver that compares the time to compute dominators with Lengauer and Tarjan's algorithm and with the semi-NCA algorithm, on
+ * large synthetic control-flow graphs and on the CFGs of the methods in the WALA test data and the libraries it uses.
+ *
+ * The synthetic graphs are shaped like the CFGs of generated code: mostly straight-line blocks, with forward branches, a few
+ * loops, and jumps to shared handlers. Each measurement is the best of several runs, after a warm-up. Lengauer and Tarjan's
+ * implementation recurses along paths in the graph, so run this with a large thread stack, e.g. -Xss16m.
+ */
+public class DominatorsBenchmark {
+
+  private static final int RUNS = 5;
+
+  private static final int[] SIZES = { 10000, 50000, 200000 };
+
+  public static void main(String[] args) throws IOException, ClassHierarchyException {
+    for (int size : SIZES) {
+      NumberedGraph<Integer> G = makeSyntheticCFG(new Random(size), size);
+      List<NumberedGraph<Integer>> graphs = new ArrayList<NumberedGraph<Integer>>();
+      graphs.add(G);
+      List<Integer> roots = new ArrayList<Integer>();
+      roots.add(0);
+      compare("synthetic " + size, graphs, roots);
+    }
+
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA,
+        CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    DefaultIRFactory factory = new DefaultIRFactory();
+    SSAOptions options = new SSAOptions();
+    List<SSACFG> cfgs = new ArrayList<SSACFG>();
+    List<ISSABasicBlock> entries = new ArrayList<ISSABasicBlock>();
+    SSACFG largest = null;
+    int blocks = 0;
+    for (IClass klass : cha) {
+      for (IMethod m : klass.getDeclaredMethods()) {
+        if (m.isAbstract() || m.isNative()) {
+          continue;
+        }
+        IR ir;
+        try {
+          ir = factory.makeIR(m, Everywhere.EVERYWHERE, options);
+        } catch (WalaRuntimeException e) {
+          // some of the test data is deliberately malformed
+          continue;
+        }
+        SSACFG cfg = ir.getControlFlowGraph();
+        cfgs.add(cfg);
+        entries.add(cfg.entry());
+        blocks += cfg.getNumberOfNodes();
+        if (largest == null || cfg.getNumberOfNodes() > largest.getNumberOfNodes()) {
+          largest = cfg;
+        }
+      }
+    }
+    compare("real, " + cfgs.size() + " CFGs, " + blocks + " blocks", cfgs, entries);
+    List<SSACFG> one = new ArrayList<SSACFG>();
+    one.add(largest);
+    List<ISSABasicBlock> oneEntry = new ArrayList<ISSABasicBlock>();
+    oneEntry.add(largest.entry());
+    compare("real, largest CFG, " + largest.getNumberOfNodes() + " blocks", one, oneEntry);
+  }
+
+  /**
+   * @return a random graph with n nodes, shaped like the CFG of generated code, whose entry is node 0
+   */
+  private static NumberedGraph<Integer> makeSyntheticCFG(Random r, int n) {
+    NumberedGraph<Integer> G = SlowSparseNumberedGraph.make();
+    for (int i = 0; i < n; i++) {
+      G.addNode(i);
+    }
+    int handlers = Math.max(1, n / 1000);
+    for (int i = 0; i < n - 1; i++) {
+      int kind = r.nextInt(20);
+      if (kind < 14) {
+        // fall through
+        G.addEdge(i, i + 1);
+      } else if (kind < 18) {
+        // if-then-else
+        G.addEdge(i, i + 1);
+        G.addEdge(i, Math.min(n - 1, i + 2 + r.nextInt(50)));
+      } else if (kind < 19) {
+        // loop back edge
+        G.addEdge(i, i + 1);
+        G.addEdge(i, Math.max(0, i - 1 - r.nextInt(200)));
+      } else {
+        // an exceptional edge to one of a few shared handlers near the end
+        G.addEdge(i, i + 1);
+        G.addEdge(i, n - 1 - r.nextInt(handlers));
+      }
+    }
+    return G;
+  }
+
+  private static <T> void compare(String name, List<? extends NumberedGraph<T>> graphs, List<T> roots) {
+    long lt = time(graphs, roots, Dominators.Algorithm.LENGAUER_TARJAN);
+    long nca = time(graphs, roots, Dominators.Algorithm.SEMI_NCA);
+    System.out.println(String.format("%-45s Lengauer-Tarjan %8.2f ms, semi-NCA %8.2f ms, speedup %5.2fx", name, lt / 1e6,
+        nca / 1e6, (double) lt / nca));
+  }
+
+  /**
+   * @return the least time, in ns, to compute the dominators of all the graphs with the algorithm
+   */
+  private static <T> long time(List<? extends NumberedGraph<T>> graphs, List<T> roots, Dominators.Algorithm algorithm) {
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run <= RUNS; run++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < graphs.size(); i++) {
+        Dominators.make(graphs.get(i), roots.get(i), algorithm);
+      }
+      long time = System.nanoTime() - start;
+      // the first run warms up
+      if (run > 0) {
+        best = Math.min(best, time);
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Properties;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.dataflow.IFDS.ICFGSupergraph;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.PartiallyBalancedTabulationSolver;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver.WorklistOrder;
+import com.ibm.wala.examples.analysis.dataflow.ValueFlowProblem;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.slicer.NormalStatement;
+import com.ibm.wala.ipa.slicer.PDG;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.io.CommandLine;
+
+/**
+ * Driver that compares the worklist orders of the tabulation solver on two workloads: a backward slice, over data
+ * dependences through locals, from every call in the program, and a taint problem, {@link ValueFlowProblem}, over the whole program. For
+ * each order, it reports the fastest of several runs, after a warm-up, and the number of nodes reached, which must be the same for
+ * every order.
+ */
+public class TabulationWorklistBenchmark {
+
+  /**
+   * Usage: TabulationWorklistBenchmark [-scopeFile file_path] [-mainClass class_name] [-runs n]
+   *
+   * By default, analyzes Lslice/TestInetAddr in the WALA test data, running each order 5 times.
+   */
+  public static void main(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    Properties p = CommandLine.parse(args);
+    String scopeFile = p.getProperty("scopeFile", TestConstants.WALA_TESTDATA);
+    String mainClass = p.getProperty("mainClass", "Lslice/TestInetAddr");
+    final int runs = Integer.parseInt(p.getProperty("runs", "5"));
+
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(scopeFile, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, mainClass);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    AnalysisCache cache = new AnalysisCache();
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, cache, cha, scope);
+    CallGraph cg = builder.makeCallGraph(options, null);
+    System.out.println(cg.getNumberOfNodes() + " call graph nodes");
+
+    final SDG sdg = new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.NO_BASE_NO_HEAP, ControlDependenceOptions.NONE);
+    final Collection<Statement> roots = makeRoots(cg);
+    System.out.println("slice from " + roots.size() + " calls");
+    for (WorklistOrder order : WorklistOrder.values()) {
+      long best = Long.MAX_VALUE;
+      int reached = 0;
+      for (int run = 0; run <= runs; run++) {
+        PartiallyBalancedTabulationSolver<Statement, PDG, Object> solver = PartiallyBalancedTabulationSolver
+            .createPartiallyBalancedTabulationSolver(new Slicer.SliceProblem(roots, sdg, true), null);
+        solver.setWorklistOrder(order);
+        long start = System.nanoTime();
+        reached = solver.solve().getSupergraphNodesReached().size();
+        long time = System.nanoTime() - start;
+        // the first run warms up
+        if (run > 0) {
+          best = Math.min(best, time);
+        }
+      }
+      report(order, reached, best);
+    }
+
+    ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph = ICFGSupergraph.make(cg, cache);
+    System.out.println("taint");
+    for (WorklistOrder order : WorklistOrder.values()) {
+      long best = Long.MAX_VALUE;
+      int reached = 0;
+      for (int run = 0; run <= runs; run++) {
+        TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver
+            .make(new ValueFlowProblem(supergraph, cg.getFakeRootNode(), cache));
+        solver.setWorklistOrder(order);
+        long start = System.nanoTime();
+        reached = solver.solve().getSupergraphNodesReached().size();
+        long time = System.nanoTime() - start;
+        if (run > 0) {
+          best = Math.min(best, time);
+        }
+      }
+      report(order, reached, best);
+    }
+  }
+
+  /**
+   * @return a statement for each call in every node of cg
+   */
+  private static Collection<Statement> makeRoots(CallGraph cg) {
+    Collection<Statement> result = HashSetFactory.make();
+    for (CGNode n : cg) {
+      IR ir = n.getIR();
+      if (ir == null) {
+        continue;
+      }
+      SSAInstruction[] instructions = ir.getInstructions();
+      for (int i = 0; i < instructions.length; i++) {
+        if (instructions[i] instanceof SSAAbstractInvokeInstruction) {
+          result.add(new NormalStatement(n, i));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void report(WorklistOrder order, int reached, long nanos) {
+    System.out.println(String.format("  %-10s %8d nodes reached %10.2f ms", order, reached, nanos / 1e6));
+  }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.drivers;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.dataflow.graph.BitVectorSolver;
+import com.ibm.wala.examples.analysis.dataflow.ContextInsensitiveReachingDefs;
+import com.ibm.wala.fixedpoint.impl.AbstractFixedPointSolver;
+import com.ibm.wala.fixedpoint.impl.BucketWorklist;
+import com.ibm.wala.fixedpoint.impl.IWorklist;
+import com.ibm.wala.fixedpoint.impl.LRFWorklist;
+import com.ibm.wala.fixedpoint.impl.WaveWorklist;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ipa.cfg.ExplodedInterproceduralCFG;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.Factory;
+import com.ibm.wala.util.io.CommandLine;
+
+/**
+ * Driver that compares the solver work list strategies on two workloads: 0-1-CFA pointer analysis, and context-insensitive
+ * interprocedural reaching definitions with a {@link BitVectorSolver}. For each strategy, it reports the number of statements
+ * evaluated and evaluations per second.
+ *
+ * The pointer analysis times include constraint generation, which is the same for every strategy.
+ */
+public class WorklistBenchmark {
+
+  private static final String[] NAMES = { "heap", "bucket", "lrf", "wave" };
+
+  @SuppressWarnings("unchecked")
+  private static final Factory<IWorklist>[] FACTORIES = new Factory[] { AbstractFixedPointSolver.DEFAULT_WORKLIST_FACTORY,
+      BucketWorklist.FACTORY, LRFWorklist.FACTORY, WaveWorklist.FACTORY };
+
+  /**
+   * Usage: WorklistBenchmark [-scopeFile file_path] [-runs n]
+   *
+   * Analyzes all application methods in the scope, by default the WALA test data. Each strategy is run n times (default 3) and the
+   * fastest run is reported.
+   */
+  public static void main(String[] args) throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    Properties p = CommandLine.parse(args);
+    String scopeFile = p.getProperty("scopeFile", TestConstants.WALA_TESTDATA);
+    int runs = Integer.parseInt(p.getProperty("runs", "3"));
+
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(scopeFile, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = new AllApplicationEntrypoints(scope, cha);
+
+    CallGraph cg = null;
+    System.out.println("pointer analysis");
+    for (int i = 0; i < FACTORIES.length; i++) {
+      long bestTime = Long.MAX_VALUE;
+      long evaluations = 0;
+      for (int r = 0; r < runs; r++) {
+        AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+        options.setWorklistFactory(FACTORIES[i]);
+        PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+        long start = System.nanoTime();
+        cg = builder.makeCallGraph(options, null);
+        bestTime = Math.min(bestTime, System.nanoTime() - start);
+        evaluations = builder.getPropagationSystem().getTotalEvaluations();
+      }
+      report(NAMES[i], evaluations, bestTime);
+    }
+
+    ExplodedInterproceduralCFG icfg = ExplodedInterproceduralCFG.make(cg);
+    System.out.println("reaching definitions");
+    for (int i = 0; i < FACTORIES.length; i++) {
+      long bestTime = Long.MAX_VALUE;
+      long evaluations = 0;
+      for (int r = 0; r < runs; r++) {
+        ContextInsensitiveReachingDefs reachingDefs = new ContextInsensitiveReachingDefs(icfg, cha);
+        long start = System.nanoTime();
+        BitVectorSolver<BasicBlockInContext<IExplodedBasicBlock>> solver = reachingDefs.analyze(FACTORIES[i]);
+        bestTime = Math.min(bestTime, System.nanoTime() - start);
+        evaluations = solver.getTotalEvaluations();
+      }
+      report(NAMES[i], evaluations, bestTime);
+    }
+  }
+
+  private static void report(String name, long evaluations, long nanos) {
+    double seconds = nanos / 1e9;
+    System.out.println(String.format("  %-8s %10d evaluations %8.0f ms %12.0f evaluations/s", name, evaluations, seconds * 1000,
+        evaluations / seconds));
+  }
+}
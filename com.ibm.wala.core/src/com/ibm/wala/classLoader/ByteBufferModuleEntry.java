@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.classLoader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ModuleEntry} whose contents can be read in place from a {@link ByteBuffer}, typically a slice of a memory-mapped file,
+ * rather than copied into the heap through {@link #getInputStream()}.
+ */
+public interface ByteBufferModuleEntry extends ModuleEntry {
+
+  /**
+   * @return a buffer holding the contents of this entry between its position and its limit, or null if the contents are only
+   *         available from {@link #getInputStream()}. The buffer must not be modified.
+   */
+  ByteBuffer getByteBuffer();
+
+}
@@ -38,6 +38,11 @@ public class ClassLoaderFactoryImpl implements ClassLoaderFactory {
    */
   final private HashMap<ClassLoaderReference, IClassLoader> map = HashMapFactory.make(3);
 
+  /**
+   * number of threads each {@link ClassLoaderImpl} uses to parse class files
+   */
+  private int numberOfThreads = 1;
+
   /**
    * @param exclusions
    *          A set of classes that class loaders should pretend don't exist.
@@ -112,10 +117,30 @@ public class ClassLoaderFactoryImpl implements ClassLoaderFactory {
           cl = new ClassLoaderImpl(classLoaderReference, scope.getArrayClassLoader(), parent, exclusions, cha);
         }
       }
+    if (cl instanceof ClassLoaderImpl) {
+      ((ClassLoaderImpl) cl).setNumberOfThreads(numberOfThreads);
+    }
     cl.init(scope.getModules(classLoaderReference));
     return cl;
   }
 
+  /**
+   * Set the number of threads that loaders made by this factory use to parse class files.
+   * 
+   * @see ClassLoaderImpl#setNumberOfThreads(int)
+   * @throws IllegalArgumentException if n < 1
+   */
+  public void setNumberOfThreads(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("invalid number of threads " + n);
+    }
+    numberOfThreads = n;
+  }
+
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+
   /**
    * A waring when we fail to load an appropriate class loader implementation
    */
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -24,6 +25,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
@@ -90,6 +95,16 @@ public class ClassLoaderImpl implements IClassLoader {
    */
   private final ArrayClassLoader arrayClassLoader;
 
+  /**
+   * number of threads used to parse class files in {@link #init(List)}
+   */
+  private int numberOfThreads = 1;
+
+  /**
+   * number of class files parsed by one task when parsing in parallel
+   */
+  private static final int PARSE_BATCH_SIZE = 64;
+
   /**
    * @param loader class loader reference identifying this loader
    * @param parent parent loader for delegation
@@ -291,7 +306,7 @@ public class ClassLoaderImpl implements IClassLoader {
           if (tmpKlass.getReference().getName().equals(T)) {
             // always used the reader based on the entry after this point,
             // so we can null out and re-read class file contents
-            loadedClasses.put(T, new ShrikeClass(entryReader, this, cha));
+            loadedClasses.put(T, reader == entryReader ? tmpKlass : new ShrikeClass(entryReader, this, cha));
             if (DEBUG_LEVEL > 1) {
               System.err.println("put " + T + " ");
             }
@@ -308,6 +323,104 @@ public class ClassLoaderImpl implements IClassLoader {
     }
   }
 
+  /**
+   * Set up the set of classes loaded by this object, parsing class files on {@link #getNumberOfThreads()} threads. The result,
+   * including warnings, is the same as calling {@link #loadAllClasses(Collection, Map)} on the entries in order: the first entry
+   * for a class name wins. Only the parsing runs in parallel; classes are added to this loader on the calling thread.
+   */
+  private void loadAllClassesInParallel(List<ModuleEntry> moduleEntries) {
+    final List<ModuleEntry> entries = new ArrayList<ModuleEntry>();
+    final List<String> classNames = new ArrayList<String>();
+    final List<TypeName> names = new ArrayList<TypeName>();
+    // the parent is fully initialized, so whether it defines a class does not depend on the order of loading
+    final boolean[] inParent = new boolean[moduleEntries.size()];
+    for (ModuleEntry entry : moduleEntries) {
+      if (!entry.isClassFile()) {
+        continue;
+      }
+      String className = entry.getClassName().replace('.', '/');
+      if (exclusions != null && exclusions.contains(className)) {
+        if (DEBUG_LEVEL > 0) {
+          System.err.println("Excluding " + className);
+        }
+        continue;
+      }
+      className = "L" + className;
+      TypeName T = TypeName.string2TypeName(className);
+      inParent[entries.size()] = parent != null && parent.lookupClass(T) != null;
+      entries.add(entry);
+      classNames.add(className);
+      names.add(T);
+    }
+
+    final Object[] parsed = new Object[entries.size()];
+    ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+    try {
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (int start = 0; start < entries.size(); start += PARSE_BATCH_SIZE) {
+        final int from = start;
+        final int to = Math.min(start + PARSE_BATCH_SIZE, entries.size());
+        results.add(pool.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int i = from; i < to; i++) {
+              if (inParent[i]) {
+                continue;
+              }
+              try {
+                parsed[i] = new ShrikeClass(new ShrikeClassReaderHandle(entries.get(i)), ClassLoaderImpl.this, cha);
+              } catch (InvalidClassFileException e) {
+                parsed[i] = e;
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> f : results) {
+        try {
+          f.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("interrupted while loading classes", e);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new RuntimeException(cause);
+          }
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    for (int i = 0; i < entries.size(); i++) {
+      TypeName T = names.get(i);
+      String className = classNames.get(i);
+      if (loadedClasses.get(T) != null || inParent[i]) {
+        Warnings.add(MultipleImplementationsWarning.create(className));
+      } else if (parsed[i] instanceof InvalidClassFileException) {
+        if (DEBUG_LEVEL > 0) {
+          System.err.println("Ignoring class " + className + " due to InvalidClassFileException");
+        }
+        Warnings.add(InvalidClassFile.create(className));
+      } else {
+        ShrikeClass klass = (ShrikeClass) parsed[i];
+        if (klass.getReference().getName().equals(T)) {
+          loadedClasses.put(T, klass);
+          if (DEBUG_LEVEL > 1) {
+            System.err.println("put " + T + " ");
+          }
+        } else {
+          Warnings.add(InvalidClassFile.create(className));
+        }
+      }
+    }
+  }
+
   private Map<String, Object> getAllClassAndSourceFileContents(byte[] jarFileContents, String fileName,
       Map<String, Map<String, Long>> entrySizes) {
     if (jarFileContents == null) {
@@ -439,6 +552,7 @@ public class ClassLoaderImpl implements IClassLoader {
     }
 
     // module are loaded according to the given order (same as in Java VM)
+    List<ModuleEntry> toParse = numberOfThreads > 1 ? new ArrayList<ModuleEntry>() : null;
     Set<ModuleEntry> classModuleEntries = HashSetFactory.make();
     Set<ModuleEntry> sourceModuleEntries = HashSetFactory.make();
     for (Iterator<Module> it = modules.iterator(); it.hasNext();) {
@@ -474,7 +588,11 @@ public class ClassLoaderImpl implements IClassLoader {
         // }
         // jarFileContents = null;
       }
-      loadAllClasses(classFiles, allClassAndSourceFileContents);
+      if (toParse != null) {
+        toParse.addAll(classFiles);
+      } else {
+        loadAllClasses(classFiles, allClassAndSourceFileContents);
+      }
       loadAllSources(sourceFiles);
       for (Iterator<ModuleEntry> it2 = classFiles.iterator(); it2.hasNext();) {
         ModuleEntry file = it2.next();
@@ -485,6 +603,26 @@ public class ClassLoaderImpl implements IClassLoader {
         sourceModuleEntries.add(file);
       }
     }
+    if (toParse != null) {
+      loadAllClassesInParallel(toParse);
+    }
+  }
+
+  /**
+   * Set the number of threads used to parse class files when this loader is initialized. With more than one thread, all class
+   * files are parsed on a thread pool; the classes loaded and the warnings reported are the same as with one.
+   * 
+   * @throws IllegalArgumentException if n < 1
+   */
+  public void setNumberOfThreads(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("invalid number of threads " + n);
+    }
+    numberOfThreads = n;
+  }
+
+  public int getNumberOfThreads() {
+    return numberOfThreads;
   }
 
   private Map<String, Map<String, Long>> getEntrySizes(Module module, String name) {
@@ -13,7 +13,11 @@ package com.ibm.wala.classLoader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 
 import com.ibm.wala.util.collections.NonNullSingletonIterator;
@@ -23,7 +27,19 @@ import com.ibm.wala.util.debug.UnimplementedError;
 /**
  * A module which is a wrapper around a file in the filesystem
  */
-public abstract class FileModule implements Module, ModuleEntry {
+public abstract class FileModule implements Module, ByteBufferModuleEntry {
+
+  /**
+   * Files smaller than this are read into a heap buffer rather than memory-mapped: a mapping takes at least a page, and the
+   * number of mappings a process may hold is limited.
+   */
+  private static final int MIN_MAPPED_SIZE = 4096;
+
+  /**
+   * set once mapping a file has failed, typically because the process holds too many mappings; from then on, files are read into
+   * the heap
+   */
+  private static volatile boolean mappingFailed = false;
 
   private final File file;
 
@@ -95,6 +111,40 @@ public abstract class FileModule implements Module, ModuleEntry {
     }
   }
 
+  /**
+   * @return the contents of the file, memory-mapped unless the file is small, or null if the file cannot be read
+   */
+  @Override
+  public ByteBuffer getByteBuffer() {
+    try {
+      RandomAccessFile f = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = f.getChannel();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+          return null;
+        }
+        if (size >= MIN_MAPPED_SIZE && !mappingFailed) {
+          try {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+          } catch (IOException e) {
+            mappingFailed = true;
+          }
+        }
+        ByteBuffer result = ByteBuffer.allocate((int) size);
+        while (result.hasRemaining() && channel.read(result) >= 0)
+          ;
+        result.flip();
+        return result;
+      } finally {
+        f.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
   /*
    * @see com.ibm.wala.classLoader.ModuleEntry#isModuleFile()
    */
@@ -12,6 +12,7 @@
 package com.ibm.wala.classLoader;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.jar.JarFile;
 
 import com.ibm.wala.util.debug.Assertions;
@@ -20,7 +21,7 @@ import com.ibm.wala.util.io.FileSuffixes;
 /**
  * An entry in a Jar file.
  */
-public class JarFileEntry implements ModuleEntry {
+public class JarFileEntry implements ByteBufferModuleEntry {
 
   private final String entryName;
 
@@ -63,6 +64,15 @@ public class JarFileEntry implements ModuleEntry {
     }
   }
 
+  /**
+   * @return the contents of this entry in a memory mapping of the jar file if it is stored uncompressed, else null
+   * @see JarFileModule#getStoredContents(String)
+   */
+  @Override
+  public ByteBuffer getByteBuffer() {
+    return jarFileModule.getStoredContents(entryName);
+  }
+
   /*
    * @see com.ibm.wala.classLoader.ModuleEntry#getSize()
    */
@@ -10,12 +10,20 @@
  *******************************************************************************/
 package com.ibm.wala.classLoader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -33,9 +41,16 @@ public class JarFileModule implements Module {
   private final JarFile file;
 
   /**
-   * For efficiency, try to cache the byte[] holding each ZipEntries contents; this will help avoid multiple unzipping
+   * For efficiency, try to cache the byte[] holding each ZipEntries contents; this will help avoid multiple unzipping. Concurrent,
+   * so that several threads can inflate entries at once.
    */
-  private final HashMap<ZipEntry, Object> cache = HashMapFactory.make();
+  private final ConcurrentHashMap<ZipEntry, Object> cache = new ConcurrentHashMap<ZipEntry, Object>();
+
+  /**
+   * The contents of the stored (uncompressed) entries of the jar file, as slices of a read-only memory mapping of the file;
+   * computed on demand, and empty if the file cannot be mapped.
+   */
+  private Map<String, ByteBuffer> storedEntries;
 
   public JarFileModule(JarFile f) {
     if (f == null) {
@@ -92,6 +107,10 @@ public class JarFileModule implements Module {
     return true;
   }
 
+  /**
+   * Safe to call from several threads. Entries are inflated outside any lock, so two threads asking for the same entry at once
+   * may both inflate it; either copy is cached.
+   */
   public byte[] getContents(ZipEntry entry) {
     byte[] b = (byte[]) CacheReference.get(cache.get(entry));
 
@@ -112,6 +131,98 @@ public class JarFileModule implements Module {
     }
   }
 
+  /**
+   * @return the contents of the named entry in place, as a slice of a memory mapping of the jar file, or null if the entry is
+   *         compressed (or the file could not be mapped), in which case the contents must be inflated from the {@link JarFile}
+   */
+  public synchronized ByteBuffer getStoredContents(String entryName) {
+    if (storedEntries == null) {
+      storedEntries = mapStoredEntries(new File(file.getName()));
+    }
+    ByteBuffer b = storedEntries.get(entryName);
+    return b == null ? null : b.duplicate();
+  }
+
+  /**
+   * Map the jar file and find its stored entries, from the central directory at the end of the file.
+   * 
+   * @return a mapping from entry name to the entry's contents; empty if the file has no stored entries, is too large to map, or
+   *         is not in a format read here (e.g. ZIP64)
+   */
+  private static Map<String, ByteBuffer> mapStoredEntries(File f) {
+    final int END_SIGNATURE = 0x06054b50;
+    final int CENTRAL_SIGNATURE = 0x02014b50;
+    final int LOCAL_SIGNATURE = 0x04034b50;
+    final int STORED = 0;
+    try {
+      ByteBuffer data;
+      RandomAccessFile raf = new RandomAccessFile(f, "r");
+      try {
+        long size = raf.length();
+        if (size < 22 || size > Integer.MAX_VALUE) {
+          return Collections.emptyMap();
+        }
+        data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } finally {
+        raf.close();
+      }
+      data.order(ByteOrder.LITTLE_ENDIAN);
+
+      // the end of central directory record is followed by a comment of at most 64k
+      int end = data.limit() - 22;
+      int stop = Math.max(0, end - 0xffff);
+      while (end >= stop && data.getInt(end) != END_SIGNATURE) {
+        end--;
+      }
+      if (end < stop) {
+        return Collections.emptyMap();
+      }
+      int count = data.getShort(end + 10) & 0xffff;
+      long dirOffset = data.getInt(end + 16) & 0xffffffffL;
+      if (count == 0xffff || dirOffset >= data.limit()) {
+        return Collections.emptyMap();
+      }
+
+      Map<String, ByteBuffer> result = HashMapFactory.make();
+      int p = (int) dirOffset;
+      for (int i = 0; i < count; i++) {
+        if (p + 46 > data.limit() || data.getInt(p) != CENTRAL_SIGNATURE) {
+          return Collections.emptyMap();
+        }
+        int method = data.getShort(p + 10) & 0xffff;
+        long compressedSize = data.getInt(p + 20) & 0xffffffffL;
+        long uncompressedSize = data.getInt(p + 24) & 0xffffffffL;
+        int nameLength = data.getShort(p + 28) & 0xffff;
+        int extraLength = data.getShort(p + 30) & 0xffff;
+        int commentLength = data.getShort(p + 32) & 0xffff;
+        long localOffset = data.getInt(p + 42) & 0xffffffffL;
+        if (method == STORED && compressedSize == uncompressedSize && localOffset + 30 <= data.limit()
+            && data.getInt((int) localOffset) == LOCAL_SIGNATURE) {
+          // the local header repeats the name, but may have a different extra field
+          long start = localOffset + 30 + (data.getShort((int) localOffset + 26) & 0xffff)
+              + (data.getShort((int) localOffset + 28) & 0xffff);
+          if (start + compressedSize <= data.limit()) {
+            byte[] name = new byte[nameLength];
+            ByteBuffer n = data.duplicate();
+            n.position(p + 46);
+            n.get(name);
+            ByteBuffer contents = data.duplicate();
+            contents.position((int) start);
+            contents.limit((int) (start + compressedSize));
+            result.put(new String(name, "UTF-8"), contents.slice());
+          }
+        }
+        p += 46 + nameLength + extraLength + commentLength;
+      }
+      return result;
+    } catch (UnsupportedEncodingException e) {
+      Assertions.UNREACHABLE();
+      return null;
+    } catch (IOException e) {
+      return Collections.emptyMap();
+    }
+  }
+
   public JarFile getJarFile() {
     return file;
   }
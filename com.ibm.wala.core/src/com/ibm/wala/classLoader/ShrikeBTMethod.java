@@ -66,9 +66,9 @@ public abstract class ShrikeBTMethod implements IMethod, BytecodeConstants {
   protected final IClass declaringClass;
 
   /**
-   * Canonical reference for this method
+   * Canonical reference for this method; computed lazily, perhaps by several threads building IRs at once
    */
-  private MethodReference methodReference;
+  private volatile MethodReference methodReference;
 
   // break these out to save some space; they're computed lazily.
   protected static class BytecodeInfo {
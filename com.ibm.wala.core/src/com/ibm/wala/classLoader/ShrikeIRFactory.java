@@ -92,7 +92,7 @@ public class ShrikeIRFactory implements IRFactory<IBytecodeMethod> {
 
       {
         SSABuilder builder = SSABuilder.make(method, newCfg, shrikeCFG, newInstrs, symbolTable, buildLocalMap, options
-            .getPiNodePolicy());
+            .getPiNodePolicy(), options.getDominatorsAlgorithm());
         builder.build();
         if (buildLocalMap)
           localMap = builder.getLocalMap();
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.intset.BasicNaturalRelation;
+import com.ibm.wala.util.intset.IBinaryNaturalRelation;
+import com.ibm.wala.util.intset.IntPair;
+
+/**
+ * An {@link ISummaryStore} for call graph nodes that keeps the summaries of library code in a file, so that runs of the same
+ * problem over different application code need not tabulate the library again.
+ *
+ * The summaries of a node are stored iff its method and every method it reaches in the call graph are loaded by the primordial
+ * or extension loader. Summaries are keyed by method and context, by the problem, and by the {@link IFactEncoding} that names
+ * their facts; a node's context is named by its toString(), so contexts should print the same way in every run. The file for a
+ * problem and encoding is read when the store is created, and written by {@link #save()}.
+ */
+public class FileSummaryStore implements ISummaryStore<CGNode> {
+
+  private static final int MAGIC = 0x57534d31;
+
+  private final File file;
+
+  private final String problemId;
+
+  private final IFactEncoding encoding;
+
+  private final CallGraph cg;
+
+  /**
+   * nodes that reach a node outside the library; computed on first use
+   */
+  private Set<CGNode> reachesApplication;
+
+  /**
+   * the stored summaries, by {@link #getKey(CGNode, int, String)}
+   */
+  private final Map<String, Summary> summaries = HashMapFactory.make();
+
+  private boolean changed = false;
+
+  /**
+   * A summary as it is stored: the facts reached at each exit, as (exits[i], facts[i]) pairs
+   */
+  private static class Summary {
+    final int[] exits;
+
+    final String[] facts;
+
+    Summary(int[] exits, String[] facts) {
+      this.exits = exits;
+      this.facts = facts;
+    }
+  }
+
+  /**
+   * @param directory where to keep the file of summaries
+   * @param problemId names the problem; it must change whenever the flow functions change
+   * @param encoding names the facts of the problem's domain
+   * @param cg the call graph whose nodes are the procedures
+   * @throws IOException if there is a file of summaries for the problem, and it cannot be read
+   * @throws IllegalArgumentException if problemId or the encoding's id are not made of letters, digits, '.', '_' and '-'
+   */
+  public FileSummaryStore(File directory, String problemId, IFactEncoding encoding, CallGraph cg) throws IOException {
+    if (!isSimpleName(problemId)) {
+      throw new IllegalArgumentException("invalid problemId: " + problemId);
+    }
+    if (encoding == null || !isSimpleName(encoding.getId())) {
+      throw new IllegalArgumentException("invalid encoding: " + encoding);
+    }
+    if (cg == null) {
+      throw new IllegalArgumentException("cg is null");
+    }
+    this.file = new File(directory, problemId + "-" + encoding.getId() + ".summaries");
+    this.problemId = problemId;
+    this.encoding = encoding;
+    this.cg = cg;
+    if (file.exists()) {
+      read();
+    }
+  }
+
+  private static boolean isSimpleName(String s) {
+    return s != null && s.length() > 0 && s.matches("[A-Za-z0-9._-]+");
+  }
+
+  @Override
+  public boolean isStored(CGNode p) {
+    if (!isLibrary(p)) {
+      return false;
+    }
+    if (reachesApplication == null) {
+      reachesApplication = computeNodesReachingApplication();
+    }
+    return !reachesApplication.contains(p);
+  }
+
+  private static boolean isLibrary(CGNode n) {
+    ClassLoaderReference loader = n.getMethod().getDeclaringClass().getClassLoader().getReference();
+    return loader.equals(ClassLoaderReference.Primordial) || loader.equals(ClassLoaderReference.Extension);
+  }
+
+  /**
+   * @return the nodes from which a node outside the library is reachable in the call graph
+   */
+  private Set<CGNode> computeNodesReachingApplication() {
+    Set<CGNode> result = HashSetFactory.make();
+    List<CGNode> worklist = new ArrayList<CGNode>();
+    for (CGNode n : cg) {
+      if (!isLibrary(n)) {
+        result.add(n);
+        worklist.add(n);
+      }
+    }
+    while (!worklist.isEmpty()) {
+      CGNode n = worklist.remove(worklist.size() - 1);
+      for (Iterator<CGNode> it = cg.getPredNodes(n); it.hasNext();) {
+        CGNode pred = it.next();
+        if (result.add(pred)) {
+          worklist.add(pred);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public IBinaryNaturalRelation getSummary(CGNode p, int s_p, int d1) {
+    String fact = encoding.encode(d1);
+    if (fact == null) {
+      return null;
+    }
+    Summary s = summaries.get(getKey(p, s_p, fact));
+    if (s == null) {
+      return null;
+    }
+    BasicNaturalRelation result = new BasicNaturalRelation(new byte[] { BasicNaturalRelation.SIMPLE_SPACE_STINGY },
+        BasicNaturalRelation.SIMPLE);
+    for (int i = 0; i < s.exits.length; i++) {
+      int d2 = encoding.decode(s.facts[i]);
+      if (d2 == -1) {
+        // this run does not have the fact, so the summary is of no use
+        return null;
+      }
+      result.add(s.exits[i], d2);
+    }
+    return result;
+  }
+
+  @Override
+  public void putSummary(CGNode p, int s_p, int d1, IBinaryNaturalRelation summary) {
+    String fact = encoding.encode(d1);
+    if (fact == null) {
+      return;
+    }
+    List<IntPair> edges = new ArrayList<IntPair>();
+    for (IntPair e : summary) {
+      edges.add(e);
+    }
+    int[] exits = new int[edges.size()];
+    String[] facts = new String[edges.size()];
+    for (int i = 0; i < exits.length; i++) {
+      exits[i] = edges.get(i).getX();
+      facts[i] = encoding.encode(edges.get(i).getY());
+      if (facts[i] == null) {
+        return;
+      }
+    }
+    summaries.put(getKey(p, s_p, fact), new Summary(exits, facts));
+    changed = true;
+  }
+
+  private static String getKey(CGNode p, int s_p, String fact) {
+    return getKey(p.getMethod().getReference() + " " + p.getContext(), s_p, fact);
+  }
+
+  private static String getKey(String method, int s_p, String fact) {
+    return method + "\n" + s_p + "\n" + fact;
+  }
+
+  /**
+   * @return the number of summaries stored
+   */
+  public int size() {
+    return summaries.size();
+  }
+
+  /**
+   * Write the summaries to the file, if any were added since it was read.
+   */
+  public void save() throws IOException {
+    if (!changed) {
+      return;
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeUTF(problemId);
+      out.writeUTF(encoding.getId());
+      out.writeInt(summaries.size());
+      for (Map.Entry<String, Summary> e : summaries.entrySet()) {
+        out.writeUTF(e.getKey());
+        Summary s = e.getValue();
+        out.writeInt(s.exits.length);
+        for (int i = 0; i < s.exits.length; i++) {
+          out.writeInt(s.exits[i]);
+          out.writeUTF(s.facts[i]);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    // replace the old file only once the new one is complete
+    if (file.exists() && !file.delete()) {
+      throw new IOException("could not replace " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("could not rename " + tmp + " to " + file);
+    }
+    changed = false;
+  }
+
+  private void read() throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC || !in.readUTF().equals(problemId) || !in.readUTF().equals(encoding.getId())) {
+        throw new IOException("not a summary file for " + problemId + " and " + encoding.getId() + ": " + file);
+      }
+      int count = in.readInt();
+      for (int k = 0; k < count; k++) {
+        String key = in.readUTF();
+        int n = in.readInt();
+        int[] exits = new int[n];
+        String[] facts = new String[n];
+        for (int i = 0; i < n; i++) {
+          exits[i] = in.readInt();
+          facts[i] = in.readUTF();
+        }
+        summaries.put(key, new Summary(exits, facts));
+      }
+    } finally {
+      in.close();
+    }
+  }
+}
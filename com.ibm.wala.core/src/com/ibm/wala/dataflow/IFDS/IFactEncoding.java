@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+/**
+ * Names the facts of a {@link TabulationDomain} by strings that mean the same thing from one run to the next, so that results
+ * can be kept on disk, e.g. by a {@link FileSummaryStore}.
+ */
+public interface IFactEncoding {
+
+  /**
+   * @return a name for this encoding; it must change whenever the meaning of the strings it produces changes
+   */
+  String getId();
+
+  /**
+   * @return the string naming fact d, or null if d cannot be named
+   */
+  String encode(int d);
+
+  /**
+   * @return the number of the fact named s, adding it to the domain if need be, or -1 if there is no such fact in this run
+   */
+  int decode(String s);
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+/**
+ * Tells a {@link TabulationSolver} which nodes can change which facts, so that it can propagate a fact past the nodes that
+ * cannot; see {@link TabulationSolver#setSparse(IFactRelevance)}.
+ *
+ * Facts are grouped in classes, such as the facts about one SSA value, that are changed by the same nodes.
+ *
+ * @param <T> type of node in the supergraph
+ */
+public interface IFactRelevance<T> {
+
+  /**
+   * @return the class of fact d, a non-negative number; or -1 if d must be propagated through every node
+   */
+  int getFactClass(int d);
+
+  /**
+   * @return false only if, for every normal successor m of n, the normal flow function from n to m is the identity on every fact
+   *         of class c
+   */
+  boolean isRelevant(T n, int c);
+}
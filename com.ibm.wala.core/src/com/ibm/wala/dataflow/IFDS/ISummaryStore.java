@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import com.ibm.wala.util.intset.IBinaryNaturalRelation;
+
+/**
+ * Summary edges of some procedures, kept from one {@link TabulationSolver} run for use by later runs of the same problem. When a
+ * {@link TabulationSolver} with a summary store reaches the entry of a stored procedure with a fact, it applies the stored summary
+ * instead of tabulating the procedure, if there is one; otherwise it tabulates the procedure and adds its summary to the store.
+ *
+ * Entries and exits are named by their local block numbers, as in {@link LocalSummaryEdges}.
+ *
+ * @param <P> type of a procedure
+ */
+public interface ISummaryStore<P> {
+
+  /**
+   * @return true iff summaries of p are read from and added to this store. The summaries of p must not depend on any procedure
+   *         whose summaries may change between runs.
+   */
+  boolean isStored(P p);
+
+  /**
+   * @param p a procedure for which {@link #isStored(Object)}
+   * @param s_p local block number of an entry of p
+   * @param d1 a fact at s_p
+   * @return the relation (x, d2) s.t. <s_p, d1> -> <x, d2> is a summary edge of p, for every exit x of p; or null if the summary
+   *         for d1 is not stored
+   */
+  IBinaryNaturalRelation getSummary(P p, int s_p, int d1);
+
+  /**
+   * Store the complete summary of p for a fact.
+   *
+   * @param p a procedure for which {@link #isStored(Object)}
+   * @param s_p local block number of an entry of p
+   * @param d1 a fact at s_p
+   * @param summary the relation (x, d2) s.t. <s_p, d1> -> <x, d2> is a summary edge of p
+   */
+  void putSummary(P p, int s_p, int d1, IBinaryNaturalRelation summary);
+
+}
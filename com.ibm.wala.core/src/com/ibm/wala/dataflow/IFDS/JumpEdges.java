@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.intset.BitVector;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.math.LongUtil;
+
+/**
+ * The edges a {@link TabulationSolver} follows to propagate facts sparsely: for each node and class of facts, the nodes at which a
+ * fact of that class reaching the node must next be recorded. A fact skips the nodes that are not relevant to its class, since the
+ * flow functions there are the identity on it. It stops at relevant nodes, and at calls, exits, entries and return sites, which
+ * the solver treats specially.
+ *
+ * Jump edges are computed for a node and class when first asked for, and kept.
+ *
+ * @param <T> type of node in the supergraph
+ */
+class JumpEdges<T> {
+
+  private final ISupergraph<T, ?> supergraph;
+
+  private final IFactRelevance<T> relevance;
+
+  /**
+   * the numbers of the nodes a fact jumps to, keyed by the node number and fact class packed in a long
+   */
+  private final Map<Long, IntSet> targets = HashMapFactory.make();
+
+  JumpEdges(ISupergraph<T, ?> supergraph, IFactRelevance<T> relevance) {
+    this.supergraph = supergraph;
+    this.relevance = relevance;
+  }
+
+  IFactRelevance<T> getRelevance() {
+    return relevance;
+  }
+
+  /**
+   * @return true iff a fact of class c reaching n must be recorded at n
+   */
+  boolean isStop(T n, int c) {
+    return c < 0 || supergraph.isCall(n) || supergraph.isExit(n) || supergraph.isEntry(n) || supergraph.isReturn(n)
+        || relevance.isRelevant(n, c);
+  }
+
+  /**
+   * @param n a node for which !{@link #isStop(Object, int)}
+   * @return the numbers of the stop nodes for class c reached from n through nodes that are not stops
+   */
+  IntSet getTargets(T n, int c) {
+    Long key = Long.valueOf(LongUtil.pack(supergraph.getNumber(n), c));
+    IntSet result = targets.get(key);
+    if (result == null) {
+      result = computeTargets(n, c);
+      targets.put(key, result);
+    }
+    return result;
+  }
+
+  private IntSet computeTargets(T n, int c) {
+    MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+    BitVector visited = new BitVector();
+    List<T> worklist = new ArrayList<T>();
+    visited.set(supergraph.getNumber(n));
+    worklist.add(n);
+    while (!worklist.isEmpty()) {
+      T m = worklist.remove(worklist.size() - 1);
+      for (Iterator<? extends T> it = supergraph.getSuccNodes(m); it.hasNext();) {
+        T s = it.next();
+        int number = supergraph.getNumber(s);
+        if (visited.get(number)) {
+          continue;
+        }
+        visited.set(number);
+        if (isStop(s, c)) {
+          result.add(number);
+        } else {
+          worklist.add(s);
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package com.ibm.wala.dataflow.IFDS;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Iterator;
 
 import com.ibm.wala.util.collections.SparseVector;
@@ -425,6 +428,63 @@ public class LocalPathEdges {
     return result;
   }
 
+  /**
+   * Write all the path edges to out, as (i, n, j) triples followed by -1, so that {@link #read(DataInput)} can restore them.
+   * 
+   * @return the number of path edges written
+   */
+  int write(DataOutput out) throws IOException {
+    int count = 0;
+    Iterator<IBinaryNaturalRelation> relations = paths.iterator();
+    for (IntIterator it = paths.iterateIndices(); it.hasNext();) {
+      int j = it.next();
+      for (IntPair p : relations.next()) {
+        writePathEdge(out, p.getY(), p.getX(), j);
+        count++;
+      }
+    }
+    Iterator<IntSet> sets = identityPaths.iterator();
+    for (IntIterator it = identityPaths.iterateIndices(); it.hasNext();) {
+      int i = it.next();
+      for (IntIterator ns = sets.next().intIterator(); ns.hasNext();) {
+        writePathEdge(out, i, ns.next(), i);
+        count++;
+      }
+    }
+    sets = zeroPaths.iterator();
+    for (IntIterator it = zeroPaths.iterateIndices(); it.hasNext();) {
+      int j = it.next();
+      for (IntIterator ns = sets.next().intIterator(); ns.hasNext();) {
+        writePathEdge(out, 0, ns.next(), j);
+        count++;
+      }
+    }
+    out.writeInt(-1);
+    return count;
+  }
+
+  private static void writePathEdge(DataOutput out, int i, int n, int j) throws IOException {
+    out.writeInt(i);
+    out.writeInt(n);
+    out.writeInt(j);
+  }
+
+  /**
+   * Add the path edges written by {@link #write(DataOutput)}.
+   * 
+   * @return the number of path edges read
+   */
+  int read(DataInput in) throws IOException {
+    int count = 0;
+    for (int i = in.readInt(); i != -1; i = in.readInt()) {
+      int n = in.readInt();
+      int j = in.readInt();
+      addPathEdge(i, n, j);
+      count++;
+    }
+    return count;
+  }
+
   /**
    * TODO: optimize this
    * 
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.graph.Graph;
+import com.ibm.wala.util.graph.traverse.Topological;
+import com.ibm.wala.util.intset.BitVector;
+
+/**
+ * A worklist that holds each path edge <s_p, d1> -> <n, d2> as four ints: the numbers of s_p and n in the supergraph, d1 and d2.
+ * {@link TabulationSolver} inserts edges without making {@link PathEdge}s; one is made only when an edge is taken.
+ *
+ * @param <T> type of node in the supergraph
+ */
+abstract class PackedWorklist<T> implements ITabulationWorklist<T> {
+
+  protected final ISupergraph<T, ?> supergraph;
+
+  PackedWorklist(ISupergraph<T, ?> supergraph) {
+    this.supergraph = supergraph;
+  }
+
+  /**
+   * Add the path edge <s_p, d1> -> <n, d2>
+   */
+  abstract void insert(T s_p, int d1, T n, int d2);
+
+  @Override
+  public void insert(PathEdge<T> elt) {
+    insert(elt.entry, elt.d1, elt.target, elt.d2);
+  }
+
+  /**
+   * Path edges in an int array used as a ring buffer, taken first in, first out or last in, first out
+   */
+  static class Queue<T> extends PackedWorklist<T> {
+
+    private final boolean lifo;
+
+    /**
+     * edge i, counting from head, is held in edges[4*((head+i) & mask)] ... edges[4*((head+i) & mask) + 3]
+     */
+    private int[] edges = new int[4 * 64];
+
+    private int mask = 63;
+
+    private int head = 0;
+
+    private int size = 0;
+
+    /**
+     * @param lifo if true, the last edge inserted is the first taken; otherwise the first inserted is
+     */
+    Queue(ISupergraph<T, ?> supergraph, boolean lifo) {
+      super(supergraph);
+      this.lifo = lifo;
+    }
+
+    @Override
+    void insert(T s_p, int d1, T n, int d2) {
+      insert(supergraph.getNumber(s_p), d1, supergraph.getNumber(n), d2);
+    }
+
+    void insert(int s_p, int d1, int n, int d2) {
+      if (size > mask) {
+        grow();
+      }
+      int i = 4 * ((head + size) & mask);
+      edges[i] = s_p;
+      edges[i + 1] = d1;
+      edges[i + 2] = n;
+      edges[i + 3] = d2;
+      size++;
+    }
+
+    private void grow() {
+      int[] old = edges;
+      edges = new int[2 * old.length];
+      for (int k = 0; k < size; k++) {
+        System.arraycopy(old, 4 * ((head + k) & mask), edges, 4 * k, 4);
+      }
+      head = 0;
+      mask = 2 * mask + 1;
+    }
+
+    @Override
+    public PathEdge<T> take() {
+      assert size > 0;
+      int i;
+      if (lifo) {
+        i = 4 * ((head + size - 1) & mask);
+      } else {
+        i = 4 * head;
+        head = (head + 1) & mask;
+      }
+      size--;
+      return PathEdge.createPathEdge(supergraph.getNode(edges[i]), edges[i + 1], supergraph.getNode(edges[i + 2]), edges[i + 3]);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return (lifo ? "LIFO" : "FIFO") + " worklist of " + size + " path edges";
+    }
+  }
+
+  /**
+   * Path edges grouped by the procedure of their target. Procedures are ranked in a topological order of the procedure graph,
+   * and edges in the procedure ranked last are taken first, first in, first out, so that callees are finished before their
+   * callers go on. Procedures in a cycle are ranked in an arbitrary order.
+   */
+  static class ByProcedure<T, P> extends PackedWorklist<T> {
+
+    private final ISupergraph<T, P> procedures;
+
+    /**
+     * the rank of each procedure
+     */
+    private final Map<P, Integer> ranks = HashMapFactory.make();
+
+    /**
+     * the edges whose targets are in the procedure of each rank
+     */
+    private final Queue<T>[] buckets;
+
+    /**
+     * the ranks whose buckets are not empty
+     */
+    private final BitVector nonEmpty = new BitVector();
+
+    /**
+     * the largest rank whose bucket is not empty, or -1
+     */
+    private int top = -1;
+
+    private int size = 0;
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    ByProcedure(ISupergraph<T, P> supergraph) {
+      super(supergraph);
+      this.procedures = supergraph;
+      rank(supergraph.getProcedureGraph());
+      this.buckets = new Queue[ranks.size() + 1];
+    }
+
+    private <Q extends P> void rank(Graph<Q> G) {
+      for (Iterator<Q> it = Topological.makeTopologicalIter(G); it.hasNext();) {
+        ranks.put(it.next(), ranks.size() + 1);
+      }
+    }
+
+    @Override
+    void insert(T s_p, int d1, T n, int d2) {
+      Integer r = ranks.get(procedures.getProcOf(n));
+      // procedures not in the procedure graph go last
+      int rank = r == null ? 0 : r.intValue();
+      Queue<T> bucket = buckets[rank];
+      if (bucket == null) {
+        bucket = new Queue<T>(supergraph, false);
+        buckets[rank] = bucket;
+      }
+      bucket.insert(supergraph.getNumber(s_p), d1, supergraph.getNumber(n), d2);
+      nonEmpty.set(rank);
+      if (rank > top) {
+        top = rank;
+      }
+      size++;
+    }
+
+    @Override
+    public PathEdge<T> take() {
+      assert size > 0;
+      Queue<T> bucket = buckets[top];
+      PathEdge<T> result = bucket.take();
+      if (bucket.size() == 0) {
+        nonEmpty.clear(top);
+        top = nonEmpty.max();
+      }
+      size--;
+      return result;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return "by-procedure worklist of " + size + " path edges";
+    }
+  }
+}
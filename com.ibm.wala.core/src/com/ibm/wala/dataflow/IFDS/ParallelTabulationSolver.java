@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.WorkStealingDriver;
+import com.ibm.wala.util.functions.VoidFunction;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * A {@link TabulationSolver} that processes path edges with several threads.
+ * <p>
+ * Path edges are processed by a {@link WorkStealingDriver}: the edges a thread discovers go on its own queue, and a thread whose
+ * queue is empty steals from the others. The threads are kept from one solve to the next, until {@link #shutdown()}. Path edges,
+ * summary edges and call flow edges are kept in synchronized versions of {@link LocalPathEdges}, {@link LocalSummaryEdges} and
+ * {@link CallFlowEdges}, and a path edge is put on a queue only by the thread that adds it. The result is the same as that of the sequential solver, since without a merge function the solution of an IFDS
+ * problem does not depend on the order in which path edges are processed.
+ * <p>
+ * Problems with a merge function are not supported. The flow functions, the domain and the supergraph are used by several threads
+ * at once, so they must be safe for concurrent reads. The solver fully builds the supergraph before starting, since an
+ * {@link ICFGSupergraph} otherwise adds nodes and edges as they are asked for.
+ *
+ * @param <T> type of node in the supergraph
+ * @param <P> type of a procedure (like a box in an RSM)
+ * @param <F> type of factoids propagated when solving this problem
+ */
+public class ParallelTabulationSolver<T, P, F> extends TabulationSolver<T, P, F> {
+
+  private final WorkStealingDriver<PathEdge<T>> driver;
+
+  private final ThreadLocal<PathEdge<T>> curPathEdge = new ThreadLocal<PathEdge<T>>();
+
+  private final ThreadLocal<PathEdge<T>> curSummaryEdge = new ThreadLocal<PathEdge<T>>();
+
+  /**
+   * @param p a description of the dataflow problem to solve
+   * @param nThreads the number of threads that process path edges
+   * @throws IllegalArgumentException if p is null, if p has a merge function, or if nThreads < 1
+   */
+  protected ParallelTabulationSolver(TabulationProblem<T, P, F> p, int nThreads, IProgressMonitor monitor) {
+    super(p, monitor, true);
+    if (p.getMergeFunction() != null) {
+      throw new IllegalArgumentException("merge functions are not supported");
+    }
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("invalid nThreads: " + nThreads);
+    }
+    this.driver = new WorkStealingDriver<PathEdge<T>>(nThreads, new VoidFunction<PathEdge<T>>() {
+      @Override
+      public void apply(PathEdge<T> edge) {
+        try {
+          processPathEdge(edge);
+        } finally {
+          setCurPathEdge(null);
+        }
+      }
+    });
+  }
+
+  /**
+   * @param p a description of the dataflow problem to solve
+   * @param nThreads the number of threads that process path edges
+   * @throws IllegalArgumentException if p is null, if p has a merge function, or if nThreads < 1
+   */
+  public static <T, P, F> ParallelTabulationSolver<T, P, F> make(TabulationProblem<T, P, F> p, int nThreads,
+      IProgressMonitor monitor) {
+    return new ParallelTabulationSolver<T, P, F>(p, nThreads, monitor);
+  }
+
+  /**
+   * @param p a description of the dataflow problem to solve
+   * @throws IllegalArgumentException if p is null or has a merge function
+   */
+  public static <T, P, F> ParallelTabulationSolver<T, P, F> make(TabulationProblem<T, P, F> p) {
+    return make(p, Runtime.getRuntime().availableProcessors(), null);
+  }
+
+  public int getNumberOfThreads() {
+    return driver.getNumberOfThreads();
+  }
+
+  /**
+   * Stop the threads kept for processing path edges. The solver can still be used; a later solve starts new threads.
+   */
+  public void shutdown() {
+    driver.shutdown();
+  }
+
+  @Override
+  protected void initialize() {
+    buildSupergraph();
+    super.initialize();
+  }
+
+  /**
+   * Ask for all the nodes and edges of the supergraph, so that the workers only read it.
+   */
+  private void buildSupergraph() {
+    for (Iterator<? extends T> it = supergraph.iterator(); it.hasNext();) {
+      T n = it.next();
+      supergraph.getSuccNodes(n);
+      supergraph.getPredNodes(n);
+    }
+  }
+
+  /**
+   * @throws UnsupportedOperationException if drop is true; path edges to every node are needed to avoid duplicate work across
+   *           threads
+   */
+  @Override
+  public void setDropIntermediatePathEdges(boolean drop) {
+    if (drop) {
+      throw new UnsupportedOperationException("cannot drop path edges when solving in parallel");
+    }
+  }
+
+  /**
+   * @throws UnsupportedOperationException unconditionally; path edges are shared by all threads
+   */
+  @Override
+  public void setPathEdgeSpill(File directory, long maxResidentPathEdges) {
+    throw new UnsupportedOperationException("cannot spill path edges when solving in parallel");
+  }
+
+  /**
+   * @throws UnsupportedOperationException if relevance is not null; jump edges are computed lazily and not shared safely
+   */
+  @Override
+  public void setSparse(IFactRelevance<T> relevance) {
+    if (relevance != null) {
+      throw new UnsupportedOperationException("cannot propagate sparsely when solving in parallel");
+    }
+  }
+
+  /**
+   * @throws UnsupportedOperationException unconditionally; the store is not safe for use by several threads
+   */
+  @Override
+  public void setSummaryStore(ISummaryStore<P> store) {
+    throw new UnsupportedOperationException("cannot use a summary store when solving in parallel");
+  }
+
+  /**
+   * @throws UnsupportedOperationException if order is not {@link WorklistOrder#PRIORITY}; each thread takes edges from its own
+   *           queue, first in, first out
+   */
+  @Override
+  public void setWorklistOrder(WorklistOrder order) {
+    if (order != WorklistOrder.PRIORITY) {
+      throw new UnsupportedOperationException("cannot choose the worklist order when solving in parallel");
+    }
+  }
+
+  @Override
+  public synchronized void addSeed(PathEdge<T> seed) {
+    super.addSeed(seed);
+  }
+
+  /**
+   * Process path edges until none is left. If the monitor is canceled, the path edges not yet processed stay on the queues, for a
+   * later solve.
+   */
+  @Override
+  protected void forwardTabulateSLRPs() throws CancelException {
+    driver.run(progressMonitor);
+  }
+
+  @Override
+  protected void addToWorkList(T s_p, int i, T n, int j) {
+    driver.add(PathEdge.createPathEdge(s_p, i, n, j));
+  }
+
+  /**
+   * Record the path edge and put it on a queue, unless some thread already did.
+   */
+  @Override
+  protected boolean propagate(T s_p, int i, T n, int j) {
+    int number = supergraph.getLocalBlockNumber(n);
+    assert number >= 0;
+    assert j >= 0;
+    ConcurrentLocalPathEdges pLocal = (ConcurrentLocalPathEdges) findOrCreateLocalPathEdges(s_p);
+    if (pLocal.addPathEdgeIfAbsent(i, number, j)) {
+      addToWorkList(s_p, i, n, j);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Create the summary edges of the callee before processing the call, so that they are read after the call flow edges are
+   * written. A thread adding a summary edge writes it and then reads the call flow edges, so one of the two threads sees the
+   * other's edge, and the summary edge is applied at the call.
+   */
+  @Override
+  protected void processParticularCallee(PathEdge<T> edge, int callNodeNum, Collection<T> allReturnSites, T calleeEntry) {
+    findOrCreateLocalSummaryEdges(supergraph.getProcOf(calleeEntry));
+    super.processParticularCallee(edge, callNodeNum, allReturnSites, calleeEntry);
+  }
+
+  /**
+   * The soft reference caches may be in use by other threads; leave them alone.
+   */
+  @Override
+  protected void tendToSoftCaches() {
+  }
+
+  @Override
+  protected LocalPathEdges makeLocalPathEdges() {
+    return new ConcurrentLocalPathEdges();
+  }
+
+  @Override
+  protected LocalSummaryEdges makeLocalSummaryEdges() {
+    return new ConcurrentLocalSummaryEdges();
+  }
+
+  @Override
+  protected CallFlowEdges makeCallFlowEdges() {
+    return new ConcurrentCallFlowEdges();
+  }
+
+  @Override
+  protected PathEdge<T> getCurPathEdge() {
+    return curPathEdge.get();
+  }
+
+  @Override
+  protected void setCurPathEdge(PathEdge<T> edge) {
+    curPathEdge.set(edge);
+  }
+
+  @Override
+  protected PathEdge<T> getCurSummaryEdge() {
+    return curSummaryEdge.get();
+  }
+
+  @Override
+  protected void setCurSummaryEdge(PathEdge<T> edge) {
+    curSummaryEdge.set(edge);
+  }
+
+  /**
+   * @return a copy of s, which may be changed by another thread once the lock is released, or null if s is null
+   */
+  private static IntSet copy(IntSet s) {
+    return s == null ? null : MutableSparseIntSet.make(s);
+  }
+
+  /**
+   * {@link LocalPathEdges} whose operations are atomic. Sets returned are not changed by later additions.
+   */
+  private static final class ConcurrentLocalPathEdges extends LocalPathEdges {
+
+    ConcurrentLocalPathEdges() {
+      super(false);
+    }
+
+    /**
+     * Record the path edge (s_p,i) -> (n,j) if it is not already recorded.
+     *
+     * @return true iff the edge was not already recorded
+     */
+    synchronized boolean addPathEdgeIfAbsent(int i, int n, int j) {
+      if (super.contains(i, n, j)) {
+        return false;
+      }
+      super.addPathEdge(i, n, j);
+      return true;
+    }
+
+    @Override
+    public synchronized void addPathEdge(int i, int n, int j) {
+      super.addPathEdge(i, n, j);
+    }
+
+    @Override
+    public synchronized IntSet getInverse(int n, int d2) {
+      return copy(super.getInverse(n, d2));
+    }
+
+    @Override
+    public synchronized boolean contains(int i, int n, int j) {
+      return super.contains(i, n, j);
+    }
+
+    @Override
+    public synchronized IntSet getReachable(int n, int d1) {
+      return copy(super.getReachable(n, d1));
+    }
+
+    @Override
+    public synchronized IntSet getReachable(int n) {
+      return super.getReachable(n);
+    }
+
+    @Override
+    public synchronized IntSet getReachedNodeNumbers() {
+      return super.getReachedNodeNumbers();
+    }
+  }
+
+  /**
+   * {@link LocalSummaryEdges} whose operations are atomic. Sets returned are not changed by later additions.
+   */
+  private static final class ConcurrentLocalSummaryEdges extends LocalSummaryEdges {
+
+    @Override
+    public synchronized void insertSummaryEdge(int s_p, int x, int d1, int d2) {
+      super.insertSummaryEdge(s_p, x, d1, d2);
+    }
+
+    @Override
+    public synchronized boolean contains(int s_p, int x, int d1, int d2) {
+      return super.contains(s_p, x, d1, d2);
+    }
+
+    @Override
+    public synchronized IntSet getSummaryEdges(int s_p, int x, int d1) {
+      return copy(super.getSummaryEdges(s_p, x, d1));
+    }
+
+    @Override
+    public synchronized IntSet getInvertedSummaryEdgesForTarget(int s_p, int x, int d2) {
+      return super.getInvertedSummaryEdgesForTarget(s_p, x, d2);
+    }
+  }
+
+  /**
+   * {@link CallFlowEdges} whose operations are atomic. Sets returned are not changed by later additions.
+   */
+  private static final class ConcurrentCallFlowEdges extends CallFlowEdges {
+
+    @Override
+    public synchronized void addCallEdge(int c, int d1, int d2) {
+      super.addCallEdge(c, d1, d2);
+    }
+
+    @Override
+    public synchronized IntSet getCallFlowSources(int c, int d2) {
+      return copy(super.getCallFlowSources(c, d2));
+    }
+
+    @Override
+    public synchronized IntSet getCallFlowSourceNodes(int d2) {
+      return copy(super.getCallFlowSourceNodes(d2));
+    }
+  }
+}
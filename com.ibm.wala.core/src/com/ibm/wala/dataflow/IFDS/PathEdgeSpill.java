@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.collections.HashMapFactory;
+
+/**
+ * Keeps the number of path edges a {@link TabulationSolver} holds in memory within a bound, by writing the {@link LocalPathEdges}
+ * of the least recently used procedure entries to a file, and reading them back when they are next used.
+ *
+ * Each entry keeps the extent of the file its table was last written to, so a table that is read back and later written again
+ * goes to the same place if it still fits. Otherwise the old extent is freed, and the table goes to the first free extent that
+ * is large enough, or at the end of the file. Once the bytes that hold no table in the file outnumber those that do, the file is
+ * rewritten with only the tables in it. The file is deleted by {@link #close()}, or when the VM exits.
+ *
+ * @param <T> type of node in the supergraph
+ */
+class PathEdgeSpill<T> {
+
+  /**
+   * when the bound is exceeded, tables are written out until this fraction of the bound is left, so that a table is not written
+   * out for every path edge added
+   */
+  private static final double LOW_WATER = 0.75;
+
+  /**
+   * the file is not rewritten while fewer than this many bytes in it are dead, so that a small file is not rewritten often
+   */
+  private static final long MIN_DEAD_BYTES = 1024;
+
+  private final File directory;
+
+  private final long maxResidentEdges;
+
+  /**
+   * the spill file, or null until a table is first written
+   */
+  private File file;
+
+  private RandomAccessFile data;
+
+  /**
+   * the offset and length in the file of each table written out
+   */
+  private final Map<T, long[]> spilled = HashMapFactory.make();
+
+  /**
+   * the offset and length of the extent of the file held by each entry whose table was written out, whether or not the table is
+   * still there; a table written out again reuses its entry's extent if it fits
+   */
+  private final Map<T, long[]> extents = HashMapFactory.make();
+
+  /**
+   * the extents of the file held by no entry, by offset; adjacent free extents are merged
+   */
+  private final TreeMap<Long, Long> free = new TreeMap<Long, Long>();
+
+  /**
+   * the length of the file
+   */
+  private long end = 0;
+
+  /**
+   * the number of bytes in the file that hold a table written out
+   */
+  private long liveBytes = 0;
+
+  /**
+   * the number of path edges in each table in memory, least recently used first
+   */
+  private final LinkedHashMap<T, int[]> resident = new LinkedHashMap<T, int[]>(16, 0.75f, true);
+
+  private long residentEdges = 0;
+
+  private int spills = 0;
+
+  private int reloads = 0;
+
+  /**
+   * @param directory where to create the spill file
+   * @param maxResidentEdges the number of path edges to keep in memory
+   */
+  PathEdgeSpill(File directory, long maxResidentEdges) {
+    this.directory = directory;
+    this.maxResidentEdges = maxResidentEdges;
+  }
+
+  /**
+   * Note that the table for s_p, which is in memory, is being used.
+   */
+  void touch(T s_p) {
+    if (resident.get(s_p) == null) {
+      resident.put(s_p, new int[1]);
+    }
+  }
+
+  /**
+   * Note that a path edge was added to the table for s_p, and write out other tables if there are too many path edges in memory.
+   */
+  void added(T s_p, Map<T, LocalPathEdges> tables) {
+    int[] count = resident.get(s_p);
+    if (count == null) {
+      count = new int[1];
+      resident.put(s_p, count);
+    }
+    count[0]++;
+    residentEdges++;
+    if (residentEdges > maxResidentEdges) {
+      spill(s_p, tables);
+    }
+  }
+
+  boolean isSpilled(T s_p) {
+    return spilled.containsKey(s_p);
+  }
+
+  /**
+   * @return the entries whose tables are in the file
+   */
+  Collection<T> getSpilledEntries() {
+    return spilled.keySet();
+  }
+
+  /**
+   * Read the table for s_p back into into, and put it in tables. This may write out other tables.
+   */
+  void reload(T s_p, LocalPathEdges into, Map<T, LocalPathEdges> tables) {
+    long[] where = spilled.remove(s_p);
+    assert where != null : "not spilled: " + s_p;
+    int count;
+    try {
+      count = into.read(new DataInputStream(new ByteArrayInputStream(read(where))));
+      // the table's extent stays with s_p, for when it is written out again
+      liveBytes -= where[1];
+      compactIfNeeded();
+    } catch (IOException e) {
+      throw new WalaRuntimeException("could not read path edges from " + file, e);
+    }
+    tables.put(s_p, into);
+    resident.put(s_p, new int[] { count });
+    residentEdges += count;
+    reloads++;
+    if (residentEdges > maxResidentEdges) {
+      spill(s_p, tables);
+    }
+  }
+
+  /**
+   * Write out the least recently used tables other than the one for keep.
+   */
+  private void spill(T keep, Map<T, LocalPathEdges> tables) {
+    long target = (long) (maxResidentEdges * LOW_WATER);
+    for (Iterator<Map.Entry<T, int[]>> it = resident.entrySet().iterator(); residentEdges > target && it.hasNext();) {
+      Map.Entry<T, int[]> e = it.next();
+      T s_p = e.getKey();
+      if (s_p.equals(keep)) {
+        continue;
+      }
+      LocalPathEdges table = tables.remove(s_p);
+      if (table != null) {
+        write(s_p, table);
+      }
+      residentEdges -= e.getValue()[0];
+      it.remove();
+    }
+  }
+
+  private void write(T s_p, LocalPathEdges table) {
+    try {
+      if (data == null) {
+        file = File.createTempFile("pathEdges", ".spill", directory);
+        file.deleteOnExit();
+        data = new RandomAccessFile(file, "rw");
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      table.write(new DataOutputStream(bytes));
+      long size = bytes.size();
+      long[] extent = extents.get(s_p);
+      if (extent == null || extent[1] < size) {
+        if (extent != null) {
+          release(extent[0], extent[1]);
+        }
+        extent = allocate(size);
+        extents.put(s_p, extent);
+      }
+      data.seek(extent[0]);
+      data.write(bytes.toByteArray());
+      spilled.put(s_p, new long[] { extent[0], size });
+      liveBytes += size;
+      spills++;
+      compactIfNeeded();
+    } catch (IOException e) {
+      throw new WalaRuntimeException("could not write path edges to " + directory, e);
+    }
+  }
+
+  private byte[] read(long[] where) throws IOException {
+    byte[] bytes = new byte[(int) where[1]];
+    data.seek(where[0]);
+    data.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * @return the offset and length of an extent of size bytes: the first free extent that is large enough, or else a new one at
+   *         the end of the file
+   */
+  private long[] allocate(long size) {
+    for (Map.Entry<Long, Long> e : free.entrySet()) {
+      long offset = e.getKey();
+      long length = e.getValue();
+      if (length >= size) {
+        free.remove(offset);
+        if (length > size) {
+          free.put(offset + size, length - size);
+        }
+        return new long[] { offset, size };
+      }
+    }
+    long offset = end;
+    end += size;
+    return new long[] { offset, size };
+  }
+
+  /**
+   * Free an extent, merging it with the free extents next to it, and shorten the file if it ends with a free extent.
+   */
+  private void release(long offset, long length) throws IOException {
+    Map.Entry<Long, Long> before = free.floorEntry(offset);
+    if (before != null && before.getKey() + before.getValue() == offset) {
+      free.remove(before.getKey());
+      offset = before.getKey();
+      length += before.getValue();
+    }
+    Long after = free.remove(offset + length);
+    if (after != null) {
+      length += after;
+    }
+    if (offset + length == end) {
+      end = offset;
+      data.setLength(end);
+    } else {
+      free.put(offset, length);
+    }
+  }
+
+  /**
+   * Rewrite the file with only the tables in it, if more of its bytes are dead than live.
+   */
+  private void compactIfNeeded() throws IOException {
+    long dead = end - liveBytes;
+    if (dead < MIN_DEAD_BYTES || dead <= liveBytes) {
+      return;
+    }
+    File newFile = File.createTempFile("pathEdges", ".spill", directory);
+    newFile.deleteOnExit();
+    RandomAccessFile newData = new RandomAccessFile(newFile, "rw");
+    long offset = 0;
+    try {
+      for (Map.Entry<T, long[]> e : spilled.entrySet()) {
+        long[] where = e.getValue();
+        newData.write(read(where));
+        where[0] = offset;
+        offset += where[1];
+      }
+    } catch (IOException e) {
+      newData.close();
+      newFile.delete();
+      throw e;
+    }
+    data.close();
+    file.delete();
+    file = newFile;
+    data = newData;
+    end = offset;
+    // the extents of the tables in memory are gone; they get new ones when written out again
+    extents.clear();
+    for (Map.Entry<T, long[]> e : spilled.entrySet()) {
+      extents.put(e.getKey(), new long[] { e.getValue()[0], e.getValue()[1] });
+    }
+    free.clear();
+  }
+
+  /**
+   * @return the number of times a table was written out
+   */
+  int getNumberOfSpills() {
+    return spills;
+  }
+
+  /**
+   * @return the number of times a table was read back
+   */
+  int getNumberOfReloads() {
+    return reloads;
+  }
+
+  /**
+   * @return the number of bytes in the file that hold a table written out
+   */
+  long getLiveBytes() {
+    return liveBytes;
+  }
+
+  /**
+   * @return the number of bytes in the file that hold no table: free extents, the extents of tables that were read back, and the
+   *         unused ends of extents reused by smaller tables
+   */
+  long getDeadBytes() {
+    return end - liveBytes;
+  }
+
+  /**
+   * Close and delete the spill file. The tables in it are lost.
+   */
+  void close() {
+    if (data != null) {
+      try {
+        data.close();
+      } catch (IOException e) {
+        // nothing more to do with it
+      }
+      file.delete();
+      data = null;
+      file = null;
+    }
+    spilled.clear();
+    extents.clear();
+    free.clear();
+    end = 0;
+    liveBytes = 0;
+  }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.analysis.ExplodedControlFlowGraph;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.intset.BitVector;
+
+/**
+ * {@link IFactRelevance} for problems over an {@link ICFGSupergraph} whose facts are about SSA values, such as taint analyses.
+ * The facts about value v form a class, and the only blocks relevant to it are those that define or use v, as given by the
+ * {@link DefUse} of the procedure. Since an SSA value is never redefined, a fact about it can jump from its definition straight to
+ * its uses.
+ */
+public abstract class SSAValueRelevance implements IFactRelevance<BasicBlockInContext<IExplodedBasicBlock>> {
+
+  private final AnalysisCache cache;
+
+  /**
+   * for each procedure, the local numbers of the blocks that define or use each value, by value number
+   */
+  private final Map<CGNode, Map<Integer, BitVector>> relevantBlocks = HashMapFactory.make();
+
+  /**
+   * for each procedure, the local numbers of the blocks holding the phi, pi and catch instructions, which have no index
+   */
+  private final Map<CGNode, Map<SSAInstruction, Integer>> unindexedBlocks = HashMapFactory.make();
+
+  /**
+   * @param cache the cache holding the IRs of the call graph nodes
+   */
+  public SSAValueRelevance(AnalysisCache cache) {
+    if (cache == null) {
+      throw new IllegalArgumentException("cache is null");
+    }
+    this.cache = cache;
+  }
+
+  /**
+   * @return the number of the SSA value fact d is about, or -1 if d is not about a value and must be propagated everywhere
+   */
+  protected abstract int getValueNumber(int d);
+
+  @Override
+  public int getFactClass(int d) {
+    return getValueNumber(d);
+  }
+
+  @Override
+  public boolean isRelevant(BasicBlockInContext<IExplodedBasicBlock> n, int v) {
+    CGNode node = n.getNode();
+    Map<Integer, BitVector> blocks = relevantBlocks.get(node);
+    if (blocks == null) {
+      blocks = HashMapFactory.make();
+      relevantBlocks.put(node, blocks);
+    }
+    BitVector relevant = blocks.get(v);
+    if (relevant == null) {
+      relevant = computeRelevantBlocks(node, v);
+      blocks.put(v, relevant);
+    }
+    return relevant.get(n.getDelegate().getNumber());
+  }
+
+  private BitVector computeRelevantBlocks(CGNode node, int v) {
+    BitVector result = new BitVector();
+    IR ir = node.getIR();
+    if (ir == null || v > ir.getSymbolTable().getMaxValueNumber()) {
+      return result;
+    }
+    DefUse du = cache.getSSACache().findOrCreateDU(ir, node.getContext());
+    SSAInstruction def = du.getDef(v);
+    if (def != null) {
+      setBlock(result, node, ir, def);
+    }
+    for (Iterator<SSAInstruction> it = du.getUses(v); it.hasNext();) {
+      setBlock(result, node, ir, it.next());
+    }
+    return result;
+  }
+
+  private void setBlock(BitVector result, CGNode node, IR ir, SSAInstruction s) {
+    if (s.iindex != SSAInstruction.NO_INDEX) {
+      result.set(s.iindex + 1);
+    } else {
+      Integer block = getUnindexedBlocks(node, ir).get(s);
+      if (block != null) {
+        result.set(block);
+      }
+    }
+  }
+
+  private Map<SSAInstruction, Integer> getUnindexedBlocks(CGNode node, IR ir) {
+    Map<SSAInstruction, Integer> result = unindexedBlocks.get(node);
+    if (result == null) {
+      result = HashMapFactory.make();
+      ExplodedControlFlowGraph cfg = ExplodedControlFlowGraph.make(ir);
+      for (IExplodedBasicBlock bb : cfg) {
+        for (Iterator<? extends SSAInstruction> it = bb.iteratePhis(); it.hasNext();) {
+          result.put(it.next(), bb.getNumber());
+        }
+        for (Iterator<? extends SSAInstruction> it = bb.iteratePis(); it.hasNext();) {
+          result.put(it.next(), bb.getNumber());
+        }
+        if (bb.isCatchBlock() && bb.getCatchInstruction() != null) {
+          result.put(bb.getCatchInstruction(), bb.getNumber());
+        }
+      }
+      unindexedBlocks.put(node, result);
+    }
+    return result;
+  }
+}
@@ -10,16 +10,20 @@
  *******************************************************************************/
 package com.ibm.wala.dataflow.IFDS;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.ibm.wala.cfg.IBasicBlock;
 import com.ibm.wala.util.CancelException;
@@ -33,6 +37,10 @@ import com.ibm.wala.util.collections.Iterator2Collection;
 import com.ibm.wala.util.collections.MapUtil;
 import com.ibm.wala.util.collections.ToStringComparator;
 import com.ibm.wala.util.heapTrace.HeapTracer;
+import com.ibm.wala.util.intset.BasicNaturalRelation;
+import com.ibm.wala.util.intset.BitVector;
+import com.ibm.wala.util.intset.IBinaryNaturalRelation;
+import com.ibm.wala.util.intset.IntPair;
 import com.ibm.wala.util.intset.IntIterator;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetAction;
@@ -116,7 +124,7 @@ public class TabulationSolver<T, P, F> {
    * Logically, this represents a set of edges (s_p,d_i) -> (n, d_j). The data structure is chosen to attempt to save space over
    * representing each edge explicitly.
    */
-  final private Map<T, LocalPathEdges> pathEdges = HashMapFactory.make();
+  final private Map<T, LocalPathEdges> pathEdges;
 
   /**
    * A map from Object (entry node in supergraph) -> CallFlowEdges.
@@ -124,13 +132,13 @@ public class TabulationSolver<T, P, F> {
    * Logically, this represents a set of edges (c,d_i) -> (s_p, d_j). The data structure is chosen to attempt to save space over
    * representing each edge explicitly.
    */
-  final private Map<T, CallFlowEdges> callFlowEdges = HashMapFactory.make();
+  final private Map<T, CallFlowEdges> callFlowEdges;
 
   /**
    * A map from Object (procedure) -> LocalSummaryEdges.
    * 
    */
-  final protected Map<P, LocalSummaryEdges> summaryEdges = HashMapFactory.make();
+  final protected Map<P, LocalSummaryEdges> summaryEdges;
 
   /**
    * the set of all {@link PathEdge}s that were used as seeds during the tabulation, grouped by procedure.
@@ -142,6 +150,71 @@ public class TabulationSolver<T, P, F> {
    */
   private final Set<PathEdge<T>> allSeeds = HashSetFactory.make();
 
+  /**
+   * if true, path edges are recorded only at the nodes that need them; see {@link #setDropIntermediatePathEdges(boolean)}
+   */
+  private boolean dropIntermediatePathEdges = false;
+
+  /**
+   * numbers of the nodes known to need their path edges recorded, when dropping intermediate path edges
+   */
+  private final BitVector recordedNodes = new BitVector();
+
+  /**
+   * numbers of the nodes known not to need their path edges recorded, when dropping intermediate path edges
+   */
+  private final BitVector droppedNodes = new BitVector();
+
+  /**
+   * writes the path edges of cold procedure entries to disk; null if they are all kept in memory
+   */
+  private PathEdgeSpill<T> spill;
+
+  /**
+   * the nodes facts jump to when propagated sparsely; null if facts are propagated through every node
+   */
+  private JumpEdges<T> jumpEdges;
+
+  /**
+   * summaries kept from earlier runs; null if none
+   */
+  private ISummaryStore<P> summaryStore;
+
+  /**
+   * for each entry of a stored procedure, the facts for which the summary was taken from {@link #summaryStore}
+   */
+  private final Map<T, MutableSparseIntSet> storedEntryFacts = HashMapFactory.make();
+
+  /**
+   * for each entry of a stored procedure, the facts for which the procedure was tabulated
+   */
+  private final Map<T, MutableSparseIntSet> tabulatedEntryFacts = HashMapFactory.make();
+
+  /**
+   * Orders in which the worklist hands out path edges; see {@link TabulationSolver#setWorklistOrder(WorklistOrder)}.
+   */
+  public static enum WorklistOrder {
+    /**
+     * by {@link TabulationDomain#hasPriorityOver(PathEdge, PathEdge)}, in a heap of {@link PathEdge}s
+     */
+    PRIORITY,
+    /**
+     * first in, first out
+     */
+    FIFO,
+    /**
+     * last in, first out
+     */
+    LIFO,
+    /**
+     * procedures later in a topological order of the procedure graph first, such as callees before their callers, and first in,
+     * first out within a procedure
+     */
+    PROCEDURE
+  }
+
+  private WorklistOrder worklistOrder = WorklistOrder.PRIORITY;
+
   /**
    * The worklist
    */
@@ -171,6 +244,17 @@ public class TabulationSolver<T, P, F> {
    * @throws IllegalArgumentException if p is null
    */
   protected TabulationSolver(TabulationProblem<T, P, F> p, IProgressMonitor monitor) {
+    this(p, monitor, false);
+  }
+
+  /**
+   * @param p a description of the dataflow problem to solve
+   * @param concurrent if true, the maps from entries and procedures to their edges are safe for use by several threads; the edge
+   *          sets themselves are whatever {@link #makeLocalPathEdges()}, {@link #makeLocalSummaryEdges()} and
+   *          {@link #makeCallFlowEdges()} return
+   * @throws IllegalArgumentException if p is null
+   */
+  protected TabulationSolver(TabulationProblem<T, P, F> p, IProgressMonitor monitor, boolean concurrent) {
     if (p == null) {
       throw new IllegalArgumentException("p is null");
     }
@@ -178,13 +262,53 @@ public class TabulationSolver<T, P, F> {
     this.flowFunctionMap = p.getFunctionMap();
     this.problem = p;
     this.progressMonitor = monitor;
+    if (concurrent) {
+      this.pathEdges = new ConcurrentHashMap<T, LocalPathEdges>();
+      this.callFlowEdges = new ConcurrentHashMap<T, CallFlowEdges>();
+      this.summaryEdges = new ConcurrentHashMap<P, LocalSummaryEdges>();
+    } else {
+      this.pathEdges = HashMapFactory.make();
+      this.callFlowEdges = HashMapFactory.make();
+      this.summaryEdges = HashMapFactory.make();
+    }
   }
 
   /**
-   * Subclasses can override this to plug in a different worklist implementation.
+   * Subclasses can override this to plug in a different worklist implementation. By default, this makes a worklist for the
+   * order set by {@link #setWorklistOrder(WorklistOrder)}.
    */
   protected ITabulationWorklist<T> makeWorklist() {
-    return new Worklist();
+    switch (worklistOrder) {
+    case FIFO:
+      return new PackedWorklist.Queue<T>(supergraph, false);
+    case LIFO:
+      return new PackedWorklist.Queue<T>(supergraph, true);
+    case PROCEDURE:
+      return new PackedWorklist.ByProcedure<T, P>(supergraph);
+    default:
+      return new Worklist();
+    }
+  }
+
+  /**
+   * Set the order in which path edges are processed. The result does not depend on the order, unless the problem has a merge
+   * function, but the time taken does. Except for {@link WorklistOrder#PRIORITY}, the worklist holds path edges packed in int
+   * arrays rather than as {@link PathEdge}s, and ignores the domain's priorities.
+   * 
+   * @throws IllegalStateException if tabulation has started
+   */
+  public void setWorklistOrder(WorklistOrder order) {
+    if (order == null) {
+      throw new IllegalArgumentException("order is null");
+    }
+    if (worklist != null) {
+      throw new IllegalStateException("tabulation has started");
+    }
+    this.worklistOrder = order;
+  }
+
+  public WorklistOrder getWorklistOrder() {
+    return worklistOrder;
   }
 
   /**
@@ -195,6 +319,135 @@ public class TabulationSolver<T, P, F> {
     return new TabulationSolver<T, P, F>(p, null);
   }
 
+  /**
+   * Record path edges only at the nodes where tabulation needs them: procedure entries and exits, calls, return sites, nodes with
+   * other than one predecessor, and nodes whose predecessor does not have a lower number, which cut every cycle. A path edge to any
+   * other node is processed, but not remembered; it is reached again only if its predecessor's fact is reached from two facts,
+   * and the duplicate stops at the next recorded node. {@link #getResult(Object)} recomputes the facts at such a node from its
+   * predecessor's, with the flow function between them, so the result does not change.
+   * 
+   * This saves the memory of most path edges in long straight-line code, such as the one-instruction blocks of an
+   * {@link ICFGSupergraph}, at the cost of recomputing flow functions when results are queried. It cannot be used with a merge
+   * function, which looks at the path edges to every node. {@link #getLocalPathEdges(Object)} returns only the recorded edges.
+   * 
+   * @throws IllegalArgumentException if drop is true and the problem has a merge function
+   * @throws IllegalStateException if tabulation has started
+   */
+  public void setDropIntermediatePathEdges(boolean drop) {
+    if (drop && problem.getMergeFunction() != null) {
+      throw new IllegalArgumentException("cannot drop path edges with a merge function");
+    }
+    if (!pathEdges.isEmpty()) {
+      throw new IllegalStateException("tabulation has started");
+    }
+    this.dropIntermediatePathEdges = drop;
+  }
+
+  public boolean isDropIntermediatePathEdges() {
+    return dropIntermediatePathEdges;
+  }
+
+  /**
+   * Keep at most about maxResidentPathEdges path edges in memory. When there are more, the path edges of the least recently used
+   * procedure entries are written to a file in directory, and read back when they are next needed, during tabulation or when
+   * results are queried. Summary edges and call flow edges are always kept in memory. Call {@link #closePathEdgeSpill()} when
+   * the results are no longer needed, to delete the file.
+   * 
+   * @param directory where to create the spill file; null for the default temporary-file directory
+   * @throws IllegalArgumentException if maxResidentPathEdges < 1
+   * @throws IllegalStateException if tabulation has started
+   */
+  public void setPathEdgeSpill(File directory, long maxResidentPathEdges) {
+    if (maxResidentPathEdges < 1) {
+      throw new IllegalArgumentException("invalid maxResidentPathEdges: " + maxResidentPathEdges);
+    }
+    if (!pathEdges.isEmpty()) {
+      throw new IllegalStateException("tabulation has started");
+    }
+    this.spill = new PathEdgeSpill<T>(directory, maxResidentPathEdges);
+  }
+
+  /**
+   * Delete the file holding path edges written out by {@link #setPathEdgeSpill(File, long)}. Results that depend on those
+   * path edges are no longer available.
+   */
+  public void closePathEdgeSpill() {
+    if (spill != null) {
+      for (T s_p : new ArrayList<T>(spill.getSpilledEntries())) {
+        pathEdges.remove(s_p);
+      }
+      spill.close();
+    }
+  }
+
+  /**
+   * @return the number of times the path edges of a procedure entry were written to disk
+   */
+  public int getNumberOfPathEdgeSpills() {
+    return spill == null ? 0 : spill.getNumberOfSpills();
+  }
+
+  /**
+   * @return the number of bytes of the spill file that hold path edges written to disk
+   */
+  public long getPathEdgeSpillLiveBytes() {
+    return spill == null ? 0 : spill.getLiveBytes();
+  }
+
+  /**
+   * @return the number of bytes of the spill file that hold no path edges, e.g. the space left by path edges read back into
+   *         memory; the file is rewritten when they outnumber the live bytes
+   */
+  public long getPathEdgeSpillDeadBytes() {
+    return spill == null ? 0 : spill.getDeadBytes();
+  }
+
+  /**
+   * Propagate facts sparsely: a fact reaching a node that is not relevant to its class, by relevance, jumps to the next nodes that
+   * are, skipping the nodes whose flow functions are the identity on it. Calls, exits, entries and return sites are never skipped,
+   * so summary edges are unchanged. {@link TabulationResult#getResult(Object)} holds a fact of class c only at the nodes where
+   * it is recorded: nodes relevant to c, calls, exits, entries, return sites and seeds.
+   * 
+   * @param relevance the classes of the facts and the nodes relevant to them, or null to propagate facts through every node
+   * @throws IllegalArgumentException if relevance is not null and the problem has a merge function
+   * @throws IllegalStateException if tabulation has started
+   */
+  public void setSparse(IFactRelevance<T> relevance) {
+    if (relevance != null && problem.getMergeFunction() != null) {
+      throw new IllegalArgumentException("cannot propagate sparsely with a merge function");
+    }
+    if (!pathEdges.isEmpty()) {
+      throw new IllegalStateException("tabulation has started");
+    }
+    this.jumpEdges = relevance == null ? null : new JumpEdges<T>(supergraph, relevance);
+  }
+
+  /**
+   * Apply summaries from store, and add to it, for the procedures it stores. The store's summaries must have come from runs of the
+   * same problem. The procedures whose summaries are applied are not tabulated, so {@link TabulationResult#getResult(Object)} is
+   * empty for their nodes and for nodes reached only through them. The summaries computed by this solver are added to the store
+   * when {@link #solve()} finishes.
+   * 
+   * @throws IllegalStateException if tabulation has started
+   */
+  public void setSummaryStore(ISummaryStore<P> store) {
+    if (!pathEdges.isEmpty()) {
+      throw new IllegalStateException("tabulation has started");
+    }
+    this.summaryStore = store;
+  }
+
+  /**
+   * @return the number of (entry, fact) pairs for which a summary was taken from the summary store
+   */
+  public int getNumberOfStoredSummariesApplied() {
+    int result = 0;
+    for (MutableSparseIntSet s : storedEntryFacts.values()) {
+      result += s.size();
+    }
+    return result;
+  }
+
   /**
    * Solve the dataflow problem.
    * 
@@ -205,6 +458,9 @@ public class TabulationSolver<T, P, F> {
     try {
       initialize();
       forwardTabulateSLRPs();
+      if (summaryStore != null) {
+        storeSummaries();
+      }
       Result r = new Result();
       return r;
     } catch (CancelException e) {
@@ -242,8 +498,8 @@ public class TabulationSolver<T, P, F> {
    * 
    * @throws CancelException
    */
-  private void forwardTabulateSLRPs() throws CancelException {
-    assert curPathEdge == null : "curPathEdge should not be non-null here";
+  protected void forwardTabulateSLRPs() throws CancelException {
+    assert getCurPathEdge() == null : "curPathEdge should not be non-null here";
     if (worklist == null) {
       worklist = makeWorklist();
     }
@@ -257,38 +513,45 @@ public class TabulationSolver<T, P, F> {
       }
 
       final PathEdge<T> edge = popFromWorkList();
-      if (DEBUG_LEVEL > 0) {
-        System.err.println("TABULATE " + edge);
-      }
-      curPathEdge = edge;
-      int j = merge(edge.entry, edge.d1, edge.target, edge.d2);
-      if (j == -1 && DEBUG_LEVEL > 0) {
-        System.err.println("merge -1: DROPPING");
-      }
-      if (j != -1) {
-        if (j != edge.d2) {
-          // this means that we don't want to push the edge. instead,
-          // we'll push the merged fact. a little tricky, but i think should
-          // work.
-          if (DEBUG_LEVEL > 0) {
-            System.err.println("propagating merged fact " + j);
-          }
-          propagate(edge.entry, edge.d1, edge.target, j);
+      processPathEdge(edge);
+    }
+    setCurPathEdge(null);
+  }
+
+  /**
+   * Handle one path edge taken from the worklist: lines [11 - 37] of the algorithm, after the merge.
+   */
+  protected void processPathEdge(final PathEdge<T> edge) {
+    if (DEBUG_LEVEL > 0) {
+      System.err.println("TABULATE " + edge);
+    }
+    setCurPathEdge(edge);
+    int j = merge(edge.entry, edge.d1, edge.target, edge.d2);
+    if (j == -1 && DEBUG_LEVEL > 0) {
+      System.err.println("merge -1: DROPPING");
+    }
+    if (j != -1) {
+      if (j != edge.d2) {
+        // this means that we don't want to push the edge. instead,
+        // we'll push the merged fact. a little tricky, but i think should
+        // work.
+        if (DEBUG_LEVEL > 0) {
+          System.err.println("propagating merged fact " + j);
+        }
+        propagate(edge.entry, edge.d1, edge.target, j);
+      } else {
+        if (supergraph.isCall(edge.target)) {
+          // [13]
+          processCall(edge);
+        } else if (supergraph.isExit(edge.target)) {
+          // [21]
+          processExit(edge);
         } else {
-          if (supergraph.isCall(edge.target)) {
-            // [13]
-            processCall(edge);
-          } else if (supergraph.isExit(edge.target)) {
-            // [21]
-            processExit(edge);
-          } else {
-            // [33]
-            processNormal(edge);
-          }
+          // [33]
+          processNormal(edge);
         }
       }
     }
-    curPathEdge = null;
   }
 
   /**
@@ -342,12 +605,32 @@ public class TabulationSolver<T, P, F> {
         System.err.println(" reached: " + D3);
       }
       if (D3 != null) {
-        D3.foreach(new IntSetAction() {
-          @Override
-          public void act(int d3) {
-            propagate(edge.entry, edge.d1, m, d3);
+        if (jumpEdges == null) {
+          D3.foreach(new IntSetAction() {
+            @Override
+            public void act(int d3) {
+              propagate(edge.entry, edge.d1, m, d3);
+            }
+          });
+        } else {
+          for (IntIterator it2 = D3.intIterator(); it2.hasNext();) {
+            propagateSparsely(edge.entry, edge.d1, m, it2.next());
           }
-        });
+        }
+      }
+    }
+  }
+
+  /**
+   * Propagate <s_p,i> -> <n, j>, or, if n is not relevant to j, to the nodes j jumps to from n
+   */
+  private void propagateSparsely(T s_p, int i, T n, int j) {
+    int c = jumpEdges.getRelevance().getFactClass(j);
+    if (jumpEdges.isStop(n, c)) {
+      propagate(s_p, i, n, j);
+    } else {
+      for (IntIterator it = jumpEdges.getTargets(n, c).intIterator(); it.hasNext();) {
+        propagate(s_p, i, supergraph.getNode(it.next()), j);
       }
     }
   }
@@ -369,8 +652,8 @@ public class TabulationSolver<T, P, F> {
     if (!summaries.contains(s_p_n, x, edge.d1, edge.d2)) {
       summaries.insertSummaryEdge(s_p_n, x, edge.d1, edge.d2);
     }
-    assert curSummaryEdge == null : "curSummaryEdge should be null here";
-    curSummaryEdge = edge;
+    assert getCurSummaryEdge() == null : "curSummaryEdge should be null here";
+    setCurSummaryEdge(edge);
 
     final CallFlowEdges callFlow = findOrCreateCallFlowEdges(edge.entry);
 
@@ -386,7 +669,7 @@ public class TabulationSolver<T, P, F> {
         propagateToReturnSites(edge, supergraph.getNode(globalC), D4);
       }
     }
-    curSummaryEdge = null;
+    setCurSummaryEdge(null);
   }
 
   /**
@@ -505,7 +788,7 @@ public class TabulationSolver<T, P, F> {
                 @Override
                 public void act(int d3) {
                   // set curPathEdge to be consistent with its setting in processCall() when applying a summary edge
-                  curPathEdge = PathEdge.createPathEdge(s_p, d3, c, d4);
+                  setCurPathEdge(PathEdge.createPathEdge(s_p, d3, c, d4));
                   propagate(s_p, d3, retSite, d5);
                 }
               });
@@ -524,7 +807,7 @@ public class TabulationSolver<T, P, F> {
    */
   protected IntSet getInversePathEdges(T s_p, T n, int d2) {
     int number = supergraph.getLocalBlockNumber(n);
-    LocalPathEdges lp = pathEdges.get(s_p);
+    LocalPathEdges lp = lookupLocalPathEdges(s_p);
     if (lp == null) {
       return null;
     }
@@ -642,7 +925,7 @@ public class TabulationSolver<T, P, F> {
       System.err.println(" reached: " + reached);
     }
     if (reached != null) {
-      final LocalSummaryEdges summaries = summaryEdges.get(supergraph.getProcOf(calleeEntry));
+      final boolean stored = summaryStore != null && summaryStore.isStored(supergraph.getProcOf(calleeEntry));
       final CallFlowEdges callFlow = findOrCreateCallFlowEdges(calleeEntry);
       final int s_p_num = supergraph.getLocalBlockNumber(calleeEntry);
 
@@ -650,13 +933,14 @@ public class TabulationSolver<T, P, F> {
         @Override
         public void act(final int d1) {
           // we get reuse if we _don't_ propagate a new fact to the callee entry
-          final boolean gotReuse = !propagate(calleeEntry, d1, calleeEntry, d1);
+          final boolean gotReuse = stored ? !enterStoredProcedure(calleeEntry, d1) : !propagate(calleeEntry, d1, calleeEntry, d1);
           recordCall(edge.target, calleeEntry, d1, gotReuse);
           // cache the fact that we've flowed <c, d2> -> <callee, d1> by a
           // call flow
           callFlow.addCallEdge(callNodeNum, edge.d2, d1);
           // handle summary edges now as well. this is different from the PoPL
           // 95 paper.
+          LocalSummaryEdges summaries = summaryEdges.get(supergraph.getProcOf(calleeEntry));
           if (summaries != null) {
             // for each exit from the callee
             P p = supergraph.getProcOf(calleeEntry);
@@ -679,8 +963,8 @@ public class TabulationSolver<T, P, F> {
                     reachedBySummary.foreach(new IntSetAction() {
                       @Override
                       public void act(int d2) {
-                        assert curSummaryEdge == null : "curSummaryEdge should be null here";
-                        curSummaryEdge = PathEdge.createPathEdge(calleeEntry, d1, exit, d2);
+                        assert getCurSummaryEdge() == null : "curSummaryEdge should be null here";
+                        setCurSummaryEdge(PathEdge.createPathEdge(calleeEntry, d1, exit, d2));
                         if (retf instanceof IBinaryReturnFlowFunction) {
                           final IntSet D5 = computeBinaryFlow(edge.d2, d2, (IBinaryReturnFlowFunction) retf);
                           if (D5 != null) {
@@ -702,7 +986,7 @@ public class TabulationSolver<T, P, F> {
                             });
                           }
                         }
-                        curSummaryEdge = null;
+                        setCurSummaryEdge(null);
                       }
                     });
                   }
@@ -715,6 +999,71 @@ public class TabulationSolver<T, P, F> {
     }
   }
 
+  /**
+   * Reach the entry s_p of a procedure in {@link #summaryStore} with fact d1: install the stored summary if there is one,
+   * otherwise tabulate the procedure.
+   * 
+   * @return true iff s_p was not reached with d1 before
+   */
+  private boolean enterStoredProcedure(T s_p, int d1) {
+    MutableSparseIntSet storedFacts = storedEntryFacts.get(s_p);
+    MutableSparseIntSet tabulatedFacts = tabulatedEntryFacts.get(s_p);
+    if (storedFacts == null) {
+      storedFacts = MutableSparseIntSet.makeEmpty();
+      storedEntryFacts.put(s_p, storedFacts);
+      tabulatedFacts = MutableSparseIntSet.makeEmpty();
+      tabulatedEntryFacts.put(s_p, tabulatedFacts);
+    }
+    if (storedFacts.contains(d1)) {
+      return false;
+    }
+    if (!tabulatedFacts.contains(d1)) {
+      P p = supergraph.getProcOf(s_p);
+      int s_p_num = supergraph.getLocalBlockNumber(s_p);
+      IBinaryNaturalRelation summary = summaryStore.getSummary(p, s_p_num, d1);
+      if (summary != null) {
+        LocalSummaryEdges summaries = findOrCreateLocalSummaryEdges(p);
+        for (IntPair e : summary) {
+          summaries.insertSummaryEdge(s_p_num, e.getX(), d1, e.getY());
+        }
+        storedFacts.add(d1);
+        return true;
+      }
+      tabulatedFacts.add(d1);
+    }
+    return propagate(s_p, d1, s_p, d1);
+  }
+
+  /**
+   * Add the summaries of the stored procedures that were tabulated to {@link #summaryStore}.
+   */
+  private void storeSummaries() {
+    for (Map.Entry<T, MutableSparseIntSet> e : tabulatedEntryFacts.entrySet()) {
+      T s_p = e.getKey();
+      P p = supergraph.getProcOf(s_p);
+      int s_p_num = supergraph.getLocalBlockNumber(s_p);
+      LocalSummaryEdges summaries = summaryEdges.get(p);
+      T[] exits = supergraph.getExitsForProcedure(p);
+      for (IntIterator it = e.getValue().intIterator(); it.hasNext();) {
+        int d1 = it.next();
+        BasicNaturalRelation summary = new BasicNaturalRelation(new byte[] { BasicNaturalRelation.SIMPLE_SPACE_STINGY },
+            BasicNaturalRelation.SIMPLE);
+        if (summaries != null) {
+          for (T exit : exits) {
+            int x = supergraph.getLocalBlockNumber(exit);
+            IntSet D2 = summaries.getSummaryEdges(s_p_num, x, d1);
+            if (D2 != null) {
+              for (IntIterator it2 = D2.intIterator(); it2.hasNext();) {
+                summary.add(x, it2.next());
+              }
+            }
+          }
+        }
+        summaryStore.putSummary(p, s_p_num, d1, summary);
+      }
+    }
+  }
+
   /**
    * invoked when a callee is processed with a particular entry fact
    * 
@@ -792,23 +1141,80 @@ public class TabulationSolver<T, P, F> {
     }
     assert number >= 0;
 
-    LocalPathEdges pLocal = findOrCreateLocalPathEdges(s_p);
-
     assert j >= 0;
 
+    if (dropIntermediatePathEdges && !recordsPathEdgesAt(n)) {
+      addToWorkList(s_p, i, n, j);
+      return true;
+    }
+
+    LocalPathEdges pLocal = findOrCreateLocalPathEdges(s_p);
+
     if (!pLocal.contains(i, number, j)) {
       if (DEBUG_LEVEL > 0) {
         System.err.println("propagate " + s_p + "  " + i + " " + number + " " + j);
       }
       pLocal.addPathEdge(i, number, j);
+      if (spill != null) {
+        spill.added(s_p, pathEdges);
+      }
       addToWorkList(s_p, i, n, j);
       return true;
     }
     return false;
   }
 
+  /**
+   * @return true iff path edges to n are recorded; see {@link #setDropIntermediatePathEdges(boolean)}
+   */
+  private boolean recordsPathEdgesAt(T n) {
+    if (!dropIntermediatePathEdges) {
+      return true;
+    }
+    int number = supergraph.getNumber(n);
+    if (recordedNodes.get(number)) {
+      return true;
+    } else if (droppedNodes.get(number)) {
+      return false;
+    }
+    boolean result = supergraph.isEntry(n) || supergraph.isExit(n) || supergraph.isCall(n) || supergraph.isReturn(n)
+        || supergraph.getPredNodeCount(n) != 1 || supergraph.getNumber(getPredecessor(n)) >= number;
+    if (result) {
+      recordedNodes.set(number);
+    } else {
+      droppedNodes.set(number);
+    }
+    return result;
+  }
+
+  /**
+   * @return the predecessor of a node with one predecessor
+   */
+  private T getPredecessor(T n) {
+    return supergraph.getPredNodes(n).next();
+  }
+
+  /**
+   * @return the recorded path edges from s_p, or null if there are none
+   */
   public LocalPathEdges getLocalPathEdges(T s_p) {
-    return pathEdges.get(s_p);
+    return lookupLocalPathEdges(s_p);
+  }
+
+  /**
+   * @return the path edges from s_p, read back from disk if they were written out, or null if there are none
+   */
+  private LocalPathEdges lookupLocalPathEdges(T s_p) {
+    LocalPathEdges result = pathEdges.get(s_p);
+    if (spill != null) {
+      if (result != null) {
+        spill.touch(s_p);
+      } else if (spill.isSpilled(s_p)) {
+        result = makeLocalPathEdges();
+        spill.reload(s_p, result, pathEdges);
+      }
+    }
+    return result;
   }
 
   /**
@@ -823,7 +1229,7 @@ public class TabulationSolver<T, P, F> {
     assert j >= 0;
     IMergeFunction alpha = problem.getMergeFunction();
     if (alpha != null) {
-      LocalPathEdges lp = pathEdges.get(s_p);
+      LocalPathEdges lp = lookupLocalPathEdges(s_p);
       IntSet preExistFacts = lp.getReachable(supergraph.getLocalBlockNumber(n), i);
       if (preExistFacts == null) {
         return j;
@@ -845,49 +1251,77 @@ public class TabulationSolver<T, P, F> {
     if (worklist == null) {
       worklist = makeWorklist();
     }
-    worklist.insert(PathEdge.createPathEdge(s_p, i, n, j));
+    if (worklist instanceof PackedWorklist) {
+      ((PackedWorklist<T>) worklist).insert(s_p, i, n, j);
+    } else {
+      worklist.insert(PathEdge.createPathEdge(s_p, i, n, j));
+    }
     if (DEBUG_LEVEL >= 3) {
       System.err.println("WORKLIST: " + worklist);
     }
   }
 
   protected LocalPathEdges findOrCreateLocalPathEdges(T s_p) {
-    LocalPathEdges result = pathEdges.get(s_p);
+    LocalPathEdges result = lookupLocalPathEdges(s_p);
     if (result == null) {
-      result = makeLocalPathEdges();
-      pathEdges.put(s_p, result);
+      result = putIfAbsent(pathEdges, s_p, makeLocalPathEdges());
+      if (spill != null) {
+        spill.touch(s_p);
+      }
     }
     return result;
   }
 
-  private LocalPathEdges makeLocalPathEdges() {
+  protected LocalPathEdges makeLocalPathEdges() {
     return problem.getMergeFunction() == null ? new LocalPathEdges(false) : new LocalPathEdges(true);
   }
 
   protected LocalSummaryEdges findOrCreateLocalSummaryEdges(P proc) {
     LocalSummaryEdges result = summaryEdges.get(proc);
     if (result == null) {
-      result = new LocalSummaryEdges();
-      summaryEdges.put(proc, result);
+      result = putIfAbsent(summaryEdges, proc, makeLocalSummaryEdges());
     }
     return result;
   }
 
+  protected LocalSummaryEdges makeLocalSummaryEdges() {
+    return new LocalSummaryEdges();
+  }
+
   protected CallFlowEdges findOrCreateCallFlowEdges(T s_p) {
     CallFlowEdges result = callFlowEdges.get(s_p);
     if (result == null) {
-      result = new CallFlowEdges();
-      callFlowEdges.put(s_p, result);
+      result = putIfAbsent(callFlowEdges, s_p, makeCallFlowEdges());
     }
     return result;
   }
 
+  protected CallFlowEdges makeCallFlowEdges() {
+    return new CallFlowEdges();
+  }
+
+  /**
+   * @return the value now mapped to key: value, or the value another thread put first if the map is concurrent
+   */
+  private static <K, V> V putIfAbsent(Map<K, V> map, K key, V value) {
+    if (map instanceof ConcurrentMap) {
+      V old = ((ConcurrentMap<K, V>) map).putIfAbsent(key, value);
+      return old == null ? value : old;
+    } else {
+      map.put(key, value);
+      return value;
+    }
+  }
+
   /**
    * get the bitvector of facts that hold at the entry to a given node
    * 
    * @return IntSet representing the bitvector
    */
   public IntSet getResult(T node) {
+    if (!recordsPathEdgesAt(node)) {
+      return getDroppedResult(node);
+    }
     P proc = supergraph.getProcOf(node);
     int n = supergraph.getLocalBlockNumber(node);
     T[] entries = supergraph.getEntriesForProcedure(proc);
@@ -902,7 +1336,7 @@ public class TabulationSolver<T, P, F> {
     }    
 
     for (T entry : allEntries){
-    	LocalPathEdges lp = pathEdges.get(entry);
+    	LocalPathEdges lp = lookupLocalPathEdges(entry);
     	if (lp != null) {
     		result.addAll(lp.getReachable(n));
     	}
@@ -911,6 +1345,47 @@ public class TabulationSolver<T, P, F> {
     return result;
   }
 
+  /**
+   * Compute the facts at a node whose path edges were not recorded, by applying the flow functions along the chain of single
+   * predecessors from the nearest node whose path edges were recorded.
+   */
+  private IntSet getDroppedResult(T node) {
+    List<T> chain = new ArrayList<T>();
+    Set<T> visited = HashSetFactory.make();
+    T n = node;
+    while (!recordsPathEdgesAt(n)) {
+      if (!visited.add(n)) {
+        // a cycle not reachable from any other node
+        return MutableSparseIntSet.makeEmpty();
+      }
+      chain.add(n);
+      n = getPredecessor(n);
+    }
+    IntSet facts = getResult(n);
+    for (int k = chain.size() - 1; k >= 0; k--) {
+      T m = chain.get(k);
+      IUnaryFlowFunction f = flowFunctionMap.getNormalFlowFunction(n, m);
+      MutableIntSet next = MutableSparseIntSet.makeEmpty();
+      for (IntIterator it = facts.intIterator(); it.hasNext();) {
+        IntSet D3 = computeFlow(it.next(), f);
+        if (D3 != null) {
+          next.addAll(D3);
+        }
+      }
+      Set<PathEdge<T>> pSeeds = seeds.get(supergraph.getProcOf(m));
+      if (pSeeds != null) {
+        for (PathEdge<T> seed : pSeeds) {
+          if (seed.target.equals(m)) {
+            next.add(seed.d2);
+          }
+        }
+      }
+      facts = next;
+      n = m;
+    }
+    return facts;
+  }
+
   public class Result implements TabulationResult<T, P, F> {
 
     /**
@@ -976,14 +1451,24 @@ public class TabulationSolver<T, P, F> {
     @Override
     public Collection<T> getSupergraphNodesReached() {
       Collection<T> result = HashSetFactory.make();
-      for (Entry<T, LocalPathEdges> e : pathEdges.entrySet()) {
-        T key = e.getKey();
+      List<T> entries = new ArrayList<T>(pathEdges.keySet());
+      if (spill != null) {
+        entries.addAll(spill.getSpilledEntries());
+      }
+      for (T key : entries) {
         P proc = supergraph.getProcOf(key);
-        IntSet reached = e.getValue().getReachedNodeNumbers();
+        IntSet reached = lookupLocalPathEdges(key).getReachedNodeNumbers();
         for (IntIterator ii = reached.intIterator(); ii.hasNext();) {
           result.add(supergraph.getLocalBlock(proc, ii.next()));
         }
       }
+      if (dropIntermediatePathEdges) {
+        for (T n : supergraph) {
+          if (!recordsPathEdgesAt(n) && !getResult(n).isEmpty()) {
+            result.add(n);
+          }
+        }
+      }
 
       return result;
     }
@@ -1062,7 +1547,15 @@ public class TabulationSolver<T, P, F> {
     return curPathEdge;
   }
 
+  protected void setCurPathEdge(PathEdge<T> edge) {
+    curPathEdge = edge;
+  }
+
   protected PathEdge<T> getCurSummaryEdge() {
     return curSummaryEdge;
   }
+
+  protected void setCurSummaryEdge(PathEdge<T> edge) {
+    curSummaryEdge = edge;
+  }
 }
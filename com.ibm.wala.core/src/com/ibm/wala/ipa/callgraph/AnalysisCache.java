@@ -12,12 +12,17 @@ package com.ibm.wala.ipa.callgraph;
 
 import com.ibm.wala.classLoader.IMethod;
 import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.ssa.DefUse;
 import com.ibm.wala.ssa.DefaultIRFactory;
 import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.IRFactory;
 import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSACacheStatistics;
 import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.Predicate;
 import com.ibm.wala.util.ref.ReferenceCleanser;
 
 /**
@@ -31,9 +36,19 @@ public class AnalysisCache {
   private final SSACache ssaCache;
 
   public AnalysisCache(IRFactory<IMethod> irFactory) {
+    this(new SSACache(irFactory));
+  }
+
+  /**
+   * Use a given cache of IRs, e.g. a {@link com.ibm.wala.ssa.BoundedSSACache}, in place of the default one.
+   */
+  public AnalysisCache(SSACache ssaCache) {
     super();
-    this.irFactory = irFactory;
-    this.ssaCache = new SSACache(irFactory);
+    if (ssaCache == null) {
+      throw new IllegalArgumentException("ssaCache is null");
+    }
+    this.irFactory = ssaCache.getFactory();
+    this.ssaCache = ssaCache;
     ReferenceCleanser.registerCache(this);
   }
 
@@ -53,6 +68,28 @@ public class AnalysisCache {
     return irFactory;
   }
 
+  /**
+   * @return the hit, miss, eviction and build time counters of the IR cache
+   */
+  public SSACacheStatistics getStatistics() {
+    return ssaCache.getStatistics();
+  }
+
+  /**
+   * Build the IRs and {@link DefUse}s of the concrete methods declared by classes of cha that filter accepts, using nThreads
+   * worker threads, so that a later analysis finds them here. Stops early if the cache has a bound on its size and is nearly
+   * full.
+   * 
+   * @param filter the methods to warm; null for all of them
+   * @param options the options the analysis will use, e.g. {@link AnalysisOptions#getSSAOptions()}
+   * @return the number of methods whose IRs are now cached
+   * @see IRPrewarmer
+   */
+  public int prewarm(IClassHierarchy cha, Predicate<IMethod> filter, SSAOptions options, int nThreads, IProgressMonitor monitor)
+      throws CancelException {
+    return new IRPrewarmer(ssaCache, options, nThreads).prewarm(cha, filter, monitor);
+  }
+
   /**
    * Find or create an IR for the method using the {@link Everywhere} context and default {@link SSAOptions}
    */
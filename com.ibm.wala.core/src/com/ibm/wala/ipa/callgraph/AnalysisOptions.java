@@ -12,9 +12,13 @@ package com.ibm.wala.ipa.callgraph;
 
 import com.ibm.wala.analysis.reflection.ReflectionContextInterpreter;
 import com.ibm.wala.analysis.reflection.ReflectionContextSelector;
+import com.ibm.wala.fixedpoint.impl.AbstractFixedPointSolver;
+import com.ibm.wala.fixedpoint.impl.IWorklist;
 import com.ibm.wala.ipa.callgraph.impl.ExplicitCallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationSystem;
 import com.ibm.wala.ipa.callgraph.propagation.ReflectionHandler;
 import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.collections.Factory;
 
 /**
  * Basic interface for options that control call graph generation.
@@ -175,6 +179,32 @@ public class AnalysisOptions {
    */
   private long maxNumberOfNodes = -1;
 
+  /**
+   * A tuning parameter; how many threads should the pointer analysis use to prepare newly discovered {@link CGNode}s (i.e. build
+   * their IR and def-use information) before generating constraints for them? The constraints themselves are always added in a
+   * single thread, in a fixed order, so the result does not depend on this value. By default this is <code>1</code>, which does
+   * all the work in the calling thread.
+   */
+  private int constraintGenerationThreads = 1;
+
+  /**
+   * Should the pointer analysis solver use difference propagation, i.e. have assignment and filter constraints propagate only the
+   * instance keys that their source points-to set has gained since they were last evaluated? This trades some extra space per
+   * points-to set for less work re-propagating known facts. See {@link PropagationSystem#setDifferencePropagation(boolean)}.
+   */
+  private boolean differencePropagation = false;
+
+  /**
+   * How should the pointer analysis solver find and collapse cycles of assignments between points-to sets? See
+   * {@link PropagationSystem.CycleDetection}.
+   */
+  private PropagationSystem.CycleDetection cycleDetection = PropagationSystem.CycleDetection.NONE;
+
+  /**
+   * Makes the work list used by the pointer analysis solver. See {@link AbstractFixedPointSolver#setWorklistFactory(Factory)}.
+   */
+  private Factory<IWorklist> worklistFactory = AbstractFixedPointSolver.DEFAULT_WORKLIST_FACTORY;
+
   // SJF: I'm not sure these factories and caches belong here.
   // TODO: figure out how to clean this up.
 
@@ -213,6 +243,73 @@ public class AnalysisOptions {
     this.maxNumberOfNodes = maxNumberOfNodes;
   }
 
+  /**
+   * @return the number of threads the pointer analysis uses to prepare newly discovered nodes for constraint generation
+   */
+  public int getConstraintGenerationThreads() {
+    return constraintGenerationThreads;
+  }
+
+  /**
+   * @param constraintGenerationThreads the number of threads the pointer analysis uses to prepare newly discovered nodes for
+   *          constraint generation; must be at least 1
+   */
+  public void setConstraintGenerationThreads(int constraintGenerationThreads) {
+    if (constraintGenerationThreads < 1) {
+      throw new IllegalArgumentException("constraintGenerationThreads must be >= 1: " + constraintGenerationThreads);
+    }
+    this.constraintGenerationThreads = constraintGenerationThreads;
+  }
+
+  /**
+   * @return true iff the pointer analysis solver should use difference propagation
+   */
+  public boolean getDifferencePropagation() {
+    return differencePropagation;
+  }
+
+  /**
+   * @param differencePropagation should the pointer analysis solver use difference propagation?
+   */
+  public void setDifferencePropagation(boolean differencePropagation) {
+    this.differencePropagation = differencePropagation;
+  }
+
+  /**
+   * @return how the pointer analysis solver finds and collapses cycles of assignments
+   */
+  public PropagationSystem.CycleDetection getCycleDetection() {
+    return cycleDetection;
+  }
+
+  /**
+   * @param cycleDetection how the pointer analysis solver should find and collapse cycles of assignments;
+   *          {@link PropagationSystem.CycleDetection#LAZY} is the recommended mode
+   */
+  public void setCycleDetection(PropagationSystem.CycleDetection cycleDetection) {
+    if (cycleDetection == null) {
+      throw new IllegalArgumentException("null cycleDetection");
+    }
+    this.cycleDetection = cycleDetection;
+  }
+
+  /**
+   * @return the factory for the work list used by the pointer analysis solver
+   */
+  public Factory<IWorklist> getWorklistFactory() {
+    return worklistFactory;
+  }
+
+  /**
+   * @param worklistFactory makes the work list used by the pointer analysis solver
+   */
+  public void setWorklistFactory(Factory<IWorklist> worklistFactory) {
+    if (worklistFactory == null) {
+      throw new IllegalArgumentException("null worklistFactory");
+    }
+    this.worklistFactory = worklistFactory;
+  }
+
 
   /**
    * @return Policy that determines methods called at call sites.
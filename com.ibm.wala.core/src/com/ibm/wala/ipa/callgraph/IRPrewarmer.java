@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.callgraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSACacheStatistics;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.MonitorUtil;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.Predicate;
+import com.ibm.wala.util.WalaRuntimeException;
+
+/**
+ * Builds the IRs and {@link com.ibm.wala.ssa.DefUse}s of many methods ahead of time, on a pool of worker threads, so that a later
+ * analysis, e.g. call graph construction, finds them in the {@link SSACache} instead of building them one at a time.
+ *
+ * IRs are built for the {@link Everywhere} context, which is the one used for all methods whose IRs do not depend on the context.
+ *
+ * If the cache has an explicit bound on its size, e.g. a {@link com.ibm.wala.ssa.BoundedSSACache}, warming stops once the cache
+ * is nearly full, rather than evicting the IRs it has just built to make room for more.
+ *
+ * @see AnalysisCache#prewarm(IClassHierarchy, Predicate, SSAOptions, int, IProgressMonitor)
+ */
+public class IRPrewarmer {
+
+  /**
+   * stop once the cache holds this fraction of its bound
+   */
+  private static final double FULL = 0.9;
+
+  private final SSACache cache;
+
+  private final SSAOptions options;
+
+  private final int nThreads;
+
+  /**
+   * number of methods whose IRs have been built or found
+   */
+  private final AtomicInteger warmed = new AtomicInteger();
+
+  /**
+   * set when the cache is full, so that the remaining tasks do nothing
+   */
+  private volatile boolean full;
+
+  /**
+   * @param cache where to put the IRs
+   * @param options options governing SSA construction
+   * @param nThreads the number of worker threads to use
+   * @throws IllegalArgumentException if nThreads is not positive
+   */
+  public IRPrewarmer(SSACache cache, SSAOptions options, int nThreads) {
+    if (cache == null) {
+      throw new IllegalArgumentException("cache is null");
+    }
+    if (options == null) {
+      throw new IllegalArgumentException("options is null");
+    }
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("invalid nThreads " + nThreads);
+    }
+    this.cache = cache;
+    this.options = options;
+    this.nThreads = nThreads;
+  }
+
+  /**
+   * @return the concrete methods declared by classes of cha that filter accepts
+   */
+  public static List<IMethod> collectMethods(IClassHierarchy cha, Predicate<IMethod> filter) {
+    if (cha == null) {
+      throw new IllegalArgumentException("cha is null");
+    }
+    List<IMethod> result = new ArrayList<IMethod>();
+    for (IClass klass : cha) {
+      for (IMethod m : klass.getDeclaredMethods()) {
+        if (!m.isAbstract() && !m.isNative() && (filter == null || filter.test(m))) {
+          result.add(m);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Build the IRs and {@link com.ibm.wala.ssa.DefUse}s of the concrete methods declared by classes of cha that filter accepts.
+   *
+   * @param filter the methods to warm; null for all of them
+   * @return the number of methods whose IRs are now in the cache
+   */
+  public int prewarm(IClassHierarchy cha, Predicate<IMethod> filter, IProgressMonitor monitor) throws CancelException {
+    return prewarm(collectMethods(cha, filter), monitor);
+  }
+
+  /**
+   * Build the IRs and {@link com.ibm.wala.ssa.DefUse}s of some methods. Methods whose bytecodes cannot be turned into IR are
+   * skipped; an analysis that needs them will report the problem when it asks for them.
+   *
+   * @return the number of methods whose IRs are now in the cache
+   */
+  public int prewarm(List<IMethod> methods, IProgressMonitor monitor) throws CancelException {
+    if (methods == null) {
+      throw new IllegalArgumentException("methods is null");
+    }
+    MonitorUtil.beginTask(monitor, "Building IRs", methods.size());
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, methods.size())));
+    try {
+      List<Future<?>> results = new ArrayList<Future<?>>(methods.size());
+      for (final IMethod m : methods) {
+        results.add(pool.submit(new Runnable() {
+          @Override
+          public void run() {
+            warm(m);
+          }
+        }));
+      }
+      // report progress from this thread only, since monitors need not be thread-safe
+      for (Future<?> f : results) {
+        MonitorUtil.throwExceptionIfCanceled(monitor);
+        try {
+          f.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw CancelException.make("interrupted while building IRs");
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new RuntimeException(cause);
+          }
+        }
+        MonitorUtil.worked(monitor, 1);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    MonitorUtil.done(monitor);
+    return warmed.get();
+  }
+
+  private void warm(IMethod m) {
+    if (full || Thread.currentThread().isInterrupted()) {
+      return;
+    }
+    if (isFull()) {
+      full = true;
+      return;
+    }
+    try {
+      cache.findOrCreateDU(m, Everywhere.EVERYWHERE, options);
+      warmed.incrementAndGet();
+    } catch (WalaRuntimeException e) {
+      // bad bytecodes; leave it to whoever needs this method
+    }
+  }
+
+  private boolean isFull() {
+    SSACacheStatistics stats = cache.getStatistics();
+    return stats.getMaxWeight() > 0 && stats.getWeight() >= FULL * stats.getMaxWeight();
+  }
+
+  /**
+   * @return true if warming stopped early because the cache was full
+   */
+  public boolean isCacheFull() {
+    return full;
+  }
+}
@@ -12,6 +12,7 @@ package com.ibm.wala.ipa.callgraph.propagation;
 
 import com.ibm.wala.fixpoint.UnaryOperator;
 import com.ibm.wala.fixpoint.UnaryStatement;
+import com.ibm.wala.util.intset.IntSet;
 
 /**
  * Corresponds to: "is a superset of". Used for assignment.
@@ -36,7 +37,13 @@ class AssignOperator extends UnaryOperator<PointsToSetVariable> implements IPoin
       S = S + "\nEVAL " + lhs + " " + rhs;
       System.err.println(S);
     }
-    boolean changed = lhs.addAll(rhs);
+    boolean changed;
+    if (rhs.isTrackingDelta()) {
+      IntSet newContents = rhs.getContentsNotSeenBy(lhs, false);
+      changed = newContents != null && lhs.addAll(newContents);
+    } else {
+      changed = lhs.addAll(rhs);
+    }
     if (PropagationCallGraphBuilder.DEBUG_ASSIGN) {
       System.err.println("RESULT " + lhs + (changed ? " (changed)" : ""));
     }
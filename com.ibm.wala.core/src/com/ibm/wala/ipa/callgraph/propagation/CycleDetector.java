@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.callgraph.propagation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Finds cycles of assignment equations in a {@link PropagationSystem} and collapses each one into a single points-to set
+ * variable. All the variables on such a cycle must have the same value at the fixed point, so iterating around the cycle is wasted
+ * work.
+ *
+ * Two strategies are supported, and may be combined:
+ * <ul>
+ * <li>lazy detection, after Hardekopf and Lin, "The Ant and the Grasshopper" (PLDI 2007): when evaluating an assignment l := r does
+ * not change l, and l and r hold the same value, the edge may lie on a cycle. We check, at most once per edge, by a depth-first
+ * search from l.
+ * <li>hybrid detection: before a round of solving, run an offline strongly-connected-components pass over all the assignment
+ * equations. In WALA, loads and stores are side effects which add assignment equations as the solver discovers them, so the
+ * offline pass must be repeated as the system grows. A pass costs time linear in the size of the whole assignment graph, so it is
+ * only repeated once the graph has grown by {@link #OFFLINE_GROWTH_FACTOR}; the total cost of all passes is then linear in the
+ * size of the final graph. Cycles formed between passes are left to lazy detection, if it is enabled.
+ * </ul>
+ *
+ * Only variables whose pointer keys can never acquire a type filter take part; see {@link #isCollapsible(PointsToSetVariable)}.
+ */
+class CycleDetector {
+
+  private static final boolean DEBUG = false;
+
+  /**
+   * number of lazy checks to accumulate before searching for cycles
+   */
+  private static final int LAZY_BATCH_SIZE = 64;
+
+  /**
+   * factor by which the number of implicit equations must grow before the offline pass is repeated
+   */
+  private static final int OFFLINE_GROWTH_FACTOR = 2;
+
+  private final PropagationSystem system;
+
+  private final boolean lazy;
+
+  private final boolean offline;
+
+  /**
+   * assignment edges (rhs, lhs), encoded as longs, for which a lazy check has already been triggered
+   */
+  private final HashSet<Long> checkedEdges = HashSetFactory.make();
+
+  /**
+   * roots of pending lazy searches
+   */
+  private final List<PointsToSetVariable> pendingChecks = new ArrayList<PointsToSetVariable>();
+
+  /**
+   * number of implicit equations in the flow graph when the offline pass last ran
+   */
+  private int lastOfflineSize = 0;
+
+  /**
+   * statistics
+   */
+  private int lazySearches = 0;
+
+  private int cyclesCollapsed = 0;
+
+  private int keysMergedLazily = 0;
+
+  private int keysMergedOffline = 0;
+
+  /**
+   * state for Tarjan's algorithm, indexed by graph node number. a node has been visited in the current search iff
+   * visitStamp[n] == stamp.
+   */
+  private int[] visitStamp = new int[0];
+
+  private int[] dfsIndex = new int[0];
+
+  private int[] lowLink = new int[0];
+
+  private boolean[] onStack = new boolean[0];
+
+  private int stamp = 0;
+
+  CycleDetector(PropagationSystem system, boolean lazy, boolean offline) {
+    this.system = system;
+    this.lazy = lazy;
+    this.offline = offline;
+  }
+
+  /**
+   * Variables on a cycle may only be merged if their pointer keys never carry a type filter: a filtered key must keep its own
+   * variable. Parameters are excluded because callers may later refer to them through filtered keys.
+   */
+  static boolean isCollapsible(PointsToSetVariable v) {
+    PointerKey k = v.getPointerKey();
+    if (k instanceof FilteredPointerKey) {
+      return false;
+    }
+    if (k instanceof LocalPointerKey && ((LocalPointerKey) k).isParameter()) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Called after the solver evaluates an assignment lhs := rhs which did not change lhs.
+   */
+  void assignmentUnchanged(PointsToSetVariable lhs, PointsToSetVariable rhs) {
+    if (!lazy || lhs == rhs || rhs.size() == 0) {
+      return;
+    }
+    if (!isCollapsible(lhs) || !isCollapsible(rhs)) {
+      return;
+    }
+    int l = lhs.getGraphNodeId();
+    int r = rhs.getGraphNodeId();
+    if (l < 0 || r < 0) {
+      return;
+    }
+    Long edge = Long.valueOf(((long) r << 32) | l);
+    if (checkedEdges.contains(edge)) {
+      return;
+    }
+    if (!lhs.sameValue(rhs)) {
+      return;
+    }
+    checkedEdges.add(edge);
+    pendingChecks.add(lhs);
+    if (pendingChecks.size() >= LAZY_BATCH_SIZE) {
+      processPendingChecks();
+    }
+  }
+
+  /**
+   * @return true iff there are lazy checks that have not been performed yet
+   */
+  boolean hasPendingChecks() {
+    return !pendingChecks.isEmpty();
+  }
+
+  /**
+   * Search for cycles through the roots of all pending lazy checks, and collapse any found.
+   */
+  void processPendingChecks() {
+    if (pendingChecks.isEmpty()) {
+      return;
+    }
+    List<MutableIntSet> sccs = new ArrayList<MutableIntSet>();
+    newSearch();
+    for (PointsToSetVariable v : pendingChecks) {
+      // v may have been merged into another variable by an earlier collapse
+      if (v.getGraphNodeId() >= 0 && system.getFlowGraph().getVariable(v.getGraphNodeId()) == v) {
+        lazySearches++;
+        search(v.getGraphNodeId(), sccs);
+      }
+    }
+    pendingChecks.clear();
+    keysMergedLazily += collapse(sccs);
+  }
+
+  /**
+   * Run the offline pass over the whole assignment graph, if it has grown by {@link #OFFLINE_GROWTH_FACTOR} since the last pass.
+   */
+  void offlinePass() {
+    if (!offline) {
+      return;
+    }
+    PropagationGraph flowGraph = system.getFlowGraph();
+    int size = flowGraph.getNumberOfImplicitStatements();
+    if (size == 0 || size < (long) OFFLINE_GROWTH_FACTOR * lastOfflineSize) {
+      return;
+    }
+    List<MutableIntSet> sccs = new ArrayList<MutableIntSet>();
+    newSearch();
+    int max = flowGraph.getMaxNodeNumber();
+    for (int i = 0; i <= max; i++) {
+      PointsToSetVariable v = flowGraph.getVariable(i);
+      if (v != null && visitStamp[i] != stamp && isCollapsible(v)) {
+        search(i, sccs);
+      }
+    }
+    keysMergedOffline += collapse(sccs);
+    lastOfflineSize = size;
+  }
+
+  /**
+   * @return the number of pointer keys merged into other keys' points-to sets
+   */
+  private int collapse(List<MutableIntSet> sccs) {
+    if (sccs.isEmpty()) {
+      return 0;
+    }
+    int merged = 0;
+    PropagationGraph flowGraph = system.getFlowGraph();
+    for (MutableIntSet scc : sccs) {
+      List<PointsToSetVariable> vars = new ArrayList<PointsToSetVariable>(scc.size());
+      for (IntIterator it = scc.intIterator(); it.hasNext();) {
+        vars.add(flowGraph.getVariable(it.next()));
+      }
+      if (DEBUG) {
+        System.err.println("collapse cycle " + vars);
+      }
+      merged += system.mergeVariables(vars);
+      cyclesCollapsed++;
+    }
+    system.purgeStaleStatements();
+    return merged;
+  }
+
+  private void newSearch() {
+    int size = system.getFlowGraph().getMaxNodeNumber() + 1;
+    if (visitStamp.length < size) {
+      int newSize = Math.max(size, 2 * visitStamp.length);
+      visitStamp = new int[newSize];
+      dfsIndex = new int[newSize];
+      lowLink = new int[newSize];
+      onStack = new boolean[newSize];
+      stamp = 0;
+    }
+    stamp++;
+  }
+
+  /**
+   * @return graph node numbers of the variables assigned from variable n
+   */
+  private IntSet successors(int n) {
+    PropagationGraph flowGraph = system.getFlowGraph();
+    return flowGraph.getImplicitDefs(PropagationCallGraphBuilder.assignOperator, flowGraph.getVariable(n));
+  }
+
+  /**
+   * Tarjan's strongly-connected-components algorithm from root, iteratively. Adds each component of size > 1 to result.
+   */
+  private void search(int root, List<MutableIntSet> result) {
+    if (visitStamp[root] == stamp) {
+      return;
+    }
+    PropagationGraph flowGraph = system.getFlowGraph();
+    int nextIndex = 0;
+    int[] sccStack = new int[16];
+    int sccTop = 0;
+    int[] callStack = new int[16];
+    IntIterator[] succStack = new IntIterator[16];
+    int callTop = 0;
+
+    // visit root
+    visitStamp[root] = stamp;
+    dfsIndex[root] = lowLink[root] = nextIndex++;
+    sccStack[sccTop++] = root;
+    onStack[root] = true;
+    callStack[callTop] = root;
+    IntSet s = successors(root);
+    succStack[callTop++] = (s == null) ? null : s.intIterator();
+
+    while (callTop > 0) {
+      int n = callStack[callTop - 1];
+      IntIterator it = succStack[callTop - 1];
+      if (it != null && it.hasNext()) {
+        int w = it.next();
+        if (w >= visitStamp.length) {
+          continue;
+        }
+        if (visitStamp[w] != stamp) {
+          PointsToSetVariable wv = flowGraph.getVariable(w);
+          if (wv == null || !isCollapsible(wv)) {
+            continue;
+          }
+          visitStamp[w] = stamp;
+          dfsIndex[w] = lowLink[w] = nextIndex++;
+          if (sccTop == sccStack.length) {
+            sccStack = grow(sccStack);
+          }
+          sccStack[sccTop++] = w;
+          onStack[w] = true;
+          if (callTop == callStack.length) {
+            callStack = grow(callStack);
+            IntIterator[] tmp = new IntIterator[2 * succStack.length];
+            System.arraycopy(succStack, 0, tmp, 0, succStack.length);
+            succStack = tmp;
+          }
+          callStack[callTop] = w;
+          IntSet ws = successors(w);
+          succStack[callTop++] = (ws == null) ? null : ws.intIterator();
+        } else if (onStack[w]) {
+          lowLink[n] = Math.min(lowLink[n], dfsIndex[w]);
+        }
+      } else {
+        // n is finished
+        callTop--;
+        succStack[callTop] = null;
+        if (callTop > 0) {
+          int parent = callStack[callTop - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[n]);
+        }
+        if (lowLink[n] == dfsIndex[n]) {
+          MutableIntSet scc = MutableSparseIntSet.makeEmpty();
+          int w;
+          do {
+            w = sccStack[--sccTop];
+            onStack[w] = false;
+            scc.add(w);
+          } while (w != n);
+          if (scc.size() > 1) {
+            result.add(scc);
+          }
+        }
+      }
+    }
+  }
+
+  private static int[] grow(int[] a) {
+    int[] result = new int[2 * a.length];
+    System.arraycopy(a, 0, result, 0, a.length);
+    return result;
+  }
+
+  int getLazySearches() {
+    return lazySearches;
+  }
+
+  int getCyclesCollapsed() {
+    return cyclesCollapsed;
+  }
+
+  int getKeysMergedLazily() {
+    return keysMergedLazily;
+  }
+
+  int getKeysMergedOffline() {
+    return keysMergedOffline;
+  }
+}
@@ -59,9 +59,16 @@ public interface FilteredPointerKey extends PointerKey {
       return (o instanceof SingleClassFilter) && ((SingleClassFilter) o).getConcreteType().equals(concreteType);
     }
 
+    /**
+     * @return the numbers of the instance keys that pass this filter, or null if there are none
+     */
+    public IntSet getInstanceKeys(PropagationSystem system) {
+      return system.getInstanceKeysForClass(concreteType);
+    }
+
     @Override
     public boolean addFiltered(PropagationSystem system, PointsToSetVariable L, PointsToSetVariable R) {
-      IntSet f = system.getInstanceKeysForClass(concreteType);
+      IntSet f = getInstanceKeys(system);
       return (f == null) ? false : L.addAllInIntersection(R, f);
     }
 
@@ -135,6 +142,13 @@ public interface FilteredPointerKey extends PointerKey {
       return f;
     }
     
+    /**
+     * @return the numbers of the instance keys that pass this filter, or null if there are none
+     */
+    public IntSet getInstanceKeys(PropagationSystem system) {
+      return bits(system);
+    }
+
     @Override
     public boolean addFiltered(PropagationSystem system, PointsToSetVariable L, PointsToSetVariable R) {
       IntSet f = bits(system);
@@ -191,9 +191,13 @@ public class PointsToMap {
   public void revertToPreTransitive() {
     for (Iterator it = iterateKeys(); it.hasNext();) {
       PointerKey key = (PointerKey) it.next();
-      if (!isTransitiveRoot(key) && !isImplicit(key) && !isUnified(key)) {
+      if (!isImplicit(key) && !isUnified(key)) {
         PointsToSetVariable v = getPointsToSet(key);
-        v.removeAll();
+        if (!isTransitiveRoot(key)) {
+          v.removeAll();
+        }
+        // the consumers of v may have been emptied
+        v.forgetConsumers();
       }
     }
   }
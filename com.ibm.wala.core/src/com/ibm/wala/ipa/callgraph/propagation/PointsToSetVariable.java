@@ -20,11 +20,19 @@ import com.ibm.wala.types.TypeReference;
 import com.ibm.wala.util.debug.Assertions;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetAction;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
 import com.ibm.wala.util.intset.MutableMapping;
 import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.SparseIntVector;
 
 /**
  * Representation of a points-to set during an andersen-style analysis.
+ * 
+ * When difference propagation is enabled (see {@link PropagationSystem#setDifferencePropagation(boolean)}), a variable also
+ * remembers which instance keys were added to it recently, and, for each assignment or filter edge leaving it, how much of its
+ * contents that edge has already propagated. The unary operators then only need to propagate the new part; see
+ * {@link #getContentsNotSeenBy(PointsToSetVariable, boolean)}.
  */
 public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
   /**
@@ -45,12 +53,32 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
 
   private PointerKey pointerKey;
 
+  /**
+   * state for difference propagation; null if it is disabled for this variable
+   */
+  private DeltaState delta;
+
+  /**
+   * makes the set holding this variable's value; null to use the default factory
+   */
+  private final MutableIntSetFactory<?> intSetFactory;
+
   public PointsToSetVariable(PointerKey key) {
+    this(key, null);
+  }
+
+  PointsToSetVariable(PointerKey key, MutableIntSetFactory<?> intSetFactory) {
     super();
     if (key == null) {
       throw new IllegalArgumentException("null key");
     }
     this.pointerKey = key;
+    this.intSetFactory = intSetFactory;
+  }
+
+  @Override
+  protected MutableIntSetFactory<?> getIntSetFactory() {
+    return (intSetFactory == null) ? super.getIntSetFactory() : intSetFactory;
   }
 
   public PointerKey getPointerKey() {
@@ -82,7 +110,16 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
       m.add(b);
       checkTypes(m);
     }
-    super.add(b);
+    if (delta != null) {
+      if (!contains(b)) {
+        super.add(b);
+        MutableSparseIntSet added = MutableSparseIntSet.createMutableSparseIntSet(1);
+        added.add(b);
+        recordAdded(added);
+      }
+    } else {
+      super.add(b);
+    }
     cryIfTooBig();
   }
 
@@ -91,11 +128,45 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
     if (PARANOID) {
       checkTypes(B);
     }
-    boolean v = super.addAll(B);
+    boolean v = (delta != null) ? addAllTracked(B, null) : super.addAll(B);
     cryIfTooBig();
     return v;
   }
 
+  @Override
+  public boolean addAllInIntersection(PointsToSetVariable other, IntSet filter) {
+    if (delta != null) {
+      return other.getValue() == null ? false : addAllTracked(other.getValue(), filter);
+    } else {
+      return super.addAllInIntersection(other, filter);
+    }
+  }
+
+  @Override
+  public boolean addAllInIntersection(IntSet other, IntSet filter) {
+    if (delta != null) {
+      return addAllTracked(other, filter);
+    } else {
+      return super.addAllInIntersection(other, filter);
+    }
+  }
+
+  @Override
+  public void copyState(PointsToSetVariable other) {
+    super.copyState(other);
+    if (delta != null) {
+      delta.reset();
+    }
+  }
+
+  @Override
+  public void removeAll() {
+    super.removeAll();
+    if (delta != null) {
+      delta.reset();
+    }
+  }
+
   /**
    * check that the types of all instance keys are assignable to declared type of pointer key
    */
@@ -143,12 +214,178 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
     if (PARANOID) {
       checkTypes(other.getValue());
     }
-    // TODO Auto-generated method stub
-    boolean v = super.addAll(other);
+    boolean v;
+    if (delta != null) {
+      v = other.getValue() == null ? false : addAllTracked(other.getValue(), null);
+    } else {
+      v = super.addAll(other);
+    }
     cryIfTooBig();
     return v;
   }
 
+  /**
+   * Add the elements of B (restricted to filter, if it is non-null) to this set, remembering which ones are new.
+   * 
+   * @return true iff the value of this changes
+   */
+  private boolean addAllTracked(IntSet B, final IntSet filter) {
+    final MutableIntSet V = getValue();
+    final MutableIntSet added = getIntSetFactory().make();
+    B.foreach(new IntSetAction() {
+      @Override
+      public void act(int x) {
+        if ((filter == null || filter.contains(x)) && (V == null || !V.contains(x))) {
+          added.add(x);
+        }
+      }
+    });
+    if (added.isEmpty()) {
+      return false;
+    }
+    super.addAll(added);
+    recordAdded(added);
+    return true;
+  }
+
+  private void recordAdded(IntSet added) {
+    delta.version++;
+    if (delta.recent == null || 2 * (delta.recent.size() + added.size()) > size()) {
+      // the recent additions are becoming a large part of the set. start over with just this batch, so the extra space
+      // stays proportional to the set; edges that are further behind will fall back to the full set.
+      delta.recent = getIntSetFactory().makeCopy(added);
+      delta.floor = delta.version - 1;
+    } else {
+      delta.recent.addAll(added);
+    }
+  }
+
+  /**
+   * Turn on difference propagation for this variable. Must be called before the variable acquires any contents.
+   */
+  void trackDelta(DeltaCounters counters) {
+    assert size() == 0;
+    delta = new DeltaState(counters);
+  }
+
+  /**
+   * @return true iff this variable does difference propagation
+   */
+  boolean isTrackingDelta() {
+    return delta != null;
+  }
+
+  /**
+   * Forget what all outgoing edges have propagated, so that each consumer next sees the full set. This must be called when
+   * variables that this one flows to lose their contents.
+   */
+  void forgetConsumers() {
+    if (delta != null) {
+      delta.assignSeen = null;
+      delta.filterSeen = null;
+    }
+  }
+
+  /**
+   * Find the contents of this variable that have not yet been propagated along an edge to a consumer, and record that the edge is
+   * now up to date. The result may include some elements that have already been propagated.
+   * 
+   * @param consumer the left-hand side of an assignment or filter edge using this variable
+   * @param filtered is the edge a filter edge? (assignment and filter edges between the same pair of variables are tracked
+   *          separately)
+   * @return a set holding (at least) the elements not yet propagated to consumer, or null if there are none
+   */
+  IntSet getContentsNotSeenBy(PointsToSetVariable consumer, boolean filtered) {
+    assert delta != null;
+    int id = consumer.getGraphNodeId();
+    if (id < 0) {
+      delta.counters.full++;
+      return getValue();
+    }
+    SparseIntVector seenVector = filtered ? delta.filterSeen : delta.assignSeen;
+    if (seenVector == null) {
+      seenVector = new SparseIntVector(0);
+      if (filtered) {
+        delta.filterSeen = seenVector;
+      } else {
+        delta.assignSeen = seenVector;
+      }
+    }
+    int seen = seenVector.get(id);
+    if (seen == delta.version) {
+      delta.counters.skipped++;
+      return null;
+    }
+    seenVector.set(id, delta.version);
+    if (seen >= delta.floor) {
+      delta.counters.delta++;
+      return delta.recent;
+    } else {
+      delta.counters.full++;
+      return getValue();
+    }
+  }
+
+  /**
+   * Counts of how consumers of points-to sets were evaluated under difference propagation
+   */
+  static final class DeltaCounters {
+    /**
+     * evaluations that found nothing new
+     */
+    long skipped;
+
+    /**
+     * evaluations that used only the recent additions
+     */
+    long delta;
+
+    /**
+     * evaluations that used the full set
+     */
+    long full;
+  }
+
+  /**
+   * Difference propagation state for one variable.
+   * 
+   * The variable's contents change in a sequence of versions, numbered from 1. {@link #recent} holds every element added in
+   * versions {@link #floor}+1 through {@link #version}. For each consumer, a seen vector records the version it last propagated;
+   * 0 means never.
+   */
+  private static final class DeltaState {
+    private final DeltaCounters counters;
+
+    private int version = 0;
+
+    private int floor = 0;
+
+    private MutableIntSet recent;
+
+    /**
+     * graph node id of consumer -> version last propagated along an assignment edge
+     */
+    private SparseIntVector assignSeen;
+
+    /**
+     * graph node id of consumer -> version last propagated along a filter edge
+     */
+    private SparseIntVector filterSeen;
+
+    DeltaState(DeltaCounters counters) {
+      this.counters = counters;
+    }
+
+    /**
+     * the contents were replaced wholesale; every consumer must look at the full set again
+     */
+    void reset() {
+      version++;
+      floor = version;
+      recent = null;
+    }
+  }
+
   /**
    * Use this with extreme care, to add filters to this variable..
    * 
@@ -10,9 +10,14 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph.propagation;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.ibm.wala.analysis.reflection.IllegalArgumentExceptionContext;
 import com.ibm.wala.classLoader.CallSiteReference;
@@ -40,6 +45,7 @@ import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
 import com.ibm.wala.types.TypeReference;
 import com.ibm.wala.util.CancelException;
 import com.ibm.wala.util.CancelRuntimeException;
+import com.ibm.wala.util.MonitorUtil;
 import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
 import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.debug.Assertions;
@@ -111,6 +117,17 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
    */
   private Set<CGNode> discoveredNodes = HashSetFactory.make();
 
+  /**
+   * A wave of discovered nodes smaller than this is not worth handing to worker threads
+   */
+  private final static int MIN_PARALLEL_WAVE = 16;
+
+  /**
+   * The worker threads that prepare discovered nodes, live for one {@link #makeCallGraph(AnalysisOptions, IProgressMonitor)} when
+   * {@link AnalysisOptions#getConstraintGenerationThreads()} is greater than 1, and null otherwise
+   */
+  private ExecutorService preparePool;
+
   /**
    * Set of calls (CallSiteReferences) that are created by entrypoints
    */
@@ -235,6 +252,9 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
     system.setMinEquationsForTopSort(options.getMinEquationsForTopSort());
     system.setTopologicalGrowthFactor(options.getTopologicalGrowthFactor());
     system.setMaxEvalBetweenTopo(options.getMaxEvalBetweenTopo());
+    system.setDifferencePropagation(options.getDifferencePropagation());
+    system.setCycleDetection(options.getCycleDetection());
+    system.setWorklistFactory(options.getWorklistFactory());
 
     discoveredNodes = HashSetFactory.make();
     discoveredNodes.add(callGraph.getFakeRootNode());
@@ -265,6 +285,9 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
     customInit();
 
     solver = makeSolver();
+    if (options.getConstraintGenerationThreads() > 1) {
+      preparePool = Executors.newFixedThreadPool(options.getConstraintGenerationThreads());
+    }
     try {
       solver.solve(monitor);
     } catch (CancelException e) {
@@ -275,6 +298,11 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
       CallGraphBuilderCancelException c = CallGraphBuilderCancelException.createCallGraphBuilderCancelException(e, callGraph,
           system.extractPointerAnalysis(this));
       throw c;
+    } finally {
+      if (preparePool != null) {
+        preparePool.shutdownNow();
+        preparePool = null;
+      }
     }
 
     return callGraph;
@@ -329,16 +357,70 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
   protected boolean addConstraintsFromNewNodes(IProgressMonitor monitor) throws CancelException {
     boolean result = false;
     while (!discoveredNodes.isEmpty()) {
-      Iterator<CGNode> it = discoveredNodes.iterator();
+      // fix the order of this wave once, so the parallel preparation below cannot affect the order in which constraints are added
+      List<CGNode> wave = new ArrayList<CGNode>(discoveredNodes);
       discoveredNodes = HashSetFactory.make();
-      while (it.hasNext()) {
-        CGNode n = it.next();
+      if (preparePool != null && wave.size() >= MIN_PARALLEL_WAVE) {
+        prepareNodes(wave, monitor);
+      }
+      for (CGNode n : wave) {
         result |= addConstraintsFromNode(n, monitor);
       }
     }
     return result;
   }
 
+  /**
+   * Call {@link #prepareNode(CGNode)} on each of a batch of nodes, using the pool of worker threads.
+   * 
+   * @param nodes the nodes to prepare
+   */
+  private void prepareNodes(List<CGNode> nodes, IProgressMonitor monitor) throws CancelException {
+    List<Future<?>> results = new ArrayList<Future<?>>(nodes.size());
+    try {
+      for (final CGNode n : nodes) {
+        results.add(preparePool.submit(new Runnable() {
+          @Override
+          public void run() {
+            prepareNode(n);
+          }
+        }));
+      }
+      for (Future<?> f : results) {
+        MonitorUtil.throwExceptionIfCanceled(monitor);
+        try {
+          f.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw CancelException.make("interrupted while preparing nodes");
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new RuntimeException(cause);
+          }
+        }
+      }
+    } finally {
+      // on failure or cancellation, don't leave work running into the next wave
+      for (Future<?> f : results) {
+        f.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Do whatever work is needed before constraints are added for a node that is safe to run concurrently with the same call for
+   * other nodes: e.g., building IR. This is called from worker threads when {@link AnalysisOptions#getConstraintGenerationThreads()}
+   * is greater than 1 and enough nodes are discovered at once, and must not touch the call graph, the pointer key factories or the propagation system. The default
+   * implementation does nothing.
+   */
+  protected void prepareNode(CGNode node) {
+  }
+
   /**
    * @return the PointerKey that acts as a representative for the class of pointers that includes the local variable identified by
    *         the value number parameter.
@@ -620,7 +702,19 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
 
       boolean changed = false;
       FilteredPointerKey.TypeFilter filter = pk.getTypeFilter();
-      changed = filter.addFiltered(system, lhs, rhs);
+      if (rhs.isTrackingDelta() && (filter instanceof FilteredPointerKey.SingleClassFilter || filter instanceof FilteredPointerKey.MultipleClassesFilter)) {
+        // these filters accept a fixed set of classes, and an instance key is registered with its class before it reaches any
+        // points-to set, so it suffices to filter what rhs has gained since this edge was last evaluated
+        IntSet newContents = rhs.getContentsNotSeenBy(lhs, true);
+        if (newContents == null) {
+          return NOT_CHANGED;
+        }
+        IntSet f = (filter instanceof FilteredPointerKey.SingleClassFilter) ? ((FilteredPointerKey.SingleClassFilter) filter)
+            .getInstanceKeys(system) : ((FilteredPointerKey.MultipleClassesFilter) filter).getInstanceKeys(system);
+        changed = (f == null) ? false : lhs.addAllInIntersection(newContents, f);
+      } else {
+        changed = filter.addFiltered(system, lhs, rhs);
+      }
 
       if (DEBUG_FILTER) {
         System.err.println("RESULT " + lhs + (changed ? " (changed)" : ""));
@@ -767,6 +767,41 @@ public class PropagationGraph implements IFixedPointSystem<PointsToSetVariable>
     return result;
   }
 
+  /**
+   * @return the graph node numbers of the variables defined by implicitly represented equations with operator op that use v, or
+   *         null if there are none
+   */
+  IntSet getImplicitDefs(UnaryOperator<PointsToSetVariable> op, PointsToSetVariable v) {
+    int number = v.getGraphNodeId();
+    if (number == -1) {
+      return null;
+    }
+    IBinaryNaturalRelation R = invImplicitUnaryMap.get(op);
+    return (R == null) ? null : R.getRelated(number);
+  }
+
+  /**
+   * @return the number of implicitly represented equations
+   */
+  int getNumberOfImplicitStatements() {
+    return implicitUnaryCount;
+  }
+
+  /**
+   * @return the variable with graph node number n, or null if there is none
+   */
+  PointsToSetVariable getVariable(int n) {
+    INodeWithNumber result = delegateGraph.getNode(n);
+    return (result instanceof PointsToSetVariable) ? (PointsToSetVariable) result : null;
+  }
+
+  /**
+   * @return the largest graph node number in use
+   */
+  int getMaxNodeNumber() {
+    return delegateGraph.getMaxNumber();
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Iterator<PointsToSetVariable> getVariables() {
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph.propagation;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -22,7 +23,6 @@ import java.util.Set;
 import com.ibm.wala.classLoader.ArrayClass;
 import com.ibm.wala.classLoader.IClass;
 import com.ibm.wala.fixedpoint.impl.DefaultFixedPointSolver;
-import com.ibm.wala.fixedpoint.impl.Worklist;
 import com.ibm.wala.fixpoint.AbstractOperator;
 import com.ibm.wala.fixpoint.AbstractStatement;
 import com.ibm.wala.fixpoint.IFixedPointSystem;
@@ -34,6 +34,8 @@ import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder.Filter
 import com.ibm.wala.ipa.cha.ClassHierarchyException;
 import com.ibm.wala.ipa.cha.ClassHierarchyWarning;
 import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
 import com.ibm.wala.util.collections.HashMapFactory;
 import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.collections.Iterator2Collection;
@@ -43,12 +45,15 @@ import com.ibm.wala.util.debug.VerboseAction;
 import com.ibm.wala.util.graph.Graph;
 import com.ibm.wala.util.graph.NumberedGraph;
 import com.ibm.wala.util.heapTrace.HeapTracer;
+import com.ibm.wala.util.intset.BitVectorRepository;
 import com.ibm.wala.util.intset.IntIterator;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetAction;
 import com.ibm.wala.util.intset.IntSetUtil;
 import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
 import com.ibm.wala.util.intset.MutableMapping;
+import com.ibm.wala.util.intset.MutableSharedBitVectorIntSetFactory;
 import com.ibm.wala.util.ref.ReferenceCleanser;
 import com.ibm.wala.util.warnings.Warnings;
 
@@ -57,6 +62,44 @@ import com.ibm.wala.util.warnings.Warnings;
  */
 public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariable> {
 
+  /**
+   * Strategies for finding cycles of assignments between points-to sets during solving, and collapsing them into a single
+   * variable. See {@link CycleDetector}.
+   *
+   * Of these, only {@link #LAZY} has been seen to pay off, and then modestly, on 0-1-CFA of the WALA test data; use it if any. The
+   * offline pass of the hybrid modes must be repeated as loads and stores add assignments, and adding it to lazy detection made
+   * solving slower.
+   */
+  public static enum CycleDetection {
+    /**
+     * do not collapse cycles
+     */
+    NONE(false, false),
+    /**
+     * check for a cycle through an assignment when evaluating it leaves its left-hand side unchanged and equal to its right-hand
+     * side
+     */
+    LAZY(true, false),
+    /**
+     * find cycles with an offline pass over the assignment graph before a round of solving, repeated once the graph has doubled
+     * in size
+     */
+    HYBRID(false, true),
+    /**
+     * both of the above; not recommended, as the offline passes duplicate work the lazy checks already do
+     */
+    LAZY_AND_HYBRID(true, true);
+
+    private final boolean lazy;
+
+    private final boolean offline;
+
+    private CycleDetection(boolean lazy, boolean offline) {
+      this.lazy = lazy;
+      this.offline = offline;
+    }
+  }
+
   private final static boolean DEBUG = false;
 
   private final static boolean DEBUG_MEMORY = false;
@@ -117,6 +160,27 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
 
   private int periodicMaintainInterval = DEFAULT_PERIODIC_MAINTENANCE_INTERVAL;
 
+  /**
+   * Should points-to set variables track recent additions, so that assignment and filter edges propagate only new elements?
+   */
+  private boolean differencePropagation = false;
+
+  /**
+   * statistics on evaluations under difference propagation
+   */
+  private final PointsToSetVariable.DeltaCounters deltaCounters = new PointsToSetVariable.DeltaCounters();
+
+  /**
+   * finds and collapses cycles during solving; null if disabled
+   */
+  private CycleDetector cycleDetector;
+
+  /**
+   * makes the sets of instance keys for this system. When the default sets are shared bit vector sets, this system shares bit
+   * vectors through a repository of its own, which goes away with it.
+   */
+  private final MutableIntSetFactory<?> intSetFactory;
+
   public PropagationSystem(CallGraph cg, PointerKeyFactory pointerKeyFactory, InstanceKeyFactory instanceKeyFactory) {
     if (cg == null) {
       throw new IllegalArgumentException("null cg");
@@ -124,6 +188,9 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     this.cg = cg;
     this.pointerKeyFactory = pointerKeyFactory;
     this.instanceKeyFactory = instanceKeyFactory;
+    MutableIntSetFactory<?> defaultFactory = IntSetUtil.getDefaultIntSetFactory();
+    this.intSetFactory = (defaultFactory instanceof MutableSharedBitVectorIntSetFactory) ? new MutableSharedBitVectorIntSetFactory(
+        new BitVectorRepository()) : defaultFactory;
     // when doing paranoid checking of points-to sets, code in PointsToSetVariable needs to know about the instance key
     // mapping
     if (PointsToSetVariable.PARANOID) {
@@ -163,7 +230,7 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     assert klass.getReference() != TypeReference.JavaLangObject;
     MutableIntSet result = class2InstanceKey.get(klass);
     if (result == null) {
-      result = IntSetUtil.getDefaultIntSetFactory().make();
+      result = intSetFactory.make();
       class2InstanceKey.put(klass, result);
     }
     return result;
@@ -177,10 +244,10 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     assert klass.getReference() != TypeReference.JavaLangObject;
     MutableIntSet set = class2InstanceKey.get(klass);
     if (set == null) {
-      return IntSetUtil.getDefaultIntSetFactory().make();
+      return intSetFactory.make();
     } else {
       // return a copy.
-      return IntSetUtil.getDefaultIntSetFactory().makeCopy(set);
+      return intSetFactory.makeCopy(set);
     }
   }
 
@@ -265,7 +332,10 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     }
     PointsToSetVariable result = pointsToMap.getPointsToSet(key);
     if (result == null) {
-      result = new PointsToSetVariable(key);
+      result = new PointsToSetVariable(key, intSetFactory);
+      if (differencePropagation) {
+        result.trackDelta(deltaCounters);
+      }
       pointsToMap.put(key, result);
     } else {
       // check that the filter for this variable remains unique
@@ -350,8 +420,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("Add constraint A: " + lhs + " " + op + " " + rhs);
     }
-    assert !pointsToMap.isUnified(lhs);
-    assert !pointsToMap.isUnified(rhs);
     PointsToSetVariable L = findOrCreatePointsToSet(lhs);
     PointsToSetVariable R = findOrCreatePointsToSet(rhs);
     return newStatement(L, op, new PointsToSetVariable[] { R }, true, true);
@@ -373,9 +441,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("Add constraint A: " + lhs + " " + op + " " + rhs1 + ", " + rhs2);
     }
-    assert !pointsToMap.isUnified(lhs);
-    assert !pointsToMap.isUnified(rhs1);
-    assert !pointsToMap.isUnified(rhs2);
     PointsToSetVariable L = findOrCreatePointsToSet(lhs);
     PointsToSetVariable R1 = findOrCreatePointsToSet(rhs1);
     PointsToSetVariable R2 = findOrCreatePointsToSet(rhs2);
@@ -560,7 +625,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("add constraint D: " + op + " " + arg0);
     }
-    assert !pointsToMap.isUnified(arg0);
     PointsToSetVariable v1 = findOrCreatePointsToSet(arg0);
     newStatement(null, op, v1, true, true);
   }
@@ -574,7 +638,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     }
     PointsToSetVariable[] vs = new PointsToSetVariable[ arg0.length ];
     for(int i = 0; i < arg0.length; i++) {
-      assert !pointsToMap.isUnified(arg0[i]);
       vs[i] = findOrCreatePointsToSet(arg0[i]);
     }
     newStatement(null, op, vs, true, true);
@@ -584,8 +647,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("add constraint D: " + op + " " + arg0);
     }
-    assert !pointsToMap.isUnified(arg0);
-    assert !pointsToMap.isUnified(arg1);
     PointsToSetVariable v1 = findOrCreatePointsToSet(arg0);
     PointsToSetVariable v2 = findOrCreatePointsToSet(arg1);
     newStatement(null, op, v1, v2, true, true);
@@ -625,9 +686,9 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (getFixedPointSystem() instanceof VerboseAction) {
       ((VerboseAction) getFixedPointSystem()).performVerboseAction();
     }
-    AbstractStatement s = workList.takeStatement();
+    AbstractStatement s = getWorklist().takeStatement();
     System.err.println(printRHSInstances(s));
-    workList.insertStatement(s);
+    getWorklist().insertStatement(s);
     System.err.println("CGNodes: " + cg.getNumberOfNodes());
 
   }
@@ -666,6 +727,10 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     return flowGraph;
   }
 
+  PropagationGraph getFlowGraph() {
+    return flowGraph;
+  }
+
   /*
    * @see com.ibm.wala.ipa.callgraph.propagation.HeapModel#iteratePointerKeys()
    */
@@ -680,13 +745,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     return pointsToMap.getNumberOfPointerKeys();
   }
 
-  /**
-   * Use with care.
-   */
-  Worklist getWorklist() {
-    return workList;
-  }
-
   public Iterator<AbstractStatement> getStatementsThatUse(PointsToSetVariable v) {
     return flowGraph.getStatementsThatUse(v);
   }
@@ -756,6 +814,179 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     this.periodicMaintainInterval = periodicMaintainInteval;
   }
 
+  public boolean isDifferencePropagation() {
+    return differencePropagation;
+  }
+
+  /**
+   * Turn difference propagation on or off. When on, each points-to set remembers its recent additions, and assignment and
+   * (class-based) filter equations propagate only the elements their right-hand side has gained since they were last evaluated.
+   * This only affects variables created afterwards, so it should be set before the system is solved.
+   */
+  public void setDifferencePropagation(boolean differencePropagation) {
+    this.differencePropagation = differencePropagation;
+  }
+
+  /**
+   * Choose how cycles of assignments are found and collapsed during solving. Should be set before the system is solved.
+   */
+  public void setCycleDetection(CycleDetection cycleDetection) {
+    if (cycleDetection == null) {
+      throw new IllegalArgumentException("null cycleDetection");
+    }
+    cycleDetector = (cycleDetection == CycleDetection.NONE) ? null : new CycleDetector(this, cycleDetection.lazy,
+        cycleDetection.offline);
+  }
+
+  /**
+   * @return the number of pointer keys whose points-to sets were merged into another's by cycle collapsing
+   */
+  public int getNumberOfCollapsedKeys() {
+    return getNumberOfKeysCollapsedLazily() + getNumberOfKeysCollapsedOffline();
+  }
+
+  /**
+   * @return the number of pointer keys merged by lazy cycle detection
+   */
+  public int getNumberOfKeysCollapsedLazily() {
+    return cycleDetector == null ? 0 : cycleDetector.getKeysMergedLazily();
+  }
+
+  /**
+   * @return the number of pointer keys merged by the offline pass of hybrid cycle detection
+   */
+  public int getNumberOfKeysCollapsedOffline() {
+    return cycleDetector == null ? 0 : cycleDetector.getKeysMergedOffline();
+  }
+
+  /**
+   * @return the number of cycles collapsed
+   */
+  public int getNumberOfCollapsedCycles() {
+    return cycleDetector == null ? 0 : cycleDetector.getCyclesCollapsed();
+  }
+
+  /**
+   * @return the number of searches performed by lazy cycle detection
+   */
+  public int getNumberOfLazyCycleSearches() {
+    return cycleDetector == null ? 0 : cycleDetector.getLazySearches();
+  }
+
+  /**
+   * @return the repository through which this system's points-to sets share bit vectors, or null if they are not shared bit vector
+   *         sets
+   */
+  public BitVectorRepository getBitVectorRepository() {
+    return (intSetFactory instanceof MutableSharedBitVectorIntSetFactory) ? ((MutableSharedBitVectorIntSetFactory) intSetFactory)
+        .getRepository() : null;
+  }
+
+  @Override
+  public boolean solve(IProgressMonitor monitor) throws CancelException {
+    if (cycleDetector == null) {
+      return super.solve(monitor);
+    }
+    cycleDetector.offlinePass();
+    boolean result = super.solve(monitor);
+    while (cycleDetector.hasPendingChecks()) {
+      cycleDetector.processPendingChecks();
+      result |= super.solve(monitor);
+    }
+    return result;
+  }
+
+  @Override
+  protected void statementEvaluated(AbstractStatement s, byte code) {
+    if (cycleDetector != null && code == NOT_CHANGED && s instanceof AssignEquation) {
+      AssignEquation assign = (AssignEquation) s;
+      cycleDetector.assignmentUnchanged(assign.getLHS(), assign.getRightHandSide());
+    }
+  }
+
+  /**
+   * Merge the points-to sets of a set of variables which must have the same value at the fixed point, and schedule the merged
+   * variable and the equations that define it for evaluation. Callers must call {@link #purgeStaleStatements()} afterwards.
+   * 
+   * @return the number of variables merged into the representative
+   */
+  int mergeVariables(Collection<PointsToSetVariable> vars) {
+    MutableIntSet s = IntSetUtil.make();
+    for (PointsToSetVariable v : vars) {
+      s.add(pointsToMap.getIndex(v.getPointerKey()));
+    }
+    if (s.size() <= 1) {
+      return 0;
+    }
+    unify(s);
+    PointsToSetVariable rep = pointsToMap.getPointsToSet(pointsToMap.getRepresentative(s.intIterator().next()));
+    // the representative has the union of the old values; its uses must see that, and the equations which defined the
+    // other variables now define the representative
+    changedVariable(rep);
+    for (Iterator<AbstractStatement> it = getStatementsThatDef(rep); it.hasNext();) {
+      addToWorkList(it.next());
+    }
+    return s.size() - 1;
+  }
+
+  /**
+   * Remove from the work list any statement that refers to a variable which has been merged into another.
+   */
+  void purgeStaleStatements() {
+    List<AbstractStatement> live = new ArrayList<AbstractStatement>();
+    while (!getWorklist().isEmpty()) {
+      AbstractStatement s = getWorklist().takeStatement();
+      if (!isStale(s)) {
+        live.add(s);
+      }
+    }
+    for (AbstractStatement s : live) {
+      getWorklist().insertStatement(s);
+    }
+  }
+
+  private boolean isStale(AbstractStatement s) {
+    if (s.getLHS() != null && isStale((PointsToSetVariable) s.getLHS())) {
+      return true;
+    }
+    if (s instanceof UnaryStatement) {
+      PointsToSetVariable rhs = (PointsToSetVariable) ((UnaryStatement) s).getRightHandSide();
+      return rhs != null && isStale(rhs);
+    }
+    for (IVariable v : s.getRHS()) {
+      if (v != null && isStale((PointsToSetVariable) v)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isStale(PointsToSetVariable v) {
+    int i = pointsToMap.getIndex(v.getPointerKey());
+    return i != -1 && pointsToMap.getPointsToSet(i) != v;
+  }
+
+  /**
+   * @return the number of unary evaluations that found nothing new to propagate, under difference propagation
+   */
+  public long getSkippedDeltaEvaluations() {
+    return deltaCounters.skipped;
+  }
+
+  /**
+   * @return the number of unary evaluations that propagated only recent additions, under difference propagation
+   */
+  public long getDeltaEvaluations() {
+    return deltaCounters.delta;
+  }
+
+  /**
+   * @return the number of unary evaluations that propagated a full points-to set, under difference propagation
+   */
+  public long getFullDeltaEvaluations() {
+    return deltaCounters.full;
+  }
+
   /**
    * Unify the points-to-sets for the variables identified by the set s
    * 
@@ -782,6 +1013,16 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
 
     // special logic to clean up side effects
     updateSideEffectsForUnification(cache, rep);
+
+    if (differencePropagation) {
+      // the representative may now carry a different type filter, so edges into it must propagate their full sources again
+      for (Iterator<AbstractStatement> it = getStatementsThatDef(pointsToMap.getPointsToSet(rep)); it.hasNext();) {
+        AbstractStatement as = it.next();
+        if (as instanceof UnaryStatement) {
+          ((PointsToSetVariable) ((UnaryStatement) as).getRightHandSide()).forgetConsumers();
+        }
+      }
+    }
   }
 
   /**
@@ -49,6 +49,7 @@ import com.ibm.wala.ssa.SSAAbstractThrowInstruction;
 import com.ibm.wala.ssa.SSAArrayLoadInstruction;
 import com.ibm.wala.ssa.SSAArrayStoreInstruction;
 import com.ibm.wala.ssa.SSACFG;
+import com.ibm.wala.ssa.SSACache;
 import com.ibm.wala.ssa.SSACFG.BasicBlock;
 import com.ibm.wala.ssa.SSACFG.ExceptionHandlerBasicBlock;
 import com.ibm.wala.ssa.SSACheckCastInstruction;
@@ -195,6 +196,22 @@ public abstract class SSAPropagationCallGraphBuilder extends PropagationCallGrap
     return unconditionallyAddConstraintsFromNode(node, monitor);
   }
 
+  /**
+   * Build the IR and {@link DefUse} for a bytecode method whose IR does not depend on context, so that constraint generation for
+   * the node will find them in the {@link SSACache}. This may run on several worker threads at once, so it relies on the lazily
+   * computed state of the method (e.g. {@link com.ibm.wala.classLoader.ShrikeBTMethod#getReference()}) being safely published.
+   */
+  @Override
+  protected void prepareNode(CGNode node) {
+    IMethod m = node.getMethod();
+    if (m.isSynthetic() || m.isAbstract() || m.isNative()) {
+      return;
+    }
+    if (getAnalysisCache().getIRFactory().contextIsIrrelevant(m)) {
+      getAnalysisCache().getSSACache().findOrCreateDU(m, node.getContext(), getOptions().getSSAOptions());
+    }
+  }
+
   @Override
   protected boolean unconditionallyAddConstraintsFromNode(CGNode node, IProgressMonitor monitor) throws CancelException {
     this.monitor = monitor;
@@ -680,8 +697,6 @@ public abstract class SSAPropagationCallGraphBuilder extends PropagationCallGrap
             }
           }
         } else {
-          assert !system.isUnified(result);
-          assert !system.isUnified(arrayRefPtrKey);
           system.newSideEffect(getBuilder().new ArrayLoadOperator(system.findOrCreatePointsToSet(result)), arrayRefPtrKey);
         }
       }
@@ -735,7 +750,6 @@ public abstract class SSAPropagationCallGraphBuilder extends PropagationCallGrap
           InstanceKey[] ik = getInvariantContents(value);
           for (int i = 0; i < ik.length; i++) {
             system.findOrCreateIndexForInstanceKey(ik[i]);
-            assert !system.isUnified(arrayRefPtrKey);
             system.newSideEffect(getBuilder().new InstanceArrayStoreOperator(ik[i]), arrayRefPtrKey);
           }
         } else {
@@ -434,7 +434,7 @@ public abstract class AbstractInterproceduralCFG<T extends ISSABasicBlock> imple
         addIntraproceduralNodesAndEdgesForCGNodeIfNeeded(n);
         addEdgesToCallees(n);
       }
-      for (int i = 0; i < g.getMaxNumber(); i++) {
+      for (int i = 0; i <= g.getMaxNumber(); i++) {
         addedSuccs.add(i);
         addedPreds.add(i);
       }
@@ -287,11 +287,13 @@ public class ClassHierarchy implements IClassHierarchy {
   }
 
   /**
+   * Synchronized, so that classes may be added from several threads; the tree of nodes and the implementors map are shared.
+   * 
    * @return true if the add succeeded; false if it failed for some reason
    * @throws IllegalArgumentException if klass is null
    */
   @Override
-  public boolean addClass(IClass klass) {
+  public synchronized boolean addClass(IClass klass) {
     if (klass == null) {
       throw new IllegalArgumentException("klass is null");
     }
@@ -0,0 +1,773 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.cha;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+
+import com.ibm.wala.classLoader.ByteBufferModuleEntry;
+import com.ibm.wala.classLoader.ClassLoaderFactory;
+import com.ibm.wala.classLoader.ClassLoaderFactoryImpl;
+import com.ibm.wala.classLoader.ClassLoaderImpl;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IClassLoader;
+import com.ibm.wala.classLoader.JarFileModule;
+import com.ibm.wala.classLoader.Module;
+import com.ibm.wala.classLoader.ModuleEntry;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.SetOfClasses;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.TypeName;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.NonNullSingletonIterator;
+import com.ibm.wala.util.config.FileOfClasses;
+import com.ibm.wala.util.io.FileUtil;
+import com.ibm.wala.util.strings.Atom;
+
+/**
+ * A snapshot of the classes of a {@link ClassHierarchy}, saved to disk so that later runs on the same inputs can skip reading the
+ * original jar files.
+ *
+ * The snapshot has one section per class loader. A section holds a type table (each class's name, superclass, interfaces and
+ * modifiers) and the bytes of each class file, and is keyed by a SHA-1 hash of the contents of the loader's modules, the
+ * exclusions of the scope and the key of its parent loader; a jar file is hashed by the CRC-32 and size its directory records for
+ * each entry, so that checking a key does not read the jar. A section is only used when its key matches the scope being analyzed,
+ * so a snapshot written with other exclusions is not used. The file is memory-mapped when read, and each section is a
+ * {@link Module} whose entries read from the mapping. Classes are therefore loaded from uncompressed
+ * bytes without unzipping or scanning directories, and since {@link ShrikeClass} drops the parsed class file under memory
+ * pressure, member signatures and method bodies are read back from the mapping only when needed.
+ *
+ * Only loaders that are plain {@link ClassLoaderImpl}s holding {@link ShrikeClass}es are saved.
+ *
+ * Typical use is {@link #make(AnalysisScope, File)}, which reuses the snapshot when it is up to date and rewrites it otherwise. A
+ * file that is mapped cannot be replaced on some platforms, so make maps the snapshot only when every section is up to date; when
+ * it must rewrite the snapshot, it reads the sections it reuses into memory instead.
+ */
+public class ClassHierarchySnapshot {
+
+  private final static int MAGIC = 0x57434853;
+
+  private final static int VERSION = 2;
+
+  private final static int KEY_LENGTH = 20;
+
+  /**
+   * position of the first class file: after the magic number, the version and the position of the header
+   */
+  private final static int DATA_OFFSET = 12;
+
+  /**
+   * the file the snapshot was read from
+   */
+  private final File file;
+
+  /**
+   * mapping from loader name to section
+   */
+  private final Map<Atom, Section> sections = HashMapFactory.make();
+
+  /**
+   * the class files of all sections, mapped or read into memory; set once the sections are read
+   */
+  private ByteBuffer data;
+
+  private ClassHierarchySnapshot(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Build a class hierarchy for scope, loading each class loader from the snapshot in file when the snapshot holds an up to date
+   * section for it. If some loader had to be read from its modules, write a new snapshot to file.
+   *
+   * @throws IOException if the modules of scope cannot be read, or the snapshot cannot be written
+   */
+  public static ClassHierarchy make(AnalysisScope scope, File file) throws ClassHierarchyException, IOException {
+    if (scope == null) {
+      throw new IllegalArgumentException("null scope");
+    }
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    Keys keys = new Keys(scope);
+    ClassHierarchySnapshot snapshot = null;
+    if (file.exists()) {
+      try {
+        snapshot = read(file, keys);
+      } catch (IOException e) {
+        // an unreadable or out of date snapshot is rewritten below
+      }
+    }
+    Factory factory = new Factory(scope.getExclusions(), snapshot, keys);
+    ClassHierarchy cha = ClassHierarchy.make(scope, factory);
+    if (factory.readFromModules) {
+      write(cha, factory.keys, file);
+    }
+    return cha;
+  }
+
+  /**
+   * Write the classes of cha to file. On platforms that do not allow replacing a mapped file, file must not be mapped by a
+   * snapshot {@link #read(File)} from it.
+   *
+   * @throws IOException if the modules of the scope of cha cannot be read, or file cannot be written
+   */
+  public static void write(ClassHierarchy cha, File file) throws IOException {
+    if (cha == null) {
+      throw new IllegalArgumentException("null cha");
+    }
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    write(cha, new Keys(cha.getScope()), file);
+  }
+
+  private static void write(ClassHierarchy cha, Keys keys, File file) throws IOException {
+    AnalysisScope scope = cha.getScope();
+    List<ClassLoaderReference> loaders = new ArrayList<ClassLoaderReference>();
+    List<List<ShrikeClass>> classes = new ArrayList<List<ShrikeClass>>();
+    for (ClassLoaderReference ref : scope.getLoaders()) {
+      List<ShrikeClass> loaderClasses = getShrikeClasses(cha, ref);
+      if (loaderClasses != null) {
+        loaders.add(ref);
+        classes.add(loaderClasses);
+      }
+    }
+
+    // the class files are written first, followed by the header holding the type tables, whose position is filled in at the end;
+    // class file offsets are relative to the start of the class files. Write to a temporary file, so that a snapshot being read is
+    // never seen half written.
+    File tmp = new File(file.getPath() + ".tmp");
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream h = new DataOutputStream(header);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(0);
+      long offset = 0;
+      h.writeInt(loaders.size());
+      for (int i = 0; i < loaders.size(); i++) {
+        h.writeUTF(loaders.get(i).getName().toString());
+        h.write(keys.get(loaders.get(i)));
+        h.writeInt(classes.get(i).size());
+        for (ShrikeClass klass : classes.get(i)) {
+          InputStream s = klass.getModuleEntry().getInputStream();
+          byte[] bytes;
+          try {
+            bytes = FileUtil.readBytes(s);
+          } finally {
+            s.close();
+          }
+          h.writeUTF(klass.getName().toString());
+          h.writeUTF(klass.getModuleEntry().getName());
+          IClass superclass = klass.getSuperclass();
+          h.writeUTF(superclass == null ? "" : superclass.getName().toString());
+          Collection<? extends IClass> interfaces = klass.getDirectInterfaces();
+          h.writeInt(interfaces.size());
+          for (IClass t : interfaces) {
+            h.writeUTF(t.getName().toString());
+          }
+          h.writeInt(klass.getModifiers());
+          h.writeInt((int) offset);
+          h.writeInt(bytes.length);
+          out.write(bytes);
+          offset += bytes.length;
+          if (offset + DATA_OFFSET > Integer.MAX_VALUE) {
+            throw new IOException("class hierarchy too large for a snapshot");
+          }
+        }
+      }
+      h.close();
+      header.writeTo(out);
+    } finally {
+      out.close();
+    }
+    RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+    try {
+      raf.seek(DATA_OFFSET - 4);
+      raf.writeInt((int) (raf.length() - header.size()));
+    } finally {
+      raf.close();
+    }
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+        throw new IOException("could not write " + file);
+      }
+    }
+  }
+
+  /**
+   * @return the classes of the loader ref in cha, or null if they cannot be saved in a snapshot
+   */
+  private static List<ShrikeClass> getShrikeClasses(ClassHierarchy cha, ClassLoaderReference ref) {
+    if (cha.getScope().getLoaderImpl(ref) != null) {
+      return null;
+    }
+    IClassLoader loader = cha.getLoader(ref);
+    if (!(loader instanceof ClassLoaderImpl)) {
+      return null;
+    }
+    List<ShrikeClass> result = new ArrayList<ShrikeClass>();
+    for (Iterator<IClass> it = loader.iterateAllClasses(); it.hasNext();) {
+      IClass klass = it.next();
+      if (!(klass instanceof ShrikeClass)) {
+        return null;
+      }
+      result.add((ShrikeClass) klass);
+    }
+    return result;
+  }
+
+  /**
+   * Read a snapshot, mapping it into memory.
+   *
+   * @throws IOException if file cannot be read or is not a snapshot of this version
+   */
+  public static ClassHierarchySnapshot read(File file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    return read(file, null);
+  }
+
+  /**
+   * Read a snapshot. The header is read first; the class files are mapped if keys is null or every section is up to date for
+   * the scope of keys, and read into memory otherwise, so that the file can be replaced.
+   */
+  private static ClassHierarchySnapshot read(File file, Keys keys) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      long length = raf.length();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("snapshot too large: " + file);
+      }
+      if (length < DATA_OFFSET || raf.readInt() != MAGIC) {
+        throw new IOException("not a class hierarchy snapshot: " + file);
+      }
+      if (raf.readInt() != VERSION) {
+        throw new IOException("unsupported snapshot version: " + file);
+      }
+      int headerStart = raf.readInt();
+      if (headerStart < DATA_OFFSET || headerStart > length) {
+        throw new IOException("corrupt snapshot " + file);
+      }
+      byte[] header = new byte[(int) length - headerStart];
+      raf.seek(headerStart);
+      raf.readFully(header);
+      int dataLength = headerStart - DATA_OFFSET;
+
+      ClassHierarchySnapshot result = new ClassHierarchySnapshot(file);
+      DataInputStream h = new DataInputStream(new ByteArrayInputStream(header));
+      int nSections = h.readInt();
+      for (int i = 0; i < nSections; i++) {
+        Section s = result.new Section(h, dataLength);
+        result.sections.put(s.loader, s);
+      }
+
+      if (keys == null || result.isUpToDate(keys)) {
+        // the mapping stays valid after the file is closed
+        result.data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, DATA_OFFSET, dataLength);
+      } else {
+        byte[] bytes = new byte[dataLength];
+        raf.seek(DATA_OFFSET);
+        raf.readFully(bytes);
+        result.data = ByteBuffer.wrap(bytes);
+      }
+      return result;
+    } catch (RuntimeException e) {
+      // e.g. NegativeArraySizeException, if the file is damaged
+      throw new IOException("corrupt snapshot " + file + ": " + e);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @return true iff this snapshot has an up to date section for every loader of the scope of keys that a snapshot can hold
+   */
+  private boolean isUpToDate(Keys keys) throws IOException {
+    for (ClassLoaderReference ref : keys.scope.getLoaders()) {
+      if (keys.scope.getLoaderImpl(ref) == null) {
+        Section s = sections.get(ref.getName());
+        if (s == null || !Arrays.equals(s.key, keys.get(ref))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the section for the loader ref, or null if this snapshot does not have one
+   */
+  public Section getSection(ClassLoaderReference ref) {
+    if (ref == null) {
+      throw new IllegalArgumentException("null ref");
+    }
+    return sections.get(ref.getName());
+  }
+
+  /**
+   * @return true iff this snapshot has a section for the loader ref whose key matches the current contents of the modules of scope
+   * @throws IOException if the modules of scope cannot be read
+   */
+  public boolean isValidFor(ClassLoaderReference ref, AnalysisScope scope) throws IOException {
+    if (scope == null) {
+      throw new IllegalArgumentException("null scope");
+    }
+    Section s = getSection(ref);
+    return s != null && Arrays.equals(s.key, new Keys(scope).get(ref));
+  }
+
+  /**
+   * @return a class loader factory which loads each loader of scope from this snapshot when it is valid for it, and from its
+   *         modules otherwise
+   * @throws IOException if the modules of scope cannot be read
+   */
+  public ClassLoaderFactory makeClassLoaderFactory(AnalysisScope scope) throws IOException {
+    if (scope == null) {
+      throw new IllegalArgumentException("null scope");
+    }
+    Keys keys = new Keys(scope);
+    for (ClassLoaderReference ref : scope.getLoaders()) {
+      keys.get(ref);
+    }
+    return new Factory(scope.getExclusions(), this, keys);
+  }
+
+  @Override
+  public String toString() {
+    return "class hierarchy snapshot " + file;
+  }
+
+  /**
+   * The classes of one class loader. As a {@link Module}, a section has one class file entry for each class.
+   */
+  public class Section implements Module {
+
+    private final Atom loader;
+
+    private final byte[] key;
+
+    /**
+     * mapping from class name to index in the arrays below
+     */
+    private final Map<TypeName, Integer> index = HashMapFactory.make();
+
+    private final TypeName[] names;
+
+    private final String[] entryNames;
+
+    private final TypeName[] superNames;
+
+    private final TypeName[][] interfaceNames;
+
+    private final int[] modifiers;
+
+    private final int[] offsets;
+
+    private final int[] lengths;
+
+    /**
+     * @param dataLength the number of bytes of class files in the snapshot
+     */
+    private Section(DataInputStream h, int dataLength) throws IOException {
+      loader = Atom.findOrCreateUnicodeAtom(h.readUTF());
+      key = new byte[KEY_LENGTH];
+      h.readFully(key);
+      int n = h.readInt();
+      names = new TypeName[n];
+      entryNames = new String[n];
+      superNames = new TypeName[n];
+      interfaceNames = new TypeName[n][];
+      modifiers = new int[n];
+      offsets = new int[n];
+      lengths = new int[n];
+      for (int i = 0; i < n; i++) {
+        names[i] = TypeName.string2TypeName(h.readUTF());
+        entryNames[i] = h.readUTF();
+        String superName = h.readUTF();
+        superNames[i] = superName.length() == 0 ? null : TypeName.string2TypeName(superName);
+        interfaceNames[i] = new TypeName[h.readInt()];
+        for (int j = 0; j < interfaceNames[i].length; j++) {
+          interfaceNames[i][j] = TypeName.string2TypeName(h.readUTF());
+        }
+        modifiers[i] = h.readInt();
+        offsets[i] = h.readInt();
+        lengths[i] = h.readInt();
+        if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] + lengths[i] > dataLength) {
+          throw new IOException("corrupt snapshot " + file);
+        }
+        index.put(names[i], Integer.valueOf(i));
+      }
+    }
+
+    public Atom getLoaderName() {
+      return loader;
+    }
+
+    public int getNumberOfClasses() {
+      return names.length;
+    }
+
+    public Collection<TypeName> getClassNames() {
+      return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    private int indexOf(TypeName name) {
+      Integer i = index.get(name);
+      if (i == null) {
+        throw new IllegalArgumentException("no class " + name + " in " + this);
+      }
+      return i.intValue();
+    }
+
+    /**
+     * @return the name of the superclass of the class name, or null if it has none
+     * @throws IllegalArgumentException if this section does not hold name
+     */
+    public TypeName getSuperclassName(TypeName name) {
+      return superNames[indexOf(name)];
+    }
+
+    /**
+     * @throws IllegalArgumentException if this section does not hold name
+     */
+    public Collection<TypeName> getInterfaceNames(TypeName name) {
+      return Collections.unmodifiableList(Arrays.asList(interfaceNames[indexOf(name)]));
+    }
+
+    /**
+     * @return the access flags of the class name, as in the class file
+     * @throws IllegalArgumentException if this section does not hold name
+     */
+    public int getModifiers(TypeName name) {
+      return modifiers[indexOf(name)];
+    }
+
+    @Override
+    public Iterator<ModuleEntry> getEntries() {
+      List<ModuleEntry> result = new ArrayList<ModuleEntry>(names.length);
+      for (int i = 0; i < names.length; i++) {
+        result.add(new Entry(i));
+      }
+      return result.iterator();
+    }
+
+    @Override
+    public String toString() {
+      return file + ":" + loader;
+    }
+
+    /**
+     * A class file held in a section. As a {@link Module}, it holds just itself, like a
+     * {@link com.ibm.wala.classLoader.ClassFileModule}.
+     */
+    private class Entry implements ByteBufferModuleEntry, Module {
+
+      private final int i;
+
+      Entry(int i) {
+        this.i = i;
+      }
+
+      @Override
+      public String getName() {
+        return entryNames[i];
+      }
+
+      @Override
+      public boolean isClassFile() {
+        return true;
+      }
+
+      @Override
+      public boolean isSourceFile() {
+        return false;
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        return new BufferInputStream(getByteBuffer());
+      }
+
+      @Override
+      public ByteBuffer getByteBuffer() {
+        ByteBuffer b = data.duplicate();
+        b.limit(offsets[i] + lengths[i]);
+        b.position(offsets[i]);
+        return b;
+      }
+
+      @Override
+      public boolean isModuleFile() {
+        return false;
+      }
+
+      @Override
+      public Module asModule() {
+        return this;
+      }
+
+      @Override
+      public Iterator<ModuleEntry> getEntries() {
+        return new NonNullSingletonIterator<ModuleEntry>(this);
+      }
+
+      @Override
+      public String getClassName() {
+        // the name without its leading 'L'
+        return names[i].toString().substring(1);
+      }
+
+      @Override
+      public Module getContainer() {
+        return Section.this;
+      }
+
+      @Override
+      public String toString() {
+        return Section.this + ":" + getName();
+      }
+    }
+  }
+
+  /**
+   * Computes and remembers the key of each loader of a scope
+   */
+  private static class Keys {
+
+    private final AnalysisScope scope;
+
+    private final Map<ClassLoaderReference, byte[]> keys = HashMapFactory.make();
+
+    Keys(AnalysisScope scope) {
+      this.scope = scope;
+    }
+
+    /**
+     * @return the SHA-1 hash of the name of ref, the exclusions of the scope, the key of its parent and the contents of its
+     *         modules
+     */
+    byte[] get(ClassLoaderReference ref) throws IOException {
+      byte[] result = keys.get(ref);
+      if (result == null) {
+        MessageDigest md = makeDigest();
+        md.update(ref.getName().toString().getBytes("UTF-8"));
+        digest(scope.getExclusions(), md);
+        if (ref.getParent() != null) {
+          md.update(get(ref.getParent()));
+        }
+        for (Module m : scope.getModules(ref)) {
+          MessageDigest moduleDigest = makeDigest();
+          digest(m, moduleDigest);
+          md.update(moduleDigest.digest());
+        }
+        result = md.digest();
+        keys.put(ref, result);
+      }
+      return result;
+    }
+
+    private static MessageDigest makeDigest() {
+      try {
+        return MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        // every Java platform is required to support SHA-1
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /**
+     * hash the exclusions of a scope: a {@link FileOfClasses} by its pattern, and any other set by its serialized form
+     */
+    private static void digest(SetOfClasses exclusions, MessageDigest md) throws IOException {
+      if (exclusions == null) {
+        md.update((byte) 0);
+      } else if (exclusions instanceof FileOfClasses) {
+        md.update((byte) 1);
+        md.update(String.valueOf(exclusions).getBytes("UTF-8"));
+      } else {
+        md.update((byte) 2);
+        ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(md));
+        out.writeObject(exclusions);
+        out.close();
+      }
+    }
+
+    /**
+     * hash a jar file by the name, CRC-32 and size of each entry, which its directory records, and any other module by the name
+     * and contents of each entry, in order of name
+     */
+    private static void digest(Module m, MessageDigest md) throws IOException {
+      if (m instanceof JarFileModule) {
+        DataOutputStream out = new DataOutputStream(new DigestOutputStream(md));
+        for (Enumeration<JarEntry> it = ((JarFileModule) m).getJarFile().entries(); it.hasMoreElements();) {
+          JarEntry e = it.nextElement();
+          out.writeUTF(e.getName());
+          out.writeLong(e.getCrc());
+          out.writeLong(e.getSize());
+        }
+        out.close();
+        return;
+      }
+      TreeMap<String, ModuleEntry> entries = new TreeMap<String, ModuleEntry>();
+      for (Iterator<ModuleEntry> it = m.getEntries(); it.hasNext();) {
+        ModuleEntry e = it.next();
+        entries.put(e.getName(), e);
+      }
+      for (ModuleEntry e : entries.values()) {
+        md.update(e.getName().getBytes("UTF-8"));
+        if (e.isModuleFile()) {
+          digest(e.asModule(), md);
+        } else {
+          digest(e.getInputStream(), md);
+        }
+      }
+    }
+
+    private static void digest(InputStream s, MessageDigest md) throws IOException {
+      InputStream in = new BufferedInputStream(s);
+      try {
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+          md.update(buffer, 0, n);
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * A class loader factory which loads a loader from a snapshot section when the section is valid for it
+   */
+  private static class Factory extends ClassLoaderFactoryImpl {
+
+    private final ClassHierarchySnapshot snapshot;
+
+    private final Keys keys;
+
+    /**
+     * did some loader have to be read from its modules?
+     */
+    private boolean readFromModules = false;
+
+    Factory(SetOfClasses exclusions, ClassHierarchySnapshot snapshot, Keys keys) {
+      super(exclusions);
+      this.snapshot = snapshot;
+      this.keys = keys;
+    }
+
+    @Override
+    protected IClassLoader makeNewClassLoader(ClassLoaderReference classLoaderReference, IClassHierarchy cha, IClassLoader parent,
+        AnalysisScope scope) throws IOException {
+      if (scope.getLoaderImpl(classLoaderReference) != null) {
+        // not a loader a snapshot can hold
+        return super.makeNewClassLoader(classLoaderReference, cha, parent, scope);
+      }
+      Section s = snapshot == null ? null : snapshot.getSection(classLoaderReference);
+      if (s != null && Arrays.equals(s.key, keys.get(classLoaderReference))) {
+        ClassLoaderImpl cl = new ClassLoaderImpl(classLoaderReference, scope.getArrayClassLoader(), parent, getExclusions(), cha);
+        cl.setNumberOfThreads(getNumberOfThreads());
+        cl.init(Collections.<Module> singletonList(s));
+        return cl;
+      }
+      readFromModules = true;
+      return super.makeNewClassLoader(classLoaderReference, cha, parent, scope);
+    }
+  }
+
+  /**
+   * An output stream that feeds a message digest
+   */
+  private static class DigestOutputStream extends OutputStream {
+
+    private final MessageDigest md;
+
+    DigestOutputStream(MessageDigest md) {
+      this.md = md;
+    }
+
+    @Override
+    public void write(int b) {
+      md.update((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      md.update(b, off, len);
+    }
+  }
+
+  /**
+   * An input stream over the remaining bytes of a buffer
+   */
+  private static class BufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
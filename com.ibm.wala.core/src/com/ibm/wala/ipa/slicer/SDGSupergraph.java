@@ -14,6 +14,7 @@ import java.util.Iterator;
 
 import com.ibm.wala.dataflow.IFDS.ISupergraph;
 import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
 import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
 import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
 import com.ibm.wala.util.collections.EmptyIterator;
@@ -21,6 +22,7 @@ import com.ibm.wala.util.collections.Filter;
 import com.ibm.wala.util.collections.FilterIterator;
 import com.ibm.wala.util.debug.Assertions;
 import com.ibm.wala.util.graph.Graph;
+import com.ibm.wala.util.graph.impl.SlowSparseNumberedGraph;
 import com.ibm.wala.util.intset.IntSet;
 
 /**
@@ -36,15 +38,39 @@ class SDGSupergraph implements ISupergraph<Statement, PDG> {
    */
   private final boolean backward;
 
+  /**
+   * the PDGs, with an edge from each to the PDGs of its callees; computed when first asked for
+   */
+  private Graph<PDG> procedureGraph;
+
   public SDGSupergraph(ISDG sdg, boolean backward) {
     this.sdg = sdg;
     this.backward = backward;
   }
 
+  /**
+   * The procedure graph is only available when the SDG is an {@link SDG}, which knows its call graph.
+   */
   @Override
   public Graph<PDG> getProcedureGraph() {
-    Assertions.UNREACHABLE();
-    return null;
+    if (procedureGraph == null) {
+      if (!(sdg instanceof SDG)) {
+        Assertions.UNREACHABLE();
+      }
+      CallGraph cg = ((SDG) sdg).getCallGraph();
+      Graph<PDG> G = SlowSparseNumberedGraph.make();
+      for (CGNode n : cg) {
+        G.addNode(sdg.getPDG(n));
+      }
+      for (CGNode n : cg) {
+        PDG pdg = sdg.getPDG(n);
+        for (Iterator<? extends CGNode> it = cg.getSuccNodes(n); it.hasNext();) {
+          G.addEdge(pdg, sdg.getPDG(it.next()));
+        }
+      }
+      procedureGraph = G;
+    }
+    return procedureGraph;
   }
 
   public Object[] getEntry(Statement n) {
@@ -0,0 +1,491 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+
+/**
+ * An {@link SSACache} with an explicit bound on the estimated size, in bytes, of the IRs and {@link DefUse}s it holds.
+ *
+ * Entries are held strongly, so the garbage collector never clears them. When the estimated size of the cached objects exceeds
+ * the bound, the least recently used entries are evicted until it falls to {@link #LOW_WATER_MARK} of the bound. Entries for
+ * pinned methods are never evicted. The IR and the {@link DefUse} for a (method, context, options) triple share one entry and
+ * are evicted together, so a cached {@link DefUse} always describes the cached IR.
+ *
+ * This class is thread-safe. A hit reads a concurrent map without locking; a miss locks only its own entry while the IR is
+ * built, so threads asking for the same IR wait for a single build, and IRs for different methods are built concurrently.
+ */
+public class BoundedSSACache extends SSACache {
+
+  /**
+   * eviction stops when the weight falls to this fraction of the bound, so that it does not run on every insertion
+   */
+  private static final double LOW_WATER_MARK = 0.9;
+
+  /**
+   * the number of keys of evicted entries remembered for counting rebuilds; older ones are forgotten, so that the keys, and the
+   * methods and contexts they hold, do not accumulate
+   */
+  private static final int MAX_EVICTED_KEYS = 4096;
+
+  /**
+   * bound on the estimated size of the cached objects, in bytes
+   */
+  private final long maxWeight;
+
+  private final ConcurrentHashMap<SSACacheKey, Entry> entries = new ConcurrentHashMap<SSACacheKey, Entry>();
+
+  /**
+   * keys of the {@link #MAX_EVICTED_KEYS} most recently evicted entries, so that building them again is counted as a rebuild.
+   * Accessed while holding its own lock.
+   */
+  private final Map<SSACacheKey, Boolean> evicted = new LinkedHashMap<SSACacheKey, Boolean>() {
+    private static final long serialVersionUID = -6343264093364931370L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<SSACacheKey, Boolean> eldest) {
+      return size() > MAX_EVICTED_KEYS;
+    }
+  };
+
+  private final Set<IMethod> pinned = Collections.newSetFromMap(new ConcurrentHashMap<IMethod, Boolean>());
+
+  /**
+   * estimated size of the cached objects, in bytes
+   */
+  private final AtomicLong weight = new AtomicLong();
+
+  /**
+   * logical time, advanced on each access, for choosing the least recently used entries
+   */
+  private final AtomicLong clock = new AtomicLong();
+
+  /**
+   * held by the one thread evicting entries
+   */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final AtomicLong rebuilds = new AtomicLong();
+
+  private final AtomicLong buildNanos = new AtomicLong();
+
+  private final AtomicLong rebuildNanos = new AtomicLong();
+
+  /**
+   * @param factory a factory for creating IRs
+   * @param maxWeight bound on the estimated size of the cached IRs and {@link DefUse}s, in bytes
+   * @throws IllegalArgumentException if maxWeight is not positive
+   */
+  public BoundedSSACache(IRFactory<IMethod> factory, long maxWeight) {
+    this(factory, maxWeight, null);
+  }
+
+  /**
+   * @param factory a factory for creating IRs
+   * @param maxWeight bound on the estimated size of the cached IRs and {@link DefUse}s, in bytes
+   * @param secondLevel where to look for IRs before building them, and to save the IRs built; may be null
+   * @throws IllegalArgumentException if maxWeight is not positive
+   */
+  public BoundedSSACache(IRFactory<IMethod> factory, long maxWeight, PersistentIRCache secondLevel) {
+    super(factory, secondLevel);
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("invalid maxWeight " + maxWeight);
+    }
+    this.maxWeight = maxWeight;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Never evict the IRs and {@link DefUse}s of m. They are still counted against the bound.
+   */
+  public void pin(IMethod m) {
+    if (m == null) {
+      throw new IllegalArgumentException("m is null");
+    }
+    pinned.add(m);
+  }
+
+  /**
+   * Let the IRs and {@link DefUse}s of m be evicted again.
+   */
+  public void unpin(IMethod m) {
+    pinned.remove(m);
+  }
+
+  public boolean isPinned(IMethod m) {
+    return pinned.contains(m);
+  }
+
+  @Override
+  public SSACacheStatistics getStatistics() {
+    return new SSACacheStatistics(hits.get(), misses.get(), evictions.get(), rebuilds.get(), buildNanos.get(),
+        rebuildNanos.get(), weight.get(), maxWeight, entries.size());
+  }
+
+  @Override
+  public IR findOrCreateIR(IMethod m, Context c, SSAOptions options) {
+    if (m == null) {
+      throw new IllegalArgumentException("m is null");
+    }
+    if (m.isAbstract() || m.isNative()) {
+      return null;
+    }
+    if (getFactory().contextIsIrrelevant(m)) {
+      c = Everywhere.EVERYWHERE;
+    }
+    return findOrCreateIR(entry(new SSACacheKey(m, c, options)));
+  }
+
+  private IR findOrCreateIR(Entry e) {
+    IR ir = e.ir;
+    if (ir != null) {
+      hits.incrementAndGet();
+      return ir;
+    }
+    try {
+      synchronized (e) {
+        ir = e.ir;
+        if (ir != null) {
+          hits.incrementAndGet();
+          return ir;
+        }
+        long start = System.nanoTime();
+        ir = makeIR(e.key.method, e.key.context, e.key.options);
+        synchronized (evicted) {
+          e.rebuilt = evicted.remove(e.key) != null;
+        }
+        if (e.rebuilt) {
+          rebuilds.incrementAndGet();
+        }
+        recordBuild(e, System.nanoTime() - start);
+        if (!e.removed) {
+          e.ir = ir;
+          e.irWeight = estimateSize(ir);
+          weight.addAndGet(e.irWeight);
+        }
+      }
+    } finally {
+      if (e.ir == null) {
+        // the build failed; do not leave an empty entry behind
+        remove(e);
+      }
+    }
+    evictIfNeeded();
+    return ir;
+  }
+
+  @Override
+  public DefUse findOrCreateDU(IMethod m, Context c, SSAOptions options) {
+    if (m == null) {
+      throw new IllegalArgumentException("m is null");
+    }
+    if (m.isAbstract() || m.isNative()) {
+      return null;
+    }
+    if (getFactory().contextIsIrrelevant(m)) {
+      c = Everywhere.EVERYWHERE;
+    }
+    Entry e = entry(new SSACacheKey(m, c, options));
+    return findOrCreateDU(e, findOrCreateIR(e));
+  }
+
+  /**
+   * The {@link DefUse} is cached only if the cache holds ir itself; for any other IR, such as one whose entry has since been
+   * evicted, a new {@link DefUse} is built each time.
+   */
+  @Override
+  public DefUse findOrCreateDU(IR ir, Context C) {
+    if (ir == null) {
+      throw new IllegalArgumentException("ir is null");
+    }
+    if (getFactory().contextIsIrrelevant(ir.getMethod())) {
+      C = Everywhere.EVERYWHERE;
+    }
+    Entry e = entries.get(new SSACacheKey(ir.getMethod(), C, ir.getOptions()));
+    if (e == null) {
+      return makeUncachedDU(ir);
+    }
+    e.lastAccess = clock.incrementAndGet();
+    return findOrCreateDU(e, ir);
+  }
+
+  private DefUse makeUncachedDU(IR ir) {
+    long start = System.nanoTime();
+    DefUse du = makeDefUse(ir);
+    misses.incrementAndGet();
+    buildNanos.addAndGet(System.nanoTime() - start);
+    return du;
+  }
+
+  /**
+   * @return a {@link DefUse} for ir, cached in e if e holds ir
+   */
+  private DefUse findOrCreateDU(Entry e, IR ir) {
+    // e.du is only set while e.ir is ir, and e.ir never changes once set
+    DefUse du = e.du;
+    if (du != null && e.ir == ir) {
+      hits.incrementAndGet();
+      return du;
+    }
+    if (e.ir != ir) {
+      return makeUncachedDU(ir);
+    }
+    synchronized (e) {
+      if (e.du != null) {
+        hits.incrementAndGet();
+        return e.du;
+      }
+      long start = System.nanoTime();
+      du = makeDefUse(ir);
+      recordBuild(e, System.nanoTime() - start);
+      if (!e.removed) {
+        e.du = du;
+        e.duWeight = estimateSize(du, ir);
+        weight.addAndGet(e.duWeight);
+      }
+    }
+    evictIfNeeded();
+    return du;
+  }
+
+  /**
+   * @return the entry for k, created if necessary, marked as just used
+   */
+  private Entry entry(SSACacheKey k) {
+    Entry e = entries.get(k);
+    if (e == null) {
+      Entry n = new Entry(k);
+      e = entries.putIfAbsent(k, n);
+      if (e == null) {
+        e = n;
+      }
+    }
+    e.lastAccess = clock.incrementAndGet();
+    return e;
+  }
+
+  private void recordBuild(Entry e, long nanos) {
+    misses.incrementAndGet();
+    buildNanos.addAndGet(nanos);
+    if (e.rebuilt) {
+      rebuildNanos.addAndGet(nanos);
+    }
+  }
+
+  /**
+   * Remove e from the cache, if it is still there.
+   *
+   * @return true iff this call removed e
+   */
+  private boolean remove(Entry e) {
+    if (!entries.remove(e.key, e)) {
+      return false;
+    }
+    synchronized (e) {
+      e.removed = true;
+      weight.addAndGet(-(e.irWeight + e.duWeight));
+      e.irWeight = 0;
+      e.duWeight = 0;
+    }
+    return true;
+  }
+
+  /**
+   * If the cache is over its bound, evict the least recently used unpinned entries until its weight falls to the low water mark.
+   * Only one thread evicts at a time; others carry on.
+   */
+  private void evictIfNeeded() {
+    if (weight.get() <= maxWeight || !evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      long target = (long) (maxWeight * LOW_WATER_MARK);
+      // copy the access times, which other threads keep changing, so that the sort sees consistent values
+      List<Candidate> candidates = new ArrayList<Candidate>();
+      for (Entry e : entries.values()) {
+        if (e.ir != null && !pinned.contains(e.key.method)) {
+          candidates.add(new Candidate(e, e.lastAccess));
+        }
+      }
+      Collections.sort(candidates, LEAST_RECENT_FIRST);
+      for (Candidate c : candidates) {
+        if (weight.get() <= target) {
+          break;
+        }
+        if (remove(c.entry)) {
+          evictions.incrementAndGet();
+          synchronized (evicted) {
+            evicted.put(c.entry.key, Boolean.TRUE);
+          }
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * A rough estimate of the memory held by an IR, in bytes: its instructions, basic blocks, phis and symbol table.
+   */
+  protected long estimateSize(IR ir) {
+    long size = 256;
+    SSAInstruction[] instructions = ir.getInstructions();
+    size += 16 + 4L * instructions.length;
+    for (SSAInstruction s : instructions) {
+      if (s != null) {
+        size += 48 + 4L * (s.getNumberOfDefs() + s.getNumberOfUses());
+      }
+    }
+    for (Iterator<? extends SSAInstruction> it = ir.iteratePhis(); it.hasNext();) {
+      size += 64 + 4L * it.next().getNumberOfUses();
+    }
+    size += 160L * ir.getControlFlowGraph().getNumberOfNodes();
+    size += 48L * (ir.getSymbolTable().getMaxValueNumber() + 1);
+    return size;
+  }
+
+  /**
+   * A rough estimate of the memory held by a {@link DefUse} for ir, not counting ir itself, in bytes: its def table, a use set
+   * per value and the list of instructions. A {@link CompactDefUse} is counted at the size of its tables once built, even if it
+   * has not been queried yet.
+   */
+  protected long estimateSize(DefUse du, IR ir) {
+    int values = ir.getSymbolTable().getMaxValueNumber() + 1;
+    SSAInstruction[] instructions = ir.getInstructions();
+    if (du instanceof CompactDefUse) {
+      long size = 96 + 8L * values + 4L * instructions.length;
+      for (SSAInstruction s : instructions) {
+        if (s != null) {
+          size += 4L * s.getNumberOfUses();
+        }
+      }
+      return size;
+    }
+    return 64 + 48L * values + 8L * instructions.length;
+  }
+
+  /**
+   * Evict all entries, except those of pinned methods. The existence of this is unfortunate.
+   */
+  @Override
+  public void wipe() {
+    for (Entry e : entries.values()) {
+      if (!pinned.contains(e.key.method)) {
+        remove(e);
+      }
+    }
+  }
+
+  @Override
+  public void invalidateIR(IMethod method, Context c) {
+    for (Entry e : entries.values()) {
+      if (e.key.method.equals(method) && equal(e.key.context, c)) {
+        remove(e);
+      }
+    }
+  }
+
+  @Override
+  public void invalidateDU(IMethod method, Context c) {
+    for (Entry e : entries.values()) {
+      if (e.key.method.equals(method) && equal(e.key.context, c)) {
+        synchronized (e) {
+          if (e.du != null && !e.removed) {
+            weight.addAndGet(-e.duWeight);
+            e.du = null;
+            e.duWeight = 0;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void invalidate(IMethod method, Context c) {
+    invalidateIR(method, c);
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * The IR and {@link DefUse} for a key. The objects and their weights change only while holding the entry's lock.
+   */
+  private static final class Entry {
+    private final SSACacheKey key;
+
+    private volatile IR ir;
+
+    private volatile DefUse du;
+
+    private long irWeight;
+
+    private long duWeight;
+
+    /**
+     * set once the entry is no longer in the cache, so that objects built for it are not counted
+     */
+    private boolean removed;
+
+    /**
+     * was the entry evicted before it was built this time?
+     */
+    private boolean rebuilt;
+
+    private volatile long lastAccess;
+
+    Entry(SSACacheKey key) {
+      this.key = key;
+    }
+  }
+
+  private static final class Candidate {
+    private final Entry entry;
+
+    private final long lastAccess;
+
+    Candidate(Entry entry, long lastAccess) {
+      this.entry = entry;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  private static final Comparator<Candidate> LEAST_RECENT_FIRST = new Comparator<Candidate>() {
+    @Override
+    public int compare(Candidate o1, Candidate o2) {
+      return o1.lastAccess < o2.lastAccess ? -1 : (o1.lastAccess == o2.lastAccess ? 0 : 1);
+    }
+  };
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.util.collections.EmptyIterator;
+import com.ibm.wala.util.debug.Assertions;
+
+/**
+ * A {@link DefUse} that keeps its tables in a few int arrays, and builds them only when first queried.
+ *
+ * The uses are stored in compressed sparse row form: the indices of the instructions that use value number v are
+ * useIndices[useStarts[v]] .. useIndices[useStarts[v+1]-1], in increasing order and without duplicates, as {@link DefUse}
+ * returns them. The def of v is the instruction at index defIndices[v], or none if that is -1. Together with one array of the
+ * instructions, this replaces the per-value sets of {@link DefUse}, and costs nothing for clients that never ask.
+ *
+ * This class is thread-safe.
+ */
+public final class CompactDefUse extends DefUse {
+
+  /**
+   * the tables, or null until the first query
+   */
+  private volatile Tables tables;
+
+  /**
+   * @param ir an IR in SSA form.
+   * @throws IllegalArgumentException if ir is null
+   */
+  public CompactDefUse(IR ir) {
+    super(ir, false);
+  }
+
+  /**
+   * @return true iff the tables have been built
+   */
+  public boolean isBuilt() {
+    return tables != null;
+  }
+
+  private Tables tables() {
+    Tables t = tables;
+    if (t == null) {
+      synchronized (this) {
+        t = tables;
+        if (t == null) {
+          t = build();
+          tables = t;
+        }
+      }
+    }
+    return t;
+  }
+
+  private Tables build() {
+    int n = 0;
+    for (Iterator<SSAInstruction> it = ir.iterateAllInstructions(); it.hasNext();) {
+      it.next();
+      n++;
+    }
+    SSAInstruction[] instructions = new SSAInstruction[n];
+    Iterator<SSAInstruction> it = ir.iterateAllInstructions();
+    for (int i = 0; i < n; i++) {
+      instructions[i] = it.next();
+    }
+
+    int max = getMaxValueNumber();
+    int[] defIndices = new int[max + 1];
+    int[] useStarts = new int[max + 2];
+    // the last instruction counted as a use of each value, plus one, so that an instruction that uses a value twice is counted once
+    int[] lastUser = new int[max + 1];
+    for (int v = 0; v <= max; v++) {
+      defIndices[v] = -1;
+    }
+    for (int i = 0; i < n; i++) {
+      SSAInstruction s = instructions[i];
+      if (s == null) {
+        continue;
+      }
+      for (int j = 0; j < getNumberOfDefs(s); j++) {
+        defIndices[getDef(s, j)] = i;
+      }
+      for (int j = 0; j < getNumberOfUses(s); j++) {
+        int use = getUse(s, j);
+        if (use != -1) {
+          if (use < 0 || use > max) {
+            throw new InternalError("unexpected value number " + use);
+          }
+          if (lastUser[use] != i + 1) {
+            lastUser[use] = i + 1;
+            useStarts[use + 1]++;
+          }
+        }
+      }
+    }
+    for (int v = 0; v <= max; v++) {
+      useStarts[v + 1] += useStarts[v];
+    }
+
+    // fill each row from its start; lastUser now holds the next free slot of each row
+    int[] useIndices = new int[useStarts[max + 1]];
+    System.arraycopy(useStarts, 0, lastUser, 0, max + 1);
+    for (int i = 0; i < n; i++) {
+      SSAInstruction s = instructions[i];
+      if (s == null) {
+        continue;
+      }
+      for (int j = 0; j < getNumberOfUses(s); j++) {
+        int use = getUse(s, j);
+        if (use != -1) {
+          int next = lastUser[use];
+          if (next == useStarts[use] || useIndices[next - 1] != i) {
+            useIndices[next] = i;
+            lastUser[use] = next + 1;
+          }
+        }
+      }
+    }
+    return new Tables(instructions, defIndices, useStarts, useIndices);
+  }
+
+  @Override
+  public SSAInstruction getDef(int v) {
+    Tables t = tables();
+    if (v < 0 || v >= t.defIndices.length) {
+      return null;
+    }
+    int i = t.defIndices[v];
+    return i == -1 ? null : t.instructions[i];
+  }
+
+  @Override
+  public Iterator<SSAInstruction> getUses(int v) {
+    Tables t = tables();
+    if (v < 0 || v >= t.defIndices.length || t.useStarts[v] == t.useStarts[v + 1]) {
+      return EmptyIterator.instance();
+    }
+    return new UseIterator(t, t.useStarts[v], t.useStarts[v + 1]);
+  }
+
+  @Override
+  public int getNumberOfUses(int v) {
+    Tables t = tables();
+    if (v < 0 || v >= t.defIndices.length) {
+      return 0;
+    }
+    return t.useStarts[v + 1] - t.useStarts[v];
+  }
+
+  /**
+   * @return an estimate of the memory held by the tables, not counting the IR and its instructions, in bytes; 0 if they have not
+   *         been built
+   */
+  public long getSize() {
+    Tables t = tables;
+    if (t == null) {
+      return 0;
+    }
+    return 96 + 4L * (t.instructions.length + t.defIndices.length + t.useStarts.length + t.useIndices.length);
+  }
+
+  private static final class Tables {
+    private final SSAInstruction[] instructions;
+
+    private final int[] defIndices;
+
+    private final int[] useStarts;
+
+    private final int[] useIndices;
+
+    Tables(SSAInstruction[] instructions, int[] defIndices, int[] useStarts, int[] useIndices) {
+      this.instructions = instructions;
+      this.defIndices = defIndices;
+      this.useStarts = useStarts;
+      this.useIndices = useIndices;
+    }
+  }
+
+  /**
+   * iterates over the instructions at indices useIndices[from] .. useIndices[to-1]
+   */
+  private static final class UseIterator implements Iterator<SSAInstruction> {
+    private final Tables t;
+
+    private int next;
+
+    private final int to;
+
+    UseIterator(Tables t, int from, int to) {
+      this.t = t;
+      this.next = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < to;
+    }
+
+    @Override
+    public SSAInstruction next() {
+      if (next >= to) {
+        throw new NoSuchElementException();
+      }
+      return t.instructions[t.useIndices[next++]];
+    }
+
+    @Override
+    public void remove() {
+      Assertions.UNREACHABLE();
+    }
+  }
+}
@@ -0,0 +1,424 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.classLoader.IBytecodeMethod;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.types.FieldReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+
+/**
+ * An {@link IR} packed into a few int arrays, which takes a fraction of the memory of the IR's instruction, basic block and
+ * symbol table objects.
+ *
+ * The instructions are stored as columns: for each instruction index, the offsets of its defs and uses in two packed arrays, and
+ * the offset of its full encoding (kind, operands, and indices of its types, fields and methods in a table of references) in a
+ * third. The defs and uses can be read without creating any objects. {@link #getInstruction(int)} creates an
+ * {@link SSAInstruction} only when a client asks for one, and {@link #getIR()} rebuilds the whole IR, with its control-flow graph
+ * and symbol table, from the packed arrays and the bytecode, which is much cheaper than SSA construction.
+ *
+ * Only IRs built from bytecode by {@link com.ibm.wala.classLoader.ShrikeIRFactory} can be packed.
+ *
+ * This class is thread-safe.
+ *
+ * @see CompactSSACache
+ */
+public final class CompactIR {
+
+  private final IBytecodeMethod method;
+
+  private final SSAOptions options;
+
+  /**
+   * defs of instruction i are defs[defStarts[i]] .. defs[defStarts[i+1]-1]
+   */
+  private final int[] defStarts;
+
+  private final int[] defs;
+
+  /**
+   * uses of instruction i are uses[useStarts[i]] .. uses[useStarts[i+1]-1]
+   */
+  private final int[] useStarts;
+
+  private final int[] uses;
+
+  /**
+   * the encoding of instruction i starts at code[codeStarts[i]]
+   */
+  private final int[] codeStarts;
+
+  private final int[] code;
+
+  /**
+   * the symbol table, the phis, pis and catch instructions of the basic blocks, and the local map
+   */
+  private final int[] tables;
+
+  /**
+   * the strings, types, fields and methods the encodings refer to
+   */
+  private final Object[] references;
+
+  /**
+   * the IR last rebuilt, while it is reachable
+   */
+  private volatile SoftReference<IR> inflated;
+
+  private CompactIR(IBytecodeMethod method, SSAOptions options, int[] defStarts, int[] defs, int[] useStarts, int[] uses,
+      int[] codeStarts, int[] code, int[] tables, Object[] references) {
+    this.method = method;
+    this.options = options;
+    this.defStarts = defStarts;
+    this.defs = defs;
+    this.useStarts = useStarts;
+    this.uses = uses;
+    this.codeStarts = codeStarts;
+    this.code = code;
+    this.tables = tables;
+    this.references = references;
+  }
+
+  /**
+   * @return ir packed into arrays, or null if ir cannot be packed, e.g. because it was not built from bytecode. ir itself is not
+   *         kept; {@link #getIR()} builds an equivalent IR.
+   * @throws IllegalArgumentException if ir is null
+   */
+  public static CompactIR make(IR ir) {
+    if (ir == null) {
+      throw new IllegalArgumentException("ir is null");
+    }
+    if (!IRCodec.canEncode(ir)) {
+      return null;
+    }
+    SSAInstruction[] instructions = ir.getInstructions();
+    int n = instructions.length;
+    IntOutput defs = new IntOutput(null);
+    IntOutput uses = new IntOutput(null);
+    IntOutput code = new IntOutput(HashMapFactory.<Object, Integer> make());
+    int[] defStarts = new int[n + 1];
+    int[] useStarts = new int[n + 1];
+    int[] codeStarts = new int[n + 1];
+    try {
+      for (int i = 0; i < n; i++) {
+        SSAInstruction s = instructions[i];
+        defStarts[i] = defs.size();
+        useStarts[i] = uses.size();
+        codeStarts[i] = code.size();
+        if (s != null) {
+          for (int j = 0; j < s.getNumberOfDefs(); j++) {
+            defs.writeInt(s.getDef(j));
+          }
+          for (int j = 0; j < s.getNumberOfUses(); j++) {
+            uses.writeInt(s.getUse(j));
+          }
+        }
+        IRCodec.writeInstruction(code, s);
+      }
+      defStarts[n] = defs.size();
+      useStarts[n] = uses.size();
+      codeStarts[n] = code.size();
+      // the tables share the references of the instructions
+      IntOutput tables = new IntOutput(code.referenceIndices, code.references);
+      IRCodec.encodeTables(tables, ir);
+      return new CompactIR((IBytecodeMethod) ir.getMethod(), ir.getOptions(), defStarts, defs.toArray(), useStarts,
+          uses.toArray(), codeStarts, code.toArray(), tables.toArray(), code.references.toArray());
+    } catch (IRCodec.UnsupportedIRException e) {
+      return null;
+    }
+  }
+
+  public IMethod getMethod() {
+    return method;
+  }
+
+  public SSAOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * @return the length of {@link IR#getInstructions()}
+   */
+  public int getNumberOfInstructions() {
+    return codeStarts.length - 1;
+  }
+
+  /**
+   * @return true iff there is an instruction at index i
+   */
+  public boolean hasInstruction(int i) {
+    return code[codeStarts[i]] != 0;
+  }
+
+  public int getNumberOfDefs(int i) {
+    return defStarts[i + 1] - defStarts[i];
+  }
+
+  /**
+   * @return the jth def of the instruction at index i, as {@link SSAInstruction#getDef(int)} would return it
+   */
+  public int getDef(int i, int j) {
+    if (j < 0 || j >= getNumberOfDefs(i)) {
+      throw new IllegalArgumentException("instruction " + i + " has no def " + j);
+    }
+    return defs[defStarts[i] + j];
+  }
+
+  public int getNumberOfUses(int i) {
+    return useStarts[i + 1] - useStarts[i];
+  }
+
+  /**
+   * @return the jth use of the instruction at index i, as {@link SSAInstruction#getUse(int)} would return it
+   */
+  public int getUse(int i, int j) {
+    if (j < 0 || j >= getNumberOfUses(i)) {
+      throw new IllegalArgumentException("instruction " + i + " has no use " + j);
+    }
+    return uses[useStarts[i] + j];
+  }
+
+  /**
+   * @return the instruction at index i, or null if there is none. If the IR is in memory, this is the instruction of the IR;
+   *         otherwise, it is a new instruction equivalent to it, which is not identical to the instruction returned by any other
+   *         call. Use {@link #getIR()} for instructions that may be compared for identity.
+   */
+  public SSAInstruction getInstruction(int i) {
+    IR ir = getInflatedIR();
+    if (ir != null) {
+      return ir.getInstructions()[i];
+    }
+    try {
+      return IRCodec.readInstruction(new IntInput(code, codeStarts[i], references), insts());
+    } catch (IOException e) {
+      throw new IllegalStateException("damaged encoding of " + method, e);
+    }
+  }
+
+  /**
+   * @return true iff the IR is in memory, so that {@link #getIR()} will not rebuild it
+   */
+  public boolean isInflated() {
+    return getInflatedIR() != null;
+  }
+
+  private IR getInflatedIR() {
+    SoftReference<IR> ref = inflated;
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * @return the IR, rebuilt from the arrays if it is no longer in memory. The IR is held softly, so all calls return the same IR
+   *         until it is garbage collected.
+   */
+  public synchronized IR getIR() {
+    IR ir = getInflatedIR();
+    if (ir == null) {
+      int n = getNumberOfInstructions();
+      SSAInstruction[] instructions = new SSAInstruction[n];
+      try {
+        IntInput in = new IntInput(code, 0, references);
+        SSAInstructionFactory insts = insts();
+        for (int i = 0; i < n; i++) {
+          instructions[i] = IRCodec.readInstruction(in, insts);
+        }
+        ir = IRCodec.decode(method, options, new IntInput(tables, 0, references), instructions);
+      } catch (IOException e) {
+        throw new IllegalStateException("damaged encoding of " + method, e);
+      }
+      inflated = new SoftReference<IR>(ir);
+    }
+    return ir;
+  }
+
+  private SSAInstructionFactory insts() {
+    return method.getDeclaringClass().getClassLoader().getInstructionFactory();
+  }
+
+  /**
+   * @return an estimate of the memory held by this object, not counting the IR it may hold, in bytes
+   */
+  public long getSize() {
+    long size = 64 + 8 * 16;
+    size += 4L * (defStarts.length + defs.length + useStarts.length + uses.length + codeStarts.length + code.length + tables.length);
+    size += 4L * references.length;
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "compact IR of " + method + " (" + getSize() + " bytes)";
+  }
+
+  /**
+   * Writes an encoding to a growing int array. Strings, types, fields and methods go into a table of references, and the
+   * encoding holds their indices.
+   */
+  private static final class IntOutput extends IRCodec.Output {
+    private int[] data = new int[16];
+
+    private int size;
+
+    private final Map<Object, Integer> referenceIndices;
+
+    private final List<Object> references;
+
+    IntOutput(Map<Object, Integer> referenceIndices) {
+      this(referenceIndices, new ArrayList<Object>());
+    }
+
+    IntOutput(Map<Object, Integer> referenceIndices, List<Object> references) {
+      this.referenceIndices = referenceIndices;
+      this.references = references;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(data, size);
+    }
+
+    @Override
+    void writeInt(int i) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, 2 * size);
+      }
+      data[size++] = i;
+    }
+
+    @Override
+    void writeLong(long l) {
+      writeInt((int) (l >>> 32));
+      writeInt((int) l);
+    }
+
+    @Override
+    void writeBoolean(boolean b) {
+      writeInt(b ? 1 : 0);
+    }
+
+    private void writeReference(Object o) {
+      Integer index = referenceIndices.get(o);
+      if (index == null) {
+        index = references.size();
+        referenceIndices.put(o, index);
+        references.add(o);
+      }
+      writeInt(index);
+    }
+
+    @Override
+    void writeString(String s) {
+      writeReference(s);
+    }
+
+    @Override
+    void writeType(TypeReference t) {
+      writeReference(t);
+    }
+
+    @Override
+    void writeField(FieldReference f) {
+      writeReference(f);
+    }
+
+    @Override
+    void writeMethod(MethodReference m) {
+      writeReference(m);
+    }
+  }
+
+  /**
+   * Reads an encoding written by an {@link IntOutput}
+   */
+  private static final class IntInput extends IRCodec.Input {
+    private final int[] data;
+
+    private int position;
+
+    private final Object[] references;
+
+    IntInput(int[] data, int position, Object[] references) {
+      this.data = data;
+      this.position = position;
+      this.references = references;
+    }
+
+    @Override
+    int readInt() throws IOException {
+      if (position >= data.length) {
+        throw new IOException("read past the end of the encoding");
+      }
+      return data[position++];
+    }
+
+    @Override
+    long readLong() throws IOException {
+      long high = readInt();
+      return (high << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    @Override
+    boolean readBoolean() throws IOException {
+      return readInt() != 0;
+    }
+
+    @Override
+    int[] readInts() throws IOException {
+      int n = readInt();
+      if (n < 0 || n > data.length - position) {
+        throw new IOException("bad length " + n);
+      }
+      int[] result = Arrays.copyOfRange(data, position, position + n);
+      position += n;
+      return result;
+    }
+
+    private <T> T readReference(Class<T> type) throws IOException {
+      int i = readInt();
+      if (i < 0 || i >= references.length || !type.isInstance(references[i])) {
+        throw new IOException("bad reference " + i);
+      }
+      return type.cast(references[i]);
+    }
+
+    @Override
+    String readString() throws IOException {
+      return readReference(String.class);
+    }
+
+    @Override
+    TypeReference readType() throws IOException {
+      return readReference(TypeReference.class);
+    }
+
+    @Override
+    FieldReference readField() throws IOException {
+      return readReference(FieldReference.class);
+    }
+
+    @Override
+    MethodReference readMethod() throws IOException {
+      return readReference(MethodReference.class);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+
+/**
+ * An {@link SSACache} that keeps every IR it builds as a {@link CompactIR}, and the IR objects themselves, with their
+ * {@link DefUse}s, only while memory allows.
+ *
+ * The compact forms are held strongly, and the IRs softly. When the garbage collector has cleared an IR, the next request
+ * rebuilds it from its compact form instead of running SSA construction again. IRs that cannot be packed, e.g. those not built
+ * from bytecode, are held softly and built again by the factory when needed, as in {@link SSACache}.
+ *
+ * This class is thread-safe.
+ */
+public class CompactSSACache extends SSACache {
+
+  private final ConcurrentHashMap<SSACacheKey, Entry> entries = new ConcurrentHashMap<SSACacheKey, Entry>();
+
+  /**
+   * estimated size of the compact forms, in bytes
+   */
+  private final AtomicLong weight = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong rebuilds = new AtomicLong();
+
+  private final AtomicLong buildNanos = new AtomicLong();
+
+  private final AtomicLong rebuildNanos = new AtomicLong();
+
+  /**
+   * @param factory a factory for creating IRs
+   */
+  public CompactSSACache(IRFactory<IMethod> factory) {
+    this(factory, null);
+  }
+
+  /**
+   * @param factory a factory for creating IRs
+   * @param secondLevel where to look for IRs before building them, and to save the IRs built; may be null
+   */
+  public CompactSSACache(IRFactory<IMethod> factory, PersistentIRCache secondLevel) {
+    super(factory, secondLevel);
+  }
+
+  /**
+   * @return the counters of this cache. The weight is the estimated size of the compact forms; a rebuild is an IR rebuilt from
+   *         its compact form after the garbage collector cleared it, and is also counted as an eviction.
+   */
+  @Override
+  public SSACacheStatistics getStatistics() {
+    return new SSACacheStatistics(hits.get(), misses.get(), rebuilds.get(), rebuilds.get(), buildNanos.get(), rebuildNanos.get(),
+        weight.get(), -1, entries.size());
+  }
+
+  /**
+   * @return the compact form of the IR for m, or null if it has not been built or cannot be packed
+   */
+  public CompactIR getCompactIR(IMethod m, Context c, SSAOptions options) {
+    if (m == null) {
+      throw new IllegalArgumentException("m is null");
+    }
+    if (getFactory().contextIsIrrelevant(m)) {
+      c = Everywhere.EVERYWHERE;
+    }
+    Entry e = entries.get(new SSACacheKey(m, c, options));
+    return e == null ? null : e.compact;
+  }
+
+  @Override
+  public IR findOrCreateIR(IMethod m, Context c, SSAOptions options) {
+    if (m == null) {
+      throw new IllegalArgumentException("m is null");
+    }
+    if (m.isAbstract() || m.isNative()) {
+      return null;
+    }
+    if (getFactory().contextIsIrrelevant(m)) {
+      c = Everywhere.EVERYWHERE;
+    }
+    return inflate(entry(new SSACacheKey(m, c, options))).ir;
+  }
+
+  @Override
+  public DefUse findOrCreateDU(IMethod m, Context c, SSAOptions options) {
+    if (m == null) {
+      throw new IllegalArgumentException("m is null");
+    }
+    if (m.isAbstract() || m.isNative()) {
+      return null;
+    }
+    if (getFactory().contextIsIrrelevant(m)) {
+      c = Everywhere.EVERYWHERE;
+    }
+    return findOrCreateDU(inflate(entry(new SSACacheKey(m, c, options))));
+  }
+
+  @Override
+  public DefUse findOrCreateDU(IR ir, Context C) {
+    if (ir == null) {
+      throw new IllegalArgumentException("ir is null");
+    }
+    Entry e = entries.get(new SSACacheKey(ir.getMethod(), C, ir.getOptions()));
+    Inflated i = e == null ? null : e.current();
+    if (i != null && i.ir == ir) {
+      return findOrCreateDU(i);
+    }
+    // ir is not the IR held here, so a DefUse for it cannot be kept
+    long start = System.nanoTime();
+    DefUse du = makeDefUse(ir);
+    buildNanos.addAndGet(System.nanoTime() - start);
+    misses.incrementAndGet();
+    return du;
+  }
+
+  private DefUse findOrCreateDU(Inflated i) {
+    DefUse du = i.du;
+    if (du != null) {
+      hits.incrementAndGet();
+      return du;
+    }
+    synchronized (i) {
+      if (i.du == null) {
+        long start = System.nanoTime();
+        i.du = makeDefUse(i.ir);
+        buildNanos.addAndGet(System.nanoTime() - start);
+        misses.incrementAndGet();
+      } else {
+        hits.incrementAndGet();
+      }
+      return i.du;
+    }
+  }
+
+  private Entry entry(SSACacheKey k) {
+    Entry e = entries.get(k);
+    if (e == null) {
+      Entry n = new Entry(k);
+      e = entries.putIfAbsent(k, n);
+      if (e == null) {
+        e = n;
+      }
+    }
+    return e;
+  }
+
+  /**
+   * @return the IR of e and its {@link DefUse}, if any, building or rebuilding the IR if the garbage collector has cleared it
+   */
+  private Inflated inflate(Entry e) {
+    Inflated i = e.current();
+    if (i != null) {
+      hits.incrementAndGet();
+      return i;
+    }
+    synchronized (e) {
+      i = e.current();
+      if (i != null) {
+        hits.incrementAndGet();
+        return i;
+      }
+      long start = System.nanoTime();
+      IR ir;
+      if (e.compact != null) {
+        boolean rebuilt = !e.compact.isInflated();
+        ir = e.compact.getIR();
+        if (rebuilt) {
+          rebuilds.incrementAndGet();
+          rebuildNanos.addAndGet(System.nanoTime() - start);
+        } else {
+          hits.incrementAndGet();
+        }
+      } else {
+        ir = makeIR(e.key.method, e.key.context, e.key.options);
+        buildNanos.addAndGet(System.nanoTime() - start);
+        misses.incrementAndGet();
+        CompactIR compact = CompactIR.make(ir);
+        if (compact != null && entries.get(e.key) == e) {
+          e.compact = compact;
+          weight.addAndGet(compact.getSize());
+        }
+      }
+      i = new Inflated(ir);
+      e.inflated = new SoftReference<Inflated>(i);
+      return i;
+    }
+  }
+
+  private void remove(Entry e) {
+    if (entries.remove(e.key, e)) {
+      synchronized (e) {
+        if (e.compact != null) {
+          weight.addAndGet(-e.compact.getSize());
+        }
+      }
+    }
+  }
+
+  @Override
+  public void wipe() {
+    for (Entry e : entries.values()) {
+      remove(e);
+    }
+  }
+
+  @Override
+  public void invalidateIR(IMethod method, Context c) {
+    for (Entry e : entries.values()) {
+      if (e.key.method.equals(method) && SSACacheKey.equal(e.key.context, c)) {
+        remove(e);
+      }
+    }
+  }
+
+  @Override
+  public void invalidateDU(IMethod method, Context c) {
+    for (Entry e : entries.values()) {
+      if (e.key.method.equals(method) && SSACacheKey.equal(e.key.context, c)) {
+        Inflated i = e.current();
+        if (i != null) {
+          synchronized (i) {
+            i.du = null;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void invalidate(IMethod method, Context c) {
+    invalidateIR(method, c);
+  }
+
+  /**
+   * The compact form of an IR, and the IR itself while it is reachable
+   */
+  private static final class Entry {
+    private final SSACacheKey key;
+
+    /**
+     * set once, when the IR is first built; null if it cannot be packed
+     */
+    private volatile CompactIR compact;
+
+    private volatile SoftReference<Inflated> inflated;
+
+    Entry(SSACacheKey key) {
+      this.key = key;
+    }
+
+    Inflated current() {
+      SoftReference<Inflated> ref = inflated;
+      return ref == null ? null : ref.get();
+    }
+  }
+
+  /**
+   * An IR and its {@link DefUse}, which the garbage collector clears together
+   */
+  private static final class Inflated {
+    private final IR ir;
+
+    private volatile DefUse du;
+
+    Inflated(IR ir) {
+      this.ir = ir;
+    }
+  }
+}
@@ -44,17 +44,32 @@ public class DefUse {
   /**
    * prevent the IR from being collected while this is live.
    */
-  private final IR ir;
+  final IR ir;
 
   /**
    * @param ir an IR in SSA form.
    * @throws IllegalArgumentException if ir is null
    */
   public DefUse(final IR ir) {
+    this(ir, true);
+  }
+
+  /**
+   * @param ir an IR in SSA form.
+   * @param build if false, no tables are built, and the subclass must override {@link #getDef(int)}, {@link #getUses(int)} and
+   *          {@link #getNumberOfUses(int)}
+   * @throws IllegalArgumentException if ir is null
+   */
+  protected DefUse(final IR ir, boolean build) {
     if (ir == null) {
       throw new IllegalArgumentException("ir is null");
     }
     this.ir = ir;
+    if (!build) {
+      defs = null;
+      uses = null;
+      return;
+    }
 
     // set up mapping from integer -> instruction
     initAllInstructions();
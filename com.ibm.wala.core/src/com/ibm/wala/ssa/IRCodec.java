@@ -0,0 +1,1185 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.cfg.ShrikeCFG;
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IBytecodeMethod;
+import com.ibm.wala.classLoader.IClassLoader;
+import com.ibm.wala.classLoader.Language;
+import com.ibm.wala.classLoader.NewSiteReference;
+import com.ibm.wala.classLoader.ShrikeIRFactory;
+import com.ibm.wala.shrikeBT.IBinaryOpInstruction;
+import com.ibm.wala.shrikeBT.IComparisonInstruction;
+import com.ibm.wala.shrikeBT.IConditionalBranchInstruction;
+import com.ibm.wala.shrikeBT.IInvokeInstruction;
+import com.ibm.wala.shrikeBT.IShiftInstruction;
+import com.ibm.wala.shrikeBT.IUnaryOpInstruction;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+import com.ibm.wala.ssa.SSACFG.BasicBlock;
+import com.ibm.wala.ssa.SSACFG.ExceptionHandlerBasicBlock;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.FieldReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.intset.IntPair;
+import com.ibm.wala.util.strings.Atom;
+
+/**
+ * Writes {@link IR}s built from bytecode by {@link ShrikeIRFactory} in a compact binary form, and reads them back, for a
+ * {@link PersistentIRCache}. The same encoding, written to int arrays rather than bytes, backs a {@link CompactIR}.
+ *
+ * An entry holds the results of SSA construction: the instructions, the phis, pis and catch instructions of each basic block, the
+ * symbol table and the map from value numbers to locals. The control-flow graph is not saved; it is rebuilt from the bytecode,
+ * which is cheap compared with SSA construction, and which the cache key guarantees is the code the IR was built from. Types,
+ * fields and methods are written as strings, in a table at the start of the entry; all integers are variable-length.
+ *
+ * Instructions are read back through the instruction factory of the method's class loader, so they have the same classes as the
+ * instructions SSA construction creates.
+ */
+class IRCodec {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final static int NULL = 0;
+
+  private final static int ARRAY_LENGTH = 1;
+
+  private final static int ARRAY_LOAD = 2;
+
+  private final static int ARRAY_STORE = 3;
+
+  private final static int BINARY_OP = 4;
+
+  private final static int CHECK_CAST = 5;
+
+  private final static int COMPARISON = 6;
+
+  private final static int CONDITIONAL_BRANCH = 7;
+
+  private final static int CONVERSION = 8;
+
+  private final static int GET = 9;
+
+  private final static int GOTO = 10;
+
+  private final static int INSTANCEOF = 11;
+
+  private final static int INVOKE = 12;
+
+  private final static int MONITOR = 13;
+
+  private final static int NEW = 14;
+
+  private final static int PUT = 15;
+
+  private final static int RETURN = 16;
+
+  private final static int SWITCH = 17;
+
+  private final static int THROW = 18;
+
+  private final static int UNARY_OP = 19;
+
+  private final static int LOAD_METADATA = 20;
+
+  /*
+   * kinds of values in the symbol table
+   */
+  private final static int PLAIN_VALUE = 0;
+
+  private final static int CONSTANT_VALUE = 1;
+
+  private final static int PHI_VALUE = 2;
+
+  /*
+   * kinds of constants
+   */
+  private final static int NULL_CONSTANT = 0;
+
+  private final static int BOOLEAN_CONSTANT = 1;
+
+  private final static int INT_CONSTANT = 2;
+
+  private final static int LONG_CONSTANT = 3;
+
+  private final static int FLOAT_CONSTANT = 4;
+
+  private final static int DOUBLE_CONSTANT = 5;
+
+  private final static int STRING_CONSTANT = 6;
+
+  /*
+   * kinds of binary operators
+   */
+  private final static int ARITHMETIC_OPERATOR = 0;
+
+  private final static int SHIFT_OPERATOR = 1;
+
+  private IRCodec() {
+  }
+
+  /**
+   * @return the encoding of ir, or null if ir was not built by {@link ShrikeIRFactory} or holds something this class cannot write
+   */
+  static byte[] encode(IR ir) {
+    if (!canEncode(ir)) {
+      return null;
+    }
+    try {
+      Writer w = new Writer();
+      writeSymbolTable(w, ir.getSymbolTable());
+      SSAInstruction[] instructions = ir.getInstructions();
+      w.writeInt(instructions.length);
+      for (SSAInstruction s : instructions) {
+        writeInstruction(w, s);
+      }
+      writeBlocks(w, ir);
+      writeLocalMap(w, ir);
+      return w.toByteArray();
+    } catch (UnsupportedIRException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Write what {@link #decode(IBytecodeMethod, SSAOptions, Input, SSAInstruction[])} needs besides the instructions: the symbol
+   * table, the phis, pis and catch instructions of the basic blocks, and the local map.
+   *
+   * @throws UnsupportedIRException if ir holds something this class cannot write, or if {@link #canEncode(IR)} is false
+   */
+  static void encodeTables(Output w, IR ir) throws UnsupportedIRException {
+    if (!canEncode(ir)) {
+      throw new UnsupportedIRException("IR of " + ir.getMethod());
+    }
+    writeSymbolTable(w, ir.getSymbolTable());
+    writeBlocks(w, ir);
+    writeLocalMap(w, ir);
+  }
+
+  /**
+   * @return true if ir was built by {@link ShrikeIRFactory} without indirect local accesses, so that it can be rebuilt from the
+   *         results of SSA construction and the bytecode
+   */
+  static boolean canEncode(IR ir) {
+    Object delegate = ir.getControlFlowGraph().delegate;
+    if (!(ir.getMethod() instanceof IBytecodeMethod) || ir.getClass().getEnclosingClass() != ShrikeIRFactory.class
+        || !(delegate instanceof ShrikeCFG)) {
+      return false;
+    }
+    Object indirections = ir.getIndirectionData();
+    return indirections == null || (indirections instanceof ShrikeIndirectionData && ((ShrikeIndirectionData) indirections).isEmpty());
+  }
+
+  /**
+   * @param method the method the IR was built for; its bytecode must be the same as when the IR was built
+   * @param options the options the IR was built with
+   * @param buffer the encoding, as written by {@link #encode(IR)}
+   * @throws IOException if the encoding is malformed or does not fit the method
+   */
+  static IR decode(IBytecodeMethod method, SSAOptions options, ByteBuffer buffer) throws IOException {
+    int nShrikeInstructions = getNumberOfInstructions(method);
+    Reader r = new Reader(buffer, method);
+    SymbolTable symbolTable = readSymbolTable(r, method);
+
+    int nInstructions = r.readInt();
+    if (nInstructions != nShrikeInstructions) {
+      throw new IOException("expected " + nShrikeInstructions + " instructions, found " + nInstructions);
+    }
+    SSAInstruction[] instructions = new SSAInstruction[nInstructions];
+    SSAInstructionFactory insts = method.getDeclaringClass().getClassLoader().getInstructionFactory();
+    for (int i = 0; i < nInstructions; i++) {
+      instructions[i] = readInstruction(r, insts);
+    }
+    return makeIR(method, options, r, symbolTable, instructions);
+  }
+
+  /**
+   * @param tables the symbol table, blocks and local map, as written by {@link #encodeTables(Output, IR)}
+   * @param instructions the instructions of the IR, e.g. as read by {@link #readInstruction(Input, SSAInstructionFactory)}
+   * @throws IOException if the encoding is malformed or does not fit the method
+   */
+  static IR decode(IBytecodeMethod method, SSAOptions options, Input tables, SSAInstruction[] instructions) throws IOException {
+    int nShrikeInstructions = getNumberOfInstructions(method);
+    if (instructions.length != nShrikeInstructions) {
+      throw new IOException("expected " + nShrikeInstructions + " instructions, found " + instructions.length);
+    }
+    return makeIR(method, options, tables, readSymbolTable(tables, method), instructions);
+  }
+
+  private static int getNumberOfInstructions(IBytecodeMethod method) throws IOException {
+    try {
+      return method.getInstructions().length;
+    } catch (InvalidClassFileException e) {
+      throw new IOException("bad bytecodes for " + method);
+    }
+  }
+
+  private static IR makeIR(IBytecodeMethod method, SSAOptions options, Input r, SymbolTable symbolTable,
+      SSAInstruction[] instructions) throws IOException {
+    SSAInstructionFactory insts = method.getDeclaringClass().getClassLoader().getInstructionFactory();
+    ShrikeCFG shrikeCFG = ShrikeCFG.make(method);
+    SSACFG cfg = new SSACFG(method, shrikeCFG, instructions);
+    readBlocks(r, cfg, shrikeCFG, symbolTable, instructions, insts);
+    SSABuilder.SSA2LocalMap localMap = readLocalMap(r, shrikeCFG);
+    return new DecodedIR(method, instructions, symbolTable, cfg, options, localMap);
+  }
+
+  private static void writeSymbolTable(Output w, SymbolTable symbolTable) throws UnsupportedIRException {
+    if (symbolTable.hasDefaultValues()) {
+      throw new UnsupportedIRException("default values");
+    }
+    int nParameters = symbolTable.getNumberOfParameters();
+    int max = symbolTable.getMaxValueNumber();
+    w.writeInt(nParameters);
+    w.writeInt(max);
+    for (int vn = 1; vn <= nParameters; vn++) {
+      if (symbolTable.getValue(vn) != null) {
+        throw new UnsupportedIRException("value for parameter " + vn);
+      }
+    }
+    for (int vn = nParameters + 1; vn <= max; vn++) {
+      Value v = symbolTable.getValue(vn);
+      if (v == null) {
+        w.writeInt(PLAIN_VALUE);
+      } else if (v instanceof ConstantValue) {
+        w.writeInt(CONSTANT_VALUE);
+        writeConstant(w, ((ConstantValue) v).getValue());
+      } else if (v instanceof PhiValue) {
+        w.writeInt(PHI_VALUE);
+        writeUses(w, ((PhiValue) v).getPhiInstruction());
+      } else {
+        throw new UnsupportedIRException("value " + v);
+      }
+    }
+  }
+
+  /**
+   * Rebuild the symbol table by allocating its value numbers in the order SSA construction did
+   */
+  private static SymbolTable readSymbolTable(Input r, IBytecodeMethod method) throws IOException {
+    int nParameters = r.readInt();
+    if (nParameters != method.getNumberOfParameters()) {
+      throw new IOException("expected " + method.getNumberOfParameters() + " parameters, found " + nParameters);
+    }
+    int max = r.readInt();
+    SymbolTable symbolTable = new SymbolTable(nParameters);
+    for (int vn = nParameters + 1; vn <= max; vn++) {
+      int kind = r.readInt();
+      int allocated;
+      switch (kind) {
+      case PLAIN_VALUE:
+        allocated = symbolTable.newSymbol();
+        break;
+      case CONSTANT_VALUE:
+        allocated = symbolTable.findOrCreateConstant(readConstant(r));
+        break;
+      case PHI_VALUE:
+        allocated = symbolTable.newPhi(r.readInts());
+        break;
+      default:
+        throw new IOException("bad value kind " + kind);
+      }
+      if (allocated != vn) {
+        throw new IOException("value " + vn + " restored as " + allocated);
+      }
+    }
+    return symbolTable;
+  }
+
+  private static void writeConstant(Output w, Object o) throws UnsupportedIRException {
+    if (o == null) {
+      w.writeInt(NULL_CONSTANT);
+    } else if (o instanceof Boolean) {
+      w.writeInt(BOOLEAN_CONSTANT);
+      w.writeBoolean(((Boolean) o).booleanValue());
+    } else if (o instanceof Integer) {
+      w.writeInt(INT_CONSTANT);
+      w.writeInt(((Integer) o).intValue());
+    } else if (o instanceof Long) {
+      w.writeInt(LONG_CONSTANT);
+      w.writeLong(((Long) o).longValue());
+    } else if (o instanceof Float) {
+      w.writeInt(FLOAT_CONSTANT);
+      w.writeInt(Float.floatToRawIntBits(((Float) o).floatValue()));
+    } else if (o instanceof Double) {
+      w.writeInt(DOUBLE_CONSTANT);
+      w.writeLong(Double.doubleToRawLongBits(((Double) o).doubleValue()));
+    } else if (o instanceof String) {
+      w.writeInt(STRING_CONSTANT);
+      w.writeString((String) o);
+    } else {
+      throw new UnsupportedIRException("constant " + o);
+    }
+  }
+
+  private static Object readConstant(Input r) throws IOException {
+    int kind = r.readInt();
+    switch (kind) {
+    case NULL_CONSTANT:
+      return null;
+    case BOOLEAN_CONSTANT:
+      return Boolean.valueOf(r.readBoolean());
+    case INT_CONSTANT:
+      return Integer.valueOf(r.readInt());
+    case LONG_CONSTANT:
+      return Long.valueOf(r.readLong());
+    case FLOAT_CONSTANT:
+      return Float.valueOf(Float.intBitsToFloat(r.readInt()));
+    case DOUBLE_CONSTANT:
+      return Double.valueOf(Double.longBitsToDouble(r.readLong()));
+    case STRING_CONSTANT:
+      return r.readString();
+    default:
+      throw new IOException("bad constant kind " + kind);
+    }
+  }
+
+  private static void writeUses(Output w, SSAInstruction s) {
+    w.writeInt(s.getNumberOfUses());
+    for (int i = 0; i < s.getNumberOfUses(); i++) {
+      w.writeInt(s.getUse(i));
+    }
+  }
+
+  static void writeInstruction(Output w, SSAInstruction s) throws UnsupportedIRException {
+    if (s == null) {
+      w.writeInt(NULL);
+      return;
+    }
+    if (s instanceof SSAArrayLengthInstruction) {
+      SSAArrayLengthInstruction a = (SSAArrayLengthInstruction) s;
+      w.writeInt(ARRAY_LENGTH);
+      w.writeInt(s.iindex);
+      w.writeInt(a.getDef());
+      w.writeInt(a.getArrayRef());
+    } else if (s instanceof SSAArrayLoadInstruction) {
+      SSAArrayLoadInstruction a = (SSAArrayLoadInstruction) s;
+      w.writeInt(ARRAY_LOAD);
+      w.writeInt(s.iindex);
+      w.writeInt(a.getDef());
+      w.writeInt(a.getArrayRef());
+      w.writeInt(a.getIndex());
+      w.writeType(a.getElementType());
+    } else if (s instanceof SSAArrayStoreInstruction) {
+      SSAArrayStoreInstruction a = (SSAArrayStoreInstruction) s;
+      w.writeInt(ARRAY_STORE);
+      w.writeInt(s.iindex);
+      w.writeInt(a.getArrayRef());
+      w.writeInt(a.getIndex());
+      w.writeInt(a.getValue());
+      w.writeType(a.getElementType());
+    } else if (s instanceof SSABinaryOpInstruction) {
+      SSABinaryOpInstruction b = (SSABinaryOpInstruction) s;
+      w.writeInt(BINARY_OP);
+      w.writeInt(s.iindex);
+      if (b.getOperator() instanceof IBinaryOpInstruction.Operator) {
+        w.writeInt(ARITHMETIC_OPERATOR);
+        w.writeInt(((IBinaryOpInstruction.Operator) b.getOperator()).ordinal());
+      } else if (b.getOperator() instanceof IShiftInstruction.Operator) {
+        w.writeInt(SHIFT_OPERATOR);
+        w.writeInt(((IShiftInstruction.Operator) b.getOperator()).ordinal());
+      } else {
+        throw new UnsupportedIRException("operator " + b.getOperator());
+      }
+      w.writeBoolean(b.mayBeIntegerOp());
+      w.writeInt(b.getDef());
+      w.writeInt(b.getUse(0));
+      w.writeInt(b.getUse(1));
+    } else if (s instanceof SSACheckCastInstruction) {
+      SSACheckCastInstruction c = (SSACheckCastInstruction) s;
+      w.writeInt(CHECK_CAST);
+      w.writeInt(s.iindex);
+      w.writeInt(c.getResult());
+      w.writeInt(c.getVal());
+      TypeReference[] types = c.getDeclaredResultTypes();
+      w.writeInt(types.length);
+      for (TypeReference t : types) {
+        w.writeType(t);
+      }
+      w.writeBoolean(c.isPEI());
+    } else if (s instanceof SSAComparisonInstruction) {
+      SSAComparisonInstruction c = (SSAComparisonInstruction) s;
+      w.writeInt(COMPARISON);
+      w.writeInt(s.iindex);
+      w.writeInt(c.getOperator().ordinal());
+      w.writeInt(c.getDef());
+      w.writeInt(c.getUse(0));
+      w.writeInt(c.getUse(1));
+    } else if (s instanceof SSAConditionalBranchInstruction) {
+      SSAConditionalBranchInstruction c = (SSAConditionalBranchInstruction) s;
+      if (!(c.getOperator() instanceof IConditionalBranchInstruction.Operator)) {
+        throw new UnsupportedIRException("operator " + c.getOperator());
+      }
+      w.writeInt(CONDITIONAL_BRANCH);
+      w.writeInt(s.iindex);
+      w.writeInt(((IConditionalBranchInstruction.Operator) c.getOperator()).ordinal());
+      w.writeType(c.getType());
+      w.writeInt(c.getUse(0));
+      w.writeInt(c.getUse(1));
+    } else if (s instanceof SSAConversionInstruction) {
+      SSAConversionInstruction c = (SSAConversionInstruction) s;
+      w.writeInt(CONVERSION);
+      w.writeInt(s.iindex);
+      w.writeInt(c.getDef());
+      w.writeInt(c.getUse(0));
+      w.writeType(c.getFromType());
+      w.writeType(c.getToType());
+    } else if (s instanceof SSAGetInstruction) {
+      SSAGetInstruction g = (SSAGetInstruction) s;
+      w.writeInt(GET);
+      w.writeInt(s.iindex);
+      w.writeBoolean(g.isStatic());
+      w.writeInt(g.getDef());
+      if (!g.isStatic()) {
+        w.writeInt(g.getRef());
+      }
+      w.writeField(g.getDeclaredField());
+    } else if (s instanceof SSAGotoInstruction) {
+      w.writeInt(GOTO);
+      w.writeInt(s.iindex);
+    } else if (s instanceof SSAInstanceofInstruction) {
+      SSAInstanceofInstruction i = (SSAInstanceofInstruction) s;
+      w.writeInt(INSTANCEOF);
+      w.writeInt(s.iindex);
+      w.writeInt(i.getDef());
+      w.writeInt(i.getRef());
+      w.writeType(i.getCheckedType());
+    } else if (s instanceof SSAInvokeInstruction) {
+      SSAInvokeInstruction i = (SSAInvokeInstruction) s;
+      CallSiteReference site = i.getCallSite();
+      if (!(site.getInvocationCode() instanceof IInvokeInstruction.Dispatch)) {
+        throw new UnsupportedIRException("invocation code " + site.getInvocationCode());
+      }
+      w.writeInt(INVOKE);
+      w.writeInt(s.iindex);
+      w.writeBoolean(i.hasDef());
+      if (i.hasDef()) {
+        w.writeInt(i.getDef());
+      }
+      writeUses(w, i);
+      w.writeInt(i.getException());
+      w.writeInt(site.getProgramCounter());
+      w.writeInt(((IInvokeInstruction.Dispatch) site.getInvocationCode()).ordinal());
+      w.writeMethod(site.getDeclaredTarget());
+    } else if (s instanceof SSAMonitorInstruction) {
+      SSAMonitorInstruction m = (SSAMonitorInstruction) s;
+      w.writeInt(MONITOR);
+      w.writeInt(s.iindex);
+      w.writeInt(m.getRef());
+      w.writeBoolean(m.isMonitorEnter());
+    } else if (s instanceof SSANewInstruction) {
+      SSANewInstruction n = (SSANewInstruction) s;
+      w.writeInt(NEW);
+      w.writeInt(s.iindex);
+      w.writeInt(n.getDef());
+      w.writeInt(n.getNewSite().getProgramCounter());
+      w.writeType(n.getNewSite().getDeclaredType());
+      writeUses(w, n);
+    } else if (s instanceof SSAPutInstruction) {
+      SSAPutInstruction p = (SSAPutInstruction) s;
+      w.writeInt(PUT);
+      w.writeInt(s.iindex);
+      w.writeBoolean(p.isStatic());
+      if (!p.isStatic()) {
+        w.writeInt(p.getRef());
+      }
+      w.writeInt(p.getVal());
+      w.writeField(p.getDeclaredField());
+    } else if (s instanceof SSAReturnInstruction) {
+      SSAReturnInstruction r = (SSAReturnInstruction) s;
+      w.writeInt(RETURN);
+      w.writeInt(s.iindex);
+      w.writeBoolean(r.returnsVoid());
+      if (!r.returnsVoid()) {
+        w.writeInt(r.getResult());
+        w.writeBoolean(r.returnsPrimitiveType());
+      }
+    } else if (s instanceof SSASwitchInstruction) {
+      SSASwitchInstruction sw = (SSASwitchInstruction) s;
+      w.writeInt(SWITCH);
+      w.writeInt(s.iindex);
+      w.writeInt(sw.getUse(0));
+      w.writeInt(sw.getDefault());
+      w.writeInts(sw.getCasesAndLabels());
+    } else if (s instanceof SSAThrowInstruction) {
+      w.writeInt(THROW);
+      w.writeInt(s.iindex);
+      w.writeInt(((SSAThrowInstruction) s).getException());
+    } else if (s instanceof SSAUnaryOpInstruction && !(s instanceof SSAPiInstruction)) {
+      SSAUnaryOpInstruction u = (SSAUnaryOpInstruction) s;
+      if (!(u.getOpcode() instanceof IUnaryOpInstruction.Operator)) {
+        throw new UnsupportedIRException("operator " + u.getOpcode());
+      }
+      w.writeInt(UNARY_OP);
+      w.writeInt(s.iindex);
+      w.writeInt(((IUnaryOpInstruction.Operator) u.getOpcode()).ordinal());
+      w.writeInt(u.getDef());
+      w.writeInt(u.getUse(0));
+    } else if (s instanceof SSALoadMetadataInstruction) {
+      SSALoadMetadataInstruction l = (SSALoadMetadataInstruction) s;
+      if (!(l.getToken() instanceof TypeReference)) {
+        throw new UnsupportedIRException("metadata " + l.getToken());
+      }
+      w.writeInt(LOAD_METADATA);
+      w.writeInt(s.iindex);
+      w.writeInt(l.getDef());
+      w.writeType(l.getType());
+      w.writeType((TypeReference) l.getToken());
+    } else {
+      throw new UnsupportedIRException("instruction " + s);
+    }
+  }
+
+  static SSAInstruction readInstruction(Input r, SSAInstructionFactory insts) throws IOException {
+    int kind = r.readInt();
+    if (kind == NULL) {
+      return null;
+    }
+    int iindex = r.readInt();
+    switch (kind) {
+    case ARRAY_LENGTH: {
+      int def = r.readInt();
+      return insts.ArrayLengthInstruction(iindex, def, r.readInt());
+    }
+    case ARRAY_LOAD: {
+      int def = r.readInt();
+      int arrayRef = r.readInt();
+      int index = r.readInt();
+      return insts.ArrayLoadInstruction(iindex, def, arrayRef, index, r.readType());
+    }
+    case ARRAY_STORE: {
+      int arrayRef = r.readInt();
+      int index = r.readInt();
+      int value = r.readInt();
+      return insts.ArrayStoreInstruction(iindex, arrayRef, index, value, r.readType());
+    }
+    case BINARY_OP: {
+      int operatorKind = r.readInt();
+      int ordinal = r.readInt();
+      IBinaryOpInstruction.IOperator operator;
+      if (operatorKind == ARITHMETIC_OPERATOR) {
+        operator = element(IBinaryOpInstruction.Operator.values(), ordinal);
+      } else if (operatorKind == SHIFT_OPERATOR) {
+        operator = element(IShiftInstruction.Operator.values(), ordinal);
+      } else {
+        throw new IOException("bad operator kind " + operatorKind);
+      }
+      boolean mayBeInteger = r.readBoolean();
+      int def = r.readInt();
+      int val1 = r.readInt();
+      int val2 = r.readInt();
+      return insts.BinaryOpInstruction(iindex, operator, false, false, def, val1, val2, mayBeInteger);
+    }
+    case CHECK_CAST: {
+      int def = r.readInt();
+      int val = r.readInt();
+      TypeReference[] types = new TypeReference[r.readInt()];
+      for (int i = 0; i < types.length; i++) {
+        types[i] = r.readType();
+      }
+      return insts.CheckCastInstruction(iindex, def, val, types, r.readBoolean());
+    }
+    case COMPARISON: {
+      IComparisonInstruction.Operator operator = element(IComparisonInstruction.Operator.values(), r.readInt());
+      int def = r.readInt();
+      int val1 = r.readInt();
+      return insts.ComparisonInstruction(iindex, operator, def, val1, r.readInt());
+    }
+    case CONDITIONAL_BRANCH: {
+      IConditionalBranchInstruction.Operator operator = element(IConditionalBranchInstruction.Operator.values(), r.readInt());
+      TypeReference type = r.readType();
+      int val1 = r.readInt();
+      return insts.ConditionalBranchInstruction(iindex, operator, type, val1, r.readInt());
+    }
+    case CONVERSION: {
+      int def = r.readInt();
+      int val = r.readInt();
+      TypeReference fromType = r.readType();
+      return insts.ConversionInstruction(iindex, def, val, fromType, r.readType(), false);
+    }
+    case GET: {
+      boolean isStatic = r.readBoolean();
+      int def = r.readInt();
+      if (isStatic) {
+        return insts.GetInstruction(iindex, def, r.readField());
+      } else {
+        int ref = r.readInt();
+        return insts.GetInstruction(iindex, def, ref, r.readField());
+      }
+    }
+    case GOTO:
+      return insts.GotoInstruction(iindex);
+    case INSTANCEOF: {
+      int def = r.readInt();
+      int ref = r.readInt();
+      return insts.InstanceofInstruction(iindex, def, ref, r.readType());
+    }
+    case INVOKE: {
+      boolean hasDef = r.readBoolean();
+      int def = hasDef ? r.readInt() : -1;
+      int[] params = r.readInts();
+      int exception = r.readInt();
+      int pc = r.readInt();
+      IInvokeInstruction.Dispatch dispatch = element(IInvokeInstruction.Dispatch.values(), r.readInt());
+      CallSiteReference site = CallSiteReference.make(pc, r.readMethod(), dispatch);
+      return hasDef ? insts.InvokeInstruction(iindex, def, params, exception, site) : insts.InvokeInstruction(iindex, params,
+          exception, site);
+    }
+    case MONITOR: {
+      int ref = r.readInt();
+      return insts.MonitorInstruction(iindex, ref, r.readBoolean());
+    }
+    case NEW: {
+      int def = r.readInt();
+      int pc = r.readInt();
+      NewSiteReference site = NewSiteReference.make(pc, r.readType());
+      int[] params = r.readInts();
+      return params.length == 0 ? insts.NewInstruction(iindex, def, site) : insts.NewInstruction(iindex, def, site, params);
+    }
+    case PUT: {
+      boolean isStatic = r.readBoolean();
+      if (isStatic) {
+        int val = r.readInt();
+        return insts.PutInstruction(iindex, val, r.readField());
+      } else {
+        int ref = r.readInt();
+        int val = r.readInt();
+        return insts.PutInstruction(iindex, ref, val, r.readField());
+      }
+    }
+    case RETURN: {
+      if (r.readBoolean()) {
+        return insts.ReturnInstruction(iindex);
+      } else {
+        int result = r.readInt();
+        return insts.ReturnInstruction(iindex, result, r.readBoolean());
+      }
+    }
+    case SWITCH: {
+      int val = r.readInt();
+      int defaultLabel = r.readInt();
+      return insts.SwitchInstruction(iindex, val, defaultLabel, r.readInts());
+    }
+    case THROW:
+      return insts.ThrowInstruction(iindex, r.readInt());
+    case UNARY_OP: {
+      IUnaryOpInstruction.Operator operator = element(IUnaryOpInstruction.Operator.values(), r.readInt());
+      int def = r.readInt();
+      return insts.UnaryOpInstruction(iindex, operator, def, r.readInt());
+    }
+    case LOAD_METADATA: {
+      int def = r.readInt();
+      TypeReference type = r.readType();
+      return insts.LoadMetadataInstruction(iindex, def, type, r.readType());
+    }
+    default:
+      throw new IOException("bad instruction kind " + kind);
+    }
+  }
+
+  private static void writeBlocks(Output w, IR ir) throws UnsupportedIRException {
+    SSACFG cfg = ir.getControlFlowGraph();
+    SymbolTable symbolTable = ir.getSymbolTable();
+    SSAInstruction[] instructions = ir.getInstructions();
+    w.writeInt(cfg.getNumberOfNodes());
+    for (int i = 0; i < cfg.getNumberOfNodes(); i++) {
+      BasicBlock b = cfg.getNode(i);
+      writePhis(w, b.getStackSlotPhis(), symbolTable);
+      writePhis(w, b.getLocalPhis(), symbolTable);
+      if (b instanceof ExceptionHandlerBasicBlock) {
+        SSAGetCaughtExceptionInstruction s = ((ExceptionHandlerBasicBlock) b).getCatchInstruction();
+        w.writeBoolean(s != null);
+        if (s != null) {
+          if (s.getBasicBlockNumber() != i) {
+            throw new UnsupportedIRException("catch instruction of another block");
+          }
+          w.writeInt(s.iindex);
+          w.writeInt(s.getException());
+        }
+      }
+      List<SSAPiInstruction> pis = new ArrayList<SSAPiInstruction>();
+      for (Iterator<SSAPiInstruction> it = b.iteratePis(); it.hasNext();) {
+        pis.add(it.next());
+      }
+      w.writeInt(pis.size());
+      for (SSAPiInstruction pi : pis) {
+        w.writeInt(pi.iindex);
+        w.writeInt(pi.getDef());
+        w.writeInt(pi.getVal());
+        w.writeInt(pi.getPiBlock());
+        w.writeInt(pi.getSuccessor());
+        writeCause(w, instructions, pi.getCause());
+      }
+    }
+  }
+
+  /**
+   * A phi is written as its def, which identifies the phi held by the symbol table; empty slots as 0
+   */
+  private static void writePhis(Output w, SSAPhiInstruction[] phis, SymbolTable symbolTable) throws UnsupportedIRException {
+    if (phis == null) {
+      w.writeInt(0);
+      return;
+    }
+    w.writeInt(phis.length + 1);
+    for (SSAPhiInstruction phi : phis) {
+      if (phi == null) {
+        w.writeInt(0);
+      } else {
+        Value v = symbolTable.getValue(phi.getDef());
+        if (!(v instanceof PhiValue) || ((PhiValue) v).getPhiInstruction() != phi) {
+          throw new UnsupportedIRException("phi not in the symbol table: " + phi);
+        }
+        w.writeInt(phi.getDef());
+      }
+    }
+  }
+
+  private static void readBlocks(Input r, SSACFG cfg, ShrikeCFG shrikeCFG, SymbolTable symbolTable, SSAInstruction[] instructions,
+      SSAInstructionFactory insts) throws IOException {
+    int nBlocks = r.readInt();
+    if (nBlocks != cfg.getNumberOfNodes()) {
+      throw new IOException("expected " + cfg.getNumberOfNodes() + " blocks, found " + nBlocks);
+    }
+    for (int i = 0; i < nBlocks; i++) {
+      BasicBlock b = cfg.getNode(i);
+      SSAPhiInstruction[] stackSlotPhis = readPhis(r, symbolTable);
+      b.setPhis(stackSlotPhis, readPhis(r, symbolTable));
+      if (b instanceof ExceptionHandlerBasicBlock) {
+        if (r.readBoolean()) {
+          int iindex = r.readInt();
+          ((ExceptionHandlerBasicBlock) b).setCatchInstruction(insts.GetCaughtExceptionInstruction(iindex, i, r.readInt()));
+        }
+      }
+      int nPis = r.readInt();
+      for (int j = 0; j < nPis; j++) {
+        int iindex = r.readInt();
+        int def = r.readInt();
+        int val = r.readInt();
+        int piBlock = r.readInt();
+        int successor = r.readInt();
+        int cause = r.readInt();
+        SSAPiInstruction pi = insts.PiInstruction(iindex, def, val, piBlock, successor, cause == -1 ? readInstruction(r, insts)
+            : element(instructions, cause));
+        // SSA construction keys pis by the successor in the ShrikeCFG
+        b.addPiForRefAndPath(val, shrikeCFG.getNode(successor), pi);
+      }
+    }
+  }
+
+  private static SSAPhiInstruction[] readPhis(Input r, SymbolTable symbolTable) throws IOException {
+    int n = r.readInt();
+    if (n == 0) {
+      return null;
+    }
+    SSAPhiInstruction[] phis = new SSAPhiInstruction[n - 1];
+    for (int i = 0; i < phis.length; i++) {
+      int def = r.readInt();
+      if (def != 0) {
+        try {
+          phis[i] = symbolTable.getPhiValue(def).getPhiInstruction();
+        } catch (IllegalArgumentException e) {
+          throw new IOException("no phi for " + def);
+        }
+      }
+    }
+    return phis;
+  }
+
+  private static void writeLocalMap(Output w, IR ir) throws UnsupportedIRException {
+    IR.SSA2LocalMap map = ir.getLocalMap();
+    if (map == null) {
+      w.writeBoolean(false);
+      return;
+    }
+    if (!(map instanceof SSABuilder.SSA2LocalMap)) {
+      throw new UnsupportedIRException("local map " + map);
+    }
+    w.writeBoolean(true);
+    SSABuilder.SSA2LocalMap localMap = (SSABuilder.SSA2LocalMap) map;
+    IntPair[] stores = localMap.getLocalStoreMap();
+    w.writeInt(stores.length);
+    for (IntPair p : stores) {
+      w.writeBoolean(p != null);
+      if (p != null) {
+        w.writeInt(p.getX());
+        w.writeInt(p.getY());
+      }
+    }
+    int[][] states = localMap.getBlock2LocalState();
+    w.writeInt(states.length);
+    for (int[] s : states) {
+      w.writeBoolean(s != null);
+      if (s != null) {
+        w.writeInts(s);
+      }
+    }
+  }
+
+  private static SSABuilder.SSA2LocalMap readLocalMap(Input r, ShrikeCFG shrikeCFG) throws IOException {
+    if (!r.readBoolean()) {
+      return null;
+    }
+    IntPair[] stores = new IntPair[r.readInt()];
+    for (int i = 0; i < stores.length; i++) {
+      if (r.readBoolean()) {
+        int x = r.readInt();
+        stores[i] = new IntPair(x, r.readInt());
+      }
+    }
+    int[][] states = new int[r.readInt()][];
+    for (int i = 0; i < states.length; i++) {
+      if (r.readBoolean()) {
+        states[i] = r.readInts();
+      }
+    }
+    return new SSABuilder.SSA2LocalMap(shrikeCFG, stores, states);
+  }
+
+  /**
+   * The cause of a pi is written as its index in the instructions of the IR. SSA construction may reuse a pi whose cause comes from
+   * an earlier pass over its block, and so is not in the IR; such causes, and null, are written as -1 followed by the instruction.
+   */
+  private static void writeCause(Output w, SSAInstruction[] instructions, SSAInstruction s) throws UnsupportedIRException {
+    if (s != null) {
+      if (s.iindex >= 0 && s.iindex < instructions.length && instructions[s.iindex] == s) {
+        w.writeInt(s.iindex);
+        return;
+      }
+      for (int i = 0; i < instructions.length; i++) {
+        if (instructions[i] == s) {
+          w.writeInt(i);
+          return;
+        }
+      }
+    }
+    w.writeInt(-1);
+    writeInstruction(w, s);
+  }
+
+  private static <T> T element(T[] a, int i) throws IOException {
+    if (i < 0 || i >= a.length) {
+      throw new IOException("bad index " + i);
+    }
+    return a[i];
+  }
+
+  /**
+   * The IR restored from an entry. It answers the same queries as the IR built by {@link ShrikeIRFactory}.
+   */
+  private static final class DecodedIR extends IR {
+    private final SSABuilder.SSA2LocalMap localMap;
+
+    private final ShrikeIndirectionData indirectionData;
+
+    DecodedIR(IBytecodeMethod method, SSAInstruction[] instructions, SymbolTable symbolTable, SSACFG cfg, SSAOptions options,
+        SSABuilder.SSA2LocalMap localMap) {
+      super(method, instructions, symbolTable, cfg, options);
+      this.localMap = localMap;
+      this.indirectionData = new ShrikeIndirectionData(instructions.length);
+      setupLocationMap();
+    }
+
+    @Override
+    protected String instructionPosition(int instructionIndex) {
+      IBytecodeMethod method = (IBytecodeMethod) getMethod();
+      try {
+        int bcIndex = method.getBytecodeIndex(instructionIndex);
+        int lineNumber = method.getLineNumber(bcIndex);
+
+        if (lineNumber == -1) {
+          return "";
+        } else {
+          return "(line " + lineNumber + ")";
+        }
+      } catch (InvalidClassFileException e) {
+        return "";
+      }
+    }
+
+    @Override
+    public SSA2LocalMap getLocalMap() {
+      return localMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T extends SSAIndirectionData.Name> SSAIndirectionData<T> getIndirectionData() {
+      return (SSAIndirectionData<T>) indirectionData;
+    }
+  }
+
+  /**
+   * Thrown when an IR holds something the encoding cannot express
+   */
+  static final class UnsupportedIRException extends Exception {
+    private static final long serialVersionUID = -3271598340719467153L;
+
+    UnsupportedIRException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Where an encoding is written
+   */
+  static abstract class Output {
+    abstract void writeInt(int i);
+
+    abstract void writeLong(long l);
+
+    abstract void writeBoolean(boolean b);
+
+    void writeInts(int[] a) {
+      writeInt(a.length);
+      for (int i : a) {
+        writeInt(i);
+      }
+    }
+
+    abstract void writeString(String s);
+
+    abstract void writeType(TypeReference t);
+
+    abstract void writeField(FieldReference f);
+
+    abstract void writeMethod(MethodReference m);
+  }
+
+  /**
+   * Where an encoding is read from
+   */
+  static abstract class Input {
+    abstract int readInt() throws IOException;
+
+    abstract long readLong() throws IOException;
+
+    abstract boolean readBoolean() throws IOException;
+
+    abstract int[] readInts() throws IOException;
+
+    abstract String readString() throws IOException;
+
+    abstract TypeReference readType() throws IOException;
+
+    abstract FieldReference readField() throws IOException;
+
+    abstract MethodReference readMethod() throws IOException;
+  }
+
+  /**
+   * Writes an entry: the body goes to a buffer, and the strings it refers to are written in front of it at the end.
+   */
+  private static final class Writer extends Output {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private final Map<String, Integer> stringIndices = HashMapFactory.make();
+
+    private final List<String> strings = new ArrayList<String>();
+
+    @Override
+    void writeInt(int i) {
+      writeUnsigned(body, (i << 1) ^ (i >> 31));
+    }
+
+    @Override
+    void writeLong(long l) {
+      long zigzag = (l << 1) ^ (l >> 63);
+      while ((zigzag & ~0x7FL) != 0) {
+        body.write((int) ((zigzag & 0x7F) | 0x80));
+        zigzag >>>= 7;
+      }
+      body.write((int) zigzag);
+    }
+
+    @Override
+    void writeBoolean(boolean b) {
+      body.write(b ? 1 : 0);
+    }
+
+    @Override
+    void writeString(String s) {
+      Integer index = stringIndices.get(s);
+      if (index == null) {
+        index = strings.size();
+        stringIndices.put(s, index);
+        strings.add(s);
+      }
+      writeInt(index);
+    }
+
+    @Override
+    void writeType(TypeReference t) {
+      writeString(t.getClassLoader().getName().toString());
+      writeString(t.getName().toString());
+    }
+
+    @Override
+    void writeField(FieldReference f) {
+      writeType(f.getDeclaringClass());
+      writeString(f.getName().toString());
+      writeType(f.getFieldType());
+    }
+
+    @Override
+    void writeMethod(MethodReference m) {
+      writeType(m.getDeclaringClass());
+      writeString(m.getSelector().toString());
+    }
+
+    byte[] toByteArray() {
+      ByteArrayOutputStream result = new ByteArrayOutputStream(body.size() + 16 * strings.size());
+      writeUnsigned(result, strings.size());
+      for (String s : strings) {
+        byte[] b = s.getBytes(UTF8);
+        writeUnsigned(result, b.length);
+        result.write(b, 0, b.length);
+      }
+      byte[] b = body.toByteArray();
+      result.write(b, 0, b.length);
+      return result.toByteArray();
+    }
+
+    private static void writeUnsigned(ByteArrayOutputStream out, int i) {
+      while ((i & ~0x7F) != 0) {
+        out.write((i & 0x7F) | 0x80);
+        i >>>= 7;
+      }
+      out.write(i);
+    }
+  }
+
+  private static final class Reader extends Input {
+    private final ByteBuffer in;
+
+    private final String[] strings;
+
+    private final Language language;
+
+    /**
+     * the loaders of the method's class hierarchy, by name
+     */
+    private final Map<String, ClassLoaderReference> loaders = HashMapFactory.make();
+
+    Reader(ByteBuffer in, IBytecodeMethod method) throws IOException {
+      this.in = in;
+      this.language = method.getDeclaringClass().getClassLoader().getLanguage();
+      for (IClassLoader l : method.getClassHierarchy().getLoaders()) {
+        loaders.put(l.getReference().getName().toString(), l.getReference());
+      }
+      strings = new String[readLength()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] b = new byte[readLength()];
+        in.get(b);
+        strings[i] = new String(b, UTF8);
+      }
+    }
+
+    @Override
+    int readInt() {
+      int zigzag = readUnsigned();
+      return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    @Override
+    long readLong() {
+      long result = 0;
+      for (int shift = 0;; shift += 7) {
+        byte b = in.get();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          break;
+        }
+      }
+      return (result >>> 1) ^ -(result & 1);
+    }
+
+    @Override
+    boolean readBoolean() {
+      return in.get() != 0;
+    }
+
+    @Override
+    int[] readInts() throws IOException {
+      int n = readInt();
+      if (n < 0 || n > in.remaining()) {
+        throw new IOException("bad length " + n);
+      }
+      int[] result = new int[n];
+      for (int i = 0; i < n; i++) {
+        result[i] = readInt();
+      }
+      return result;
+    }
+
+    @Override
+    String readString() throws IOException {
+      return element(strings, readInt());
+    }
+
+    @Override
+    TypeReference readType() throws IOException {
+      String loaderName = readString();
+      ClassLoaderReference loader = loaders.get(loaderName);
+      if (loader == null) {
+        throw new IOException("unknown loader " + loaderName);
+      }
+      return TypeReference.findOrCreate(loader, readString());
+    }
+
+    @Override
+    FieldReference readField() throws IOException {
+      TypeReference declaringClass = readType();
+      Atom name = Atom.findOrCreateUnicodeAtom(readString());
+      return FieldReference.findOrCreate(declaringClass, name, readType());
+    }
+
+    @Override
+    MethodReference readMethod() throws IOException {
+      TypeReference declaringClass = readType();
+      return MethodReference.findOrCreate(declaringClass, Selector.make(language, readString()));
+    }
+
+    /**
+     * read a length, which cannot exceed the bytes left
+     */
+    private int readLength() throws IOException {
+      int n = readUnsigned();
+      if (n < 0 || n > in.remaining()) {
+        throw new IOException("bad length " + n);
+      }
+      return n;
+    }
+
+    private int readUnsigned() {
+      int result = 0;
+      for (int shift = 0;; shift += 7) {
+        byte b = in.get();
+        result |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,461 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.wala.classLoader.IBytecodeMethod;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.classLoader.ShrikeCTMethod;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+
+/**
+ * A second-level cache of {@link IR}s on local disk, for use behind an {@link SSACache}. The IR a {@link DefaultIRFactory} builds
+ * for a bytecode method depends only on the method's class file and the {@link SSAOptions}, so IRs saved by one run can be
+ * reused by the next, which skips SSA construction for them. Only IRs that do not depend on the context, as told by
+ * {@link IRFactory#contextIsIrrelevant(IMethod)}, are kept.
+ *
+ * The cache holds one file per class file, named by the SHA-1 hash of the class file's bytes, so that a changed class never finds
+ * stale IRs. Within a file, an IR is keyed by the class loader, the method's selector, the factory that built it, as named by
+ * {@link #factoryKey(IRFactory)}, and the {@link SSAOptions}. A file is read, or mapped if it is large, the first time one of its IRs is asked for; each IR is decoded
+ * when it is asked for. New IRs are kept in memory until {@link #flush()}, which merges them into the files; since a file is
+ * replaced by renaming a complete new one, several processes can share a directory, at worst losing each other's additions.
+ *
+ * By default, only IRs for methods of classes in the primordial and extension loaders are cached; override
+ * {@link #isCached(IMethod)} to choose others.
+ *
+ * This class is thread-safe.
+ */
+public class PersistentIRCache {
+
+  private final static int MAGIC = 0x57414c49;
+
+  /**
+   * increment whenever the format of a file or of an encoded IR changes, or SSA construction produces different IRs
+   */
+  private final static int VERSION = 2;
+
+  /**
+   * files at least this large are mapped; smaller ones are read
+   */
+  private final static int MIN_MAPPED_SIZE = 4096;
+
+  /**
+   * flush when the IRs waiting to be written take this many bytes
+   */
+  private final static long MAX_PENDING_BYTES = 16L * 1024 * 1024;
+
+  private final static String SUFFIX = ".ir";
+
+  private final File directory;
+
+  /**
+   * the entries of each class's file read so far, by hash of the class file
+   */
+  private final ConcurrentHashMap<String, Map<String, ByteBuffer>> files = new ConcurrentHashMap<String, Map<String, ByteBuffer>>();
+
+  /**
+   * entries waiting to be written, by hash of the class file and then by key
+   */
+  private final Map<String, Map<String, byte[]>> pending = HashMapFactory.make();
+
+  private long pendingBytes;
+
+  private final Map<IClass, String> classHashes = Collections.synchronizedMap(new WeakHashMap<IClass, String>());
+
+  private final AtomicLong loads = new AtomicLong();
+
+  private final AtomicLong stores = new AtomicLong();
+
+  private final AtomicLong failures = new AtomicLong();
+
+  /**
+   * @param directory where to keep the cache; created if necessary
+   * @throws IOException if the directory cannot be created
+   */
+  public PersistentIRCache(File directory) throws IOException {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory is null");
+    }
+    directory.mkdirs();
+    if (!directory.isDirectory()) {
+      throw new IOException("not a directory: " + directory);
+    }
+    this.directory = directory;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Should IRs for m be kept in this cache? By default, true for methods of classes in the primordial and extension loaders.
+   */
+  protected boolean isCached(IMethod m) {
+    ClassLoaderReference loader = m.getDeclaringClass().getClassLoader().getReference();
+    return loader.equals(ClassLoaderReference.Primordial) || loader.equals(ClassLoaderReference.Extension);
+  }
+
+  /**
+   * Name a factory, for the keys of the IRs it builds. Two factories with the same name must build the same IRs. By default,
+   * the name of the factory's class.
+   */
+  protected String factoryKey(IRFactory<IMethod> factory) {
+    return factory.getClass().getName();
+  }
+
+  /**
+   * @return the IR for m built by factory and saved by this or an earlier run, or null if there is none
+   */
+  public IR find(IRFactory<IMethod> factory, IMethod m, SSAOptions options) {
+    if (!isEligible(factory, m)) {
+      return null;
+    }
+    String key = key(factory, m, options);
+    String hash = classHash(m.getDeclaringClass());
+    if (key == null || hash == null) {
+      return null;
+    }
+    ByteBuffer entry = null;
+    synchronized (this) {
+      Map<String, byte[]> p = pending.get(hash);
+      if (p != null && p.containsKey(key)) {
+        entry = ByteBuffer.wrap(p.get(key));
+      }
+    }
+    if (entry == null) {
+      entry = entries(hash).get(key);
+      if (entry == null) {
+        return null;
+      }
+      // the position of the shared buffer must not move
+      entry = entry.duplicate();
+    }
+    try {
+      IR ir = IRCodec.decode((IBytecodeMethod) m, options, entry);
+      loads.incrementAndGet();
+      return ir;
+    } catch (IOException e) {
+      failures.incrementAndGet();
+      return null;
+    } catch (BufferUnderflowException e) {
+      failures.incrementAndGet();
+      return null;
+    } catch (IllegalArgumentException e) {
+      // a malformed name in a damaged entry
+      failures.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Save ir, built by factory, to be written at the next {@link #flush()}. Does nothing if ir is not for a cached method, depends
+   * on its context, or cannot be saved.
+   */
+  public void store(IRFactory<IMethod> factory, IR ir) {
+    if (ir == null) {
+      throw new IllegalArgumentException("ir is null");
+    }
+    IMethod m = ir.getMethod();
+    if (!isEligible(factory, m)) {
+      return;
+    }
+    String key = key(factory, m, ir.getOptions());
+    String hash = classHash(m.getDeclaringClass());
+    if (key == null || hash == null) {
+      return;
+    }
+    byte[] bytes = IRCodec.encode(ir);
+    if (bytes == null) {
+      return;
+    }
+    boolean full;
+    synchronized (this) {
+      Map<String, byte[]> p = pending.get(hash);
+      if (p == null) {
+        p = new LinkedHashMap<String, byte[]>();
+        pending.put(hash, p);
+      }
+      byte[] old = p.put(key, bytes);
+      pendingBytes += bytes.length - (old == null ? 0 : old.length);
+      full = pendingBytes > MAX_PENDING_BYTES;
+    }
+    stores.incrementAndGet();
+    if (full) {
+      try {
+        flush();
+      } catch (IOException e) {
+        // the IRs are built again next time
+        failures.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Write the IRs saved since the last flush to disk.
+   *
+   * @throws IOException if some file could not be written; the IRs for the others are written anyway
+   */
+  public synchronized void flush() throws IOException {
+    IOException failure = null;
+    for (Map.Entry<String, Map<String, byte[]>> e : pending.entrySet()) {
+      String hash = e.getKey();
+      try {
+        write(hash, e.getValue());
+      } catch (IOException x) {
+        failure = x;
+      }
+      files.remove(hash);
+    }
+    pending.clear();
+    pendingBytes = 0;
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * @return the number of IRs read from disk
+   */
+  public long getLoads() {
+    return loads.get();
+  }
+
+  /**
+   * @return the number of IRs saved to be written
+   */
+  public long getStores() {
+    return stores.get();
+  }
+
+  /**
+   * @return the number of IRs that could not be read, or files that could not be written
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  private boolean isEligible(IRFactory<IMethod> factory, IMethod m) {
+    if (factory == null) {
+      throw new IllegalArgumentException("factory is null");
+    }
+    return m instanceof ShrikeCTMethod && m.getDeclaringClass() instanceof ShrikeClass && factory.contextIsIrrelevant(m)
+        && isCached(m);
+  }
+
+  /**
+   * @return the key for an IR within the file of its class, or null if the options cannot be named
+   */
+  private String key(IRFactory<IMethod> factory, IMethod m, SSAOptions options) {
+    String optionsKey = optionsKey(options);
+    if (optionsKey == null) {
+      return null;
+    }
+    return m.getDeclaringClass().getClassLoader().getReference().getName() + " " + m.getSelector() + " " + factoryKey(factory)
+        + " " + optionsKey;
+  }
+
+  /**
+   * SSA construction for bytecode depends only on the pi node policy; the known policies can be named
+   */
+  private static String optionsKey(SSAOptions options) {
+    if (options == null || options.getDefaultValues() != null) {
+      return null;
+    }
+    return policyKey(options.getPiNodePolicy());
+  }
+
+  private static String policyKey(SSAPiNodePolicy policy) {
+    if (policy == null) {
+      return "-";
+    } else if (policy.getClass() == InstanceOfPiPolicy.class || policy.getClass() == NullTestPiPolicy.class) {
+      return policy.getClass().getSimpleName();
+    } else if (policy.getClass() == CompoundPiPolicy.class) {
+      String first = policyKey(((CompoundPiPolicy) policy).getFirst());
+      String second = policyKey(((CompoundPiPolicy) policy).getSecond());
+      return first == null || second == null ? null : "(" + first + "," + second + ")";
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * @return the SHA-1 hash of the bytes of klass's class file, in hex, or null if they cannot be read
+   */
+  private String classHash(IClass klass) {
+    String hash = classHashes.get(klass);
+    if (hash == null) {
+      ByteBuffer bytes = ((ShrikeClass) klass).getReader().getByteBuffer();
+      try {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        md.update(bytes);
+        StringBuilder s = new StringBuilder();
+        for (byte b : md.digest()) {
+          s.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        hash = s.toString();
+      } catch (NoSuchAlgorithmException e) {
+        return null;
+      }
+      classHashes.put(klass, hash);
+    }
+    return hash;
+  }
+
+  private File file(String hash) {
+    return new File(new File(directory, hash.substring(0, 2)), hash.substring(2) + SUFFIX);
+  }
+
+  private Map<String, ByteBuffer> entries(String hash) {
+    Map<String, ByteBuffer> result = files.get(hash);
+    if (result == null) {
+      result = read(file(hash));
+      Map<String, ByteBuffer> other = files.putIfAbsent(hash, result);
+      if (other != null) {
+        result = other;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A file holds a header (magic number, version and number of entries), then the key and length of each entry, then the
+   * entries, in order.
+   *
+   * @return the entries of f, by key; empty if f does not exist or cannot be read
+   */
+  private static Map<String, ByteBuffer> read(File f) {
+    if (!f.isFile()) {
+      return Collections.emptyMap();
+    }
+    try {
+      ByteBuffer buffer = load(f);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return Collections.emptyMap();
+      }
+      int n = buffer.getInt();
+      String[] keys = new String[n];
+      int[] lengths = new int[n];
+      for (int i = 0; i < n; i++) {
+        byte[] key = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(key);
+        keys[i] = new String(key, "UTF-8");
+        lengths[i] = buffer.getInt();
+      }
+      Map<String, ByteBuffer> result = HashMapFactory.make(n);
+      int offset = buffer.position();
+      for (int i = 0; i < n; i++) {
+        buffer.limit(offset + lengths[i]);
+        buffer.position(offset);
+        result.put(keys[i], buffer.slice());
+        offset += lengths[i];
+      }
+      return result;
+    } catch (IOException e) {
+      return Collections.emptyMap();
+    } catch (RuntimeException e) {
+      // a truncated or damaged file
+      return Collections.emptyMap();
+    }
+  }
+
+  private static ByteBuffer load(File f) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(f, "r");
+    try {
+      if (file.length() >= MIN_MAPPED_SIZE) {
+        return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+      } else {
+        byte[] bytes = new byte[(int) file.length()];
+        file.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Merge added into the file for hash, replacing it with a new file
+   */
+  private void write(String hash, Map<String, byte[]> added) throws IOException {
+    File f = file(hash);
+    Map<String, ByteBuffer> entries = new LinkedHashMap<String, ByteBuffer>(read(f));
+    for (Map.Entry<String, byte[]> e : added.entrySet()) {
+      entries.put(e.getKey(), ByteBuffer.wrap(e.getValue()));
+    }
+    File dir = f.getParentFile();
+    dir.mkdirs();
+    File tmp = File.createTempFile(hash, ".tmp", dir);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, ByteBuffer> e : entries.entrySet()) {
+          byte[] key = utf8(e.getKey());
+          out.writeShort(key.length);
+          out.write(key);
+          out.writeInt(e.getValue().remaining());
+        }
+        for (ByteBuffer b : entries.values()) {
+          byte[] bytes = new byte[b.remaining()];
+          b.duplicate().get(bytes);
+          out.write(bytes);
+        }
+      } finally {
+        out.close();
+      }
+      if (!tmp.renameTo(f)) {
+        // some platforms do not rename over an existing file
+        f.delete();
+        if (!tmp.renameTo(f)) {
+          throw new IOException("could not write " + f);
+        }
+      }
+    } finally {
+      tmp.delete();
+    }
+  }
+
+  private static byte[] utf8(String s) throws UnsupportedEncodingException {
+    byte[] b = s.getBytes("UTF-8");
+    if (b.length > 0xFFFF) {
+      throw new UnsupportedEncodingException("key too long: " + s);
+    }
+    return b;
+  }
+
+  @Override
+  public String toString() {
+    return "persistent IR cache in " + directory + ": loads " + loads + ", stores " + stores + ", failures " + failures;
+  }
+}
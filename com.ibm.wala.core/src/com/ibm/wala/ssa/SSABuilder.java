@@ -69,10 +69,19 @@ public class SSABuilder extends AbstractIntStackMachine {
 
   public static SSABuilder make(IBytecodeMethod method, SSACFG cfg, ShrikeCFG scfg, SSAInstruction[] instructions,
       SymbolTable symbolTable, boolean buildLocalMap, SSAPiNodePolicy piNodePolicy) throws IllegalArgumentException {
+    return make(method, cfg, scfg, instructions, symbolTable, buildLocalMap, piNodePolicy, Dominators.Algorithm.LENGAUER_TARJAN);
+  }
+
+  /**
+   * @param dominatorsAlgorithm how to compute the dominators of cfg, if they are needed
+   */
+  public static SSABuilder make(IBytecodeMethod method, SSACFG cfg, ShrikeCFG scfg, SSAInstruction[] instructions,
+      SymbolTable symbolTable, boolean buildLocalMap, SSAPiNodePolicy piNodePolicy, Dominators.Algorithm dominatorsAlgorithm)
+      throws IllegalArgumentException {
     if (scfg == null) {
       throw new IllegalArgumentException("scfg == null");
     }
-    return new SSABuilder(method, cfg, scfg, instructions, symbolTable, buildLocalMap, piNodePolicy);
+    return new SSABuilder(method, cfg, scfg, instructions, symbolTable, buildLocalMap, piNodePolicy, dominatorsAlgorithm);
   }
 
   /**
@@ -101,9 +110,14 @@ public class SSABuilder extends AbstractIntStackMachine {
   private final IndirectionData bytecodeIndirections;
   
   private final ShrikeIndirectionData ssaIndirections;
+
+  /**
+   * how to compute dominators, for finding the exception a rethrow rethrows
+   */
+  private final Dominators.Algorithm dominatorsAlgorithm;
   
   private SSABuilder(IBytecodeMethod method, SSACFG cfg, ShrikeCFG scfg, SSAInstruction[] instructions, SymbolTable symbolTable,
-      boolean buildLocalMap, SSAPiNodePolicy piNodePolicy) {
+      boolean buildLocalMap, SSAPiNodePolicy piNodePolicy, Dominators.Algorithm dominatorsAlgorithm) {
     super(scfg);
     localMap = buildLocalMap ? new SSA2LocalMap(scfg, instructions.length, cfg.getNumberOfNodes()) : null;
     init(new SymbolTableMeeter(symbolTable, cfg, scfg), new SymbolicPropagator(scfg, instructions, symbolTable,
@@ -113,6 +127,7 @@ public class SSABuilder extends AbstractIntStackMachine {
     this.insts = method.getDeclaringClass().getClassLoader().getInstructionFactory();
     this.bytecodeIndirections = method.getIndirectionData();
     this.ssaIndirections = new ShrikeIndirectionData(instructions.length);
+    this.dominatorsAlgorithm = dominatorsAlgorithm;
     assert cfg != null : "Null CFG";
   }
 
@@ -730,7 +745,7 @@ public class SSABuilder extends AbstractIntStackMachine {
           // TODO: should we really use dominators here? maybe it would be cleaner to propagate
           // the notion of 'current exception to rethrow' using the abstract interpreter.
           if (dom == null) {
-            dom = Dominators.make(cfg, cfg.entry());
+            dom = Dominators.make(cfg, cfg.entry(), dominatorsAlgorithm);
           }
 
           ISSABasicBlock x = bb;
@@ -921,7 +936,7 @@ public class SSABuilder extends AbstractIntStackMachine {
    * A logical mapping from <pc, valueNumber> -> local number Note: make sure this class remains static: this persists as part of
    * the IR!!
    */
-  private static class SSA2LocalMap implements com.ibm.wala.ssa.IR.SSA2LocalMap {
+  static class SSA2LocalMap implements com.ibm.wala.ssa.IR.SSA2LocalMap {
 
     private final ShrikeCFG shrikeCFG;
 
@@ -946,6 +961,23 @@ public class SSABuilder extends AbstractIntStackMachine {
       block2LocalState = new int[nBlocks][];
     }
 
+    /**
+     * Rebuild a map from its tables, as saved by a {@link PersistentIRCache}
+     */
+    SSA2LocalMap(ShrikeCFG shrikeCfg, IntPair[] localStoreMap, int[][] block2LocalState) {
+      this.shrikeCFG = shrikeCfg;
+      this.localStoreMap = localStoreMap;
+      this.block2LocalState = block2LocalState;
+    }
+
+    IntPair[] getLocalStoreMap() {
+      return localStoreMap;
+    }
+
+    int[][] getBlock2LocalState() {
+      return block2LocalState;
+    }
+
     /**
      * Record the beginning of a new range, starting at the given program counter, in which a particular value number corresponds to
      * a particular local number
@@ -383,6 +383,28 @@ public class SSACFG implements ControlFlowGraph<SSAInstruction, ISSABasicBlock>
       stackSlotPhis[slot] = phi;
     }
 
+    /**
+     * @return the phis for stack slots, indexed by slot; may be null. For saving the IR in a {@link PersistentIRCache}.
+     */
+    SSAPhiInstruction[] getStackSlotPhis() {
+      return stackSlotPhis;
+    }
+
+    /**
+     * @return the phis for locals, indexed by local number; may be null. For saving the IR in a {@link PersistentIRCache}.
+     */
+    SSAPhiInstruction[] getLocalPhis() {
+      return localPhis;
+    }
+
+    /**
+     * Install the phis of a block restored from a {@link PersistentIRCache}
+     */
+    void setPhis(SSAPhiInstruction[] stackSlotPhis, SSAPhiInstruction[] localPhis) {
+      this.stackSlotPhis = stackSlotPhis;
+      this.localPhis = localPhis;
+    }
+
     public void addPhiForLocal(int n, SSAPhiInstruction phi) {
       if (localPhis == null) {
         localPhis = new SSAPhiInstruction[initialCapacity];
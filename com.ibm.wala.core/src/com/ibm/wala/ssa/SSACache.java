@@ -10,6 +10,8 @@
  *******************************************************************************/
 package com.ibm.wala.ssa;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.ibm.wala.classLoader.IMethod;
 import com.ibm.wala.ipa.callgraph.Context;
 import com.ibm.wala.ipa.callgraph.impl.Everywhere;
@@ -18,6 +20,12 @@ import com.ibm.wala.ipa.callgraph.impl.Everywhere;
  * A mapping from IMethod -> SSAOptions -> SoftReference -> Something
  * 
  * This doesn't work very well ... GCs don't do such a great job with SoftReferences ... revamp it.
+ * 
+ * This class is thread-safe. IRs and {@link DefUse}s are built without holding the cache lock; if two threads race to build
+ * the same one, the first to finish wins and both get that object.
+ * 
+ * @see BoundedSSACache for a cache with an explicit bound on its size
+ * @see PersistentIRCache for keeping IRs across runs
  */
 public class SSACache {
 
@@ -41,11 +49,79 @@ public class SSACache {
    */
   final private AuxiliaryCache duCache = new AuxiliaryCache();
 
+  /**
+   * IRs saved by earlier runs; may be null
+   */
+  private final PersistentIRCache secondLevel;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong buildNanos = new AtomicLong();
+
   /**
    * @param factory a factory for creating IRs
    */
   public SSACache(IRFactory<IMethod> factory) {
+    this(factory, null);
+  }
+
+  /**
+   * @param factory a factory for creating IRs
+   * @param secondLevel where to look for IRs before building them, and to save the IRs built; may be null
+   */
+  public SSACache(IRFactory<IMethod> factory, PersistentIRCache secondLevel) {
     this.factory = factory;
+    this.secondLevel = secondLevel;
+  }
+
+  /**
+   * @return the factory that creates the IRs held here
+   */
+  public IRFactory<IMethod> getFactory() {
+    return factory;
+  }
+
+  /**
+   * @return the second-level cache, or null if there is none
+   */
+  public PersistentIRCache getSecondLevel() {
+    return secondLevel;
+  }
+
+  /**
+   * Build an IR on a miss: read it from the second-level cache if it is there, else build it with the factory and save it
+   * there. The second-level cache is used only for methods whose IR does not depend on the context.
+   */
+  protected IR makeIR(IMethod m, Context c, SSAOptions options) {
+    if (secondLevel == null || !factory.contextIsIrrelevant(m)) {
+      return factory.makeIR(m, c, options);
+    }
+    IR ir = secondLevel.find(factory, m, options);
+    if (ir == null) {
+      ir = factory.makeIR(m, Everywhere.EVERYWHERE, options);
+      if (ir != null) {
+        secondLevel.store(factory, ir);
+      }
+    }
+    return ir;
+  }
+
+  /**
+   * Build a {@link DefUse} for ir on a miss. By default this is a {@link CompactDefUse}, which builds its tables on the first
+   * query.
+   */
+  protected DefUse makeDefUse(IR ir) {
+    return new CompactDefUse(ir);
+  }
+
+  /**
+   * @return the current values of this cache's counters. This cache does not know when the garbage collector clears an entry,
+   *         so it reports no evictions or rebuilds.
+   */
+  public SSACacheStatistics getStatistics() {
+    return new SSACacheStatistics(hits.get(), misses.get(), 0, 0, buildNanos.get(), 0, -1, -1, -1);
   }
 
   /**
@@ -54,7 +130,7 @@ public class SSACache {
    * @return an IR for m, built according to the specified options. null if m is abstract or native.
    * @throws IllegalArgumentException if m is null
    */
-  public synchronized IR findOrCreateIR(final IMethod m, Context c, final SSAOptions options) {
+  public IR findOrCreateIR(final IMethod m, Context c, final SSAOptions options) {
 
     if (m == null) {
       throw new IllegalArgumentException("m is null");
@@ -71,12 +147,27 @@ public class SSACache {
       return factory.makeIR(m, c, options);
     }
 
-    IR ir = (IR) irCache.find(m, c, options);
-    if (ir == null) {
-      ir = factory.makeIR(m, c, options);
+    synchronized (this) {
+      IR ir = (IR) irCache.find(m, c, options);
+      if (ir != null) {
+        hits.incrementAndGet();
+        return ir;
+      }
+    }
+    // build outside the lock, so several threads may construct IRs for different methods at once
+    long start = System.nanoTime();
+    IR ir = makeIR(m, c, options);
+    buildNanos.addAndGet(System.nanoTime() - start);
+    misses.incrementAndGet();
+    synchronized (this) {
+      // if another thread got here first, keep its IR so that all clients see the same object
+      IR other = (IR) irCache.find(m, c, options);
+      if (other != null) {
+        return other;
+      }
       irCache.cache(m, c, options, ir);
+      return ir;
     }
-    return ir;
   }
 
   /**
@@ -85,7 +176,7 @@ public class SSACache {
    * @return DefUse information for m, built according to the specified options. null if unavailable
    * @throws IllegalArgumentException if m is null
    */
-  public synchronized DefUse findOrCreateDU(IMethod m, Context c, SSAOptions options) {
+  public DefUse findOrCreateDU(IMethod m, Context c, SSAOptions options) {
     if (m == null) {
       throw new IllegalArgumentException("m is null");
     }
@@ -96,13 +187,26 @@ public class SSACache {
       c = Everywhere.EVERYWHERE;
     }
 
-    DefUse du = (DefUse) duCache.find(m, c, options);
-    if (du == null) {
-      IR ir = findOrCreateIR(m, c, options);
-      du = new DefUse(ir);
+    synchronized (this) {
+      DefUse du = (DefUse) duCache.find(m, c, options);
+      if (du != null) {
+        hits.incrementAndGet();
+        return du;
+      }
+    }
+    IR ir = findOrCreateIR(m, c, options);
+    long start = System.nanoTime();
+    DefUse du = makeDefUse(ir);
+    buildNanos.addAndGet(System.nanoTime() - start);
+    misses.incrementAndGet();
+    synchronized (this) {
+      DefUse other = (DefUse) duCache.find(m, c, options);
+      if (other != null) {
+        return other;
+      }
       duCache.cache(m, c, options, du);
+      return du;
     }
-    return du;
   }
 
   /**
@@ -115,8 +219,13 @@ public class SSACache {
     }
     DefUse du = (DefUse) duCache.find(ir.getMethod(), C, ir.getOptions());
     if (du == null) {
-      du = new DefUse(ir);
+      long start = System.nanoTime();
+      du = makeDefUse(ir);
+      buildNanos.addAndGet(System.nanoTime() - start);
+      misses.incrementAndGet();
       duCache.cache(ir.getMethod(), C, ir.getOptions(), du);
+    } else {
+      hits.incrementAndGet();
     }
     return du;
   }
@@ -124,7 +233,7 @@ public class SSACache {
   /**
    * The existence of this is unfortunate.
    */
-  public void wipe() {
+  public synchronized void wipe() {
     irCache.wipe();
     duCache.wipe();
   }
@@ -132,21 +241,21 @@ public class SSACache {
   /**
    * Invalidate the cached IR for a <method,context> pair
    */
-  public void invalidateIR(IMethod method, Context c) {
+  public synchronized void invalidateIR(IMethod method, Context c) {
     irCache.invalidate(method, c);
   }
 
   /**
    * Invalidate the cached {@link DefUse} for a <method,context> pair
    */
-  public void invalidateDU(IMethod method, Context c) {
+  public synchronized void invalidateDU(IMethod method, Context c) {
     duCache.invalidate(method, c);
   }
 
   /**
    * Invalidate all cached information for a <method,context> pair
    */
-  public void invalidate(IMethod method, Context c) {
+  public synchronized void invalidate(IMethod method, Context c) {
     invalidateIR(method, c);
     invalidateDU(method, c);
   }
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+
+/**
+ * The (method, context, options) triple under which the caches of this package keep an IR.
+ */
+final class SSACacheKey {
+  final IMethod method;
+
+  final Context context;
+
+  final SSAOptions options;
+
+  SSACacheKey(IMethod method, Context context, SSAOptions options) {
+    this.method = method;
+    this.context = context;
+    this.options = options;
+  }
+
+  @Override
+  public int hashCode() {
+    return (method.hashCode() * 31 + (context == null ? 0 : context.hashCode())) * 31 + (options == null ? 0 : options.hashCode());
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SSACacheKey)) {
+      return false;
+    }
+    SSACacheKey other = (SSACacheKey) obj;
+    return method.equals(other.method) && equal(context, other.context) && equal(options, other.options);
+  }
+
+  static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+/**
+ * A snapshot of the counters of an {@link SSACache}. Lookups of IRs and of {@link DefUse}s are counted together.
+ */
+public class SSACacheStatistics {
+
+  private final long hits;
+
+  private final long misses;
+
+  private final long evictions;
+
+  private final long rebuilds;
+
+  private final long buildNanos;
+
+  private final long rebuildNanos;
+
+  private final long weight;
+
+  private final long maxWeight;
+
+  private final int size;
+
+  public SSACacheStatistics(long hits, long misses, long evictions, long rebuilds, long buildNanos, long rebuildNanos,
+      long weight, long maxWeight, int size) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.rebuilds = rebuilds;
+    this.buildNanos = buildNanos;
+    this.rebuildNanos = rebuildNanos;
+    this.weight = weight;
+    this.maxWeight = maxWeight;
+    this.size = size;
+  }
+
+  /**
+   * @return the number of lookups answered from the cache
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups which built a new IR or {@link DefUse}
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of entries evicted to respect the cache's bound; 0 if the cache has no explicit bound
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of misses for an entry that had been evicted before; 0 if the cache has no explicit bound
+   */
+  public long getRebuilds() {
+    return rebuilds;
+  }
+
+  /**
+   * @return the time spent building IRs and {@link DefUse}s on misses, in nanoseconds
+   */
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  /**
+   * @return the part of {@link #getBuildNanos()} spent on rebuilds
+   */
+  public long getRebuildNanos() {
+    return rebuildNanos;
+  }
+
+  /**
+   * @return the estimated size of the cached objects, in bytes, or -1 if the cache does not estimate it
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  /**
+   * @return the bound on {@link #getWeight()}, or -1 if the cache has no explicit bound
+   */
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * @return the number of cached entries, or -1 if unknown
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + ", rebuilds: " + rebuilds + ", build ms: "
+        + buildNanos / 1000000 + ", rebuild ms: " + rebuildNanos / 1000000 + ", entries: " + size + ", weight: " + weight
+        + (maxWeight < 0 ? "" : "/" + maxWeight);
+  }
+}
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package com.ibm.wala.ssa;
 
+import com.ibm.wala.util.graph.dominators.Dominators;
+
 /**
  * Options that govern SSA construction
  */
@@ -33,6 +35,11 @@ public class SSAOptions {
 
   private DefaultValues defaultValues = null;
 
+  /**
+   * how SSA construction computes dominators. This does not change the IR built, so it is not part of equals().
+   */
+  private Dominators.Algorithm dominatorsAlgorithm = Dominators.Algorithm.SEMI_NCA;
+
   private final static SSAOptions defaultOptions = new SSAOptions();
 
   /**
@@ -60,6 +67,22 @@ public class SSAOptions {
   }
 
 
+  public Dominators.Algorithm getDominatorsAlgorithm() {
+    return dominatorsAlgorithm;
+  }
+
+
+  /**
+   * @throws IllegalArgumentException if algorithm is null
+   */
+  public void setDominatorsAlgorithm(Dominators.Algorithm algorithm) {
+    if (algorithm == null) {
+      throw new IllegalArgumentException("algorithm is null");
+    }
+    this.dominatorsAlgorithm = algorithm;
+  }
+
+
   public SSAPiNodePolicy getPiNodePolicy() {
     return piNodePolicy;
   }
@@ -118,6 +118,18 @@ public class ShrikeIndirectionData implements SSAIndirectionData<ShrikeIndirecti
     return result;
   }
 
+  /**
+   * @return true iff no instruction reads or writes a local indirectly, as is the case for all Java bytecode
+   */
+  boolean isEmpty() {
+    for (int i = 0; i < uses.length; i++) {
+      if (uses[i] != null || defs[i] != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String toString() {
     StringBuffer result = new StringBuffer();
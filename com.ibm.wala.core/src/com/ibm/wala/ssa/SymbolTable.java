@@ -129,6 +129,10 @@ public class SymbolTable implements Cloneable {
   public int getDefaultValue(int vn) {
     return findOrCreateConstant(defaultValues[vn]);
   }
+
+  boolean hasDefaultValues() {
+    return defaultValues != null;
+  }
   
   public int getNullConstant() {
     return findOrCreateConstant(null);
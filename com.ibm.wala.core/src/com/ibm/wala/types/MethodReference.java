@@ -10,10 +10,9 @@
  *******************************************************************************/
 package com.ibm.wala.types;
 
-import java.util.HashMap;
-
 import com.ibm.wala.classLoader.Language;
-import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.InterningTable;
+import com.ibm.wala.util.functions.Function;
 import com.ibm.wala.util.shrike.ShrikeUtil;
 import com.ibm.wala.util.strings.Atom;
 
@@ -24,7 +23,13 @@ public final class MethodReference extends MemberReference {
   /**
    * Used to canonicalize MethodReferences a mapping from Key -> MethodReference
    */
-  final private static HashMap<Key, MethodReference> dictionary = HashMapFactory.make();
+  final private static InterningTable<Key, MethodReference> dictionary = new InterningTable<Key, MethodReference>(
+      new Function<Key, MethodReference>() {
+        @Override
+        public MethodReference apply(Key key) {
+          return new MethodReference(key);
+        }
+      });
 
   public final static Atom newInstanceAtom = Atom.findOrCreateUnicodeAtom("newInstance");
 
@@ -89,18 +94,11 @@ public final class MethodReference extends MemberReference {
    * @param mn the name of the member
    * @param md the descriptor of the member
    */
-  public static synchronized MethodReference findOrCreate(TypeReference tref, Atom mn, Descriptor md) {
+  public static MethodReference findOrCreate(TypeReference tref, Atom mn, Descriptor md) {
     if (tref == null) {
       throw new IllegalArgumentException("null tref");
     }
-    Key key = new Key(tref, mn, md);
-
-    MethodReference val = dictionary.get(key);
-    if (val != null)
-      return val;
-    val = new MethodReference(key);
-    dictionary.put(key, val);
-    return val;
+    return dictionary.findOrCreate(new Key(tref, mn, md));
   }
 
   /**
@@ -110,7 +108,7 @@ public final class MethodReference extends MemberReference {
    * @param selector the selector for the method
    * @throws IllegalArgumentException if selector is null
    */
-  public static synchronized MethodReference findOrCreate(TypeReference tref, Selector selector) {
+  public static MethodReference findOrCreate(TypeReference tref, Selector selector) {
     if (selector == null) {
       throw new IllegalArgumentException("selector is null");
     }
@@ -12,10 +12,10 @@ package com.ibm.wala.types;
 
 import java.io.Serializable;
 import java.io.UTFDataFormatException;
-import java.util.Map;
 
-import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.InterningTable;
 import com.ibm.wala.util.debug.Assertions;
+import com.ibm.wala.util.functions.Function;
 import com.ibm.wala.util.strings.Atom;
 import com.ibm.wala.util.strings.ImmutableByteArray;
 import com.ibm.wala.util.strings.StringStuff;
@@ -41,16 +41,16 @@ public final class TypeName implements Serializable {
   /**
    * canonical mapping from TypeNameKey -> TypeName
    */
-  private final static Map<TypeNameKey, TypeName> map = HashMapFactory.make();
-
-  private static synchronized TypeName findOrCreate(TypeNameKey t) {
-    TypeName result = map.get(t);
-    if (result == null) {
-      result = new TypeName(t);
-      map.put(t, result);
+  private final static InterningTable<TypeNameKey, TypeName> map = new InterningTable<TypeNameKey, TypeName>(
+      new Function<TypeNameKey, TypeName>() {
+        @Override
+        public TypeName apply(TypeNameKey key) {
+          return new TypeName(key);
+        }
+      });
 
-    }
-    return result;
+  private static TypeName findOrCreate(TypeNameKey t) {
+    return map.findOrCreate(t);
   }
 
   /**
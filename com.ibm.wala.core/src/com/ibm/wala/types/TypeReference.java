@@ -16,8 +16,10 @@ import static com.ibm.wala.types.TypeName.PrimitiveMask;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.InterningTable;
+import com.ibm.wala.util.functions.Function;
 
 /**
  * A class to represent the reference in a class file to some type (class, primitive or array). A type reference is
@@ -43,12 +45,18 @@ public final class TypeReference implements Serializable {
   /**
    * Used for fast access to primitives. Primitives appear in the main dictionary also.
    */
-  private final static Map<TypeName, TypeReference> primitiveMap = HashMapFactory.make();
+  private final static Map<TypeName, TypeReference> primitiveMap = new ConcurrentHashMap<TypeName, TypeReference>();
 
   /**
    * Used to canonicalize TypeReferences.
    */
-  private final static Map<Key, TypeReference> dictionary = HashMapFactory.make();
+  private final static InterningTable<Key, TypeReference> dictionary = new InterningTable<Key, TypeReference>(
+      new Function<Key, TypeReference>() {
+        @Override
+        public TypeReference apply(Key key) {
+          return new TypeReference(key.classloader, key.name);
+        }
+      });
 
   /*********************************************************************************************************************
    * Primitive Dispatch *
@@ -368,7 +376,7 @@ public final class TypeReference implements Serializable {
    * 
    * @param cl the classloader (defining/initiating depending on usage)
    */
-  public static synchronized TypeReference findOrCreate(ClassLoaderReference cl, TypeName typeName) {
+  public static TypeReference findOrCreate(ClassLoaderReference cl, TypeName typeName) {
 
     if (cl == null) {
       throw new IllegalArgumentException("null cl");
@@ -387,15 +395,7 @@ public final class TypeReference implements Serializable {
       }
     }
 
-    Key key = new Key(cl, typeName);
-    TypeReference val = dictionary.get(key);
-    if (val != null) {
-      return val;
-    } else {
-      val = new TypeReference(cl, typeName);
-      dictionary.put(key, val);
-      return val;
-    }
+    return dictionary.findOrCreate(new Key(cl, typeName));
   }
 
   /**
@@ -404,12 +404,12 @@ public final class TypeReference implements Serializable {
    * @param cl the classloader (defining/initiating depending on usage)
    * @param typeName something like "Ljava/util/Arrays"
    */
-  public static synchronized TypeReference findOrCreate(ClassLoaderReference cl, String typeName) {
+  public static TypeReference findOrCreate(ClassLoaderReference cl, String typeName) {
     return findOrCreate(cl, TypeName.string2TypeName(typeName));
   }
 
 /** BEGIN Custom change: search types */
-  public static synchronized TypeReference find(ClassLoaderReference cl, String typeName) {
+  public static TypeReference find(ClassLoaderReference cl, String typeName) {
     return find(cl, TypeName.string2TypeName(typeName));
   }
 
@@ -418,7 +418,7 @@ public final class TypeReference implements Serializable {
    * 
    * @param cl the classloader (defining/initiating depending on usage)
    */
-  public static synchronized TypeReference find(ClassLoaderReference cl, TypeName typeName) {
+  public static TypeReference find(ClassLoaderReference cl, TypeName typeName) {
 
     if (cl == null) {
       throw new IllegalArgumentException("null cl");
@@ -437,10 +437,7 @@ public final class TypeReference implements Serializable {
       }
     }
 
-    Key key = new Key(cl, typeName);
-    TypeReference val = dictionary.get(key);
-
-    return val;
+    return dictionary.find(new Key(cl, typeName));
   }
 /** END Custom change: search types */
   public static TypeReference findOrCreateArrayOf(TypeReference t) {
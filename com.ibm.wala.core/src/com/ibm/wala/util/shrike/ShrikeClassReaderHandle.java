@@ -13,7 +13,9 @@ package com.ibm.wala.util.shrike;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
+import com.ibm.wala.classLoader.ByteBufferModuleEntry;
 import com.ibm.wala.classLoader.ModuleEntry;
 import com.ibm.wala.shrikeCT.ClassReader;
 import com.ibm.wala.shrikeCT.InvalidClassFileException;
@@ -54,7 +56,7 @@ public class ShrikeClassReaderHandle {
    * @throw InvalidClassFileException iff Shrike fails to read the class file
    *        correctly.
    */
-  public ClassReader get() throws InvalidClassFileException {
+  public synchronized ClassReader get() throws InvalidClassFileException {
     ClassReader result = (ClassReader) CacheReference.get(reader);
     if (result == null) {
       hydrateCount++;
@@ -68,16 +70,22 @@ public class ShrikeClassReaderHandle {
           }
         }
       }
-      ByteArrayOutputStream S = new ByteArrayOutputStream();
-      try {
-        InputStream s = entry.getInputStream();
-        readBytes(s, S);
-        s.close();
-      } catch (IOException e) {
-        e.printStackTrace();
-        Assertions.UNREACHABLE();
+      // read the class file in place when the entry offers a buffer, e.g. a memory-mapped file
+      ByteBuffer buffer = entry instanceof ByteBufferModuleEntry ? ((ByteBufferModuleEntry) entry).getByteBuffer() : null;
+      if (buffer != null) {
+        result = new ClassReader(buffer);
+      } else {
+        ByteArrayOutputStream S = new ByteArrayOutputStream();
+        try {
+          InputStream s = entry.getInputStream();
+          readBytes(s, S);
+          s.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+          Assertions.UNREACHABLE();
+        }
+        result = new ClassReader(S.toByteArray());
       }
-      result = new ClassReader(S.toByteArray());
       reader = CacheReference.make(result);
     }
     return result;
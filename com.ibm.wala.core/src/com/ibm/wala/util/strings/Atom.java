@@ -11,9 +11,9 @@
 package com.ibm.wala.util.strings;
 
 import java.io.Serializable;
-import java.util.HashMap;
 
-import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.InterningTable;
+import com.ibm.wala.util.functions.Function;
 
 /**
  * An utf8-encoded byte string.
@@ -30,7 +30,12 @@ public final class Atom implements Serializable {
   /**
    * Used to canonicalize Atoms, a mapping from AtomKey -> Atom. AtomKeys are not canonical, but Atoms are.
    */
-  final private static HashMap<AtomKey, Atom> dictionary = HashMapFactory.make();
+  final private static InterningTable<AtomKey, Atom> dictionary = new InterningTable<AtomKey, Atom>(new Function<AtomKey, Atom>() {
+    @Override
+    public Atom apply(AtomKey key) {
+      return new Atom(key);
+    }
+  });
 
   /**
    * The utf8 value this atom represents
@@ -113,28 +118,21 @@ public final class Atom implements Serializable {
 
   }
 
-  public static synchronized Atom findOrCreate(byte[] bytes) {
+  public static Atom findOrCreate(byte[] bytes) {
     if (bytes == null) {
       throw new IllegalArgumentException("bytes is null");
     }
-    AtomKey key = new AtomKey(bytes);
-    Atom val = dictionary.get(key);
-    if (val != null) {
-      return val;
-    }
-    val = new Atom(key);
-    dictionary.put(key, val);
-    return val;
+    return dictionary.findOrCreate(new AtomKey(bytes));
   }
 
-  public static synchronized Atom findOrCreate(ImmutableByteArray b) {
+  public static Atom findOrCreate(ImmutableByteArray b) {
     if (b == null) {
       throw new IllegalArgumentException("b is null");
     }
     return findOrCreate(b.b);
   }
 
-  public static synchronized Atom findOrCreate(ImmutableByteArray b, int start, int length) {
+  public static Atom findOrCreate(ImmutableByteArray b, int start, int length) {
     if (b == null) {
       throw new IllegalArgumentException("b is null");
     }
@@ -258,16 +258,17 @@ final public class ClassInstrumenter {
     w.setSuperNameIndex(cr.getSuperNameIndex());
     w.setInterfaceNameIndices(cr.getInterfaceNameIndices());
 
+    byte[] bytes = cr.getBytes();
     int fieldCount = cr.getFieldCount();
     for (int i = 0; i < fieldCount; i++) {
-      w.addRawField(new ClassWriter.RawElement(cr.getBytes(), cr.getFieldRawOffset(i), cr.getFieldRawSize(i)));
+      w.addRawField(new ClassWriter.RawElement(bytes, cr.getFieldRawOffset(i), cr.getFieldRawSize(i)));
     }
 
     for (int i = 0; i < methods.length; i++) {
       MethodData md = methods[i];
       if (!deletedMethods[i]) {
         if (md == null || !md.getHasChanged()) {
-          w.addRawMethod(new ClassWriter.RawElement(cr.getBytes(), cr.getMethodRawOffset(i), cr.getMethodRawSize(i)));
+          w.addRawMethod(new ClassWriter.RawElement(bytes, cr.getMethodRawOffset(i), cr.getMethodRawSize(i)));
         } else {
           CTCompiler comp = CTCompiler.make(w, md);
           comp.setPresetConstants(cpr);
@@ -301,7 +302,7 @@ final public class ClassInstrumenter {
     ClassReader.AttrIterator iter = new ClassReader.AttrIterator();
     cr.initClassAttributeIterator(iter);
     for (; iter.isValid(); iter.advance()) {
-      w.addClassAttribute(new ClassWriter.RawElement(cr.getBytes(), iter.getRawOffset(), iter.getRawSize()));
+      w.addClassAttribute(new ClassWriter.RawElement(bytes, iter.getRawOffset(), iter.getRawSize()));
     }
   }
 
@@ -10,13 +10,21 @@
  *******************************************************************************/
 package com.ibm.wala.shrikeCT;
 
+import java.nio.ByteBuffer;
+
 /**
  * This is the core class for reading class file data.
  * 
  * ClassReader performs lazy parsing, and thus most of the methods can throw an InvalidClassFileException.
+ * 
+ * The class file data can be a byte array or any {@link ByteBuffer}, e.g. a slice of a memory-mapped file; it is read in place
+ * and never copied.
  */
 public final class ClassReader implements ClassConstants {
-  private final byte[] bytes;
+  /**
+   * the class file data, from position 0 to the capacity; only read with absolute gets, so it can be shared between threads
+   */
+  private final ByteBuffer bytes;
 
   private int[] methodOffsets;
 
@@ -40,14 +48,28 @@ public final class ClassReader implements ClassConstants {
    * @throws InvalidClassFileException the class file data is corrupt
    */
   public ClassReader(byte[] bytes) throws InvalidClassFileException {
-    this.bytes = bytes;
+    this(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Build a reader over the bytes between the position and the limit of a buffer. The buffer's contents are not copied, so they
+   * must not change while the reader is in use; the buffer's position and limit are not used after this call.
+   * 
+   * @param buffer the class file data
+   * @throws InvalidClassFileException the class file data is corrupt
+   */
+  public ClassReader(ByteBuffer buffer) throws InvalidClassFileException {
+    if (buffer == null) {
+      throw new IllegalArgumentException("buffer is null");
+    }
+    this.bytes = buffer.slice();
     parse();
   }
 
   private void checkLength(int offset, int required) throws InvalidClassFileException {
-    if (bytes.length < offset + required) {
+    if (bytes.capacity() < offset + required) {
       throw new InvalidClassFileException(offset, "file truncated, expected " + required + " bytes, saw only "
-          + (bytes.length - offset));
+          + (bytes.capacity() - offset));
     }
   }
 
@@ -103,7 +125,7 @@ public final class ClassReader implements ClassConstants {
     int attrCount = getUShort(offset);
     offset = skipAttributes(offset + 2, attrCount);
 
-    if (offset != bytes.length) {
+    if (offset != bytes.capacity()) {
       throw new InvalidClassFileException(offset, "extra data in class file");
     }
   }
@@ -149,10 +171,38 @@ public final class ClassReader implements ClassConstants {
   }
 
   /**
-   * @return the raw class data bytes
+   * @return the raw class data bytes; unless this reader was built from a byte array, this is a copy
    */
   public byte[] getBytes() {
-    return bytes;
+    if (bytes.hasArray() && bytes.arrayOffset() == 0 && bytes.array().length == bytes.capacity()) {
+      return bytes.array();
+    }
+    byte[] result = new byte[bytes.capacity()];
+    getBytes(0, result, 0, result.length);
+    return result;
+  }
+
+  /**
+   * @return a read-only view of the raw class data, from position 0 to the end of the class file
+   */
+  public ByteBuffer getByteBuffer() {
+    return bytes.asReadOnlyBuffer();
+  }
+
+  /**
+   * @return the size of the raw class data, in bytes
+   */
+  public int getLength() {
+    return bytes.capacity();
+  }
+
+  /**
+   * Copy len bytes of the class data, starting at offset, into dest at destOffset.
+   */
+  public void getBytes(int offset, byte[] dest, int destOffset, int len) {
+    ByteBuffer b = bytes.duplicate();
+    b.position(offset);
+    b.get(dest, destOffset, len);
   }
 
   /**
@@ -302,28 +352,28 @@ public final class ClassReader implements ClassConstants {
    * @return the signed 32-bit value at offset i in the class data
    */
   public int getInt(int i) {
-    return (bytes[i] << 24) + ((bytes[i + 1] & 0xFF) << 16) + ((bytes[i + 2] & 0xFF) << 8) + (bytes[i + 3] & 0xFF);
+    return bytes.getInt(i);
   }
 
   /**
    * @return the unsigned 16-bit value at offset i in the class data
    */
   public int getUShort(int i) {
-    return ((bytes[i] & 0xFF) << 8) + (bytes[i + 1] & 0xFF);
+    return bytes.getShort(i) & 0xFFFF;
   }
 
   /**
    * @return the signed 16-bit value at offset i in the class data
    */
   public int getShort(int i) {
-    return (bytes[i] << 8) + (bytes[i + 1] & 0xFF);
+    return bytes.getShort(i);
   }
 
   /**
    * @return the signed 8-bit value at offset i in the class data
    */
   public byte getByte(int i) {
-    return bytes[i];
+    return bytes.get(i);
   }
 
   /**
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.wala.shrikeCT;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -703,7 +704,9 @@ public final class ClassWriter implements ClassConstants {
     if (rawCP != null) {
       int len = rawCP.getRawSize();
       int offset = reserveBuf(len);
-      System.arraycopy(rawCP.getRawBytes(), rawCP.getRawOffset(), buf, offset, len);
+      ByteBuffer raw = rawCP.getRawBuffer();
+      raw.position(rawCP.getRawOffset());
+      raw.get(buf, offset, len);
     }
 
     char[] chars = noChars;
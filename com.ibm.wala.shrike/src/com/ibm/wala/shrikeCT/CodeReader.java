@@ -69,7 +69,7 @@ public final class CodeReader extends AttributeReader {
    */
   public byte[] getBytecode() {
     byte[] r = new byte[codeLen];
-    System.arraycopy(cr.getBytes(), attr + 14, r, 0, r.length);
+    cr.getBytes(attr + 14, r, 0, r.length);
     return r;
   }
 
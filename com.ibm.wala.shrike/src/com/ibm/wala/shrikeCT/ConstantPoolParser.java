@@ -10,11 +10,16 @@
  *******************************************************************************/
 package com.ibm.wala.shrikeCT;
 
+import java.nio.ByteBuffer;
+
 /**
  * A ConstantPoolParser provides read-only access to the constant pool of a class file.
  */
 public final class ConstantPoolParser implements ClassConstants {
-  final private byte[] bytes;
+  /**
+   * the raw class file data; only read with absolute gets
+   */
+  final private ByteBuffer bytes;
 
   private int[] cpOffsets;
 
@@ -29,6 +34,18 @@ public final class ConstantPoolParser implements ClassConstants {
    * @param itemCount the number of items in the pool
    */
   public ConstantPoolParser(byte[] bytes, int offset, int itemCount) throws InvalidClassFileException {
+    this(ByteBuffer.wrap(bytes), offset, itemCount);
+  }
+
+  /**
+   * @param bytes the raw class file data, from index 0 to the capacity of the buffer; it is read in place, not copied
+   * @param offset the start of the constant pool data
+   * @param itemCount the number of items in the pool
+   */
+  public ConstantPoolParser(ByteBuffer bytes, int offset, int itemCount) throws InvalidClassFileException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null");
+    }
     this.bytes = bytes;
     if (offset < 0) {
       throw new IllegalArgumentException("invalid offset: " + offset);
@@ -40,10 +57,26 @@ public final class ConstantPoolParser implements ClassConstants {
   }
 
   /**
-   * @return the buffer holding the raw class file data
+   * @return the buffer holding the raw class file data; unless the data is a byte array, this is a copy
    */
   public byte[] getRawBytes() {
-    return bytes;
+    if (bytes.hasArray() && bytes.arrayOffset() == 0 && bytes.array().length == bytes.capacity()) {
+      return bytes.array();
+    }
+    byte[] result = new byte[bytes.capacity()];
+    ByteBuffer b = bytes.duplicate();
+    b.clear();
+    b.get(result);
+    return result;
+  }
+
+  /**
+   * @return a read-only view of the raw class file data, indexed like {@link #getRawBytes()}
+   */
+  public ByteBuffer getRawBuffer() {
+    ByteBuffer b = bytes.asReadOnlyBuffer();
+    b.clear();
+    return b;
   }
 
   /**
@@ -74,9 +107,9 @@ public final class ConstantPoolParser implements ClassConstants {
   }
 
   private void checkLength(int offset, int required) throws InvalidClassFileException {
-    if (bytes.length < offset + required) {
+    if (bytes.capacity() < offset + required) {
       throw new InvalidClassFileException(offset, "file truncated, expected " + required + " bytes, saw only "
-          + (bytes.length - offset));
+          + (bytes.capacity() - offset));
     }
   }
 
@@ -403,11 +436,11 @@ public final class ConstantPoolParser implements ClassConstants {
   }
 
   private byte getByte(int i) {
-    return bytes[i];
+    return bytes.get(i);
   }
 
   private int getUShort(int i) {
-    return ((bytes[i] & 0xFF) << 8) + (bytes[i + 1] & 0xFF);
+    return bytes.getShort(i) & 0xFFFF;
   }
 
   // private short getShort(int i) {
@@ -415,7 +448,7 @@ public final class ConstantPoolParser implements ClassConstants {
   // }
 
   private int getInt(int i) {
-    return (bytes[i] << 24) + ((bytes[i + 1] & 0xFF) << 16) + ((bytes[i + 2] & 0xFF) << 8) + (bytes[i + 3] & 0xFF);
+    return bytes.getInt(i);
   }
 
   private long getLong(int i) {
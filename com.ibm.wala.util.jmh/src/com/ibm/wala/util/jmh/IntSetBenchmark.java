@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.jmh;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ibm.wala.util.intset.BimodalMutableIntSetFactory;
+import com.ibm.wala.util.intset.BitVectorIntSetFactory;
+import com.ibm.wala.util.intset.BitVectorRepository;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
+import com.ibm.wala.util.intset.MutableSharedBitVectorIntSetFactory;
+import com.ibm.wala.util.intset.MutableSparseIntSetFactory;
+import com.ibm.wala.util.intset.SemiSparseMutableIntSetFactory;
+import com.ibm.wala.util.intset.SparseIntSet;
+import com.ibm.wala.util.intset.TunedMutableSparseIntSet;
+
+/**
+ * Benchmarks the {@link MutableIntSet} implementations on captured points-to sets (see {@link PointsToSetFixture}).
+ *
+ * Each benchmark makes one pass over all sets of the chosen fixture and size class, so a score is the time for a whole pass.
+ * Binary operations pair each set with the next one in the fixture, which is usually a points-to set of a nearby variable.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntSetBenchmark {
+
+  /**
+   * number of contains() queries per set; half are members and half are drawn from the whole universe
+   */
+  private final static int PROBES = 8;
+
+  @Param({ "BitVector", "MutableSharedBitVector", "SemiSparse", "MutableSparse", "Bimodal", "TunedMutableSparse" })
+  public String impl;
+
+  @Param({ PointsToSetFixture.ZERO_CFA, PointsToSetFixture.ZERO_ONE_CFA })
+  public String fixture;
+
+  @Param({ PointsToSetFixture.ALL, PointsToSetFixture.SMALL, PointsToSetFixture.MEDIUM, PointsToSetFixture.LARGE })
+  public String sizeClass;
+
+  private MutableIntSetFactory<?> factory;
+
+  /**
+   * the elements of each set, in the order they are added
+   */
+  private int[][] elements;
+
+  private MutableIntSet[] sets;
+
+  private int[] probes;
+
+  @Setup
+  public void setUp() throws IOException {
+    factory = makeFactory(impl);
+    PointsToSetFixture f = PointsToSetFixture.load(fixture, sizeClass);
+    Random random = new Random(0);
+    elements = new int[f.size()][];
+    sets = new MutableIntSet[f.size()];
+    probes = new int[f.size() * PROBES];
+    for (int i = 0; i < f.size(); i++) {
+      elements[i] = f.getShuffled(i, random);
+      sets[i] = factory.make(f.get(i));
+      for (int j = 0; j < PROBES; j++) {
+        probes[i * PROBES + j] = (j % 2 == 0) ? elements[i][random.nextInt(elements[i].length)] : random.nextInt(f.getUniverse());
+      }
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if name does not name an implementation
+   */
+  private static MutableIntSetFactory<?> makeFactory(String name) {
+    if (name.equals("BitVector")) {
+      return new BitVectorIntSetFactory();
+    } else if (name.equals("MutableSharedBitVector")) {
+      return new MutableSharedBitVectorIntSetFactory(new BitVectorRepository());
+    } else if (name.equals("SemiSparse")) {
+      return new SemiSparseMutableIntSetFactory();
+    } else if (name.equals("MutableSparse")) {
+      return new MutableSparseIntSetFactory();
+    } else if (name.equals("Bimodal")) {
+      return new BimodalMutableIntSetFactory();
+    } else if (name.equals("TunedMutableSparse")) {
+      return new TunedMutableSparseIntSetFactory();
+    } else {
+      throw new IllegalArgumentException("unknown implementation " + name);
+    }
+  }
+
+  /**
+   * build each set one element at a time, in a shuffled order
+   */
+  @Benchmark
+  public void add(Blackhole bh) {
+    for (int i = 0; i < elements.length; i++) {
+      MutableIntSet s = factory.make();
+      int[] e = elements[i];
+      for (int j = 0; j < e.length; j++) {
+        s.add(e[j]);
+      }
+      bh.consume(s);
+    }
+  }
+
+  @Benchmark
+  public int contains() {
+    int hits = 0;
+    for (int i = 0; i < sets.length; i++) {
+      MutableIntSet s = sets[i];
+      for (int j = i * PROBES; j < (i + 1) * PROBES; j++) {
+        if (s.contains(probes[j])) {
+          hits++;
+        }
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * copy each set and add all of its successor, as the pointer analysis does when propagating along an assignment
+   */
+  @Benchmark
+  public void union(Blackhole bh) {
+    for (int i = 0; i < sets.length; i++) {
+      MutableIntSet s = factory.makeCopy(sets[i]);
+      bh.consume(s.addAll(sets[(i + 1) % sets.length]));
+      bh.consume(s);
+    }
+  }
+
+  /**
+   * copy each set and intersect it with its successor, as type filters do
+   */
+  @Benchmark
+  public void intersection(Blackhole bh) {
+    for (int i = 0; i < sets.length; i++) {
+      MutableIntSet s = factory.makeCopy(sets[i]);
+      s.intersectWith(sets[(i + 1) % sets.length]);
+      bh.consume(s);
+    }
+  }
+
+  @Benchmark
+  public int iterate() {
+    int sum = 0;
+    for (int i = 0; i < sets.length; i++) {
+      for (IntIterator it = sets[i].intIterator(); it.hasNext();) {
+        sum += it.next();
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * A factory for {@link TunedMutableSparseIntSet}s with the initial size and expansion factor that the IFDS solver's
+   * {@link com.ibm.wala.util.collections.SparseVector}s use.
+   */
+  private static class TunedMutableSparseIntSetFactory implements MutableIntSetFactory<TunedMutableSparseIntSet> {
+
+    private final static int INITIAL_SIZE = 1;
+
+    private final static float EXPANSION = 1.1f;
+
+    @Override
+    public TunedMutableSparseIntSet make(int[] set) {
+      TunedMutableSparseIntSet result = make();
+      for (int i = 0; i < set.length; i++) {
+        result.add(set[i]);
+      }
+      return result;
+    }
+
+    @Override
+    public TunedMutableSparseIntSet parse(String string) {
+      return make(SparseIntSet.parseIntArray(string));
+    }
+
+    @Override
+    public TunedMutableSparseIntSet makeCopy(IntSet x) {
+      TunedMutableSparseIntSet result = make();
+      result.addAll(x);
+      return result;
+    }
+
+    @Override
+    public TunedMutableSparseIntSet make() {
+      return new TunedMutableSparseIntSet(INITIAL_SIZE, EXPANSION);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ibm.wala.util.intset.IntVector;
+import com.ibm.wala.util.intset.SimpleIntVector;
+import com.ibm.wala.util.intset.SparseIntVector;
+import com.ibm.wala.util.intset.TwoLevelIntVector;
+
+/**
+ * Benchmarks the {@link IntVector} implementations with index patterns taken from captured points-to sets (see
+ * {@link PointsToSetFixture}).
+ *
+ * A row is one vector per set, indexed by the set's elements, as {@link com.ibm.wala.util.intset.BasicNaturalRelation} stores
+ * relations; a column is one vector indexed by set number, as per-variable tables are. Each benchmark makes one pass over the
+ * whole fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntVectorBenchmark {
+
+  private final static int DEFAULT_VALUE = -1;
+
+  @Param({ "Simple", "Sparse", "TwoLevel" })
+  public String impl;
+
+  @Param({ PointsToSetFixture.ZERO_CFA, PointsToSetFixture.ZERO_ONE_CFA })
+  public String fixture;
+
+  private PointsToSetFixture sets;
+
+  private IntVector[] rows;
+
+  @Setup
+  public void setUp() throws IOException {
+    sets = PointsToSetFixture.load(fixture, PointsToSetFixture.ALL);
+    rows = new IntVector[sets.size()];
+    for (int i = 0; i < sets.size(); i++) {
+      rows[i] = fillRow(i);
+    }
+  }
+
+  private IntVector makeVector() {
+    if (impl.equals("Simple")) {
+      return new SimpleIntVector(DEFAULT_VALUE);
+    } else if (impl.equals("Sparse")) {
+      return new SparseIntVector(DEFAULT_VALUE);
+    } else if (impl.equals("TwoLevel")) {
+      return new TwoLevelIntVector(DEFAULT_VALUE);
+    } else {
+      throw new IllegalArgumentException("unknown implementation " + impl);
+    }
+  }
+
+  private IntVector fillRow(int i) {
+    IntVector v = makeVector();
+    int[] e = sets.get(i);
+    for (int j = 0; j < e.length; j++) {
+      v.set(e[j], i);
+    }
+    return v;
+  }
+
+  @Benchmark
+  public void setRows(Blackhole bh) {
+    for (int i = 0; i < sets.size(); i++) {
+      bh.consume(fillRow(i));
+    }
+  }
+
+  /**
+   * read every element of each row, and the index just past each element, which is usually unset
+   */
+  @Benchmark
+  public int getRows() {
+    int sum = 0;
+    for (int i = 0; i < rows.length; i++) {
+      IntVector v = rows[i];
+      int[] e = sets.get(i);
+      for (int j = 0; j < e.length; j++) {
+        sum += v.get(e[j]);
+        sum += v.get(e[j] + 1);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public IntVector setColumn() {
+    IntVector v = makeVector();
+    for (int i = 0; i < sets.size(); i++) {
+      v.set(i, sets.get(i).length);
+    }
+    return v;
+  }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.jmh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ibm.wala.util.intset.SparseIntSet;
+
+/**
+ * Points-to sets captured from real pointer analysis runs, used as benchmark input so that results stay comparable across
+ * commits.
+ *
+ * Each fixture is a resource named pts-<i>name</i>-testdata.txt, written by com.ibm.wala.examples.drivers.CapturePointsToSets
+ * over the WALA test data. Lines starting with '#' are comments; every other line is one non-empty set of instance key numbers.
+ */
+public class PointsToSetFixture {
+
+  /**
+   * fixture names, for use as benchmark parameters
+   */
+  public final static String ZERO_CFA = "0cfa";
+
+  public final static String ZERO_ONE_CFA = "01cfa";
+
+  /**
+   * size classes, for use as benchmark parameters. {@link #ALL} keeps the captured distribution as is.
+   */
+  public final static String ALL = "all";
+
+  public final static String SMALL = "small";
+
+  public final static String MEDIUM = "medium";
+
+  public final static String LARGE = "large";
+
+  private final static int SMALL_MAX = 8;
+
+  private final static int MEDIUM_MAX = 64;
+
+  private final List<int[]> sets;
+
+  private final int universe;
+
+  private PointsToSetFixture(List<int[]> sets) {
+    this.sets = sets;
+    int max = -1;
+    for (int[] s : sets) {
+      if (s.length > 0) {
+        max = Math.max(max, s[s.length - 1]);
+      }
+    }
+    this.universe = max + 1;
+  }
+
+  /**
+   * @param name {@link #ZERO_CFA} or {@link #ZERO_ONE_CFA}
+   * @param sizeClass {@link #ALL}, {@link #SMALL} (2 to 8 elements), {@link #MEDIUM} (9 to 64) or {@link #LARGE} (more than
+   *          64)
+   * @throws IOException if the fixture cannot be read
+   * @throws IllegalArgumentException if there is no such fixture or size class
+   */
+  public static PointsToSetFixture load(String name, String sizeClass) throws IOException {
+    String resource = "pts-" + name + "-testdata.txt";
+    InputStream s = PointsToSetFixture.class.getClassLoader().getResourceAsStream(resource);
+    if (s == null) {
+      throw new IllegalArgumentException("no fixture " + resource);
+    }
+    List<int[]> sets = new ArrayList<int[]>();
+    BufferedReader r = new BufferedReader(new InputStreamReader(s, "UTF-8"));
+    try {
+      for (String line = r.readLine(); line != null; line = r.readLine()) {
+        line = line.trim();
+        if (line.length() == 0 || line.charAt(0) == '#') {
+          continue;
+        }
+        int[] set = SparseIntSet.parseIntArray(line);
+        if (inSizeClass(set.length, sizeClass)) {
+          sets.add(set);
+        }
+      }
+    } finally {
+      r.close();
+    }
+    return new PointsToSetFixture(sets);
+  }
+
+  private static boolean inSizeClass(int size, String sizeClass) {
+    if (sizeClass.equals(ALL)) {
+      return true;
+    } else if (sizeClass.equals(SMALL)) {
+      return size > 1 && size <= SMALL_MAX;
+    } else if (sizeClass.equals(MEDIUM)) {
+      return size > SMALL_MAX && size <= MEDIUM_MAX;
+    } else if (sizeClass.equals(LARGE)) {
+      return size > MEDIUM_MAX;
+    } else {
+      throw new IllegalArgumentException("unknown size class " + sizeClass);
+    }
+  }
+
+  /**
+   * @return the number of sets
+   */
+  public int size() {
+    return sets.size();
+  }
+
+  /**
+   * @return the elements of the ith set, in increasing order. The caller must not modify the result.
+   */
+  public int[] get(int i) {
+    return sets.get(i);
+  }
+
+  /**
+   * @return one more than the largest element of any set
+   */
+  public int getUniverse() {
+    return universe;
+  }
+
+  /**
+   * @return a copy of the elements of the ith set, shuffled with random
+   */
+  public int[] getShuffled(int i, Random random) {
+    int[] result = sets.get(i).clone();
+    for (int j = result.length - 1; j > 0; j--) {
+      int k = random.nextInt(j + 1);
+      int t = result[j];
+      result[j] = result[k];
+      result[k] = t;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.util.collections.FifoQueue;
+import com.ibm.wala.util.collections.Heap;
+
+/**
+ * Benchmarks {@link Heap} and {@link FifoQueue} as work lists. Work arrives in batches taken from captured points-to sets (see
+ * {@link PointsToSetFixture}): for each set, its elements are enqueued, then half as many items are taken, and the remaining work
+ * is drained at the end. This mimics a solver that finds new work while it runs.
+ *
+ * {@link FifoQueue} drops items which are already queued and {@link Heap} does not, so the two may do different amounts of work
+ * on the same input, as they would in a solver.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueueBenchmark {
+
+  @Param({ PointsToSetFixture.ZERO_CFA, PointsToSetFixture.ZERO_ONE_CFA })
+  public String fixture;
+
+  /**
+   * the batches of work, boxed once so that boxing is not measured
+   */
+  private Integer[][] batches;
+
+  @Setup
+  public void setUp() throws IOException {
+    PointsToSetFixture sets = PointsToSetFixture.load(fixture, PointsToSetFixture.ALL);
+    Integer[] boxed = new Integer[sets.getUniverse()];
+    for (int i = 0; i < boxed.length; i++) {
+      boxed[i] = Integer.valueOf(i);
+    }
+    batches = new Integer[sets.size()][];
+    for (int i = 0; i < sets.size(); i++) {
+      int[] e = sets.get(i);
+      batches[i] = new Integer[e.length];
+      for (int j = 0; j < e.length; j++) {
+        batches[i][j] = boxed[e[j]];
+      }
+    }
+  }
+
+  @Benchmark
+  public int heap() {
+    Heap<Integer> h = new Heap<Integer>(10) {
+      @Override
+      protected boolean compareElements(Integer elt1, Integer elt2) {
+        return elt1.intValue() < elt2.intValue();
+      }
+    };
+    int sum = 0;
+    for (int i = 0; i < batches.length; i++) {
+      Integer[] b = batches[i];
+      for (int j = 0; j < b.length; j++) {
+        h.insert(b[j]);
+      }
+      for (int j = 0; j < b.length / 2; j++) {
+        sum += h.take().intValue();
+      }
+    }
+    while (!h.isEmpty()) {
+      sum += h.take().intValue();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int fifoQueue() {
+    FifoQueue<Integer> q = new FifoQueue<Integer>();
+    int sum = 0;
+    for (int i = 0; i < batches.length; i++) {
+      Integer[] b = batches[i];
+      for (int j = 0; j < b.length; j++) {
+        q.push(b[j]);
+      }
+      for (int j = 0; j < b.length / 2 && !q.isEmpty(); j++) {
+        sum += q.pop().intValue();
+      }
+    }
+    while (!q.isEmpty()) {
+      sum += q.pop().intValue();
+    }
+    return sum;
+  }
+}
@@ -36,4 +36,12 @@ public class BitVectorSolver<T> extends DataflowSolver<T, BitVectorVariable> {
   protected BitVectorVariable[] makeStmtRHS(int size) {
     return new BitVectorVariable[size];
   }
+
+  /**
+   * Dataflow equations over bit vectors are monotone, and evaluating them does not change the system.
+   */
+  @Override
+  protected boolean supportsParallelSolve() {
+    return true;
+  }
 }
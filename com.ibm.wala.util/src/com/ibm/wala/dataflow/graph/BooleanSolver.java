@@ -38,4 +38,12 @@ public class BooleanSolver<T> extends DataflowSolver<T, BooleanVariable> {
     return new BooleanVariable[size];
   }
 
+  /**
+   * Dataflow equations over booleans are monotone, and evaluating them does not change the system.
+   */
+  @Override
+  protected boolean supportsParallelSolve() {
+    return true;
+  }
+
 }
@@ -24,6 +24,7 @@ import com.ibm.wala.fixpoint.UnaryStatement;
 import com.ibm.wala.util.CancelException;
 import com.ibm.wala.util.MonitorUtil;
 import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.collections.Factory;
 import com.ibm.wala.util.debug.VerboseAction;
 
 /**
@@ -91,10 +92,50 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
    */
   private int nCreated = 0;
 
+  /**
+   * Total number of statements evaluated by {@link #solve(IProgressMonitor)}
+   */
+  private long totalEvaluations = 0;
+
+  /**
+   * makes a {@link Worklist}
+   */
+  public static final Factory<IWorklist> DEFAULT_WORKLIST_FACTORY = new Factory<IWorklist>() {
+    @Override
+    public IWorklist make() {
+      return new Worklist();
+    }
+  };
+
+  /**
+   * makes the worklist for the iterative solver
+   */
+  private Factory<IWorklist> worklistFactory = DEFAULT_WORKLIST_FACTORY;
+
   /**
    * worklist for the iterative solver
    */
-  protected Worklist workList = new Worklist();
+  private IWorklist worklist = worklistFactory.make();
+
+  /**
+   * worklist for the iterative solver, if it is a {@link Worklist}, as it is unless {@link #setWorklistFactory(Factory)} chose
+   * another kind; otherwise null.
+   * 
+   * @deprecated use {@link #getWorklist()}, which works with every kind of work list
+   */
+  @Deprecated
+  protected Worklist workList = (Worklist) worklist;
+
+  /**
+   * number of threads with which to solve
+   */
+  private int numberOfThreads = 1;
+
+  /**
+   * solves with {@link #numberOfThreads} threads, kept across calls to {@link #solve(IProgressMonitor)}; null until the first
+   * parallel solve
+   */
+  private ParallelSolver parallelSolver;
 
   /**
    * A boolean which is initially true, but set to false after the first call to solve();
@@ -117,7 +158,7 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
    * @return true iff work list is empty
    */
   public boolean emptyWorkList() {
-    return workList.isEmpty();
+    return worklist.isEmpty();
   }
 
   /**
@@ -137,17 +178,25 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
       initForFirstSolve();
     }
 
-    while (!workList.isEmpty()) {
+    if (numberOfThreads > 1) {
+      if (parallelSolver == null) {
+        parallelSolver = new ParallelSolver(this, numberOfThreads);
+      }
+      return parallelSolver.solve(monitor);
+    }
+
+    while (!worklist.isEmpty()) {
       MonitorUtil.throwExceptionIfCanceled(monitor);
       orderStatements();
 
       // duplicate insertion detection
-      AbstractStatement s = workList.takeStatement();
+      AbstractStatement s = worklist.takeStatement();
 
       if (DEBUG) {
         System.err.println(("Before evaluation " + s));
       }
       byte code = s.evaluate();
+      totalEvaluations++;
       if (verbose) {
         nEvaluated++;
         if (nEvaluated % getVerboseInterval() == 0) {
@@ -161,6 +210,7 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
       if (DEBUG) {
         System.err.println(("After evaluation  " + s + " " + isChanged(code)));
       }
+      statementEvaluated(s, code);
       if (isChanged(code)) {
         globalChange = true;
         updateWorkList(s);
@@ -172,19 +222,115 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
     return globalChange;
   }
 
+  /**
+   * Choose the work list strategy for this solver. Any statements already on the work list are moved to the new one.
+   * 
+   * @see Worklist
+   * @see BucketWorklist
+   * @see LRFWorklist
+   * @see WaveWorklist
+   */
+  public void setWorklistFactory(Factory<IWorklist> worklistFactory) {
+    if (worklistFactory == null) {
+      throw new IllegalArgumentException("null worklistFactory");
+    }
+    this.worklistFactory = worklistFactory;
+    IWorklist old = worklist;
+    setWorklist(worklistFactory.make());
+    while (!old.isEmpty()) {
+      worklist.insertStatement(old.takeStatement());
+    }
+  }
+
+  /**
+   * @return the worklist for the iterative solver
+   */
+  protected IWorklist getWorklist() {
+    return worklist;
+  }
+
+  private void setWorklist(IWorklist worklist) {
+    this.worklist = worklist;
+    this.workList = (worklist instanceof Worklist) ? (Worklist) worklist : null;
+  }
+
+  /**
+   * @return the total number of statements evaluated so far, whether or not the solver is verbose
+   */
+  public long getTotalEvaluations() {
+    return totalEvaluations;
+  }
+
+  void addEvaluations(long n) {
+    totalEvaluations += n;
+  }
+
+  /**
+   * Solve with several threads. This is only supported for solvers whose operators are monotone and whose statements do not change
+   * the system when evaluated; see {@link #supportsParallelSolve()}. When solving with more than one thread, statements are not
+   * evaluated in order, and {@link #statementEvaluated(AbstractStatement, byte)} is not called.
+   * 
+   * @throws IllegalArgumentException if n &lt; 1
+   * @throws UnsupportedOperationException if n &gt; 1 and this solver does not support solving in parallel
+   */
+  public void setNumberOfThreads(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("number of threads must be at least 1: " + n);
+    }
+    if (n > 1 && !supportsParallelSolve()) {
+      throw new UnsupportedOperationException(getClass() + " cannot be solved in parallel");
+    }
+    if (n != numberOfThreads) {
+      shutdown();
+    }
+    numberOfThreads = n;
+  }
+
+  /**
+   * Stop the threads kept for solving in parallel, if any. The solver can still be used; a later parallel solve starts new threads.
+   */
+  public void shutdown() {
+    if (parallelSolver != null) {
+      parallelSolver.shutdown();
+      parallelSolver = null;
+    }
+  }
+
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+
+  /**
+   * @return true iff this solver's system may be solved with several threads: its operators are monotone, its statements do not add
+   *         statements or variables when evaluated, and each statement only touches its own left- and right-hand sides.
+   */
+  protected boolean supportsParallelSolve() {
+    return false;
+  }
+
+  /**
+   * Called by {@link #solve(IProgressMonitor)} after each evaluation of a statement taken from the work list, before the work list
+   * is updated. Subclasses may override this to observe the solver; the default implementation does nothing.
+   * 
+   * @param s the statement just evaluated
+   * @param code the result of the evaluation
+   */
+  protected void statementEvaluated(AbstractStatement s, byte code) {
+  }
+
   @Override
   public void performVerboseAction() {
     System.err.println("Evaluated " + nEvaluated);
     System.err.println("Created   " + nCreated);
-    System.err.println("Worklist  " + workList.size());
+    System.err.println("Worklist  " + worklist.size());
     if (MORE_VERBOSE) {
-      if (!workList.isEmpty()) {
-        AbstractStatement s = workList.takeStatement();
+      if (!worklist.isEmpty()) {
+        AbstractStatement s = worklist.takeStatement();
         System.err.println("Peek      " + lineBreak(s.toString(), 132));
         if (s instanceof VerboseAction) {
           ((VerboseAction) s).performVerboseAction();
         }
-        workList.insertStatement(s);
+        worklist.insertStatement(s);
       }
     }
   }
@@ -231,7 +377,7 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
    * @param s the step to add
    */
   public void addToWorkList(AbstractStatement s) {
-    workList.insertStatement(s);
+    worklist.insertStatement(s);
   }
 
   /**
@@ -288,6 +434,7 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
   private void incorporateNewStatement(boolean toWorkList, boolean eager, AbstractStatement s) {
     if (eager) {
       byte code = s.evaluate();
+      totalEvaluations++;
       if (verbose) {
         nEvaluated++;
         if (nEvaluated % getVerboseInterval() == 0) {
@@ -506,11 +653,11 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
   private void reorder() {
     // drain the worklist
     LinkedList<AbstractStatement> temp = new LinkedList<AbstractStatement>();
-    while (!workList.isEmpty()) {
-      AbstractStatement eq = workList.takeStatement();
+    while (!worklist.isEmpty()) {
+      AbstractStatement eq = worklist.takeStatement();
       temp.add(eq);
     }
-    workList = new Worklist();
+    setWorklist(worklistFactory.make());
 
     // compute new ordering
     getFixedPointSystem().reorder();
@@ -518,7 +665,7 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
     // re-populate worklist
     for (Iterator<AbstractStatement> it = temp.iterator(); it.hasNext();) {
       AbstractStatement s = it.next();
-      workList.insertStatement(s);
+      worklist.insertStatement(s);
     }
   }
 
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.util.collections.Factory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.intset.BitVector;
+
+/**
+ * A work list which takes statements in the same order as {@link Worklist}, lowest order number first, but keeps one bucket of
+ * statements per order number instead of a heap. A bit vector records the non-empty buckets, so insertion is constant time and
+ * taking a statement costs a scan for the next set bit.
+ * 
+ * Order numbers are those of the statements' left-hand sides, and so are shared by all the statements which define a variable;
+ * statements are compared with equals(), so membership is still tracked with a hash set.
+ */
+@SuppressWarnings("rawtypes")
+public class BucketWorklist implements IWorklist {
+
+  public static final Factory<IWorklist> FACTORY = new Factory<IWorklist>() {
+    @Override
+    public IWorklist make() {
+      return new BucketWorklist();
+    }
+  };
+
+  private final HashSet<AbstractStatement> contents = HashSetFactory.make();
+
+  /**
+   * buckets[i] holds the statements with order number i, or is null
+   */
+  private ArrayList[] buckets = new ArrayList[64];
+
+  /**
+   * bit i is set iff buckets[i] is non-empty
+   */
+  private final BitVector nonEmpty = new BitVector();
+
+  /**
+   * no bucket below this one is non-empty
+   */
+  private int low = 0;
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void insertStatement(AbstractStatement eq) {
+    if (!contents.add(eq)) {
+      return;
+    }
+    int n = Math.max(0, eq.getOrderNumber());
+    if (n >= buckets.length) {
+      ArrayList[] old = buckets;
+      buckets = new ArrayList[Math.max(n + 1, 2 * old.length)];
+      System.arraycopy(old, 0, buckets, 0, old.length);
+    }
+    if (buckets[n] == null) {
+      buckets[n] = new ArrayList(2);
+    }
+    buckets[n].add(eq);
+    nonEmpty.set(n);
+    if (n < low) {
+      low = n;
+    }
+  }
+
+  @Override
+  public AbstractStatement takeStatement() throws NoSuchElementException {
+    if (contents.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    int n = nonEmpty.nextSetBit(low);
+    low = n;
+    ArrayList bucket = buckets[n];
+    AbstractStatement result = (AbstractStatement) bucket.remove(bucket.size() - 1);
+    if (bucket.isEmpty()) {
+      nonEmpty.clear(n);
+    }
+    contents.remove(result);
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return contents.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return contents.size();
+  }
+}
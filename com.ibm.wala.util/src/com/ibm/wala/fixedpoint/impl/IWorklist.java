@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+
+/**
+ * A work list of statements for a fixed-point solver. Inserting a statement which is already on the work list has no effect. The
+ * order in which statements are taken is up to the implementation.
+ * 
+ * @see AbstractFixedPointSolver#setWorklistFactory(com.ibm.wala.util.collections.Factory)
+ */
+@SuppressWarnings("rawtypes")
+public interface IWorklist {
+
+  /**
+   * @return the next statement to evaluate, which is removed from the work list
+   * @throws NoSuchElementException if the work list is empty
+   */
+  AbstractStatement takeStatement() throws NoSuchElementException;
+
+  /**
+   * Add a statement to the work list, unless it is already there
+   */
+  void insertStatement(AbstractStatement eq);
+
+  /**
+   * @return true iff the work list is empty
+   */
+  boolean isEmpty();
+
+  /**
+   * @return the number of statements on the work list
+   */
+  int size();
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.fixpoint.IVariable;
+import com.ibm.wala.fixpoint.UnaryStatement;
+import com.ibm.wala.util.collections.Factory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.collections.Heap;
+import com.ibm.wala.util.intset.SimpleIntVector;
+
+/**
+ * A "least recently fired" work list, after Pearce, Kelly and Hankin, "Efficient Field-Sensitive Pointer Analysis for C" (PASTE
+ * 2004). Each statement is keyed by a variable: its left-hand side, or for a statement with no left-hand side, its first
+ * right-hand side. The statement taken next is the one whose key variable was least recently the key of a statement taken, so work
+ * is spread evenly across the system rather than concentrated on a few hot variables. Ties are broken by order number.
+ */
+@SuppressWarnings("rawtypes")
+public class LRFWorklist implements IWorklist {
+
+  public static final Factory<IWorklist> FACTORY = new Factory<IWorklist>() {
+    @Override
+    public IWorklist make() {
+      return new LRFWorklist();
+    }
+  };
+
+  private final static class Entry {
+    final AbstractStatement statement;
+
+    final int lastFired;
+
+    Entry(AbstractStatement statement, int lastFired) {
+      this.statement = statement;
+      this.lastFired = lastFired;
+    }
+  }
+
+  private final HashSet<AbstractStatement> contents = HashSetFactory.make();
+
+  private final Heap<Entry> heap = new Heap<Entry>(100) {
+    @Override
+    protected boolean compareElements(Entry e1, Entry e2) {
+      if (e1.lastFired != e2.lastFired) {
+        return e1.lastFired < e2.lastFired;
+      }
+      return e1.statement.getOrderNumber() < e2.statement.getOrderNumber();
+    }
+  };
+
+  /**
+   * for each variable, by graph node id, the time at which a statement keyed by it was last taken
+   */
+  private final SimpleIntVector lastFired = new SimpleIntVector(0);
+
+  private int clock = 0;
+
+  private static int keyOf(AbstractStatement eq) {
+    IVariable v = eq.getLHS();
+    if (v == null) {
+      if (eq instanceof UnaryStatement) {
+        v = ((UnaryStatement) eq).getRightHandSide();
+      } else if (eq.getRHS().length > 0) {
+        v = eq.getRHS()[0];
+      }
+    }
+    return (v == null) ? -1 : v.getGraphNodeId();
+  }
+
+  @Override
+  public void insertStatement(AbstractStatement eq) {
+    if (contents.add(eq)) {
+      int key = keyOf(eq);
+      heap.insert(new Entry(eq, key < 0 ? 0 : lastFired.get(key)));
+    }
+  }
+
+  @Override
+  public AbstractStatement takeStatement() throws NoSuchElementException {
+    AbstractStatement result = heap.take().statement;
+    contents.remove(result);
+    int key = keyOf(result);
+    if (key >= 0) {
+      lastFired.set(key, ++clock);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return heap.size();
+  }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.fixpoint.IVariable;
+import com.ibm.wala.fixpoint.UnaryStatement;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.WorkStealingDriver;
+import com.ibm.wala.util.functions.VoidFunction;
+
+/**
+ * Evaluates the statements of a fixed-point system with several threads, for {@link AbstractFixedPointSolver#solve} when more
+ * than one thread is requested.
+ *
+ * This is only correct for systems whose operators are monotone, so that the fixed point does not depend on the order of
+ * evaluation, and whose statements do not add statements to the system when they are evaluated.
+ *
+ * Statements are run by a {@link WorkStealingDriver}, queued by the left-hand side variable, so that statements defining the same
+ * variable tend to run on the same thread. Each variable is guarded by one of a fixed set of locks, and a statement holds the locks
+ * for all its variables, acquired in a fixed order, while it is evaluated. The threads are kept from one solve to the next, until
+ * {@link #shutdown()}.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+class ParallelSolver {
+
+  /**
+   * number of locks guarding variables; a power of 2
+   */
+  private static final int STRIPES = 1024;
+
+  private final AbstractFixedPointSolver solver;
+
+  private final WorkStealingDriver<AbstractStatement> driver;
+
+  /**
+   * statements on some queue
+   */
+  private final ConcurrentHashMap<AbstractStatement, Boolean> queued = new ConcurrentHashMap<AbstractStatement, Boolean>();
+
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+  /**
+   * statements which reached a fixed point, to be removed from the system when all threads are done
+   */
+  private final ConcurrentLinkedQueue<AbstractStatement> fixed = new ConcurrentLinkedQueue<AbstractStatement>();
+
+  private final AtomicLong evaluations = new AtomicLong();
+
+  private volatile boolean changed = false;
+
+  ParallelSolver(AbstractFixedPointSolver<?> solver, int nThreads) {
+    this.solver = solver;
+    this.driver = new WorkStealingDriver<AbstractStatement>(nThreads, new VoidFunction<AbstractStatement>() {
+      @Override
+      public void apply(AbstractStatement s) {
+        queued.remove(s);
+        evaluate(s);
+      }
+    });
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Evaluate the statements on the solver's work list, and everything they lead to, until the work list is empty.
+   *
+   * @return true iff the evaluation of some statement changed the value of some variable
+   */
+  boolean solve(IProgressMonitor monitor) throws CancelException {
+    changed = false;
+    evaluations.set(0);
+    fixed.clear();
+    while (!solver.getWorklist().isEmpty()) {
+      enqueue(solver.getWorklist().takeStatement());
+    }
+    try {
+      driver.run(monitor);
+    } finally {
+      for (AbstractStatement s : fixed) {
+        solver.removeStatement(s);
+      }
+      solver.addEvaluations(evaluations.get());
+      // after a failure or cancellation, leave the unevaluated statements for a later solve
+      for (AbstractStatement s : driver.takeAll()) {
+        queued.remove(s);
+        solver.getWorklist().insertStatement(s);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Stop the worker threads.
+   */
+  void shutdown() {
+    driver.shutdown();
+  }
+
+  private void evaluate(AbstractStatement s) {
+    int[] locks = lockStripes(s);
+    byte code;
+    try {
+      code = s.evaluate();
+    } finally {
+      for (int i = locks.length - 1; i >= 0; i--) {
+        stripes[locks[i]].unlock();
+      }
+    }
+    evaluations.incrementAndGet();
+    if (AbstractFixedPointSolver.isChanged(code)) {
+      changed = true;
+      IVariable v = s.getLHS();
+      if (v != null) {
+        for (Iterator it = solver.getFixedPointSystem().getStatementsThatUse(v); it.hasNext();) {
+          enqueue((AbstractStatement) it.next());
+        }
+      }
+    }
+    if (AbstractFixedPointSolver.isFixed(code)) {
+      fixed.add(s);
+    }
+  }
+
+  private void enqueue(AbstractStatement s) {
+    if (queued.putIfAbsent(s, Boolean.TRUE) == null) {
+      driver.add(s, hash(s.getLHS()));
+    }
+  }
+
+  /**
+   * Acquire the locks for all the variables of s, in increasing order.
+   *
+   * @return the indices of the locks acquired
+   */
+  private int[] lockStripes(AbstractStatement s) {
+    IVariable lhs = s.getLHS();
+    IVariable[] rhs;
+    if (s instanceof UnaryStatement) {
+      rhs = new IVariable[] { ((UnaryStatement) s).getRightHandSide() };
+    } else if (s instanceof NullaryStatement) {
+      rhs = new IVariable[0];
+    } else {
+      rhs = s.getRHS();
+    }
+    int[] result = new int[rhs.length + 1];
+    int n = 0;
+    if (lhs != null) {
+      result[n++] = stripe(lhs);
+    }
+    for (IVariable v : rhs) {
+      if (v != null) {
+        result[n++] = stripe(v);
+      }
+    }
+    Arrays.sort(result, 0, n);
+    int unique = 0;
+    for (int i = 0; i < n; i++) {
+      if (unique == 0 || result[unique - 1] != result[i]) {
+        result[unique++] = result[i];
+      }
+    }
+    int[] locks = (unique == result.length) ? result : Arrays.copyOf(result, unique);
+    for (int i = 0; i < locks.length; i++) {
+      stripes[locks[i]].lock();
+    }
+    return locks;
+  }
+
+  private static int hash(IVariable v) {
+    if (v == null) {
+      return 0;
+    }
+    int id = v.getGraphNodeId();
+    return (id >= 0) ? id : System.identityHashCode(v);
+  }
+
+  private static int stripe(IVariable v) {
+    int h = hash(v);
+    h ^= (h >>> 16);
+    return h & (STRIPES - 1);
+  }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.util.collections.Factory;
+import com.ibm.wala.util.collections.HashSetFactory;
+
+/**
+ * A two-phase work list. Statements are taken from the current wave in order; statements inserted meanwhile go to the next wave,
+ * which is sorted by order number and becomes current when the current wave is exhausted. Each wave thus sweeps the system once in
+ * topological order, and no statement is evaluated twice in one wave.
+ */
+@SuppressWarnings("rawtypes")
+public class WaveWorklist implements IWorklist {
+
+  public static final Factory<IWorklist> FACTORY = new Factory<IWorklist>() {
+    @Override
+    public IWorklist make() {
+      return new WaveWorklist();
+    }
+  };
+
+  private final static Comparator<AbstractStatement> ORDER = new Comparator<AbstractStatement>() {
+    @Override
+    public int compare(AbstractStatement o1, AbstractStatement o2) {
+      int n1 = o1.getOrderNumber();
+      int n2 = o2.getOrderNumber();
+      return (n1 < n2) ? -1 : ((n1 == n2) ? 0 : 1);
+    }
+  };
+
+  private final HashSet<AbstractStatement> contents = HashSetFactory.make();
+
+  private ArrayList<AbstractStatement> current = new ArrayList<AbstractStatement>();
+
+  /**
+   * index of the next statement to take from current
+   */
+  private int next = 0;
+
+  private ArrayList<AbstractStatement> nextWave = new ArrayList<AbstractStatement>();
+
+  @Override
+  public void insertStatement(AbstractStatement eq) {
+    if (contents.add(eq)) {
+      nextWave.add(eq);
+    }
+  }
+
+  @Override
+  public AbstractStatement takeStatement() throws NoSuchElementException {
+    if (next == current.size()) {
+      if (nextWave.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      Collections.sort(nextWave, ORDER);
+      current = nextWave;
+      nextWave = new ArrayList<AbstractStatement>();
+      next = 0;
+    }
+    AbstractStatement result = current.get(next);
+    current.set(next++, null);
+    contents.remove(result);
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return contents.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return contents.size();
+  }
+}
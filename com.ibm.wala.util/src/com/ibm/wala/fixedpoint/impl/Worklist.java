@@ -18,10 +18,10 @@ import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.collections.Heap;
 
 /**
- * Worklist for fixed-point solver implementation
+ * The default worklist for fixed-point solver implementation: a heap ordered by statement order number
  */
 @SuppressWarnings("rawtypes")
-public class Worklist extends Heap<AbstractStatement> {
+public class Worklist extends Heap<AbstractStatement> implements IWorklist {
 
   private final HashSet<AbstractStatement> contents = HashSetFactory.make();
 
@@ -34,12 +34,14 @@ public class Worklist extends Heap<AbstractStatement> {
     return (eq1.getOrderNumber() < eq2.getOrderNumber());
   }
 
+  @Override
   public AbstractStatement takeStatement() throws NoSuchElementException {
     AbstractStatement result = super.take();
     contents.remove(result);
     return result;
   }
   
+  @Override
   public void insertStatement(AbstractStatement eq) {
     if (!contents.contains(eq)) {
       contents.add(eq);
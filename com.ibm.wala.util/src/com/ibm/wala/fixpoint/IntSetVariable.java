@@ -13,6 +13,7 @@ package com.ibm.wala.fixpoint;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetUtil;
 import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
 
 /**
  * A variable for dataflow analysis, representing a set of integers.
@@ -24,6 +25,13 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
 
   private MutableIntSet V;
 
+  /**
+   * @return the factory which makes the set holding this variable's value
+   */
+  protected MutableIntSetFactory<?> getIntSetFactory() {
+    return IntSetUtil.getDefaultIntSetFactory();
+  }
+
   @Override
   public void copyState(T other) {
     final IntSetVariable<?> isv = (IntSetVariable<?>) other;
@@ -31,7 +39,7 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
       if (isv.V == null) {
         return;
       } else {
-        V = IntSetUtil.getDefaultIntSetFactory().makeCopy(isv.V);
+        V = getIntSetFactory().makeCopy(isv.V);
         return;
       }
     } else {
@@ -48,7 +56,7 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
    */
   public boolean addAll(IntSet B) {
     if (V == null) {
-      V = IntSetUtil.getDefaultIntSetFactory().makeCopy(B);
+      V = getIntSetFactory().makeCopy(B);
       return (B.size() > 0);
     } else {
       boolean result = V.addAll(B);
@@ -106,7 +114,7 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
    */
   public void add(int b) {
     if (V == null) {
-      V = IntSetUtil.getDefaultIntSetFactory().make();
+      V = getIntSetFactory().make();
     }
     V.add(b);
   }
@@ -172,7 +180,7 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
 
   public boolean addAllInIntersection(IntSet other, IntSet filter) {
     if (V == null) {
-      V = IntSetUtil.getDefaultIntSetFactory().makeCopy(other);
+      V = getIntSetFactory().makeCopy(other);
       V.intersectWith(filter);
       if (V.isEmpty()) {
         V = null;
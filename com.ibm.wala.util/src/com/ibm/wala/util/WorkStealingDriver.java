@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.functions.VoidFunction;
+
+/**
+ * Processes work items with a fixed set of threads until no work is left, for solvers whose items may create more items.
+ * <p>
+ * Each thread owns a queue. Items added by a worker go on its own queue, unless the caller picks a queue, and a thread whose
+ * queue is empty steals from the others. A thread that finds no work while other items are still being processed parks until an
+ * item is added or the work runs out. {@link #run(IProgressMonitor)} returns when no item is queued or being processed.
+ * <p>
+ * The threads are created by the first run and kept for later runs, until {@link #shutdown()}. They are daemon threads, so a
+ * driver that is not shut down does not keep the JVM alive.
+ *
+ * @param <W> type of work item
+ */
+public class WorkStealingDriver<W> {
+
+  /**
+   * how often, in milliseconds, the thread that called {@link #run(IProgressMonitor)} checks the progress monitor
+   */
+  private static final long POLL_MILLIS = 100;
+
+  private final int nThreads;
+
+  private final VoidFunction<W> processor;
+
+  private final ConcurrentLinkedQueue<W>[] queues;
+
+  /**
+   * number of items queued or being processed; the work is done when this is 0
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /**
+   * the index of the queue owned by the current thread, or null for a thread that is not one of the workers
+   */
+  private final ThreadLocal<Integer> queue = new ThreadLocal<Integer>();
+
+  /**
+   * the queue for the next item added by a thread that is not one of the workers
+   */
+  private final AtomicInteger nextQueue = new AtomicInteger();
+
+  private final ReentrantLock idleLock = new ReentrantLock();
+
+  /**
+   * signaled when an item is added while some thread is parked, and when the work is done or canceled
+   */
+  private final Condition workOrDone = idleLock.newCondition();
+
+  /**
+   * number of workers parked, or about to park, on {@link #workOrDone}
+   */
+  private final AtomicInteger parked = new AtomicInteger();
+
+  private volatile boolean canceled = false;
+
+  private ExecutorService pool;
+
+  /**
+   * @param nThreads the number of worker threads
+   * @param processor called by the workers on each item; may call {@link #add(Object)}
+   * @throws IllegalArgumentException if nThreads &lt; 1 or processor is null
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  public WorkStealingDriver(int nThreads, VoidFunction<W> processor) {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("invalid nThreads: " + nThreads);
+    }
+    if (processor == null) {
+      throw new IllegalArgumentException("processor is null");
+    }
+    this.nThreads = nThreads;
+    this.processor = processor;
+    this.queues = new ConcurrentLinkedQueue[nThreads];
+    for (int i = 0; i < nThreads; i++) {
+      queues[i] = new ConcurrentLinkedQueue<W>();
+    }
+  }
+
+  public int getNumberOfThreads() {
+    return nThreads;
+  }
+
+  /**
+   * Queue an item: on the current thread's own queue if it is a worker, and otherwise on each queue in turn.
+   */
+  public void add(W item) {
+    Integer me = queue.get();
+    int q = me != null ? me.intValue() : (nextQueue.getAndIncrement() & 0x7fffffff) % nThreads;
+    addTo(q, item);
+  }
+
+  /**
+   * Queue an item on the queue chosen by hash, so that items with the same hash tend to be processed by the same thread.
+   */
+  public void add(W item, int hash) {
+    addTo((hash & 0x7fffffff) % nThreads, item);
+  }
+
+  private void addTo(int q, W item) {
+    // count the item before it can be taken, so that no thread sees the work done while it is queued
+    pending.incrementAndGet();
+    queues[q].add(item);
+    if (parked.get() > 0) {
+      idleLock.lock();
+      try {
+        workOrDone.signal();
+      } finally {
+        idleLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * @return true iff no item is queued or being processed
+   */
+  public boolean isEmpty() {
+    return pending.get() == 0;
+  }
+
+  /**
+   * Remove the items left on the queues, e.g. after a canceled run.
+   *
+   * @return the items removed
+   */
+  public List<W> takeAll() {
+    List<W> result = new ArrayList<W>();
+    for (ConcurrentLinkedQueue<W> q : queues) {
+      for (W item = q.poll(); item != null; item = q.poll()) {
+        result.add(item);
+        pending.decrementAndGet();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Process the queued items, and the items they lead to, until none is left. If the monitor is canceled, or processing an item
+   * throws, the items not yet processed stay on the queues.
+   *
+   * @throws CancelException if the monitor was canceled
+   */
+  public void run(IProgressMonitor monitor) throws CancelException {
+    canceled = false;
+    if (pool == null) {
+      pool = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "wala-worker-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    List<Future<?>> futures = new ArrayList<Future<?>>(nThreads);
+    for (int i = 0; i < nThreads; i++) {
+      final int me = i;
+      futures.add(pool.submit(new Runnable() {
+        @Override
+        public void run() {
+          work(me);
+        }
+      }));
+    }
+    RuntimeException runtimeFailure = null;
+    Error errorFailure = null;
+    for (Future<?> f : futures) {
+      while (true) {
+        try {
+          f.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          break;
+        } catch (TimeoutException e) {
+          if (MonitorUtil.isCanceled(monitor)) {
+            cancel();
+          }
+        } catch (InterruptedException e) {
+          cancel();
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          cancel();
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            runtimeFailure = runtimeFailure == null ? (RuntimeException) cause : runtimeFailure;
+          } else if (cause instanceof Error) {
+            errorFailure = errorFailure == null ? (Error) cause : errorFailure;
+          } else if (runtimeFailure == null) {
+            runtimeFailure = new RuntimeException(cause);
+          }
+          break;
+        }
+      }
+    }
+    // all the workers have stopped, so the pool can be reused
+    if (errorFailure != null) {
+      throw errorFailure;
+    }
+    if (runtimeFailure != null) {
+      throw runtimeFailure;
+    }
+    MonitorUtil.throwExceptionIfCanceled(monitor);
+  }
+
+  /**
+   * Stop the worker threads. A later {@link #run(IProgressMonitor)} starts new ones.
+   */
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdownNow();
+      pool = null;
+    }
+  }
+
+  private void cancel() {
+    canceled = true;
+    wakeAll();
+  }
+
+  private void wakeAll() {
+    idleLock.lock();
+    try {
+      workOrDone.signalAll();
+    } finally {
+      idleLock.unlock();
+    }
+  }
+
+  private void work(int me) {
+    queue.set(me);
+    try {
+      doWork(me);
+    } catch (RuntimeException e) {
+      // stop the other threads, which would otherwise wait for this one's items forever
+      cancel();
+      throw e;
+    } catch (Error e) {
+      cancel();
+      throw e;
+    } finally {
+      queue.remove();
+    }
+  }
+
+  private void doWork(int me) {
+    while (!canceled) {
+      W item = poll(me);
+      if (item == null) {
+        if (!park()) {
+          return;
+        }
+        continue;
+      }
+      try {
+        processor.apply(item);
+      } finally {
+        if (pending.decrementAndGet() == 0) {
+          wakeAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return an item from queue me, or else stolen from another queue, or null if all are empty
+   */
+  private W poll(int me) {
+    W item = queues[me].poll();
+    for (int i = 1; item == null && i < nThreads; i++) {
+      item = queues[(me + i) % nThreads].poll();
+    }
+    return item;
+  }
+
+  private boolean queuesEmpty() {
+    for (ConcurrentLinkedQueue<W> q : queues) {
+      if (!q.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Wait until some item is queued or the work is done. A thread adding an item reads {@link #parked} after queuing the item,
+   * and this thread checks the queues after incrementing it, so either the adder sees this thread parked and signals it, or this
+   * thread sees the item.
+   *
+   * @return false if the work is done or canceled
+   */
+  private boolean park() {
+    idleLock.lock();
+    parked.incrementAndGet();
+    try {
+      while (true) {
+        if (canceled || pending.get() == 0) {
+          return false;
+        }
+        if (!queuesEmpty()) {
+          return true;
+        }
+        workOrDone.awaitUninterruptibly();
+      }
+    } finally {
+      parked.decrementAndGet();
+      idleLock.unlock();
+    }
+  }
+}
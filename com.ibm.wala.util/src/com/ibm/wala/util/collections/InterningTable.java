@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.collections;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.wala.util.functions.Function;
+
+/**
+ * A thread-safe table of canonical values, as used to intern names, types and member references. Lookups do not lock, and a value
+ * is created outside any lock; if two threads race to create the value for a key, both get the one that was inserted first.
+ *
+ * By default the table holds its values strongly, so a value lives as long as the table. After
+ * {@link #setWeakReferences(boolean) setWeakReferences(true)}, values interned from then on are held through weak references, and
+ * the entry for a value that is no longer used elsewhere is dropped; interning the same key again later makes a new canonical
+ * value. This lets a long-running process reclaim the names and references of analyses it has finished.
+ *
+ * @param <K> the key type, with value equality
+ * @param <V> the canonical value type
+ */
+public class InterningTable<K, V> {
+
+  /**
+   * should newly interned values be held weakly, in all tables?
+   */
+  private static volatile boolean weak = false;
+
+  /**
+   * Choose whether values interned from now on, in all interning tables, are held through weak references. Values already
+   * interned keep the kind of reference they were interned with.
+   */
+  public static void setWeakReferences(boolean b) {
+    weak = b;
+  }
+
+  public static boolean isWeakReferences() {
+    return weak;
+  }
+
+  /**
+   * mapping from key to either the value or a {@link WeakValue} for it
+   */
+  private final ConcurrentHashMap<K, Object> map;
+
+  /**
+   * weak values whose referents have been collected
+   */
+  private final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+
+  /**
+   * creates the value for a key not in the table
+   */
+  private final Function<K, V> factory;
+
+  /**
+   * @param factory creates the canonical value for a key; it may be called more than once for a key, and all but one of the
+   *          values it returns are discarded
+   */
+  public InterningTable(Function<K, V> factory) {
+    this(factory, 16);
+  }
+
+  public InterningTable(Function<K, V> factory, int initialCapacity) {
+    if (factory == null) {
+      throw new IllegalArgumentException("null factory");
+    }
+    this.factory = factory;
+    this.map = new ConcurrentHashMap<K, Object>(initialCapacity);
+  }
+
+  /**
+   * @return the canonical value for key, or null if there is none
+   */
+  public V find(K key) {
+    return deref(map.get(key));
+  }
+
+  /**
+   * @return the canonical value for key, creating it if there is none
+   */
+  public V findOrCreate(K key) {
+    V result = deref(map.get(key));
+    if (result != null) {
+      return result;
+    }
+    expungeCollected();
+    result = factory.apply(key);
+    Object entry = weak ? new WeakValue<K, V>(key, result, queue) : result;
+    while (true) {
+      Object old = map.putIfAbsent(key, entry);
+      if (old == null) {
+        return result;
+      }
+      V v = deref(old);
+      if (v != null) {
+        return v;
+      }
+      // old is a collected weak value
+      if (map.replace(key, old, entry)) {
+        return result;
+      }
+    }
+  }
+
+  /**
+   * @return the number of entries, including any whose weakly held values were collected but not yet dropped
+   */
+  public int size() {
+    return map.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private V deref(Object entry) {
+    if (entry instanceof WeakValue) {
+      return ((WeakValue<K, V>) entry).get();
+    } else {
+      return (V) entry;
+    }
+  }
+
+  /**
+   * drop the entries whose weakly held values have been collected
+   */
+  @SuppressWarnings("unchecked")
+  private void expungeCollected() {
+    for (Reference<? extends V> r = queue.poll(); r != null; r = queue.poll()) {
+      WeakValue<K, V> w = (WeakValue<K, V>) r;
+      map.remove(w.key, w);
+    }
+  }
+
+  /**
+   * A weak reference to a value, which remembers its key so that the entry can be dropped once the value is collected
+   */
+  private static class WeakValue<K, V> extends WeakReference<V> {
+    private final K key;
+
+    WeakValue(K key, V value, ReferenceQueue<V> queue) {
+      super(value, queue);
+      this.key = key;
+    }
+  }
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.wala.util.graph.dominators;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -42,7 +43,7 @@ public abstract class Dominators<T> {
   /**
    * a mapping from DFS number to node
    */
-  private final T[] vertex;
+  private T[] vertex;
 
   /**
    * a convenient place to locate the graph to avoid passing it internally
@@ -64,7 +65,6 @@ public abstract class Dominators<T> {
    * @param root The root from which to compute dominators
    * @throws IllegalArgumentException if G is null
    */
-  @SuppressWarnings("unchecked")
   public Dominators(Graph<T> G, T root) throws IllegalArgumentException {
     if (G == null) {
       throw new IllegalArgumentException("G is null");
@@ -74,11 +74,32 @@ public abstract class Dominators<T> {
     if (G.getNumberOfNodes() == 0) {
       throw new IllegalArgumentException("G has no nodes");
     }
-    this.vertex = (T[]) new Object[G.getNumberOfNodes() + 1];
+  }
+
+  /**
+   * The algorithms {@link #make(Graph, Object, Algorithm)} can use. They compute the same dominators.
+   */
+  public static enum Algorithm {
+    /**
+     * Lengauer and Tarjan's algorithm, over per-node objects; see {@link NumberedDominators} and {@link GenericDominators}
+     */
+    LENGAUER_TARJAN,
+    /**
+     * the semi-NCA algorithm over int arrays, for numbered graphs; see {@link SemiNCADominators}. Other graphs use Lengauer and
+     * Tarjan's algorithm.
+     */
+    SEMI_NCA
   }
 
   public static <T> Dominators<T> make(Graph<T> G, T root) {
+    return make(G, root, Algorithm.LENGAUER_TARJAN);
+  }
+
+  public static <T> Dominators<T> make(Graph<T> G, T root, Algorithm algorithm) {
     if (G instanceof NumberedGraph) {
+      if (algorithm == Algorithm.SEMI_NCA) {
+        return new SemiNCADominators<T>((NumberedGraph<T>) G, root);
+      }
       return new NumberedDominators<T>((NumberedGraph<T>) G, root);
     } else {
       return new GenericDominators<T>(G, root);
@@ -243,10 +264,13 @@ public abstract class Dominators<T> {
   /**
    * analyze dominators
    */
+  @SuppressWarnings("unchecked")
   protected void analyze() {
     if (DEBUG)
       System.out.println("Dominators for " + G);
 
+    vertex = (T[]) new Object[G.getNumberOfNodes() + 1];
+
     // Step 1: Perform a DFS numbering
     step1();
 
@@ -501,6 +525,20 @@ public abstract class Dominators<T> {
       size = 1;
       child = null;
     }
+
+    /**
+     * the state of a node whose immediate dominator was computed by another algorithm, which needs none of the rest
+     */
+    DominatorInfo(T node, T dominator) {
+      semiDominator = 0;
+      this.dominator = dominator;
+      parent = null;
+      bucket = Collections.emptySet();
+      ancestor = null;
+      label = node;
+      size = 1;
+      child = null;
+    }
   }
 
   /*
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.graph.dominators;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.ibm.wala.util.graph.NumberedGraph;
+
+/**
+ * Calculate dominators using the semi-NCA algorithm of Georgiadis, "Linear-Time Algorithms for Dominators and Related
+ * Problems", PhD thesis, Princeton, 2005. Semidominators are computed as in Lengauer and Tarjan's algorithm, with simple path
+ * compression, and each immediate dominator is then found as the nearest common ancestor of its parent and semidominator in
+ * the partially built dominator tree. This is O(e log n), but in practice faster than {@link NumberedDominators} on large
+ * graphs.
+ *
+ * The graph is read once, into int arrays indexed by node number, and all further work is on int arrays; no object is created
+ * per node.
+ *
+ * Sources: Georgiadis' thesis; Cooper, Harvey and Kennedy, "A Simple, Fast Dominance Algorithm"
+ */
+public class SemiNCADominators<T> extends Dominators<T> {
+
+  /**
+   * the node number of the immediate dominator of each node, by node number; -1 for the root and for unreachable nodes
+   */
+  private final int[] idoms;
+
+  public SemiNCADominators(NumberedGraph<T> G, T root) throws IllegalArgumentException {
+    super(G, root);
+    this.idoms = computeIdoms(G, root);
+  }
+
+  @Override
+  public NumberedGraph<T> getGraph() {
+    return (NumberedGraph<T>) G;
+  }
+
+  @Override
+  public T getIdom(T node) {
+    int n = getGraph().getNumber(node);
+    if (n < 0 || n >= idoms.length || idoms[n] == -1) {
+      return null;
+    }
+    return getGraph().getNode(idoms[n]);
+  }
+
+  /**
+   * @return the node number of the immediate dominator of the node numbered n, or -1 if it is the root, is not reachable from
+   *         the root, or is not in the graph
+   */
+  public int getIdom(int n) {
+    return (n < 0 || n >= idoms.length) ? -1 : idoms[n];
+  }
+
+  /**
+   * This class keeps no per-node objects, so this makes one on each call, holding just the immediate dominator of node
+   */
+  @Override
+  protected DominatorInfo getInfo(T node) {
+    assert node != null;
+    return new DominatorInfo(node, getIdom(node));
+  }
+
+  /**
+   * @return the node number of the immediate dominator of each node, by node number
+   */
+  private int[] computeIdoms(NumberedGraph<T> G, T root) {
+    int max = G.getMaxNumber();
+
+    // the successors of node number v are succs[succStart[v]] .. succs[succEnd[v]-1]
+    int[] succStart = new int[max + 1];
+    int[] succEnd = new int[max + 1];
+    int[] succs = new int[Math.max(16, G.getNumberOfNodes())];
+    int edges = 0;
+    for (Iterator<? extends T> it = G.iterator(); it.hasNext();) {
+      T n = it.next();
+      int v = G.getNumber(n);
+      succStart[v] = edges;
+      for (Iterator<? extends T> ss = G.getSuccNodes(n); ss.hasNext();) {
+        if (edges == succs.length) {
+          succs = Arrays.copyOf(succs, 2 * edges);
+        }
+        succs[edges++] = G.getNumber(ss.next());
+      }
+      succEnd[v] = edges;
+    }
+
+    // depth-first preorder from the root. DFS numbers start at 1, so that 0 means "unreached" or "none".
+    int[] dfnum = new int[max + 1];
+    int[] vertex = new int[G.getNumberOfNodes() + 1];
+    int[] parent = new int[G.getNumberOfNodes() + 1];
+    int[] stack = new int[G.getNumberOfNodes() + 1];
+    int[] cursor = new int[max + 1];
+    int count = 0;
+    int r = G.getNumber(root);
+    dfnum[r] = ++count;
+    vertex[count] = r;
+    cursor[r] = succStart[r];
+    int top = 0;
+    stack[top++] = r;
+    while (top > 0) {
+      int v = stack[top - 1];
+      if (cursor[v] == succEnd[v]) {
+        top--;
+        continue;
+      }
+      int w = succs[cursor[v]++];
+      if (dfnum[w] == 0) {
+        dfnum[w] = ++count;
+        vertex[count] = w;
+        parent[count] = dfnum[v];
+        cursor[w] = succStart[w];
+        stack[top++] = w;
+      }
+    }
+    reachableNodeCount = count;
+
+    // the predecessors of DFS number i that are reachable from the root, as DFS numbers, are preds[predStart[i]] ..
+    // preds[predStart[i+1]-1]
+    int[] predStart = new int[count + 2];
+    for (int i = 1; i <= count; i++) {
+      int v = vertex[i];
+      for (int e = succStart[v]; e < succEnd[v]; e++) {
+        predStart[dfnum[succs[e]] + 1]++;
+      }
+    }
+    for (int i = 1; i <= count + 1; i++) {
+      predStart[i] += predStart[i - 1];
+    }
+    int[] preds = new int[predStart[count + 1]];
+    int[] next = Arrays.copyOf(predStart, count + 1);
+    for (int i = 1; i <= count; i++) {
+      int v = vertex[i];
+      for (int e = succStart[v]; e < succEnd[v]; e++) {
+        int w = dfnum[succs[e]];
+        preds[next[w]++] = i;
+      }
+    }
+
+    // semidominators, by Lengauer and Tarjan's EVAL with simple path compression
+    int[] semi = new int[count + 1];
+    int[] label = new int[count + 1];
+    int[] ancestor = new int[count + 1];
+    for (int i = 1; i <= count; i++) {
+      semi[i] = i;
+      label[i] = i;
+    }
+    for (int w = count; w > 1; w--) {
+      for (int e = predStart[w]; e < predStart[w + 1]; e++) {
+        int u = eval(preds[e], ancestor, label, semi, stack);
+        if (semi[u] < semi[w]) {
+          semi[w] = semi[u];
+        }
+      }
+      ancestor[w] = parent[w];
+    }
+
+    // immediate dominators: the nearest common ancestor of the parent and the semidominator, found by walking up the tree
+    // built so far
+    int[] idom = parent;
+    for (int w = 2; w <= count; w++) {
+      int d = idom[w];
+      while (d > semi[w]) {
+        d = idom[d];
+      }
+      idom[w] = d;
+    }
+
+    int[] result = new int[max + 1];
+    Arrays.fill(result, -1);
+    for (int w = 2; w <= count; w++) {
+      result[vertex[w]] = vertex[idom[w]];
+    }
+    return result;
+  }
+
+  /**
+   * @return the vertex with the least semidominator on the path from v to the root of its tree in the forest, not counting the
+   *         root; v itself if v is a root
+   */
+  private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+    if (ancestor[v] == 0) {
+      return v;
+    }
+    // compress the path from v, starting with the node nearest the root
+    int top = 0;
+    for (int a = v; ancestor[ancestor[a]] != 0; a = ancestor[a]) {
+      stack[top++] = a;
+    }
+    while (top > 0) {
+      int a = stack[--top];
+      int b = ancestor[a];
+      if (semi[label[b]] < semi[label[a]]) {
+        label[a] = label[b];
+      }
+      ancestor[a] = ancestor[b];
+    }
+    return label[v];
+  }
+}
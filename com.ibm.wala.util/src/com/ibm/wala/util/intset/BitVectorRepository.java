@@ -10,99 +10,170 @@
  *******************************************************************************/
 package com.ibm.wala.util.intset;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
-
-import com.ibm.wala.util.collections.HashMapFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A repository for shared bit vectors as described by Heintze
+ * A repository for shared bit vectors as described by Heintze.
+ *
+ * The repository holds its bit vectors weakly, so a bit vector is dropped once no set shares it. Each analysis may use its own
+ * repository (see {@link MutableSharedBitVectorIntSetFactory#MutableSharedBitVectorIntSetFactory(BitVectorRepository)}), so that
+ * nothing is kept or searched across analyses; {@link #getDefault()} serves clients that do not choose one. Any number of threads
+ * may look up bit vectors at once without locking. Two threads that miss at the same time may both add a bit vector, which costs
+ * a little sharing but is otherwise harmless.
  */
 public class BitVectorRepository {
 
-  private final static boolean STATS = false;
+  private final static int SUBSET_DELTA = 5;
+
+  private final static BitVectorRepository DEFAULT = new BitVectorRepository();
+
+  /**
+   * bit vectors, by size
+   */
+  private final ConcurrentMap<Integer, ConcurrentLinkedQueue<Entry>> buckets = new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<Entry>>();
+
+  /**
+   * entries whose bit vectors have been collected
+   */
+  private final ReferenceQueue<BitVectorIntSet> cleared = new ReferenceQueue<BitVectorIntSet>();
+
+  private final AtomicLong queries = new AtomicLong();
 
-  private final static int STATS_WINDOW = 100;
+  private final AtomicLong hits = new AtomicLong();
 
-  private static int queries = 0;
+  private final AtomicLong entries = new AtomicLong();
 
-  private static int hits = 0;
+  private final AtomicLong bytes = new AtomicLong();
 
-  private final static int SUBSET_DELTA = 5;
+  private final static class Entry extends WeakReference<BitVectorIntSet> {
+    private final int size;
 
-  final private static Map<Integer, LinkedList<WeakReference<BitVectorIntSet>>> buckets = HashMapFactory.make();
+    private final int bytes;
+
+    Entry(BitVectorIntSet bv, int size, ReferenceQueue<BitVectorIntSet> q) {
+      super(bv, q);
+      this.size = size;
+      this.bytes = 4 * bv.getBitVector().bits.length;
+    }
+  }
+
+  /**
+   * @return the repository shared by all clients which do not have their own
+   */
+  public static BitVectorRepository getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @return the BitVector in the default repository which is the canonical shared subset representative of value
+   * @see #findOrCreate(BitVectorIntSet)
+   * @throws IllegalArgumentException if value is null
+   */
+  public static BitVectorIntSet findOrCreateSharedSubset(BitVectorIntSet value) {
+    return DEFAULT.findOrCreate(value);
+  }
 
   /**
    * @param value
-   * @return the BitVector in this repository which is the canonical shared
-   *         subset representative of value; the result will have the same bits
-   *         as value, except it may exclude up to SUBSET_DELTA bits.
-   * @throws IllegalArgumentException  if value is null
+   * @return the BitVector in this repository which is the canonical shared subset representative of value; the result will have
+   *         the same bits as value, except it may exclude up to SUBSET_DELTA bits. The caller must not modify the result.
+   * @throws IllegalArgumentException if value is null
    */
-  public static synchronized BitVectorIntSet findOrCreateSharedSubset(BitVectorIntSet value) {
+  public BitVectorIntSet findOrCreate(BitVectorIntSet value) {
     if (value == null) {
       throw new IllegalArgumentException("value is null");
     }
-    if (STATS) {
-      queries++;
-      if (queries % STATS_WINDOW == 0) {
-        reportStats();
-      }
-    }
+    expungeClearedEntries();
+    queries.incrementAndGet();
     int size = value.size();
     for (int i = size; i > size - SUBSET_DELTA; i--) {
-      LinkedList<WeakReference<BitVectorIntSet>> m = buckets.get(Integer.valueOf(i));
+      ConcurrentLinkedQueue<Entry> m = buckets.get(i);
       if (m != null) {
-        Iterator<WeakReference<BitVectorIntSet>> it = m.iterator();
-        while (it.hasNext()) {
-          WeakReference<BitVectorIntSet> wr = it.next();
-          BitVectorIntSet bv = wr.get();
-          if (bv != null) {
-            if (bv.isSubset(value)) {
-              // FOUND ONE!
-              if (STATS) {
-                hits++;
-              }
-              return bv;            
-            }
-          } else {
-            // remove the weak reference to avoid leaks
-            it.remove();
+        for (Entry e : m) {
+          BitVectorIntSet bv = e.get();
+          if (bv != null && bv.isSubset(value)) {
+            // FOUND ONE!
+            hits.incrementAndGet();
+            return bv;
           }
         }
       }
     }
     // didn't find one. create one.
-    LinkedList<WeakReference<BitVectorIntSet>> m = buckets.get(size);
+    ConcurrentLinkedQueue<Entry> m = buckets.get(size);
     if (m == null) {
-      m = new LinkedList<WeakReference<BitVectorIntSet>>();
-      buckets.put(size, m);
+      ConcurrentLinkedQueue<Entry> fresh = new ConcurrentLinkedQueue<Entry>();
+      m = buckets.putIfAbsent(size, fresh);
+      if (m == null) {
+        m = fresh;
+      }
     }
     BitVectorIntSet bv = new BitVectorIntSet(value);
-    m.add(new WeakReference<BitVectorIntSet>(bv));
+    Entry e = new Entry(bv, size, cleared);
+    m.add(e);
+    entries.incrementAndGet();
+    bytes.addAndGet(e.bytes);
     return bv;
   }
 
   /**
-   * 
+   * remove the entries for bit vectors which have been collected, to avoid leaks
    */
-  private static void reportStats() {
-    double percent = 100.0 * hits / queries;
-    System.err.println(("BitVectorRepository: queries " + queries + " hits " + percent));
-    System.err.println(("                     entries " + countEntries()));
+  private void expungeClearedEntries() {
+    for (Entry e = (Entry) cleared.poll(); e != null; e = (Entry) cleared.poll()) {
+      ConcurrentLinkedQueue<Entry> m = buckets.get(e.size);
+      if (m != null && m.remove(e)) {
+        entries.decrementAndGet();
+        bytes.addAndGet(-e.bytes);
+      }
+    }
   }
 
   /**
+   * @return the number of calls to {@link #findOrCreate(BitVectorIntSet)}
    */
-  private static int countEntries() {
-    int result = 0;
-    for (LinkedList<WeakReference<BitVectorIntSet>> l : buckets.values()) {
-      // don't worry about cleared WeakReferences; count will be rough
-      result += l.size();
-    }
-    return result;
+  public long getNumberOfQueries() {
+    return queries.get();
   }
 
-}
\ No newline at end of file
+  /**
+   * @return the number of calls to {@link #findOrCreate(BitVectorIntSet)} answered with an existing bit vector
+   */
+  public long getNumberOfHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of calls to {@link #findOrCreate(BitVectorIntSet)} which added a bit vector
+   */
+  public long getNumberOfMisses() {
+    return queries.get() - hits.get();
+  }
+
+  /**
+   * @return the number of bit vectors held. Bit vectors which have been collected but not yet noticed are included.
+   */
+  public long getNumberOfEntries() {
+    expungeClearedEntries();
+    return entries.get();
+  }
+
+  /**
+   * @return the number of bytes of bit vector words held, counted as for {@link #getNumberOfEntries()}
+   */
+  public long getFootprintInBytes() {
+    expungeClearedEntries();
+    return bytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return "BitVectorRepository: queries " + getNumberOfQueries() + " hits " + getNumberOfHits() + " entries "
+        + getNumberOfEntries() + " bytes " + getFootprintInBytes();
+  }
+}
@@ -31,12 +31,32 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
   private BitVectorIntSet sharedPart;
 
   /**
-   * 
+   * where shared parts come from
+   */
+  private final BitVectorRepository repository;
+
+  /**
+   * Create an empty set which shares bit vectors through the default repository
    */
   public MutableSharedBitVectorIntSet() {
+    this(BitVectorRepository.getDefault());
   }
 
   /**
+   * Create an empty set which shares bit vectors through the given repository
+   * 
+   * @throws IllegalArgumentException if repository is null
+   */
+  public MutableSharedBitVectorIntSet(BitVectorRepository repository) {
+    if (repository == null) {
+      throw new IllegalArgumentException("repository is null");
+    }
+    this.repository = repository;
+  }
+
+  /**
+   * Copy a set; the copy uses the same repository.
+   * 
    * @param set
    * @throws IllegalArgumentException if set is null
    */
@@ -48,6 +68,23 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
       this.privatePart = MutableSparseIntSet.make(set.privatePart);
     }
     this.sharedPart = set.sharedPart;
+    this.repository = set.repository;
+  }
+
+  /**
+   * Copy a set; the copy uses the given repository.
+   * 
+   * @throws IllegalArgumentException if set or repository is null
+   */
+  public MutableSharedBitVectorIntSet(MutableSharedBitVectorIntSet set, BitVectorRepository repository) {
+    this(repository);
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    if (set.privatePart != null) {
+      this.privatePart = MutableSparseIntSet.make(set.privatePart);
+    }
+    this.sharedPart = set.sharedPart;
   }
 
   /**
@@ -55,6 +92,15 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
    * @throws IllegalArgumentException if s is null
    */
   public MutableSharedBitVectorIntSet(SparseIntSet s) {
+    this(s, BitVectorRepository.getDefault());
+  }
+
+  /**
+   * @param s
+   * @throws IllegalArgumentException if s or repository is null
+   */
+  public MutableSharedBitVectorIntSet(SparseIntSet s, BitVectorRepository repository) {
+    this(repository);
     if (s == null) {
       throw new IllegalArgumentException("s is null");
     }
@@ -74,6 +120,15 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
    * @throws IllegalArgumentException if s is null
    */
   public MutableSharedBitVectorIntSet(BitVectorIntSet s) {
+    this(s, BitVectorRepository.getDefault());
+  }
+
+  /**
+   * @param s
+   * @throws IllegalArgumentException if s or repository is null
+   */
+  public MutableSharedBitVectorIntSet(BitVectorIntSet s, BitVectorRepository repository) {
+    this(repository);
     if (s == null) {
       throw new IllegalArgumentException("s is null");
     }
@@ -95,7 +150,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
       sharedPart = null;
       privatePart = MutableSparseIntSet.make(s);
     } else {
-      sharedPart = BitVectorRepository.findOrCreateSharedSubset(s);
+      sharedPart = repository.findOrCreate(s);
       if (sharedPart.size() == s.size()) {
         privatePart = null;
       } else {
@@ -135,7 +190,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
     if (privatePart != null && privatePart.size() > OVERFLOW) {
       if (sharedPart == null) {
         BitVectorIntSet temp = new BitVectorIntSet(privatePart);
-        sharedPart = BitVectorRepository.findOrCreateSharedSubset(temp);
+        sharedPart = repository.findOrCreate(temp);
         temp.removeAll(sharedPart);
         if (!temp.isEmpty())
           privatePart = MutableSparseIntSet.make(temp);
@@ -147,7 +202,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
         // so use addAll instead of addAllOblivious: which incrementally
         // updates the population count.
         temp.addAll(privatePart);
-        sharedPart = BitVectorRepository.findOrCreateSharedSubset(temp);
+        sharedPart = repository.findOrCreate(temp);
         temp.removeAll(sharedPart);
         if (!temp.isEmpty())
           privatePart = MutableSparseIntSet.make(temp);
@@ -185,7 +240,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
     if (that instanceof MutableSharedBitVectorIntSet) {
       return intersection((MutableSharedBitVectorIntSet) that);
     } else if (that instanceof BitVectorIntSet) {
-      MutableSharedBitVectorIntSet m = new MutableSharedBitVectorIntSet((BitVectorIntSet) that);
+      MutableSharedBitVectorIntSet m = new MutableSharedBitVectorIntSet((BitVectorIntSet) that, repository);
       return intersection(m);
     } else if (that instanceof SparseIntSet) {
       BitVectorIntSet bv = new BitVectorIntSet(that);
@@ -208,7 +263,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
    */
   @Override
   public IntSet union(IntSet that) {
-    MutableSharedBitVectorIntSet temp = new MutableSharedBitVectorIntSet();
+    MutableSharedBitVectorIntSet temp = new MutableSharedBitVectorIntSet(repository);
     temp.addAll(this);
     temp.addAll(that);
 
@@ -221,7 +276,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
   public IntSet intersection(MutableSharedBitVectorIntSet that) {
     MutableSparseIntSet t = makeSparseCopy();
     t.intersectWith(that);
-    MutableSharedBitVectorIntSet result = new MutableSharedBitVectorIntSet(t);
+    MutableSharedBitVectorIntSet result = new MutableSharedBitVectorIntSet(t, repository);
     if (PARANOID) {
       checkIntegrity();
     }
@@ -351,7 +406,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
       return that.sameValue(makeSparseCopy());
     } else if (that instanceof BitVectorIntSet) {
       return sameValue((BitVectorIntSet) that);
-    } else if (that instanceof SemiSparseMutableIntSet) {
+    } else if (that instanceof SemiSparseMutableIntSet || that instanceof RoaringMutableIntSet) {
       return that.sameValue(this);
     } else {
       Assertions.UNREACHABLE("unexpected class " + that.getClass());
@@ -858,7 +913,7 @@ public class MutableSharedBitVectorIntSet implements MutableIntSet {
     if (set instanceof MutableSharedBitVectorIntSet) {
       intersectWithInternal((MutableSharedBitVectorIntSet) set);
     } else if (set instanceof BitVectorIntSet) {
-      intersectWithInternal(new MutableSharedBitVectorIntSet((BitVectorIntSet) set));
+      intersectWithInternal(new MutableSharedBitVectorIntSet((BitVectorIntSet) set, repository));
     } else {
       // this is really slow. optimize as needed.
       for (IntIterator it = intIterator(); it.hasNext();) {
@@ -18,13 +18,41 @@ public class MutableSharedBitVectorIntSetFactory implements MutableIntSetFactory
 
   private final MutableSparseIntSetFactory sparseFactory = new MutableSparseIntSetFactory();
 
+  /**
+   * where the sets made by this factory share bit vectors
+   */
+  private final BitVectorRepository repository;
+
+  /**
+   * Make sets which share bit vectors through the default repository
+   */
+  public MutableSharedBitVectorIntSetFactory() {
+    this(BitVectorRepository.getDefault());
+  }
+
+  /**
+   * Make sets which share bit vectors through the given repository
+   * 
+   * @throws IllegalArgumentException if repository is null
+   */
+  public MutableSharedBitVectorIntSetFactory(BitVectorRepository repository) {
+    if (repository == null) {
+      throw new IllegalArgumentException("repository is null");
+    }
+    this.repository = repository;
+  }
+
+  public BitVectorRepository getRepository() {
+    return repository;
+  }
+
   /*
    * @see com.ibm.wala.util.intset.MutableIntSetFactory#make(int[])
    */
   @Override
   public MutableSharedBitVectorIntSet make(int[] set) {
     SparseIntSet s = (SparseIntSet) sparseFactory.make(set);
-    return new MutableSharedBitVectorIntSet(s);
+    return new MutableSharedBitVectorIntSet(s, repository);
   }
 
   /*
@@ -33,7 +61,7 @@ public class MutableSharedBitVectorIntSetFactory implements MutableIntSetFactory
   @Override
   public MutableSharedBitVectorIntSet parse(String string) throws NumberFormatException {
     SparseIntSet s = (SparseIntSet) sparseFactory.parse(string);
-    return new MutableSharedBitVectorIntSet(s);
+    return new MutableSharedBitVectorIntSet(s, repository);
   }
 
   /*
@@ -45,16 +73,16 @@ public class MutableSharedBitVectorIntSetFactory implements MutableIntSetFactory
       throw new IllegalArgumentException("x == null");
     }
     if (x instanceof MutableSharedBitVectorIntSet) {
-      return new MutableSharedBitVectorIntSet((MutableSharedBitVectorIntSet) x);
+      return new MutableSharedBitVectorIntSet((MutableSharedBitVectorIntSet) x, repository);
     } else if (x instanceof SparseIntSet) {
-      return new MutableSharedBitVectorIntSet((SparseIntSet) x);
+      return new MutableSharedBitVectorIntSet((SparseIntSet) x, repository);
     } else if (x instanceof BitVectorIntSet) {
-      return new MutableSharedBitVectorIntSet((BitVectorIntSet) x);
+      return new MutableSharedBitVectorIntSet((BitVectorIntSet) x, repository);
     } else if (x instanceof DebuggingMutableIntSet) {
-      return new MutableSharedBitVectorIntSet(new SparseIntSet(x));
+      return new MutableSharedBitVectorIntSet(new SparseIntSet(x), repository);
     } else {
       // really slow.  optimize as needed.
-      MutableSharedBitVectorIntSet result = new MutableSharedBitVectorIntSet();
+      MutableSharedBitVectorIntSet result = new MutableSharedBitVectorIntSet(repository);
       for (IntIterator it = x.intIterator(); it.hasNext(); ) {
         result.add(it.next());
       }
@@ -67,7 +95,7 @@ public class MutableSharedBitVectorIntSetFactory implements MutableIntSetFactory
    */
   @Override
   public MutableSharedBitVectorIntSet make() {
-    return new MutableSharedBitVectorIntSet();
+    return new MutableSharedBitVectorIntSet(repository);
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,1513 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.intset;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed {@link MutableIntSet} of non-negative integers, in the style of Roaring bitmaps (Chambi, Lemire, Kaser and Godin,
+ * "Better bitmap performance with Roaring bitmaps", Software: Practice and Experience, 2016).
+ *
+ * The integers are split into chunks of 2^16 by their high 16 bits, and each non-empty chunk keeps its low 16 bits in whichever
+ * container is smallest for its contents: a sorted array for sparse chunks, a bitmap for dense ones, or a list of runs for chunks
+ * made of long intervals. Empty chunks take no space, so sets which are large but clustered are much smaller than as a
+ * {@link BitVectorIntSet}, while union, intersection and overlap tests between two such sets work a chunk at a time.
+ */
+public class RoaringMutableIntSet implements MutableIntSet {
+
+  /**
+   * the largest number of elements held in an array container
+   */
+  private static final int ARRAY_MAX = 4096;
+
+  /**
+   * number of 64-bit words in a bitmap container
+   */
+  private static final int BITMAP_WORDS = 1024;
+
+  /**
+   * size in bytes of a bitmap container
+   */
+  private static final int BITMAP_BYTES = 8 * BITMAP_WORDS;
+
+  /**
+   * high 16 bits of each non-empty chunk, in increasing order
+   */
+  private char[] keys;
+
+  /**
+   * containers[i] holds the low 16 bits of the elements of chunk keys[i]
+   */
+  private Container[] containers;
+
+  /**
+   * number of non-empty chunks
+   */
+  private int nChunks;
+
+  /**
+   * number of elements
+   */
+  private int size;
+
+  public RoaringMutableIntSet() {
+    keys = new char[1];
+    containers = new Container[1];
+  }
+
+  /**
+   * @throws IllegalArgumentException if set is null
+   */
+  public RoaringMutableIntSet(IntSet set) throws IllegalArgumentException {
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    keys = new char[1];
+    containers = new Container[1];
+    copySet(set);
+  }
+
+  private static int high(int i) {
+    return i >>> 16;
+  }
+
+  private static int low(int i) {
+    return i & 0xFFFF;
+  }
+
+  /**
+   * @return the index of chunk key, or -(insertion point) - 1 if there is no such chunk
+   */
+  private int findChunk(int key) {
+    int lo = 0;
+    int hi = nChunks - 1;
+    // appending and looking up the last chunk are the common cases
+    if (hi >= 0 && keys[hi] <= key) {
+      return (keys[hi] == key) ? hi : -nChunks - 1;
+    }
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int k = keys[mid];
+      if (k < key) {
+        lo = mid + 1;
+      } else if (k > key) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -lo - 1;
+  }
+
+  private void insertChunk(int index, int key, Container c) {
+    if (nChunks == keys.length) {
+      int n = Math.max(4, 2 * nChunks);
+      char[] newKeys = new char[n];
+      Container[] newContainers = new Container[n];
+      System.arraycopy(keys, 0, newKeys, 0, nChunks);
+      System.arraycopy(containers, 0, newContainers, 0, nChunks);
+      keys = newKeys;
+      containers = newContainers;
+    }
+    System.arraycopy(keys, index, keys, index + 1, nChunks - index);
+    System.arraycopy(containers, index, containers, index + 1, nChunks - index);
+    keys[index] = (char) key;
+    containers[index] = c;
+    nChunks++;
+  }
+
+  private void removeChunk(int index) {
+    System.arraycopy(keys, index + 1, keys, index, nChunks - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, nChunks - index - 1);
+    nChunks--;
+    containers[nChunks] = null;
+  }
+
+  /**
+   * @throws IllegalArgumentException if i &lt; 0
+   */
+  @Override
+  public boolean add(int i) throws IllegalArgumentException {
+    if (i < 0) {
+      throw new IllegalArgumentException("negative element " + i);
+    }
+    int index = findChunk(high(i));
+    if (index >= 0) {
+      Container c = containers[index];
+      int before = c.cardinality();
+      c = c.add(low(i));
+      containers[index] = c;
+      if (c.cardinality() == before) {
+        return false;
+      }
+    } else {
+      insertChunk(-index - 1, high(i), new ArrayContainer(low(i)));
+    }
+    size++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(int i) {
+    if (i < 0) {
+      return false;
+    }
+    int index = findChunk(high(i));
+    if (index < 0) {
+      return false;
+    }
+    Container c = containers[index];
+    int before = c.cardinality();
+    c = c.remove(low(i));
+    if (c.cardinality() == before) {
+      return false;
+    }
+    if (c.cardinality() == 0) {
+      removeChunk(index);
+    } else {
+      containers[index] = c;
+    }
+    size--;
+    return true;
+  }
+
+  @Override
+  public boolean contains(int i) {
+    if (i < 0) {
+      return false;
+    }
+    int index = findChunk(high(i));
+    return index >= 0 && containers[index].contains(low(i));
+  }
+
+  @Override
+  public void clear() {
+    keys = new char[1];
+    containers = new Container[1];
+    nChunks = 0;
+    size = 0;
+  }
+
+  @Override
+  public void copySet(IntSet set) throws IllegalArgumentException {
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    if (set == this) {
+      return;
+    }
+    if (set instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet that = (RoaringMutableIntSet) set;
+      int n = Math.max(1, that.nChunks);
+      keys = new char[n];
+      containers = new Container[n];
+      System.arraycopy(that.keys, 0, keys, 0, that.nChunks);
+      for (int i = 0; i < that.nChunks; i++) {
+        containers[i] = that.containers[i].copy();
+      }
+      nChunks = that.nChunks;
+      size = that.size;
+    } else {
+      clear();
+      for (IntIterator it = set.intIterator(); it.hasNext();) {
+        add(it.next());
+      }
+    }
+  }
+
+  @Override
+  public boolean addAll(IntSet set) throws IllegalArgumentException {
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    if (set instanceof RoaringMutableIntSet) {
+      return addAllInternal((RoaringMutableIntSet) set);
+    }
+    boolean result = false;
+    for (IntIterator it = set.intIterator(); it.hasNext();) {
+      result |= add(it.next());
+    }
+    return result;
+  }
+
+  private boolean addAllInternal(RoaringMutableIntSet that) {
+    if (that == this || that.nChunks == 0) {
+      return false;
+    }
+    int before = size;
+    if (hasAllChunks(that)) {
+      // union in place, chunk by chunk
+      for (int i = 0, j = 0; j < that.nChunks; i++) {
+        if (keys[i] == that.keys[j]) {
+          containers[i] = union(containers[i], that.containers[j]);
+          j++;
+        }
+      }
+    } else {
+      int n = nChunks + that.nChunks;
+      char[] newKeys = new char[n];
+      Container[] newContainers = new Container[n];
+      int i = 0, j = 0, k = 0;
+      while (i < nChunks || j < that.nChunks) {
+        if (j == that.nChunks || (i < nChunks && keys[i] < that.keys[j])) {
+          newKeys[k] = keys[i];
+          newContainers[k++] = containers[i++];
+        } else if (i == nChunks || that.keys[j] < keys[i]) {
+          size += that.containers[j].cardinality();
+          newKeys[k] = that.keys[j];
+          newContainers[k++] = that.containers[j++].copy();
+        } else {
+          newKeys[k] = keys[i];
+          newContainers[k++] = union(containers[i++], that.containers[j++]);
+        }
+      }
+      keys = newKeys;
+      containers = newContainers;
+      nChunks = k;
+    }
+    return size != before;
+  }
+
+  /**
+   * @return true iff every chunk of that is a chunk of this
+   */
+  private boolean hasAllChunks(RoaringMutableIntSet that) {
+    if (that.nChunks > nChunks) {
+      return false;
+    }
+    int i = 0;
+    for (int j = 0; j < that.nChunks; j++) {
+      while (i < nChunks && keys[i] < that.keys[j]) {
+        i++;
+      }
+      if (i == nChunks || keys[i] != that.keys[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Add the contents of d to c, and account for the change in size.
+   *
+   * @return the container holding the union
+   */
+  private Container union(Container c, Container d) {
+    int before = c.cardinality();
+    Container result = c.or(d);
+    if (result.cardinality() != before) {
+      size += result.cardinality() - before;
+      result = result.optimize();
+    } else if (result != c) {
+      result = result.optimize();
+    }
+    return result;
+  }
+
+  @Override
+  public void intersectWith(IntSet set) throws IllegalArgumentException {
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    if (set == this) {
+      return;
+    }
+    RoaringMutableIntSet result;
+    if (set instanceof RoaringMutableIntSet) {
+      result = intersectionInternal((RoaringMutableIntSet) set);
+    } else {
+      result = new RoaringMutableIntSet();
+      for (IntIterator it = intIterator(); it.hasNext();) {
+        int x = it.next();
+        if (set.contains(x)) {
+          result.add(x);
+        }
+      }
+    }
+    keys = result.keys;
+    containers = result.containers;
+    nChunks = result.nChunks;
+    size = result.size;
+  }
+
+  private RoaringMutableIntSet intersectionInternal(RoaringMutableIntSet that) {
+    RoaringMutableIntSet result = new RoaringMutableIntSet();
+    int n = Math.max(1, Math.min(nChunks, that.nChunks));
+    result.keys = new char[n];
+    result.containers = new Container[n];
+    for (int i = 0, j = 0; i < nChunks && j < that.nChunks;) {
+      if (keys[i] < that.keys[j]) {
+        i++;
+      } else if (that.keys[j] < keys[i]) {
+        j++;
+      } else {
+        Container c = containers[i].and(that.containers[j]);
+        if (c.cardinality() > 0) {
+          result.keys[result.nChunks] = keys[i];
+          result.containers[result.nChunks++] = c;
+          result.size += c.cardinality();
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean addAllInIntersection(IntSet other, IntSet filter) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("other is null");
+    }
+    if (filter == null) {
+      throw new IllegalArgumentException("filter is null");
+    }
+    if (other instanceof RoaringMutableIntSet && filter instanceof RoaringMutableIntSet) {
+      return addAllInternal(((RoaringMutableIntSet) other).intersectionInternal((RoaringMutableIntSet) filter));
+    }
+    boolean result = false;
+    for (IntIterator it = other.intIterator(); it.hasNext();) {
+      int x = it.next();
+      if (filter.contains(x)) {
+        result |= add(x);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean containsAny(IntSet set) throws IllegalArgumentException {
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    if (set instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet that = (RoaringMutableIntSet) set;
+      for (int i = 0, j = 0; i < nChunks && j < that.nChunks;) {
+        if (keys[i] < that.keys[j]) {
+          i++;
+        } else if (that.keys[j] < keys[i]) {
+          j++;
+        } else if (containers[i++].intersects(that.containers[j++])) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (size <= set.size()) {
+      for (IntIterator it = intIterator(); it.hasNext();) {
+        if (set.contains(it.next())) {
+          return true;
+        }
+      }
+    } else {
+      for (IntIterator it = set.intIterator(); it.hasNext();) {
+        if (contains(it.next())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public IntSet intersection(IntSet that) throws IllegalArgumentException {
+    if (that == null) {
+      throw new IllegalArgumentException("that is null");
+    }
+    if (that instanceof RoaringMutableIntSet) {
+      return intersectionInternal((RoaringMutableIntSet) that);
+    }
+    RoaringMutableIntSet result = new RoaringMutableIntSet(this);
+    result.intersectWith(that);
+    return result;
+  }
+
+  @Override
+  public IntSet union(IntSet that) {
+    RoaringMutableIntSet result = new RoaringMutableIntSet(this);
+    result.addAll(that);
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the largest element, or -1 if this set is empty
+   */
+  @Override
+  public int max() {
+    if (nChunks == 0) {
+      return -1;
+    }
+    return (keys[nChunks - 1] << 16) | containers[nChunks - 1].last();
+  }
+
+  @Override
+  public boolean sameValue(IntSet that) throws IllegalArgumentException {
+    if (that == null) {
+      throw new IllegalArgumentException("that is null");
+    }
+    if (that instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet other = (RoaringMutableIntSet) that;
+      if (size != other.size || nChunks != other.nChunks) {
+        return false;
+      }
+      for (int i = 0; i < nChunks; i++) {
+        if (keys[i] != other.keys[i] || !containers[i].isSubset(other.containers[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (size != that.size()) {
+      return false;
+    }
+    for (IntIterator it = that.intIterator(); it.hasNext();) {
+      if (!contains(it.next())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isSubset(IntSet that) throws IllegalArgumentException {
+    if (that == null) {
+      throw new IllegalArgumentException("that is null");
+    }
+    if (size > that.size()) {
+      return false;
+    }
+    if (that instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet other = (RoaringMutableIntSet) that;
+      int j = 0;
+      for (int i = 0; i < nChunks; i++) {
+        while (j < other.nChunks && other.keys[j] < keys[i]) {
+          j++;
+        }
+        if (j == other.nChunks || other.keys[j] != keys[i] || !containers[i].isSubset(other.containers[j])) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (IntIterator it = intIterator(); it.hasNext();) {
+      if (!that.contains(it.next())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public IntIterator intIterator() {
+    return new IntIterator() {
+      private int chunk = 0;
+
+      private IntIterator current = (nChunks == 0) ? null : containers[0].iterator(keys[0] << 16);
+
+      @Override
+      public boolean hasNext() {
+        while (current != null && !current.hasNext()) {
+          chunk++;
+          current = (chunk < nChunks) ? containers[chunk].iterator(keys[chunk] << 16) : null;
+        }
+        return current != null;
+      }
+
+      @Override
+      public int next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return current.next();
+      }
+    };
+  }
+
+  @Override
+  public void foreach(IntSetAction action) {
+    if (action == null) {
+      throw new IllegalArgumentException("null action");
+    }
+    for (int i = 0; i < nChunks; i++) {
+      containers[i].foreach(keys[i] << 16, action);
+    }
+  }
+
+  @Override
+  public void foreachExcluding(IntSet X, IntSetAction action) {
+    if (action == null) {
+      throw new IllegalArgumentException("null action");
+    }
+    for (IntIterator it = intIterator(); it.hasNext();) {
+      int x = it.next();
+      if (!X.contains(x)) {
+        action.act(x);
+      }
+    }
+  }
+
+  /**
+   * Convert each container to its smallest representation. Containers are kept small as the set changes, but a set built by
+   * adding one element at a time may have long runs held in arrays or bitmaps until this is called.
+   */
+  public void runOptimize() {
+    for (int i = 0; i < nChunks; i++) {
+      containers[i] = containers[i].optimize();
+    }
+  }
+
+  /**
+   * @return an estimate of the number of bytes used by the contents of this set, not counting object headers
+   */
+  public long getContentsSizeInBytes() {
+    long result = 6L * keys.length;
+    for (int i = 0; i < nChunks; i++) {
+      result += containers[i].sizeInBytes();
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuffer sb = new StringBuffer(6 * size);
+    sb.append("{ ");
+    for (IntIterator it = intIterator(); it.hasNext();) {
+      sb.append(it.next());
+      sb.append(" ");
+    }
+    sb.append("}");
+    return sb.toString();
+  }
+
+  /**
+   * The low 16 bits of the elements of one chunk. Operations which may change the representation return the container to use
+   * from then on, which may or may not be this one.
+   */
+  private static abstract class Container {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int x);
+
+    abstract Container add(int x);
+
+    abstract Container remove(int x);
+
+    /**
+     * add the elements of c to this
+     */
+    abstract Container or(Container c);
+
+    /**
+     * @return a new container holding the intersection of this and c
+     */
+    abstract Container and(Container c);
+
+    abstract boolean intersects(Container c);
+
+    abstract Container copy();
+
+    /**
+     * @return the largest element; this must not be empty
+     */
+    abstract int last();
+
+    abstract IntIterator iterator(int high);
+
+    abstract void foreach(int high, IntSetAction action);
+
+    abstract BitmapContainer toBitmap();
+
+    abstract int numberOfRuns();
+
+    abstract int sizeInBytes();
+
+    boolean isSubset(Container c) {
+      if (cardinality() > c.cardinality()) {
+        return false;
+      }
+      for (IntIterator it = iterator(0); it.hasNext();) {
+        if (!c.contains(it.next())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return a container with the same contents as this, in the smallest representation
+     */
+    Container optimize() {
+      int card = cardinality();
+      int runBytes = RunContainer.sizeInBytes(numberOfRuns());
+      int otherBytes = (card <= ARRAY_MAX) ? 2 * card : BITMAP_BYTES;
+      if (runBytes < otherBytes) {
+        return (this instanceof RunContainer) ? this : RunContainer.make(this);
+      } else if (card <= ARRAY_MAX) {
+        return (this instanceof ArrayContainer) ? this : ArrayContainer.make(this);
+      } else {
+        return (this instanceof BitmapContainer) ? this : toBitmap();
+      }
+    }
+  }
+
+  /**
+   * A sorted array of at most {@link RoaringMutableIntSet#ARRAY_MAX} elements.
+   */
+  private final static class ArrayContainer extends Container {
+    private char[] content;
+
+    private int card;
+
+    ArrayContainer(int x) {
+      content = new char[] { (char) x };
+      card = 1;
+    }
+
+    private ArrayContainer(char[] content, int card) {
+      this.content = content;
+      this.card = card;
+    }
+
+    static ArrayContainer make(Container c) {
+      char[] content = new char[c.cardinality()];
+      int n = 0;
+      for (IntIterator it = c.iterator(0); it.hasNext();) {
+        content[n++] = (char) it.next();
+      }
+      return new ArrayContainer(content, n);
+    }
+
+    private int find(int x) {
+      int lo = 0;
+      int hi = card - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int v = content[mid];
+        if (v < x) {
+          lo = mid + 1;
+        } else if (v > x) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -lo - 1;
+    }
+
+    @Override
+    int cardinality() {
+      return card;
+    }
+
+    @Override
+    boolean contains(int x) {
+      return find(x) >= 0;
+    }
+
+    @Override
+    Container add(int x) {
+      int index = find(x);
+      if (index >= 0) {
+        return this;
+      }
+      if (card == ARRAY_MAX) {
+        return toBitmap().add(x).optimize();
+      }
+      index = -index - 1;
+      if (card == content.length) {
+        char[] newContent = new char[Math.min(ARRAY_MAX, Math.max(4, 2 * card))];
+        System.arraycopy(content, 0, newContent, 0, index);
+        System.arraycopy(content, index, newContent, index + 1, card - index);
+        content = newContent;
+      } else {
+        System.arraycopy(content, index, content, index + 1, card - index);
+      }
+      content[index] = (char) x;
+      card++;
+      return this;
+    }
+
+    @Override
+    Container remove(int x) {
+      int index = find(x);
+      if (index >= 0) {
+        System.arraycopy(content, index + 1, content, index, card - index - 1);
+        card--;
+      }
+      return this;
+    }
+
+    @Override
+    Container or(Container c) {
+      if (c instanceof ArrayContainer) {
+        ArrayContainer a = (ArrayContainer) c;
+        char[] merged = new char[card + a.card];
+        int i = 0, j = 0, k = 0;
+        while (i < card && j < a.card) {
+          char x = content[i];
+          char y = a.content[j];
+          if (x < y) {
+            merged[k++] = x;
+            i++;
+          } else if (y < x) {
+            merged[k++] = y;
+            j++;
+          } else {
+            merged[k++] = x;
+            i++;
+            j++;
+          }
+        }
+        while (i < card) {
+          merged[k++] = content[i++];
+        }
+        while (j < a.card) {
+          merged[k++] = a.content[j++];
+        }
+        if (k == card) {
+          return this;
+        }
+        if (k > ARRAY_MAX) {
+          return new ArrayContainer(merged, k).toBitmap();
+        }
+        content = merged;
+        card = k;
+        return this;
+      } else {
+        return c.copy().or(this);
+      }
+    }
+
+    @Override
+    Container and(Container c) {
+      char[] result = new char[Math.min(card, c.cardinality())];
+      int k = 0;
+      if (c instanceof ArrayContainer) {
+        ArrayContainer a = (ArrayContainer) c;
+        for (int i = 0, j = 0; i < card && j < a.card;) {
+          if (content[i] < a.content[j]) {
+            i++;
+          } else if (a.content[j] < content[i]) {
+            j++;
+          } else {
+            result[k++] = content[i];
+            i++;
+            j++;
+          }
+        }
+      } else {
+        for (int i = 0; i < card && k < result.length; i++) {
+          if (c.contains(content[i])) {
+            result[k++] = content[i];
+          }
+        }
+      }
+      return new ArrayContainer(result, k);
+    }
+
+    @Override
+    boolean intersects(Container c) {
+      if (c instanceof ArrayContainer) {
+        ArrayContainer a = (ArrayContainer) c;
+        for (int i = 0, j = 0; i < card && j < a.card;) {
+          if (content[i] < a.content[j]) {
+            i++;
+          } else if (a.content[j] < content[i]) {
+            j++;
+          } else {
+            return true;
+          }
+        }
+        return false;
+      }
+      for (int i = 0; i < card; i++) {
+        if (c.contains(content[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    Container copy() {
+      char[] c = new char[card];
+      System.arraycopy(content, 0, c, 0, card);
+      return new ArrayContainer(c, card);
+    }
+
+    @Override
+    int last() {
+      return content[card - 1];
+    }
+
+    @Override
+    IntIterator iterator(final int high) {
+      return new IntIterator() {
+        private int i = 0;
+
+        @Override
+        public boolean hasNext() {
+          return i < card;
+        }
+
+        @Override
+        public int next() {
+          if (i >= card) {
+            throw new NoSuchElementException();
+          }
+          return high | content[i++];
+        }
+      };
+    }
+
+    @Override
+    void foreach(int high, IntSetAction action) {
+      for (int i = 0; i < card; i++) {
+        action.act(high | content[i]);
+      }
+    }
+
+    @Override
+    BitmapContainer toBitmap() {
+      BitmapContainer result = new BitmapContainer();
+      for (int i = 0; i < card; i++) {
+        result.words[content[i] >>> 6] |= 1L << content[i];
+      }
+      result.card = card;
+      return result;
+    }
+
+    @Override
+    int numberOfRuns() {
+      int result = 0;
+      for (int i = 0; i < card; i++) {
+        if (i == 0 || content[i] != content[i - 1] + 1) {
+          result++;
+        }
+      }
+      return result;
+    }
+
+    @Override
+    int sizeInBytes() {
+      return 2 * content.length;
+    }
+  }
+
+  /**
+   * A bitmap of all 2^16 possible elements.
+   */
+  private final static class BitmapContainer extends Container {
+    private final long[] words;
+
+    private int card;
+
+    BitmapContainer() {
+      words = new long[BITMAP_WORDS];
+    }
+
+    private BitmapContainer(long[] words, int card) {
+      this.words = words;
+      this.card = card;
+    }
+
+    @Override
+    int cardinality() {
+      return card;
+    }
+
+    @Override
+    boolean contains(int x) {
+      return (words[x >>> 6] & (1L << x)) != 0;
+    }
+
+    @Override
+    Container add(int x) {
+      long w = words[x >>> 6];
+      long bit = 1L << x;
+      if ((w & bit) == 0) {
+        words[x >>> 6] = w | bit;
+        card++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(int x) {
+      long w = words[x >>> 6];
+      long bit = 1L << x;
+      if ((w & bit) != 0) {
+        words[x >>> 6] = w & ~bit;
+        card--;
+        if (card <= ARRAY_MAX) {
+          return ArrayContainer.make(this);
+        }
+      }
+      return this;
+    }
+
+    /**
+     * set the bits from start to end inclusive
+     *
+     * @return the number of bits which were not already set
+     */
+    private int setRange(int start, int end) {
+      int added = 0;
+      int firstWord = start >>> 6;
+      int lastWord = end >>> 6;
+      for (int w = firstWord; w <= lastWord; w++) {
+        long mask = -1L;
+        if (w == firstWord) {
+          mask &= -1L << start;
+        }
+        if (w == lastWord) {
+          mask &= -1L >>> (63 - (end & 63));
+        }
+        added += Long.bitCount(mask & ~words[w]);
+        words[w] |= mask;
+      }
+      return added;
+    }
+
+    /**
+     * @return true iff some bit from start to end inclusive is set
+     */
+    private boolean anyInRange(int start, int end) {
+      int firstWord = start >>> 6;
+      int lastWord = end >>> 6;
+      for (int w = firstWord; w <= lastWord; w++) {
+        long mask = -1L;
+        if (w == firstWord) {
+          mask &= -1L << start;
+        }
+        if (w == lastWord) {
+          mask &= -1L >>> (63 - (end & 63));
+        }
+        if ((words[w] & mask) != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    Container or(Container c) {
+      if (c instanceof BitmapContainer) {
+        long[] other = ((BitmapContainer) c).words;
+        int n = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          words[i] |= other[i];
+          n += Long.bitCount(words[i]);
+        }
+        card = n;
+      } else if (c instanceof ArrayContainer) {
+        ArrayContainer a = (ArrayContainer) c;
+        for (int i = 0; i < a.card; i++) {
+          add(a.content[i]);
+        }
+      } else {
+        RunContainer r = (RunContainer) c;
+        for (int i = 0; i < r.nRuns; i++) {
+          card += setRange(r.start(i), r.end(i));
+        }
+      }
+      return this;
+    }
+
+    @Override
+    Container and(Container c) {
+      if (c instanceof BitmapContainer) {
+        long[] other = ((BitmapContainer) c).words;
+        long[] result = new long[BITMAP_WORDS];
+        int n = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          result[i] = words[i] & other[i];
+          n += Long.bitCount(result[i]);
+        }
+        BitmapContainer b = new BitmapContainer(result, n);
+        return (n <= ARRAY_MAX) ? ArrayContainer.make(b) : b;
+      } else if (c instanceof ArrayContainer) {
+        return c.and(this);
+      } else {
+        RunContainer r = (RunContainer) c;
+        BitmapContainer result = new BitmapContainer();
+        for (int i = 0; i < r.nRuns; i++) {
+          int firstWord = r.start(i) >>> 6;
+          int lastWord = r.end(i) >>> 6;
+          for (int w = firstWord; w <= lastWord; w++) {
+            long mask = -1L;
+            if (w == firstWord) {
+              mask &= -1L << r.start(i);
+            }
+            if (w == lastWord) {
+              mask &= -1L >>> (63 - (r.end(i) & 63));
+            }
+            result.words[w] |= words[w] & mask;
+          }
+        }
+        int n = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          n += Long.bitCount(result.words[i]);
+        }
+        result.card = n;
+        return (n <= ARRAY_MAX) ? ArrayContainer.make(result) : result;
+      }
+    }
+
+    @Override
+    boolean intersects(Container c) {
+      if (c instanceof BitmapContainer) {
+        long[] other = ((BitmapContainer) c).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          if ((words[i] & other[i]) != 0) {
+            return true;
+          }
+        }
+        return false;
+      } else {
+        return c.intersects(this);
+      }
+    }
+
+    @Override
+    boolean isSubset(Container c) {
+      if (c instanceof BitmapContainer) {
+        if (card > c.cardinality()) {
+          return false;
+        }
+        long[] other = ((BitmapContainer) c).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          if ((words[i] & ~other[i]) != 0) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.isSubset(c);
+    }
+
+    @Override
+    Container copy() {
+      long[] w = new long[BITMAP_WORDS];
+      System.arraycopy(words, 0, w, 0, BITMAP_WORDS);
+      return new BitmapContainer(w, card);
+    }
+
+    @Override
+    int last() {
+      int i = BITMAP_WORDS - 1;
+      while (words[i] == 0) {
+        i--;
+      }
+      return 64 * i + 63 - Long.numberOfLeadingZeros(words[i]);
+    }
+
+    @Override
+    IntIterator iterator(final int high) {
+      return new IntIterator() {
+        private int w = 0;
+
+        private long bits = words[0];
+
+        @Override
+        public boolean hasNext() {
+          while (bits == 0 && w < BITMAP_WORDS - 1) {
+            bits = words[++w];
+          }
+          return bits != 0;
+        }
+
+        @Override
+        public int next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          int result = high | (64 * w + Long.numberOfTrailingZeros(bits));
+          bits &= bits - 1;
+          return result;
+        }
+      };
+    }
+
+    @Override
+    void foreach(int high, IntSetAction action) {
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+          action.act(high | (64 * w + Long.numberOfTrailingZeros(bits)));
+        }
+      }
+    }
+
+    @Override
+    BitmapContainer toBitmap() {
+      return (BitmapContainer) copy();
+    }
+
+    @Override
+    int numberOfRuns() {
+      int result = 0;
+      long carry = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long w = words[i];
+        // a run starts at each set bit whose predecessor is clear
+        result += Long.bitCount(w & ~((w << 1) | carry));
+        carry = w >>> 63;
+      }
+      return result;
+    }
+
+    @Override
+    int sizeInBytes() {
+      return BITMAP_BYTES;
+    }
+  }
+
+  /**
+   * A sorted list of disjoint, non-adjacent intervals.
+   */
+  private final static class RunContainer extends Container {
+    /**
+     * the start and length - 1 of each run
+     */
+    private char[] runs;
+
+    private int nRuns;
+
+    private int card;
+
+    private RunContainer(char[] runs, int nRuns, int card) {
+      this.runs = runs;
+      this.nRuns = nRuns;
+      this.card = card;
+    }
+
+    static int sizeInBytes(int nRuns) {
+      return 2 + 4 * nRuns;
+    }
+
+    static RunContainer make(Container c) {
+      char[] runs = new char[2 * c.numberOfRuns()];
+      int n = 0;
+      int start = -1;
+      int prev = -2;
+      for (IntIterator it = c.iterator(0); it.hasNext();) {
+        int x = it.next();
+        if (x != prev + 1) {
+          if (start >= 0) {
+            runs[2 * n] = (char) start;
+            runs[2 * n + 1] = (char) (prev - start);
+            n++;
+          }
+          start = x;
+        }
+        prev = x;
+      }
+      if (start >= 0) {
+        runs[2 * n] = (char) start;
+        runs[2 * n + 1] = (char) (prev - start);
+        n++;
+      }
+      return new RunContainer(runs, n, c.cardinality());
+    }
+
+    int start(int i) {
+      return runs[2 * i];
+    }
+
+    int end(int i) {
+      return runs[2 * i] + runs[2 * i + 1];
+    }
+
+    /**
+     * @return the index of the last run starting at or before x, or -1 if there is none
+     */
+    private int find(int x) {
+      int lo = 0;
+      int hi = nRuns - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (start(mid) <= x) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return hi;
+    }
+
+    private void setRun(int i, int start, int end) {
+      runs[2 * i] = (char) start;
+      runs[2 * i + 1] = (char) (end - start);
+    }
+
+    private void insertRun(int i, int start, int end) {
+      if (2 * nRuns == runs.length) {
+        char[] newRuns = new char[Math.max(4, 2 * runs.length)];
+        System.arraycopy(runs, 0, newRuns, 0, 2 * nRuns);
+        runs = newRuns;
+      }
+      System.arraycopy(runs, 2 * i, runs, 2 * i + 2, 2 * (nRuns - i));
+      nRuns++;
+      setRun(i, start, end);
+    }
+
+    private void deleteRun(int i) {
+      System.arraycopy(runs, 2 * i + 2, runs, 2 * i, 2 * (nRuns - i - 1));
+      nRuns--;
+    }
+
+    @Override
+    int cardinality() {
+      return card;
+    }
+
+    @Override
+    boolean contains(int x) {
+      int i = find(x);
+      return i >= 0 && x <= end(i);
+    }
+
+    @Override
+    Container add(int x) {
+      int i = find(x);
+      if (i >= 0 && x <= end(i)) {
+        return this;
+      }
+      card++;
+      boolean joinsPrevious = i >= 0 && end(i) + 1 == x;
+      boolean joinsNext = i + 1 < nRuns && start(i + 1) == x + 1;
+      if (joinsPrevious && joinsNext) {
+        setRun(i, start(i), end(i + 1));
+        deleteRun(i + 1);
+      } else if (joinsPrevious) {
+        setRun(i, start(i), x);
+      } else if (joinsNext) {
+        setRun(i + 1, x, end(i + 1));
+      } else {
+        insertRun(i + 1, x, x);
+        if (sizeInBytes(nRuns) > Math.min(BITMAP_BYTES, 2 * card)) {
+          return optimize();
+        }
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(int x) {
+      int i = find(x);
+      if (i < 0 || x > end(i)) {
+        return this;
+      }
+      card--;
+      int start = start(i);
+      int end = end(i);
+      if (start == end) {
+        deleteRun(i);
+      } else if (x == start) {
+        setRun(i, start + 1, end);
+      } else if (x == end) {
+        setRun(i, start, end - 1);
+      } else {
+        setRun(i, start, x - 1);
+        insertRun(i + 1, x + 1, end);
+        if (sizeInBytes(nRuns) > Math.min(BITMAP_BYTES, 2 * card)) {
+          return optimize();
+        }
+      }
+      return this;
+    }
+
+    @Override
+    Container or(Container c) {
+      if (!(c instanceof RunContainer)) {
+        // in a fixed-point computation, most unions add nothing new
+        return c.isSubset(this) ? this : toBitmap().or(c);
+      }
+      RunContainer r = (RunContainer) c;
+      char[] merged = new char[2 * (nRuns + r.nRuns)];
+      int n = 0;
+      int total = 0;
+      int curStart = -1;
+      int curEnd = -2;
+      for (int i = 0, j = 0; i < nRuns || j < r.nRuns;) {
+        int s, e;
+        if (j == r.nRuns || (i < nRuns && start(i) <= r.start(j))) {
+          s = start(i);
+          e = end(i++);
+        } else {
+          s = r.start(j);
+          e = r.end(j++);
+        }
+        if (s <= curEnd + 1) {
+          curEnd = Math.max(curEnd, e);
+        } else {
+          if (curStart >= 0) {
+            merged[2 * n] = (char) curStart;
+            merged[2 * n + 1] = (char) (curEnd - curStart);
+            total += curEnd - curStart + 1;
+            n++;
+          }
+          curStart = s;
+          curEnd = e;
+        }
+      }
+      if (curStart >= 0) {
+        merged[2 * n] = (char) curStart;
+        merged[2 * n + 1] = (char) (curEnd - curStart);
+        total += curEnd - curStart + 1;
+        n++;
+      }
+      runs = merged;
+      nRuns = n;
+      card = total;
+      return this;
+    }
+
+    @Override
+    Container and(Container c) {
+      if (c instanceof ArrayContainer) {
+        return c.and(this);
+      } else if (c instanceof BitmapContainer) {
+        return c.and(this);
+      }
+      RunContainer r = (RunContainer) c;
+      char[] result = new char[2 * (nRuns + r.nRuns)];
+      int n = 0;
+      int total = 0;
+      for (int i = 0, j = 0; i < nRuns && j < r.nRuns;) {
+        int s = Math.max(start(i), r.start(j));
+        int e = Math.min(end(i), r.end(j));
+        if (s <= e) {
+          result[2 * n] = (char) s;
+          result[2 * n + 1] = (char) (e - s);
+          total += e - s + 1;
+          n++;
+        }
+        if (end(i) < r.end(j)) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      return new RunContainer(result, n, total).optimize();
+    }
+
+    @Override
+    boolean intersects(Container c) {
+      if (c instanceof ArrayContainer) {
+        return c.intersects(this);
+      } else if (c instanceof BitmapContainer) {
+        BitmapContainer b = (BitmapContainer) c;
+        for (int i = 0; i < nRuns; i++) {
+          if (b.anyInRange(start(i), end(i))) {
+            return true;
+          }
+        }
+        return false;
+      }
+      RunContainer r = (RunContainer) c;
+      for (int i = 0, j = 0; i < nRuns && j < r.nRuns;) {
+        if (Math.max(start(i), r.start(j)) <= Math.min(end(i), r.end(j))) {
+          return true;
+        }
+        if (end(i) < r.end(j)) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    Container copy() {
+      char[] r = new char[2 * nRuns];
+      System.arraycopy(runs, 0, r, 0, 2 * nRuns);
+      return new RunContainer(r, nRuns, card);
+    }
+
+    @Override
+    int last() {
+      return end(nRuns - 1);
+    }
+
+    @Override
+    IntIterator iterator(final int high) {
+      return new IntIterator() {
+        private int run = 0;
+
+        private int next = (nRuns == 0) ? 0 : start(0);
+
+        @Override
+        public boolean hasNext() {
+          return run < nRuns;
+        }
+
+        @Override
+        public int next() {
+          if (run >= nRuns) {
+            throw new NoSuchElementException();
+          }
+          int result = high | next;
+          if (next == end(run)) {
+            run++;
+            if (run < nRuns) {
+              next = start(run);
+            }
+          } else {
+            next++;
+          }
+          return result;
+        }
+      };
+    }
+
+    @Override
+    void foreach(int high, IntSetAction action) {
+      for (int i = 0; i < nRuns; i++) {
+        for (int x = start(i), e = end(i); x <= e; x++) {
+          action.act(high | x);
+        }
+      }
+    }
+
+    @Override
+    BitmapContainer toBitmap() {
+      BitmapContainer result = new BitmapContainer();
+      for (int i = 0; i < nRuns; i++) {
+        result.setRange(start(i), end(i));
+      }
+      result.card = card;
+      return result;
+    }
+
+    @Override
+    int numberOfRuns() {
+      return nRuns;
+    }
+
+    @Override
+    int sizeInBytes() {
+      return sizeInBytes(runs.length / 2);
+    }
+  }
+}
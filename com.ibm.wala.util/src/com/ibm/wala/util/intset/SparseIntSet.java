@@ -172,6 +172,8 @@ public class SparseIntSet implements IntSet {
       return that.sameValue(this);
     } else if (that instanceof MutableSharedBitVectorIntSet) {
       return sameValue(((MutableSharedBitVectorIntSet) that).makeSparseCopy());
+    } else if (that instanceof RoaringMutableIntSet) {
+      return that.sameValue(this);
     } else {
       Assertions.UNREACHABLE(that.getClass().toString());
       return false;
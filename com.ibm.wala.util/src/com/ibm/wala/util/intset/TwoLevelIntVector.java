@@ -32,7 +32,7 @@ public class TwoLevelIntVector implements IntVector {
 
   private final int defaultValue;
 
-  TwoLevelIntVector(int defaultValue) {
+  public TwoLevelIntVector(int defaultValue) {
     this.defaultValue = defaultValue;
   }
 
@@ -10,10 +10,14 @@
  *******************************************************************************/
 package com.ibm.wala.util.perf;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 
 /**
- * A {@link Stopwatch} that also queries the free memory from the GC.
- * This is mostly useless.
+ * A {@link Stopwatch} that also queries the free memory from the GC, the time spent in GC while running, and the peak heap
+ * usage. The collections this stopwatch forces itself, to measure the footprint, are not counted as GC time.
  */
 public class StopwatchGC extends com.ibm.wala.util.perf.Stopwatch {
 
@@ -23,6 +27,15 @@ public class StopwatchGC extends com.ibm.wala.util.perf.Stopwatch {
 
   private long endMemory;
 
+  /**
+   * GC time in ms, accumulated over all start/stop intervals
+   */
+  private long gcTime;
+
+  private long startGCTime;
+
+  private long peakMemory;
+
   public StopwatchGC(String name) {
     super();
     this.name = name;
@@ -36,22 +49,52 @@ public class StopwatchGC extends com.ibm.wala.util.perf.Stopwatch {
       System.gc();
       Runtime r = Runtime.getRuntime();
       startMemory = r.totalMemory() - r.freeMemory();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+        }
+      }
     }
+    startGCTime = getTotalGCTime();
     super.start();
   }
 
   @Override
   public final void stop() {
     super.stop();
+    gcTime += getTotalGCTime() - startGCTime;
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    peakMemory = Math.max(peakMemory, peak);
     System.gc();
     Runtime r = Runtime.getRuntime();
     endMemory = r.totalMemory() - r.freeMemory();
   }
 
+  /**
+   * @return total time spent in GC by this VM so far, in ms
+   */
+  private static long getTotalGCTime() {
+    long result = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      long t = gc.getCollectionTime();
+      if (t > 0) {
+        result += t;
+      }
+    }
+    return result;
+  }
+
   public final String report() {
     String result = "";
     if (getCount() > 0) {
       result += "Stopwatch: " + name + " " + getElapsedMillis() + " ms" + "\n";
+      result += "                  GC time: " + getGCMillis() + " ms\n";
+      result += "                Peak heap: " + getPeakMemory() + " MB\n";
 
     }
     if (getCount() == 1) {
@@ -76,6 +119,21 @@ public class StopwatchGC extends com.ibm.wala.util.perf.Stopwatch {
     return (float) startMemory / 1000000;
   }
 
+  /**
+   * @return time spent in GC while this stopwatch was running, in ms
+   */
+  public long getGCMillis() {
+    return gcTime;
+  }
+
+  /**
+   * @return the peak heap usage while this stopwatch was running, in MB. This is the sum of the peaks of the heap memory pools,
+   *         so it may overestimate the true peak a little.
+   */
+  public float getPeakMemory() {
+    return (float) peakMemory / 1000000;
+  }
+
   /**
    * @return getEndMemory() - getStartMemory()
    */